@@ -42,6 +42,10 @@ public class AppInstance extends CommonProperties {
   private String destruction_secret;
   private String status_changed_uri;
   private String status_changed_secret;
+  /** JWS algorithm to sign ID Tokens with; {@code null} means the default (RS256). */
+  private String id_token_signed_response_alg;
+  /** JWS algorithm to sign UserInfo responses with; {@code null} means the default (RS256). */
+  private String userinfo_signed_response_alg;
   @JsonProperty private Boolean redirect_uri_validation_disabled;
   @JsonProperty private String portal_id;
 
@@ -70,6 +74,8 @@ public class AppInstance extends CommonProperties {
     destruction_secret = other.getDestruction_secret();
     status_changed_uri = other.getStatus_changed_uri();
     status_changed_secret = other.getStatus_changed_secret();
+    id_token_signed_response_alg = other.getId_token_signed_response_alg();
+    userinfo_signed_response_alg = other.getUserinfo_signed_response_alg();
     redirect_uri_validation_disabled = other.redirect_uri_validation_disabled;
     portal_id = other.portal_id;
   }
@@ -162,6 +168,22 @@ public class AppInstance extends CommonProperties {
     this.status_changed_secret = status_changed_secret;
   }
 
+  public String getId_token_signed_response_alg() {
+    return id_token_signed_response_alg;
+  }
+
+  public void setId_token_signed_response_alg(String id_token_signed_response_alg) {
+    this.id_token_signed_response_alg = id_token_signed_response_alg;
+  }
+
+  public String getUserinfo_signed_response_alg() {
+    return userinfo_signed_response_alg;
+  }
+
+  public void setUserinfo_signed_response_alg(String userinfo_signed_response_alg) {
+    this.userinfo_signed_response_alg = userinfo_signed_response_alg;
+  }
+
   @JsonIgnore
   public boolean isRedirect_uri_validation_disabled() {
     return Boolean.TRUE.equals(redirect_uri_validation_disabled);
@@ -21,6 +21,8 @@ import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import oasis.model.InvalidVersionException;
 
 public interface AppInstanceRepository {
@@ -38,6 +40,19 @@ public interface AppInstanceRepository {
 
   Iterable<AppInstance> findPersonalInstancesByUserIdAndStatus(String userId, AppInstance.InstantiationStatus instantiationStatus);
 
+  /**
+   * Returns, in a single query, the personal instances of the given user along with the instances provided by any of the
+   * given organizations, optionally filtered by status.
+   * <p>
+   * Returned instances lack their secrets (destruction and status-changed secrets) and the redirect URI validation flag.
+   * <p>
+   * Personal instances come first, then instances grouped by organization; each group is in creation order.
+   *
+   * @param limit the maximum number of instances to return, or {@code 0} for no limit
+   */
+  Iterable<AppInstance> findPersonalAndOrganizationInstances(String userId, Collection<String> organizationIds,
+      @Nullable AppInstance.InstantiationStatus instantiationStatus, int start, int limit);
+
   long getNonStoppedCountByOrganizationId(String organizationId);
 
   Iterable<AppInstance> findStoppedBefore(Instant stoppedBefore);
@@ -48,7 +63,8 @@ public interface AppInstanceRepository {
       throws InvalidVersionException;
 
   AppInstance instantiated(String instanceId, List<AppInstance.NeededScope> neededScopes, String destruction_uri, String destruction_secret,
-      String status_changed_uri, String status_changed_secret, AppInstance.InstantiationStatus status);
+      String status_changed_uri, String status_changed_secret, @Nullable String id_token_signed_response_alg,
+      @Nullable String userinfo_signed_response_alg, AppInstance.InstantiationStatus status);
 
   AppInstance backToPending(String instanceId);
 
@@ -28,6 +28,20 @@ public class Scope {
   private LocalizableString name = new LocalizableString();
   private LocalizableString description = new LocalizableString();
 
+  public Scope() {
+  }
+
+  /**
+   * Copy constructor.
+   */
+  public Scope(Scope other) {
+    id = other.id;
+    instance_id = other.getInstance_id();
+    local_id = other.getLocal_id();
+    name = new LocalizableString(other.getName());
+    description = new LocalizableString(other.getDescription());
+  }
+
   public String getId() {
     if (id == null) {
       computeId();
@@ -30,6 +30,16 @@ import oasis.model.annotations.Id;
 
 @JsonTypeInfo(use = JsonTypeInfo.Id.MINIMAL_CLASS, property = "_type")
 public abstract class Token {
+  /**
+   * Algorithm used to compute the {@link #getHash() hash} of the token's secret.
+   *
+   * <p>Tokens created before this field was introduced have no algorithm and used {@link #SCRYPT}.
+   */
+  public enum HashAlgorithm {
+    SCRYPT,
+    SALTED_SHA256
+  }
+
   @Id
   private String id;
   @JsonProperty
@@ -37,6 +47,8 @@ public abstract class Token {
   @JsonProperty
   private byte[] salt;
   @JsonProperty
+  private HashAlgorithm hashAlgorithm;
+  @JsonProperty
   private Instant creationTime = Instant.now();
   @JsonProperty
   private Instant expirationTime;
@@ -67,6 +79,15 @@ public abstract class Token {
     this.salt = salt;
   }
 
+  /** Returns the algorithm used to hash the token's secret; {@code null} for legacy tokens (which used scrypt). */
+  public HashAlgorithm getHashAlgorithm() {
+    return hashAlgorithm;
+  }
+
+  public void setHashAlgorithm(HashAlgorithm hashAlgorithm) {
+    this.hashAlgorithm = hashAlgorithm;
+  }
+
   public Instant getCreationTime() {
     return creationTime;
   }
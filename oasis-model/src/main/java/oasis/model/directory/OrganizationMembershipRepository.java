@@ -32,6 +32,9 @@ public interface OrganizationMembershipRepository {
 
   @Nullable OrganizationMembership getOrganizationMembership(String userId, String organizationId);
 
+  /** Returns whether the user is an admin of the organization, without loading the membership. */
+  boolean isOrganizationAdmin(String userId, String organizationId);
+
   @Nullable OrganizationMembership updateOrganizationMembership(OrganizationMembership membership, long[] versions) throws InvalidVersionException;
 
   @Nullable OrganizationMembership acceptPendingOrganizationMembership(String membershipId, String accountId);
@@ -50,8 +53,14 @@ public interface OrganizationMembershipRepository {
 
   Iterable<OrganizationMembership> getAdminsOfOrganization(String organizationId, int start, int limit);
 
+  /** Returns the account IDs of the admins of the organization. */
+  Iterable<String> getAdminIdsOfOrganization(String organizationId);
+
   Iterable<String> getOrganizationIdsForUser(String userId);
 
+  /** Returns all the user's memberships, only populated with their {@code organizationId} and {@code admin} properties. */
+  Iterable<OrganizationMembership> getOrganizationsForUser(String userId);
+
   Iterable<OrganizationMembership> getOrganizationsForUser(String userId, int start, int limit);
 
   Iterable<OrganizationMembership> getOrganizationsForAdmin(String userId);
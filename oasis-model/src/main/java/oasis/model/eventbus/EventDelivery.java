@@ -0,0 +1,179 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.model.eventbus;
+
+import java.time.Instant;
+
+import javax.annotation.Nonnull;
+
+import oasis.model.annotations.Id;
+
+/**
+ * A pending (or failed) delivery of an event to a {@link Subscription}'s webhook.
+ */
+public class EventDelivery {
+  public enum Status {
+    PENDING,
+    FAILED
+  }
+
+  @Id
+  private String id;
+  private String subscription_id;
+  private String instance_id;
+  private String webHook;
+  private String eventType;
+  private String message;
+  private String data;
+  private Status status = Status.PENDING;
+  /** When the event has been published. */
+  private Instant created;
+  /** When the next delivery attempt is due; also used as a lease while an attempt is in progress. */
+  private Instant next_attempt;
+  private int attempts;
+  private String last_error;
+  /** When the delivery has been abandoned; only set for {@link Status#FAILED failed} deliveries. */
+  private Instant failed;
+
+  public EventDelivery() {
+  }
+
+  /**
+   * Copy constructor.
+   * <p>
+   * Does not copy {@link #id} field.
+   */
+  public EventDelivery(@Nonnull EventDelivery other) {
+    this.subscription_id = other.getSubscription_id();
+    this.instance_id = other.getInstance_id();
+    this.webHook = other.getWebHook();
+    this.eventType = other.getEventType();
+    this.message = other.getMessage();
+    this.data = other.getData();
+    this.status = other.getStatus();
+    this.created = other.getCreated();
+    this.next_attempt = other.getNext_attempt();
+    this.attempts = other.getAttempts();
+    this.last_error = other.getLast_error();
+    this.failed = other.getFailed();
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public String getSubscription_id() {
+    return subscription_id;
+  }
+
+  public void setSubscription_id(String subscription_id) {
+    this.subscription_id = subscription_id;
+  }
+
+  public String getInstance_id() {
+    return instance_id;
+  }
+
+  public void setInstance_id(String instance_id) {
+    this.instance_id = instance_id;
+  }
+
+  public String getWebHook() {
+    return webHook;
+  }
+
+  public void setWebHook(String webHook) {
+    this.webHook = webHook;
+  }
+
+  public String getEventType() {
+    return eventType;
+  }
+
+  public void setEventType(String eventType) {
+    this.eventType = eventType;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  public String getData() {
+    return data;
+  }
+
+  public void setData(String data) {
+    this.data = data;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public void setStatus(Status status) {
+    this.status = status;
+  }
+
+  public Instant getCreated() {
+    return created;
+  }
+
+  public void setCreated(Instant created) {
+    this.created = created;
+  }
+
+  public Instant getNext_attempt() {
+    return next_attempt;
+  }
+
+  public void setNext_attempt(Instant next_attempt) {
+    this.next_attempt = next_attempt;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public void setAttempts(int attempts) {
+    this.attempts = attempts;
+  }
+
+  public String getLast_error() {
+    return last_error;
+  }
+
+  public void setLast_error(String last_error) {
+    this.last_error = last_error;
+  }
+
+  public Instant getFailed() {
+    return failed;
+  }
+
+  public void setFailed(Instant failed) {
+    this.failed = failed;
+  }
+}
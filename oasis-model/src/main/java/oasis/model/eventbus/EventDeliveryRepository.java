@@ -0,0 +1,50 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.model.eventbus;
+
+import java.time.Instant;
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
+/**
+ * Durable outbox of event deliveries.
+ * <p>
+ * Deliveries are removed once successfully delivered; deliveries that couldn't be delivered after the configured number
+ * of attempts are kept (with status {@link EventDelivery.Status#FAILED FAILED}) for some time for diagnosis.
+ */
+public interface EventDeliveryRepository {
+
+  void enqueue(Collection<EventDelivery> deliveries);
+
+  /**
+   * Atomically claims the pending delivery that's been due for the longest time, leasing it until {@code leaseExpiry}.
+   * <p>
+   * If the lease expires before the delivery is either deleted or rescheduled (e.g. the node crashed), it will be
+   * claimed again.
+   */
+  @Nullable EventDelivery claimNextDue(Instant now, Instant leaseExpiry);
+
+  boolean reschedule(String deliveryId, Instant nextAttempt, int attempts, @Nullable String lastError);
+
+  boolean markFailed(String deliveryId, int attempts, @Nullable String lastError);
+
+  boolean deleteDelivery(String deliveryId);
+
+  long countPending();
+}
@@ -0,0 +1,76 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.model.i18n;
+
+import java.util.List;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.ibm.icu.util.LocaleMatcher;
+import com.ibm.icu.util.LocalePriorityList;
+import com.ibm.icu.util.ULocale;
+
+/**
+ * Shared caches of ICU {@link LocaleMatcher}s and locale fallback chains.
+ * <p>
+ * Building a {@link LocaleMatcher} is costly, and the same sets of locales are used over and over (most localized values
+ * are available in the same few locales), so matchers are shared, keyed by their (ordered) list of supported locales.
+ * Matchers are immutable once built, so they can safely be shared across threads.
+ */
+public final class LocaleMatchers {
+  private static final int MAXIMUM_SIZE = 1000;
+
+  private static final LoadingCache<ImmutableList<ULocale>, LocaleMatcher> MATCHERS = CacheBuilder.newBuilder()
+      .maximumSize(MAXIMUM_SIZE)
+      .build(CacheLoader.from(supportedLocales ->
+          new LocaleMatcher(LocalePriorityList.add(supportedLocales.toArray(new ULocale[0])).build())));
+
+  private static final LoadingCache<ULocale, ImmutableList<ULocale>> FALLBACKS = CacheBuilder.newBuilder()
+      .maximumSize(MAXIMUM_SIZE)
+      .build(CacheLoader.from(locale -> {
+        ImmutableList.Builder<ULocale> fallbacks = ImmutableList.builder();
+        for (ULocale fallback = locale; fallback != null; fallback = fallback.getFallback()) {
+          fallbacks.add(fallback);
+        }
+        return fallbacks.build();
+      }));
+
+  /**
+   * Returns a matcher for the given supported locales, in priority order.
+   * <p>
+   * The first locale is the default one, returned when no other locale matches.
+   */
+  public static LocaleMatcher get(List<ULocale> supportedLocales) {
+    return MATCHERS.getUnchecked(ImmutableList.copyOf(supportedLocales));
+  }
+
+  /**
+   * Returns the given locale followed by its fallbacks, up to (and including) {@link ULocale#ROOT}.
+   * <p>
+   * For example, {@code fr-FR}, {@code fr}, then {@code ROOT}.
+   */
+  public static ImmutableList<ULocale> getFallbacks(ULocale locale) {
+    return FALLBACKS.getUnchecked(locale);
+  }
+
+  private LocaleMatchers() {
+    // non-instantiable
+  }
+}
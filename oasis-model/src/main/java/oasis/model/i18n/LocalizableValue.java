@@ -17,9 +17,11 @@
  */
 package oasis.model.i18n;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
@@ -27,7 +29,6 @@ import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 import com.ibm.icu.util.LocaleMatcher;
-import com.ibm.icu.util.LocalePriorityList;
 import com.ibm.icu.util.ULocale;
 
 @NotThreadSafe
@@ -86,16 +87,17 @@ public class LocalizableValue<T> {
     assert !this.values.isEmpty();
     LocaleMatcher localeMatcher = this.localeMatcher;
     if (localeMatcher == null) {
+      List<ULocale> supportedLocales = new ArrayList<>(values.size());
       Iterator<ULocale> localesIterator = values.keySet().iterator();
-      LocalePriorityList.Builder builder = LocalePriorityList.add(values.containsKey(ULocale.ROOT) ? ULocale.ROOT : localesIterator.next());
+      supportedLocales.add(values.containsKey(ULocale.ROOT) ? ULocale.ROOT : localesIterator.next());
       while (localesIterator.hasNext()) {
         ULocale locale = localesIterator.next();
         if (ULocale.ROOT.equals(locale)) {
           continue; // Don't add ROOT twice, it would no longer be first
         }
-        builder.add(locale);
+        supportedLocales.add(locale);
       }
-      this.localeMatcher = localeMatcher = new LocaleMatcher(builder.build());
+      this.localeMatcher = localeMatcher = LocaleMatchers.get(supportedLocales);
     }
     return localeMatcher;
   }
@@ -17,8 +17,11 @@
  */
 package oasis.model.notification;
 
+import java.time.Instant;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 public interface NotificationRepository {
 
   /**
@@ -40,6 +43,21 @@ public interface NotificationRepository {
 
   Iterable<Notification> getNotifications(String userId, String instanceId, Notification.Status status);
 
+  /**
+   * Returns the notifications of the given user, most recent first, optionally filtered by app-instance and status.
+   * <p>
+   * Pages are delimited by a keyset: pass the {@link Notification#getTime() time} and {@link Notification#getId() id}
+   * of the last notification of the previous page to get the next one.
+   *
+   * @param limit the maximum number of notifications to return, or {@code 0} for no limit
+   */
+  Iterable<Notification> getNotifications(String userId, @Nullable String instanceId, @Nullable Notification.Status status,
+      @Nullable Instant beforeTime, @Nullable String beforeId, int limit);
+
+  /**
+   * Notifications marked as {@link Notification.Status#READ read} are eventually deleted, after a configurable
+   * retention period.
+   */
   void markNotifications(String userId, List<String> notificationIds, Notification.Status status);
 
 }
@@ -0,0 +1,54 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.model.i18n;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ibm.icu.util.ULocale;
+
+public class LocaleMatchersTest {
+
+  @Test
+  public void testSharedMatcher() {
+    LocalizableString first = new LocalizableString();
+    first.set(ULocale.ROOT, "root");
+    first.set(ULocale.FRENCH, "Français");
+
+    LocalizableString second = new LocalizableString();
+    second.set(ULocale.FRENCH, "Autre");
+    second.set(ULocale.ROOT, "other");
+
+    assertThat(first.get(ULocale.FRANCE)).isEqualTo("Français");
+    assertThat(second.get(ULocale.FRANCE)).isEqualTo("Autre");
+    assertThat(second.get(ULocale.ENGLISH)).isEqualTo("other");
+
+    assertThat(LocaleMatchers.get(Arrays.asList(ULocale.ROOT, ULocale.FRENCH)))
+        .isSameAs(LocaleMatchers.get(Arrays.asList(ULocale.ROOT, ULocale.FRENCH)));
+  }
+
+  @Test
+  public void testFallbacks() {
+    assertThat(LocaleMatchers.getFallbacks(ULocale.forLanguageTag("fr-FR")))
+        .containsExactly(ULocale.forLanguageTag("fr-FR"), ULocale.FRENCH, ULocale.ROOT);
+    assertThat(LocaleMatchers.getFallbacks(ULocale.ROOT)).containsExactly(ULocale.ROOT);
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.web.authz;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.NumericDate;
+import org.jose4j.lang.JoseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oasis.auth.AuthModule;
+import oasis.security.KeyPairLoader;
+
+/**
+ * Compares signing an ID Token with RS256 and ES256, through {@link JwsSigner} and through jose4j's
+ * {@link JsonWebSignature} (as was done before {@link JwsSigner}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwsSignerBenchmark {
+  @Param({ AlgorithmIdentifiers.RSA_USING_SHA256, AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256 })
+  String algorithm;
+
+  private KeyPair keyPair;
+  private String keyId;
+  private JwsSigner jwsSigner;
+  private String payload;
+
+  @Setup public void setUp() {
+    AuthModule.Settings settings = AuthModule.Settings.builder()
+        .setKeyPair(KeyPairLoader.generateRandomKeyPair())
+        .setEcKeyPair(KeyPairLoader.generateRandomEcKeyPair())
+        .build();
+    jwsSigner = new JwsSigner(settings);
+    if (AlgorithmIdentifiers.RSA_USING_SHA256.equals(algorithm)) {
+      keyPair = settings.keyPair;
+      keyId = KeysEndpoint.JSONWEBKEY_PK_ID;
+    } else {
+      keyPair = settings.ecKeyPair;
+      keyId = KeysEndpoint.JSONWEBKEY_EC_PK_ID;
+    }
+
+    // Typical ID Token
+    JwtClaims claims = new JwtClaims();
+    claims.setIssuer("https://accounts.ozwillo.com/");
+    claims.setSubject("a3a9c2b6-4d9a-4a76-9e4b-2b1f7d2c1e5a");
+    claims.setAudience("5e0c3ba1-7a0e-4d1b-a1a4-8a2bb1c4a3f2");
+    claims.setIssuedAt(NumericDate.now());
+    claims.setExpirationTimeMinutesInTheFuture(10);
+    claims.setClaim("nonce", "n-0S6_WzA2Mj");
+    claims.setClaim("auth_time", NumericDate.now().getValue());
+    claims.setStringClaim("acr", "eidas1");
+    claims.setClaim("app_user", Boolean.TRUE);
+    payload = claims.toJson();
+  }
+
+  @Benchmark public String jwsSigner() throws JoseException {
+    return jwsSigner.sign(payload, algorithm);
+  }
+
+  @Benchmark public String jose4j() throws JoseException {
+    JsonWebSignature jws = new JsonWebSignature();
+    jws.setAlgorithmHeaderValue(algorithm);
+    jws.setKeyIdHeaderValue(keyId);
+    jws.setKey(keyPair.getPrivate());
+    jws.setPayload(payload);
+    return jws.getCompactSerialization();
+  }
+}
@@ -0,0 +1,216 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.auditlog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Base class for audit log services that write events off the request thread.
+ * <p>
+ * Events are put in a bounded queue and written in batches (of whatever has accumulated while the previous batch was
+ * being written, up to {@link AuditLogModule.Settings#batchSize()}) by a background thread. When the queue is full,
+ * events are either dropped or the request thread waits, depending on the
+ * {@link AuditLogModule.Settings#overflowPolicy() overflow policy}.
+ * <p>
+ * When the service hasn't been started (e.g. in tools), events are written synchronously.
+ */
+public abstract class AsyncAuditLogService extends AuditLogService {
+  private static final Logger logger = LoggerFactory.getLogger(AsyncAuditLogService.class);
+  private static final long DROP_WARNING_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private final AuditLogModule.Settings settings;
+  private final BlockingQueue<AuditLogEvent> queue;
+
+  private final LongAdder writtenCount = new LongAdder();
+  private final LongAdder droppedCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+
+  private final Ticker ticker;
+  /** When the next "dropping events" warning can be logged, in {@link #ticker} time. */
+  private final AtomicLong nextDropWarning;
+
+  private volatile @Nullable ExecutorService writer;
+  private volatile boolean running;
+
+  protected AsyncAuditLogService(AuditLogModule.Settings settings) {
+    this(settings, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  AsyncAuditLogService(AuditLogModule.Settings settings, Ticker ticker) {
+    this.settings = settings;
+    this.queue = new ArrayBlockingQueue<>(settings.queueSize());
+    this.ticker = ticker;
+    this.nextDropWarning = new AtomicLong(ticker.read());
+  }
+
+  /**
+   * Writes a batch of events. This is called from a single thread at a time.
+   *
+   * @return the number of events that couldn't be written
+   */
+  protected abstract int write(List<AuditLogEvent> events);
+
+  @Override
+  protected final void log(AuditLogEvent auditLogEvent) {
+    if (!running) {
+      writeBatch(Collections.singletonList(auditLogEvent));
+      return;
+    }
+    switch (settings.overflowPolicy()) {
+      case DROP:
+        if (!queue.offer(auditLogEvent)) {
+          droppedCount.increment();
+          warnDropped();
+        }
+        break;
+      case BLOCK:
+        try {
+          queue.put(auditLogEvent);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          droppedCount.increment();
+        }
+        break;
+    }
+  }
+
+  /**
+   * Logs a warning at most once per minute while events are being dropped.
+   *
+   * @return whether the warning has been logged
+   */
+  @VisibleForTesting
+  boolean warnDropped() {
+    // Don't log the event itself, it could make things worse if the logging backend is the bottleneck
+    long now = ticker.read();
+    long next = nextDropWarning.get();
+    if (now - next < 0 || !nextDropWarning.compareAndSet(next, now + DROP_WARNING_INTERVAL_NANOS)) {
+      return false;
+    }
+    logger.warn("Audit log queue is full, dropping events ({} dropped so far)", droppedCount.sum());
+    return true;
+  }
+
+  @Override
+  @SuppressWarnings("FutureReturnValueIgnored")
+  public void start() {
+    ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("audit-log-writer")
+        .setDaemon(true)
+        .build());
+    running = true;
+    writer.submit(this::run);
+    this.writer = writer;
+  }
+
+  /** Stops the service, writing pending events. */
+  @Override
+  public void stop() {
+    ExecutorService writer = this.writer;
+    if (writer == null) {
+      return;
+    }
+    this.writer = null;
+    running = false;
+    writer.shutdown();
+    try {
+      writer.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // Events possibly enqueued concurrently with the shutdown
+    List<AuditLogEvent> batch = new ArrayList<>(settings.batchSize());
+    while (queue.drainTo(batch, settings.batchSize()) > 0) {
+      writeBatch(batch);
+      batch.clear();
+    }
+  }
+
+  private void run() {
+    List<AuditLogEvent> batch = new ArrayList<>(settings.batchSize());
+    while (running || !queue.isEmpty()) {
+      AuditLogEvent first;
+      try {
+        // Don't wait forever, so we notice when the service is stopped
+        first = queue.poll(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      if (first == null) {
+        continue;
+      }
+      batch.add(first);
+      queue.drainTo(batch, settings.batchSize() - 1);
+      writeBatch(batch);
+      batch.clear();
+    }
+  }
+
+  private void writeBatch(List<AuditLogEvent> batch) {
+    try {
+      int failed = write(batch);
+      writtenCount.add(batch.size() - failed);
+      failedCount.add(failed);
+    } catch (Throwable t) {
+      logger.error("Error writing {} audit log events", batch.size(), t);
+      failedCount.add(batch.size());
+    }
+  }
+
+  /** Number of events waiting to be written. */
+  public int queueDepth() {
+    return queue.size();
+  }
+
+  public int queueCapacity() {
+    return settings.queueSize();
+  }
+
+  public long writtenCount() {
+    return writtenCount.sum();
+  }
+
+  /** Number of events dropped because the queue was full. */
+  public long droppedCount() {
+    return droppedCount.sum();
+  }
+
+  public long failedCount() {
+    return failedCount.sum();
+  }
+}
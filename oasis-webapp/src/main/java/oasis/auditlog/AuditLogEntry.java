@@ -0,0 +1,44 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.auditlog;
+
+import java.time.Instant;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A stored {@link AuditLogEvent}.
+ */
+public class AuditLogEntry {
+  @JsonProperty private String type;
+  @JsonProperty private Instant time;
+  @JsonProperty private Map<String, Object> data;
+
+  public String getType() {
+    return type;
+  }
+
+  public Instant getTime() {
+    return time;
+  }
+
+  public Map<String, Object> getData() {
+    return data;
+  }
+}
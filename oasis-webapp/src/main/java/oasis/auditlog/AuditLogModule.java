@@ -0,0 +1,112 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.auditlog;
+
+import static com.google.inject.multibindings.OptionalBinder.newOptionalBinder;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.immutables.value.Value;
+
+import com.google.inject.AbstractModule;
+import com.typesafe.config.Config;
+
+import oasis.auditlog.jongo.JongoAuditLogModule;
+import oasis.auditlog.log4j.Log4JAuditLogModule;
+import oasis.auditlog.noop.NoopAuditLogModule;
+
+@Value.Enclosing
+public class AuditLogModule extends AbstractModule {
+
+  public enum Sink {
+    LOG4J,
+    /** Stores events in the {@code audit_log} MongoDB collection, where they can be queried. */
+    MONGO
+  }
+
+  public enum OverflowPolicy {
+    /** Events are dropped (and counted) when the queue is full; the request thread never waits. */
+    DROP,
+    /** The request thread waits for room in the queue. */
+    BLOCK
+  }
+
+  @Value.Immutable
+  public interface Settings {
+    boolean disabled();
+
+    Sink sink();
+
+    /** Maximum number of events waiting to be written. */
+    int queueSize();
+
+    /** Maximum number of events written at once. */
+    int batchSize();
+
+    /** What to do when the queue is full. */
+    OverflowPolicy overflowPolicy();
+
+    /** How long events are kept in the {@code audit_log} MongoDB collection. */
+    Duration mongoRetention();
+
+    /** Client applications allowed to query the audit log. */
+    List<String> readerClientIds();
+
+    static Settings fromConfig(Config config) {
+      return ImmutableAuditLogModule.Settings.builder()
+          .disabled(config.getBoolean("disabled"))
+          .sink(config.getEnum(Sink.class, "sink"))
+          .queueSize(config.getInt("queue-size"))
+          .batchSize(config.getInt("batch-size"))
+          .overflowPolicy(config.getEnum(OverflowPolicy.class, "overflow-policy"))
+          .mongoRetention(config.getDuration("mongo-retention"))
+          .readerClientIds(config.getStringList("reader-client-ids"))
+          .build();
+    }
+  }
+
+  public static AuditLogModule create(Config config) {
+    return new AuditLogModule(Settings.fromConfig(config));
+  }
+
+  private final Settings settings;
+
+  public AuditLogModule(Settings settings) {
+    this.settings = settings;
+  }
+
+  @Override
+  protected void configure() {
+    bind(Settings.class).toInstance(settings);
+    // Only bound with the MONGO sink; inject Optional<AuditLogReader>
+    newOptionalBinder(binder(), AuditLogReader.class);
+    if (settings.disabled()) {
+      install(new NoopAuditLogModule());
+      return;
+    }
+    switch (settings.sink()) {
+      case LOG4J:
+        install(new Log4JAuditLogModule());
+        break;
+      case MONGO:
+        install(new JongoAuditLogModule());
+        break;
+    }
+  }
+}
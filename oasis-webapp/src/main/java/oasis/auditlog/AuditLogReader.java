@@ -0,0 +1,36 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.auditlog;
+
+import java.time.Instant;
+
+import javax.annotation.Nullable;
+
+/**
+ * Queries stored audit log events; only available with the {@linkplain AuditLogModule.Sink#MONGO MONGO sink}.
+ */
+public interface AuditLogReader {
+  /**
+   * Returns the most recent events matching all the given criteria, most recent first.
+   *
+   * @param principal matched against the account or client the event is about ({@code remote_user},
+   *                  {@code remote_client} or {@code user_name})
+   */
+  Iterable<AuditLogEntry> findEvents(@Nullable String type, @Nullable String principal,
+      @Nullable Instant since, @Nullable Instant until, int limit);
+}
@@ -17,9 +17,9 @@
  */
 package oasis.auditlog;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.time.Instant;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public abstract class AuditLogService {
   /**
@@ -30,33 +30,32 @@ public abstract class AuditLogService {
   protected abstract void log(AuditLogEvent auditLogEvent);
 
   /**
-   * Create a AuditLogEvent from an implementation class.
-   * <p>
-   * The implementation class must define a constructor with no parameter.
+   * Starts background processing, if any. Until then (e.g. in tools), events are logged synchronously.
    */
-  public <T extends AuditLogEvent> T event(Class<T> clazz) {
-    try {
-      T logEvent = clazz.getConstructor().newInstance();
-      logEvent.setAuditLogService(this);
-      return logEvent;
-    } catch (NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
-      throw new RuntimeException(e);
-    }
+  public void start() {
   }
 
   /**
-   * Create a AuditLogEvent from an implementation class and a date.
-   * <p>
-   * The implementation class must define a constructor with a date parameter.
+   * Stops background processing, if any, logging pending events.
    */
-  public <T extends AuditLogEvent> T event(Class<T> clazz, Instant date) {
-    try {
-      Constructor<T> c = clazz.getConstructor(Instant.class);
-      T logEvent = c.newInstance(date);
-      logEvent.setAuditLogService(this);
-      return logEvent;
-    } catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException e) {
-      throw new RuntimeException(e);
-    }
+  public void stop() {
+  }
+
+  /**
+   * Create a AuditLogEvent using the given factory, generally a constructor reference.
+   */
+  public <T extends AuditLogEvent> T event(Supplier<T> factory) {
+    T logEvent = factory.get();
+    logEvent.setAuditLogService(this);
+    return logEvent;
+  }
+
+  /**
+   * Create a AuditLogEvent using the given factory, generally a constructor reference, and a date.
+   */
+  public <T extends AuditLogEvent> T event(Function<Instant, T> factory, Instant date) {
+    T logEvent = factory.apply(date);
+    logEvent.setAuditLogService(this);
+    return logEvent;
   }
 }
@@ -0,0 +1,39 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.auditlog.jongo;
+
+import static com.google.inject.multibindings.Multibinder.newSetBinder;
+import static com.google.inject.multibindings.OptionalBinder.newOptionalBinder;
+
+import com.google.inject.AbstractModule;
+
+import oasis.auditlog.AuditLogReader;
+import oasis.auditlog.AuditLogService;
+import oasis.jongo.JongoBootstrapper;
+
+public class JongoAuditLogModule extends AbstractModule {
+
+  @Override
+  protected void configure() {
+    bind(AuditLogService.class).to(JongoAuditLogService.class);
+    newOptionalBinder(binder(), AuditLogReader.class)
+        .setBinding().to(JongoAuditLogService.class);
+    newSetBinder(binder(), JongoBootstrapper.class)
+        .addBinding().to(JongoAuditLogService.class);
+  }
+}
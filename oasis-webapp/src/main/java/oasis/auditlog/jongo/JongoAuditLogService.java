@@ -0,0 +1,199 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.auditlog.jongo;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.bson.types.ObjectId;
+import org.jongo.Jongo;
+import org.jongo.MongoCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DuplicateKeyException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+
+import oasis.auditlog.AsyncAuditLogService;
+import oasis.auditlog.AuditLogEntry;
+import oasis.auditlog.AuditLogEvent;
+import oasis.auditlog.AuditLogModule;
+import oasis.auditlog.AuditLogReader;
+import oasis.jongo.JongoBootstrapper;
+
+/**
+ * Stores audit log events in the {@code audit_log} collection, in bulk, from a background thread.
+ * <p>
+ * Events expire after {@link AuditLogModule.Settings#mongoRetention()}, and can be queried by type, time and principal.
+ */
+@Singleton
+public class JongoAuditLogService extends AsyncAuditLogService implements AuditLogReader, JongoBootstrapper {
+  private static final Logger logger = LoggerFactory.getLogger(JongoAuditLogService.class);
+  private static final String COLLECTION = "audit_log";
+  /** Context data identifying the account or client an event is about. */
+  private static final String[] PRINCIPAL_FIELDS = { "data.remote_user", "data.remote_client", "data.user_name" };
+  private static final int INDEX_OPTIONS_CONFLICT = 85;
+
+  private final AuditLogModule.Settings settings;
+  /** Jongo is only available once JongoService is started, which is after this service is created. */
+  private final Provider<Jongo> jongoProvider;
+
+  @Inject
+  JongoAuditLogService(AuditLogModule.Settings settings, Provider<Jongo> jongoProvider) {
+    super(settings);
+    this.settings = settings;
+    this.jongoProvider = jongoProvider;
+  }
+
+  private MongoCollection getAuditLogCollection() {
+    return jongoProvider.get().getCollection(COLLECTION);
+  }
+
+  @Override
+  protected int write(List<AuditLogEvent> events) {
+    List<AuditLogDocument> documents = new ArrayList<>(events.size());
+    for (AuditLogEvent event : events) {
+      documents.add(new AuditLogDocument(event));
+    }
+    try {
+      getAuditLogCollection().insert(documents.toArray());
+      return 0;
+    } catch (MongoException e) {
+      // The batch is inserted in order and stops at the first error: retry one by one so a single bad event
+      // (e.g. remote event with invalid keys) doesn't lose the others. Documents already inserted are skipped as
+      // their _id is already known.
+      logger.warn("Error inserting {} audit log events, retrying one by one", documents.size(), e);
+      int failed = 0;
+      for (AuditLogDocument document : documents) {
+        try {
+          getAuditLogCollection().insert(document);
+        } catch (DuplicateKeyException dke) {
+          // already inserted
+        } catch (MongoException e2) {
+          logger.error("Error inserting audit log event of type {}", document.type, e2);
+          failed++;
+        }
+      }
+      return failed;
+    }
+  }
+
+  @Override
+  public Iterable<AuditLogEntry> findEvents(@Nullable String type, @Nullable String principal,
+      @Nullable Instant since, @Nullable Instant until, int limit) {
+    Query query = buildQuery(type, principal, since, until);
+    return getAuditLogCollection()
+        .find(query.query, query.parameters)
+        .projection("{ _id: 0 }")
+        .sort("{ time: -1 }")
+        .limit(limit)
+        .as(AuditLogEntry.class);
+  }
+
+  @VisibleForTesting
+  static Query buildQuery(@Nullable String type, @Nullable String principal,
+      @Nullable Instant since, @Nullable Instant until) {
+    List<String> clauses = new ArrayList<>();
+    List<Object> parameters = new ArrayList<>();
+    if (type != null) {
+      clauses.add("type: #");
+      parameters.add(type);
+    }
+    if (since != null && until != null) {
+      clauses.add("time: { $gte: #, $lt: # }");
+      parameters.add(Date.from(since));
+      parameters.add(Date.from(until));
+    } else if (since != null) {
+      clauses.add("time: { $gte: # }");
+      parameters.add(Date.from(since));
+    } else if (until != null) {
+      clauses.add("time: { $lt: # }");
+      parameters.add(Date.from(until));
+    }
+    if (principal != null) {
+      List<String> alternatives = new ArrayList<>(PRINCIPAL_FIELDS.length);
+      for (String field : PRINCIPAL_FIELDS) {
+        alternatives.add("{ \"" + field + "\": # }");
+        parameters.add(principal);
+      }
+      clauses.add("$or: [ " + String.join(", ", alternatives) + " ]");
+    }
+    return new Query("{ " + String.join(", ", clauses) + " }", parameters.toArray());
+  }
+
+  @Override
+  public void bootstrap() {
+    ensureRetention();
+    getAuditLogCollection().ensureIndex("{ type: 1, time: -1 }", "{ background: 1 }");
+    for (String field : PRINCIPAL_FIELDS) {
+      getAuditLogCollection().ensureIndex("{ \"" + field + "\": 1, time: -1 }", "{ background: 1, sparse: 1 }");
+    }
+  }
+
+  /** Creates the TTL index on {@code time}, or updates its expiration if the retention has changed. */
+  private void ensureRetention() {
+    long expireAfterSeconds = settings.mongoRetention().getSeconds();
+    try {
+      getAuditLogCollection().ensureIndex("{ time: 1 }", "{ background: 1, expireAfterSeconds: " + expireAfterSeconds + " }");
+    } catch (MongoCommandException e) {
+      if (e.getErrorCode() != INDEX_OPTIONS_CONFLICT) {
+        throw e;
+      }
+      logger.info("Updating audit log retention to {}", settings.mongoRetention());
+      jongoProvider.get().getDatabase().command(new BasicDBObject("collMod", COLLECTION)
+          .append("index", new BasicDBObject("keyPattern", new BasicDBObject("time", 1))
+              .append("expireAfterSeconds", expireAfterSeconds)));
+    }
+  }
+
+  static class Query {
+    final String query;
+    final Object[] parameters;
+
+    Query(String query, Object[] parameters) {
+      this.query = query;
+      this.parameters = parameters;
+    }
+  }
+
+  static class AuditLogDocument {
+    /** Assigned here so that retried inserts are detected as duplicates. */
+    @JsonProperty("_id") final ObjectId id = new ObjectId();
+    @JsonProperty final String type;
+    @JsonProperty final Instant time;
+    @JsonProperty final Map<String, Object> data;
+
+    AuditLogDocument(AuditLogEvent event) {
+      this.type = event.getEventType();
+      this.time = event.getDate();
+      this.data = event.getContextMap();
+    }
+  }
+}
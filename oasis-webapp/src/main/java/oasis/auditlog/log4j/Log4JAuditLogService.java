@@ -17,35 +17,73 @@
  */
 package oasis.auditlog.log4j;
 
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Locale;
-import java.util.TimeZone;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
 
-import com.google.common.collect.ImmutableMap;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import oasis.auditlog.AsyncAuditLogService;
 import oasis.auditlog.AuditLogEvent;
-import oasis.auditlog.AuditLogService;
-import oasis.auditlog.JsonMessage;
+import oasis.auditlog.AuditLogModule;
 
-public class Log4JAuditLogService extends AuditLogService {
+@Singleton
+public class Log4JAuditLogService extends AsyncAuditLogService {
+  private static final org.slf4j.Logger logger = LoggerFactory.getLogger(Log4JAuditLogService.class);
   private static final String LOGGER_NAME = "OASIS_AUDIT_LOGGER";
+  private static final DateTimeFormatter DATE_FORMATTER =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX", Locale.ROOT).withZone(ZoneOffset.UTC);
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new JavaTimeModule());
 
-  private Logger auditLogger = LogManager.getLogger(LOGGER_NAME);
+  private final Logger auditLogger = LogManager.getLogger(LOGGER_NAME);
 
-  @Override
-  protected void log(AuditLogEvent auditLogEvent) {
-    ImmutableMap<String, Object> data = ImmutableMap.of(
-        "type", auditLogEvent.getEventType(),
-        "time", auditLogEvent.getDate(),
-        "data", auditLogEvent.getContextMap()
-    );
+  @Inject
+  Log4JAuditLogService(AuditLogModule.Settings settings) {
+    super(settings);
+  }
 
-    Message message = new JsonMessage(data, new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX", Locale.ROOT), TimeZone.getTimeZone("UTC"));
+  @Override
+  protected int write(List<AuditLogEvent> events) {
+    int failed = 0;
+    for (AuditLogEvent event : events) {
+      String json;
+      try {
+        json = toJson(event);
+      } catch (IOException e) {
+        logger.error("Error during the transformation of the AuditLogEvent into a JSON string.", e);
+        failed++;
+        continue;
+      }
+      auditLogger.info(new SimpleMessage(json));
+    }
+    return failed;
+  }
 
-    auditLogger.info(message);
+  @VisibleForTesting
+  static String toJson(AuditLogEvent event) throws IOException {
+    StringWriter writer = new StringWriter(256);
+    try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(writer)) {
+      generator.writeStartObject();
+      generator.writeStringField("type", event.getEventType());
+      generator.writeStringField("time", DATE_FORMATTER.format(event.getDate()));
+      generator.writeObjectField("data", event.getContextMap());
+      generator.writeEndObject();
+    }
+    return writer.toString();
   }
 }
@@ -28,6 +28,7 @@ import javax.annotation.Nullable;
 
 import com.google.inject.AbstractModule;
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
 
 import oasis.security.KeyPairLoader;
 
@@ -42,11 +43,22 @@ public class AuthModule extends AbstractModule {
       // TODO: store PKIs in DB to use a single subtree of the config
       Path privateKeyPath = null;
       Path publicKeyPath = null;
+      Path ecPrivateKeyPath = null;
+      Path ecPublicKeyPath = null;
 
       if (config.hasPath("oasis.conf-dir")) {
         Path confDir = Paths.get(config.getString("oasis.conf-dir"));
         privateKeyPath = confDir.resolve(config.getString("private-key-path"));
         publicKeyPath = confDir.resolve(config.getString("public-key-path"));
+        ecPrivateKeyPath = confDir.resolve(config.getString("ec-private-key-path"));
+        ecPublicKeyPath = confDir.resolve(config.getString("ec-public-key-path"));
+      }
+
+      double sidTokenRenewalThreshold = config.getDouble("sid-token-renewal-threshold");
+      // 1 or more would never renew sessions, and a negative value would be the same as 0
+      if (!(sidTokenRenewalThreshold >= 0 && sidTokenRenewalThreshold < 1)) {
+        throw new ConfigException.BadValue(config.origin(), "sid-token-renewal-threshold",
+            "Must be between 0 (inclusive) and 1 (exclusive): " + sidTokenRenewalThreshold);
       }
 
       return Settings.builder()
@@ -54,16 +66,28 @@ public class AuthModule extends AbstractModule {
               ? config.getString("portal-origin")
               : null)
           .setKeyPair(KeyPairLoader.loadOrGenerateKeyPair(privateKeyPath, publicKeyPath))
+          .setEcKeyPair(config.getBoolean("es256-signing")
+              ? KeyPairLoader.loadOrGenerateEcKeyPair(ecPrivateKeyPath, ecPublicKeyPath)
+              : null)
           .setAuthorizationCodeDuration(config.getDuration("authorization-code-duration"))
           .setAccessTokenDuration(config.getDuration("access-token-duration"))
           .setRefreshTokenDuration(config.getDuration("refresh-token-duration"))
           .setIdTokenDuration(config.getDuration("id-token-duration"))
           .setSidTokenDuration(config.getDuration("sid-token-duration"))
+          .setSidTokenRenewalThreshold(sidTokenRenewalThreshold)
           .setAccountActivationTokenDuration(config.getDuration("account-activation-token-duration"))
           .setChangePasswordTokenDuration(config.getDuration("change-password-token-duration"))
           .setJwtBearerDuration(config.getDuration("jwt-bearer-duration"))
           .setPasswordMinimumLength(config.getInt("password-minimum-length"))
           .setEnableClientCertificates(config.getBoolean("enable-client-certificates"))
+          .setAccessTokenCacheSize(config.getLong("access-token-cache.size"))
+          .setAccessTokenCacheDuration(config.getDuration("access-token-cache.duration"))
+          .setClientCredentialsCacheSize(config.getLong("client-credentials-cache.size"))
+          .setClientCredentialsCacheDuration(config.getDuration("client-credentials-cache.duration"))
+          .setIntrospectionCacheSize(config.getLong("introspection-cache.size"))
+          .setIntrospectionCacheDuration(config.getDuration("introspection-cache.duration"))
+          .setAppRolesCacheSize(config.getLong("app-roles-cache.size"))
+          .setAppRolesCacheDuration(config.getDuration("app-roles-cache.duration"))
           .build();
     }
 
@@ -71,16 +95,26 @@ public class AuthModule extends AbstractModule {
 
       private @Nullable String portalOrigin;
       private KeyPair keyPair;
+      private @Nullable KeyPair ecKeyPair;
       private Duration authorizationCodeDuration;
       private Duration accessTokenDuration;
       private Duration refreshTokenDuration;
       private Duration idTokenDuration;
       private Duration sidTokenDuration;
+      private double sidTokenRenewalThreshold;
       private Duration accountActivationTokenDuration;
       private Duration changePasswordTokenDuration;
       private Duration jwtBearerDuration;
       private int passwordMinimumLength;
       private boolean enableClientCertificates;
+      private long accessTokenCacheSize;
+      private Duration accessTokenCacheDuration = Duration.ZERO;
+      private long clientCredentialsCacheSize;
+      private Duration clientCredentialsCacheDuration = Duration.ZERO;
+      private long introspectionCacheSize;
+      private Duration introspectionCacheDuration = Duration.ZERO;
+      private long appRolesCacheSize;
+      private Duration appRolesCacheDuration = Duration.ZERO;
 
       public Settings build() {
         return new Settings(this);
@@ -96,6 +130,11 @@ public class AuthModule extends AbstractModule {
         return this;
       }
 
+      public Builder setEcKeyPair(@Nullable KeyPair ecKeyPair) {
+        this.ecKeyPair = ecKeyPair;
+        return this;
+      }
+
       public Builder setAuthorizationCodeDuration(Duration authorizationCodeDuration) {
         this.authorizationCodeDuration = authorizationCodeDuration;
         return this;
@@ -121,6 +160,11 @@ public class AuthModule extends AbstractModule {
         return this;
       }
 
+      public Builder setSidTokenRenewalThreshold(double sidTokenRenewalThreshold) {
+        this.sidTokenRenewalThreshold = sidTokenRenewalThreshold;
+        return this;
+      }
+
       public Builder setAccountActivationTokenDuration(Duration accountActivationTokenDuration) {
         this.accountActivationTokenDuration = accountActivationTokenDuration;
         return this;
@@ -145,34 +189,102 @@ public class AuthModule extends AbstractModule {
         this.enableClientCertificates = enableClientCertificates;
         return this;
       }
+
+      public Builder setAccessTokenCacheSize(long accessTokenCacheSize) {
+        this.accessTokenCacheSize = accessTokenCacheSize;
+        return this;
+      }
+
+      public Builder setAccessTokenCacheDuration(Duration accessTokenCacheDuration) {
+        this.accessTokenCacheDuration = accessTokenCacheDuration;
+        return this;
+      }
+
+      public Builder setClientCredentialsCacheSize(long clientCredentialsCacheSize) {
+        this.clientCredentialsCacheSize = clientCredentialsCacheSize;
+        return this;
+      }
+
+      public Builder setClientCredentialsCacheDuration(Duration clientCredentialsCacheDuration) {
+        this.clientCredentialsCacheDuration = clientCredentialsCacheDuration;
+        return this;
+      }
+
+      public Builder setIntrospectionCacheSize(long introspectionCacheSize) {
+        this.introspectionCacheSize = introspectionCacheSize;
+        return this;
+      }
+
+      public Builder setIntrospectionCacheDuration(Duration introspectionCacheDuration) {
+        this.introspectionCacheDuration = introspectionCacheDuration;
+        return this;
+      }
+
+      public Builder setAppRolesCacheSize(long appRolesCacheSize) {
+        this.appRolesCacheSize = appRolesCacheSize;
+        return this;
+      }
+
+      public Builder setAppRolesCacheDuration(Duration appRolesCacheDuration) {
+        this.appRolesCacheDuration = appRolesCacheDuration;
+        return this;
+      }
     }
 
     public @Nullable String portalOrigin;
     public final KeyPair keyPair;
+    /**
+     * Optional P-256 key-pair; when set, tokens are signed with ES256 rather than RS256 (both keys are published and
+     * accepted for verification).
+     */
+    public final @Nullable KeyPair ecKeyPair;
     public final Duration authorizationCodeDuration;
     public final Duration accessTokenDuration;
     public final Duration refreshTokenDuration;
     public final Duration idTokenDuration;
     public final Duration sidTokenDuration;
+    /**
+     * Fraction of {@link #sidTokenDuration} that must have elapsed since the last renewal before the session is
+     * renewed again; 0 renews the session on every request.
+     */
+    public final double sidTokenRenewalThreshold;
     public final Duration accountActivationTokenDuration;
     public final Duration changePasswordTokenDuration;
     public final Duration jwtBearerDuration;
     public final int passwordMinimumLength;
     public final boolean enableClientCertificates;
+    public final long accessTokenCacheSize;
+    public final Duration accessTokenCacheDuration;
+    public final long clientCredentialsCacheSize;
+    public final Duration clientCredentialsCacheDuration;
+    public final long introspectionCacheSize;
+    public final Duration introspectionCacheDuration;
+    public final long appRolesCacheSize;
+    public final Duration appRolesCacheDuration;
 
     private Settings(Builder builder) {
       this.portalOrigin = builder.portalOrigin;
       this.keyPair = builder.keyPair;
+      this.ecKeyPair = builder.ecKeyPair;
       this.authorizationCodeDuration = builder.authorizationCodeDuration;
       this.accessTokenDuration = builder.accessTokenDuration;
       this.refreshTokenDuration = builder.refreshTokenDuration;
       this.idTokenDuration = builder.idTokenDuration;
       this.sidTokenDuration = builder.sidTokenDuration;
+      this.sidTokenRenewalThreshold = builder.sidTokenRenewalThreshold;
       this.accountActivationTokenDuration = builder.accountActivationTokenDuration;
       this.changePasswordTokenDuration = builder.changePasswordTokenDuration;
       this.jwtBearerDuration = builder.jwtBearerDuration;
       this.passwordMinimumLength = builder.passwordMinimumLength;
       this.enableClientCertificates = builder.enableClientCertificates;
+      this.accessTokenCacheSize = builder.accessTokenCacheSize;
+      this.accessTokenCacheDuration = builder.accessTokenCacheDuration;
+      this.clientCredentialsCacheSize = builder.clientCredentialsCacheSize;
+      this.clientCredentialsCacheDuration = builder.clientCredentialsCacheDuration;
+      this.introspectionCacheSize = builder.introspectionCacheSize;
+      this.introspectionCacheDuration = builder.introspectionCacheDuration;
+      this.appRolesCacheSize = builder.appRolesCacheSize;
+      this.appRolesCacheDuration = builder.appRolesCacheDuration;
     }
   }
 
@@ -0,0 +1,412 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.catalog;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.DocumentResult;
+import oasis.jest.applications.v2.JestCatalogEntryRepository;
+import oasis.model.applications.v2.CatalogEntry;
+import oasis.model.applications.v2.Service;
+
+/**
+ * Sends catalog changes to Elasticsearch in bulk.
+ * <p>
+ * Index and delete operations are coalesced per document (only the last one is sent), and flushed through the bulk API
+ * when {@link CatalogModule.Settings#indexBatchSize() enough of them} are pending, or after
+ * {@link CatalogModule.Settings#indexFlushInterval() some delay}. Failed operations are retried, up to
+ * {@link CatalogModule.Settings#indexMaxAttempts() a given number of attempts}; the index can then be reconciled with
+ * the database using the {@code ReconcileCatalogIndex} tool. Removals of all the services of an instance go through
+ * the same queue and retries, but are sent as separate delete-by-query requests; operations are sent in the order they
+ * were enqueued, so a batch is split into several requests around those, and a failed removal holds back the operations
+ * that follow it.
+ * <p>
+ * When the indexer hasn't been started (e.g. in tools), operations are flushed synchronously.
+ */
+@Singleton
+public class CatalogIndexer {
+  private static final Logger logger = LoggerFactory.getLogger(CatalogIndexer.class);
+
+  private static final long INITIAL_DRAIN_BACKOFF_MILLIS = 100;
+
+  private final CatalogModule.Settings settings;
+  private final Provider<JestCatalogEntryRepository> jestCatalogEntryRepositoryProvider;
+
+  private final Object lock = new Object();
+  /** Pending operations, keyed by {@link JestCatalogEntryRepository#documentKey document key}; guarded by {@link #lock}. */
+  private final LinkedHashMap<String, Operation> pending = new LinkedHashMap<>();
+
+  private final LongAdder indexedCount = new LongAdder();
+  private final LongAdder retriedCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+  private final LongAdder totalLagMillis = new LongAdder();
+  private final AtomicLong maxLagMillis = new AtomicLong();
+
+  private volatile @Nullable ScheduledExecutorService flusher;
+
+  @Inject
+  CatalogIndexer(CatalogModule.Settings settings, Provider<JestCatalogEntryRepository> jestCatalogEntryRepositoryProvider) {
+    this.settings = settings;
+    this.jestCatalogEntryRepositoryProvider = jestCatalogEntryRepositoryProvider;
+  }
+
+  @SuppressWarnings("FutureReturnValueIgnored")
+  public void start() {
+    ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("catalog-indexer")
+        .setDaemon(true)
+        .build());
+    long interval = settings.indexFlushInterval().toMillis();
+    flusher.scheduleWithFixedDelay(this::flushAll, interval, interval, TimeUnit.MILLISECONDS);
+    this.flusher = flusher;
+  }
+
+  /** Stops the indexer, flushing pending operations. */
+  public void stop() {
+    ScheduledExecutorService flusher = this.flusher;
+    if (flusher == null) {
+      return;
+    }
+    this.flusher = null;
+    flusher.shutdown();
+    try {
+      flusher.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    drain();
+  }
+
+  public void index(CatalogEntry catalogEntry) {
+    final BulkableAction<DocumentResult> action;
+    try {
+      action = jestCatalogEntryRepositoryProvider.get().indexAction(catalogEntry);
+    } catch (IOException e) {
+      logger.error("Error while indexing {} {}", catalogEntry.getType().name(), catalogEntry.getId(), e);
+      failedCount.increment();
+      return;
+    }
+    enqueue(new Operation(catalogEntry.getType(), catalogEntry.getId(),
+        catalogEntry instanceof Service ? ((Service) catalogEntry).getInstance_id() : null,
+        action, Instant.now(), 0));
+  }
+
+  public void delete(CatalogEntry.EntryType entryType, String id) {
+    enqueue(new Operation(entryType, id, null,
+        jestCatalogEntryRepositoryProvider.get().deleteAction(id, entryType), Instant.now(), 0));
+  }
+
+  /** Removes all services of the given instance from the index, discarding any pending operation on them. */
+  public void deleteServicesOfInstance(String instanceId) {
+    synchronized (lock) {
+      pending.values().removeIf(operation -> instanceId.equals(operation.instanceId));
+    }
+    enqueue(Operation.deleteServicesOfInstance(instanceId, Instant.now()));
+  }
+
+  private void enqueue(Operation operation) {
+    int size;
+    synchronized (lock) {
+      // Keep the first enqueue time, to compute lag, but reset the number of attempts
+      pending.merge(operation.key, operation, (previous, current) -> current.withEnqueued(previous.enqueued));
+      size = pending.size();
+    }
+    ScheduledExecutorService flusher = this.flusher;
+    if (flusher == null) {
+      drain();
+    } else if (size >= settings.indexBatchSize()) {
+      try {
+        flusher.execute(this::flushAll);
+      } catch (RejectedExecutionException e) {
+        // indexer is being stopped; it will drain pending operations
+      }
+    }
+  }
+
+  /** Flushes pending operations, retrying failed ones (with backoff) until they succeed or are abandoned. */
+  private synchronized void drain() {
+    long backoffMillis = INITIAL_DRAIN_BACKOFF_MILLIS;
+    while (pendingCount() > 0) {
+      if (flush()) {
+        backoffMillis = INITIAL_DRAIN_BACKOFF_MILLIS;
+        continue;
+      }
+      try {
+        Thread.sleep(backoffMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        logger.warn("Interrupted while draining catalog index operations; {} operations left", pendingCount());
+        return;
+      }
+      backoffMillis = Math.min(backoffMillis * 2, settings.indexFlushInterval().toMillis());
+    }
+  }
+
+  private synchronized void flushAll() {
+    try {
+      // Retries will be sent at next flush
+      int batches = (pendingCount() + settings.indexBatchSize() - 1) / settings.indexBatchSize();
+      for (int i = 0; i < batches && flush(); i++) {
+        // loop
+      }
+    } catch (Throwable t) {
+      logger.error("Error flushing catalog index operations", t);
+    }
+  }
+
+  /**
+   * Sends one batch of pending operations.
+   *
+   * @return whether all operations of the batch were sent (and succeeded or were abandoned); failed operations, and
+   *     those held back by a failed deletion by query, will be retried
+   */
+  private boolean flush() {
+    List<Operation> batch = new ArrayList<>();
+    synchronized (lock) {
+      for (Iterator<Operation> it = pending.values().iterator(); it.hasNext() && batch.size() < settings.indexBatchSize(); ) {
+        batch.add(it.next());
+        it.remove();
+      }
+    }
+    if (batch.isEmpty()) {
+      return true;
+    }
+
+    JestCatalogEntryRepository jestCatalogEntryRepository = jestCatalogEntryRepositoryProvider.get();
+    List<Operation> retries = new ArrayList<>();
+    // Send operations in order: bulk actions are grouped, up to the next deletion by query (which can't be sent
+    // through the bulk API), so that e.g. a service re-indexed after its instance's services were removed isn't
+    // deleted again.
+    for (int start = 0; start < batch.size(); ) {
+      Operation operation = batch.get(start);
+      if (operation.action != null) {
+        int end = start + 1;
+        while (end < batch.size() && batch.get(end).action != null) {
+          end++;
+        }
+        executeBulk(jestCatalogEntryRepository, batch.subList(start, end), retries);
+        start = end;
+        continue;
+      }
+      try {
+        jestCatalogEntryRepository.deleteServicesOfInstance(operation.instanceId);
+      } catch (IOException | RuntimeException e) {
+        if (shouldRetry(operation, e.toString())) {
+          // Following operations could be undone by the retried deletion, so hold them back too.
+          retries.add(operation.retried());
+          retries.addAll(batch.subList(start + 1, batch.size()));
+          break;
+        }
+        start++;
+        continue;
+      }
+      recordSuccess(operation, Instant.now());
+      start++;
+    }
+    requeue(retries);
+    return retries.isEmpty();
+  }
+
+  private void executeBulk(JestCatalogEntryRepository jestCatalogEntryRepository, List<Operation> operations,
+      List<Operation> retries) {
+    List<BulkableAction<DocumentResult>> actions = new ArrayList<>(operations.size());
+    for (Operation operation : operations) {
+      actions.add(operation.action);
+    }
+    Map<String, String> errors;
+    try {
+      errors = jestCatalogEntryRepository.executeBulk(actions);
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Error sending {} catalog index operations", actions.size(), e);
+      errors = new LinkedHashMap<>();
+      for (Operation operation : operations) {
+        errors.put(operation.key, e.toString());
+      }
+    }
+    Instant now = Instant.now();
+    for (Operation operation : operations) {
+      String error = errors.get(operation.key);
+      if (error == null) {
+        recordSuccess(operation, now);
+      } else if (shouldRetry(operation, error)) {
+        retries.add(operation.retried());
+      }
+    }
+  }
+
+  private void recordSuccess(Operation operation, Instant now) {
+    indexedCount.increment();
+    long lagMillis = Duration.between(operation.enqueued, now).toMillis();
+    totalLagMillis.add(lagMillis);
+    maxLagMillis.accumulateAndGet(lagMillis, Math::max);
+  }
+
+  private boolean shouldRetry(Operation operation, String error) {
+    if (operation.attempts + 1 >= settings.indexMaxAttempts()) {
+      logger.error("Giving up on {} after {} attempts: {}", operation, operation.attempts + 1, error);
+      failedCount.increment();
+      return false;
+    }
+    logger.debug("Error indexing {}, will retry: {}", operation, error);
+    retriedCount.increment();
+    return true;
+  }
+
+  /**
+   * Puts operations back in front of the queue, in order.
+   * <p>
+   * Operations still pending were enqueued after those, so operations superseded by a pending one are dropped: one on
+   * the same document, or one on a service whose instance's services are pending removal.
+   */
+  private void requeue(List<Operation> operations) {
+    if (operations.isEmpty()) {
+      return;
+    }
+    synchronized (lock) {
+      LinkedHashMap<String, Operation> requeued = new LinkedHashMap<>();
+      for (Operation operation : operations) {
+        if (pending.containsKey(operation.key)) {
+          continue;
+        }
+        if (operation.action != null && operation.instanceId != null
+            && pending.containsKey(Operation.deleteServicesOfInstanceKey(operation.instanceId))) {
+          continue;
+        }
+        requeued.put(operation.key, operation);
+      }
+      requeued.putAll(pending);
+      pending.clear();
+      pending.putAll(requeued);
+    }
+  }
+
+  /** Number of operations waiting to be sent to Elasticsearch. */
+  public int pendingCount() {
+    synchronized (lock) {
+      return pending.size();
+    }
+  }
+
+  /** Age of the oldest operation waiting to be sent to Elasticsearch, i.e. how far the index lags behind the database. */
+  public long currentLagMillis() {
+    Instant oldest = null;
+    synchronized (lock) {
+      for (Operation operation : pending.values()) {
+        if (oldest == null || operation.enqueued.isBefore(oldest)) {
+          oldest = operation.enqueued;
+        }
+      }
+    }
+    return oldest == null ? 0 : Duration.between(oldest, Instant.now()).toMillis();
+  }
+
+  public long indexedCount() {
+    return indexedCount.sum();
+  }
+
+  public long retriedCount() {
+    return retriedCount.sum();
+  }
+
+  public long failedCount() {
+    return failedCount.sum();
+  }
+
+  /** Average time between a change being enqueued and it being successfully sent to Elasticsearch. */
+  public double averageLagMillis() {
+    long count = indexedCount.sum();
+    return count == 0 ? 0 : (double) totalLagMillis.sum() / count;
+  }
+
+  public long maxLagMillis() {
+    return maxLagMillis.get();
+  }
+
+  private static class Operation {
+    static Operation deleteServicesOfInstance(String instanceId, Instant enqueued) {
+      return new Operation(deleteServicesOfInstanceKey(instanceId), CatalogEntry.EntryType.SERVICE, instanceId,
+          instanceId, null, enqueued, 0);
+    }
+
+    static String deleteServicesOfInstanceKey(String instanceId) {
+      return "INSTANCE/" + instanceId;
+    }
+
+    final String key;
+    final CatalogEntry.EntryType entryType;
+    final String id;
+    final @Nullable String instanceId;
+    /** The bulk action; {@code null} when deleting all services of {@link #instanceId}. */
+    final @Nullable BulkableAction<DocumentResult> action;
+    final Instant enqueued;
+    final int attempts;
+
+    Operation(CatalogEntry.EntryType entryType, String id, @Nullable String instanceId,
+        BulkableAction<DocumentResult> action, Instant enqueued, int attempts) {
+      this(JestCatalogEntryRepository.documentKey(entryType, id), entryType, id, instanceId, action, enqueued, attempts);
+    }
+
+    private Operation(String key, CatalogEntry.EntryType entryType, String id, @Nullable String instanceId,
+        @Nullable BulkableAction<DocumentResult> action, Instant enqueued, int attempts) {
+      this.key = key;
+      this.entryType = entryType;
+      this.id = id;
+      this.instanceId = instanceId;
+      this.action = action;
+      this.enqueued = enqueued;
+      this.attempts = attempts;
+    }
+
+    Operation withEnqueued(Instant enqueued) {
+      return new Operation(key, entryType, id, instanceId, action, enqueued, attempts);
+    }
+
+    Operation retried() {
+      return new Operation(key, entryType, id, instanceId, action, enqueued, attempts + 1);
+    }
+
+    @Override
+    public String toString() {
+      return action == null ? "services of instance " + instanceId : entryType.name() + " " + id;
+    }
+  }
+}
@@ -17,14 +17,77 @@
  */
 package oasis.catalog;
 
+import java.time.Duration;
+
+import org.immutables.value.Value;
+
 import com.google.inject.AbstractModule;
+import com.typesafe.config.Config;
 
 import oasis.model.applications.v2.CatalogEntryRepository;
 import oasis.model.applications.v2.ServiceRepository;
 
+@Value.Enclosing
 public class CatalogModule extends AbstractModule {
+
+  @Value.Immutable
+  public interface Settings {
+    /**
+     * Whether searches without a full-text query are answered from an in-memory snapshot of the catalog
+     * (rather than querying the database).
+     */
+    boolean inMemorySearch();
+
+    /**
+     * How often the in-memory snapshot is fully reloaded (to account for changes made by other nodes or tools);
+     * changes made through this node are applied immediately.
+     */
+    Duration inMemoryRefreshInterval();
+
+    /** Number of pending index operations that triggers a flush to Elasticsearch. */
+    int indexBatchSize();
+
+    /** Maximum time an index operation waits before being flushed to Elasticsearch. */
+    Duration indexFlushInterval();
+
+    /** Number of attempts before an index operation is abandoned (the index can then be fixed with ReconcileCatalogIndex). */
+    int indexMaxAttempts();
+
+    static Settings fromConfig(Config config) {
+      return ImmutableCatalogModule.Settings.builder()
+          .inMemorySearch(config.getBoolean("in-memory-search"))
+          .inMemoryRefreshInterval(config.getDuration("in-memory-refresh-interval"))
+          .indexBatchSize(config.getInt("index-batch-size"))
+          .indexFlushInterval(config.getDuration("index-flush-interval"))
+          .indexMaxAttempts(config.getInt("index-max-attempts"))
+          .build();
+    }
+  }
+
+  public static CatalogModule create(Config config) {
+    return new CatalogModule(Settings.fromConfig(config));
+  }
+
+  private final Settings settings;
+
+  /** Creates a module with default settings and the in-memory search disabled, for use in tools. */
+  public CatalogModule() {
+    this(ImmutableCatalogModule.Settings.builder()
+        .inMemorySearch(false)
+        .inMemoryRefreshInterval(Duration.ofMinutes(5))
+        .indexBatchSize(500)
+        .indexFlushInterval(Duration.ofSeconds(1))
+        .indexMaxAttempts(5)
+        .build());
+  }
+
+  public CatalogModule(Settings settings) {
+    this.settings = settings;
+  }
+
   @Override
   protected void configure() {
+    bind(Settings.class).toInstance(settings);
     bind(ServiceRepository.class).to(IndexingServiceRepository.class);
     bind(CatalogEntryRepository.class).to(RoutingCatalogEntryRepository.class);
   }
@@ -0,0 +1,329 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.catalog;
+
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ibm.icu.util.LocaleMatcher;
+import com.ibm.icu.util.LocalePriorityList;
+import com.ibm.icu.util.ULocale;
+
+import oasis.jongo.applications.v2.CatalogSortKeys;
+import oasis.jongo.applications.v2.JongoCatalogEntryRepository;
+import oasis.model.applications.v2.CatalogEntry;
+import oasis.model.applications.v2.CatalogEntryRepository;
+import oasis.model.applications.v2.SimpleCatalogEntry;
+import oasis.model.i18n.LocaleMatchers;
+
+/**
+ * Answers catalog searches from an in-memory, immutable, snapshot of the catalog.
+ * <p>
+ * The snapshot holds all searchable entries, inverted indexes for each filterable field, and the entries pre-sorted
+ * for each sort locale; a search is thus a few bitset operations followed by a walk of the pre-sorted entries.
+ * <p>
+ * Changes made through this node are applied immediately (see {@link #entryChanged(CatalogEntry.EntryType, String)});
+ * the snapshot is otherwise reloaded periodically, in the background, to account for changes made by other nodes or
+ * tools.
+ * <p>
+ * This only supports filtering: searches with a full-text query must go to Elasticsearch.
+ */
+@Singleton
+public class InMemoryCatalogEntryRepository implements CatalogEntryRepository {
+  private static final Logger logger = LoggerFactory.getLogger(InMemoryCatalogEntryRepository.class);
+
+  private static final ULocale UNKNOWN_LOCALE = new ULocale("und");
+
+  private final JongoCatalogEntryRepository jongoCatalogEntryRepository;
+  private final CatalogModule.Settings settings;
+
+  /** Reloads stale snapshots in the background; a dedicated thread as reloading blocks on the database. */
+  private final ExecutorService refresher = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+      .setNameFormat("in-memory-catalog-refresher")
+      .setDaemon(true)
+      .build());
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+  private volatile @Nullable Snapshot snapshot;
+
+  @Inject InMemoryCatalogEntryRepository(JongoCatalogEntryRepository jongoCatalogEntryRepository,
+      CatalogModule.Settings settings) {
+    this.jongoCatalogEntryRepository = jongoCatalogEntryRepository;
+    this.settings = settings;
+  }
+
+  public boolean isEnabled() {
+    return settings.inMemorySearch();
+  }
+
+  @Override
+  public Iterable<SimpleCatalogEntry> search(SearchRequest request) {
+    if (request.query() != null) {
+      throw new IllegalArgumentException("Full-text search is not supported");
+    }
+    return getSnapshot().search(request);
+  }
+
+  /**
+   * Must be called whenever a catalog entry has been created, updated, or deleted.
+   * <p>
+   * This is a no-op if the snapshot hasn't been loaded yet.
+   */
+  public void entryChanged(CatalogEntry.EntryType type, String id) {
+    if (snapshot == null) {
+      return;
+    }
+    synchronized (this) {
+      Snapshot current = snapshot;
+      if (current == null) {
+        return;
+      }
+      List<SimpleCatalogEntry> entries = new ArrayList<>(current.entries.size() + 1);
+      for (SimpleCatalogEntry entry : current.entries) {
+        if (entry.getType() != type || !entry.getId().equals(id)) {
+          entries.add(entry);
+        }
+      }
+      try {
+        SimpleCatalogEntry entry = jongoCatalogEntryRepository.getSearchableEntry(type, id);
+        if (entry != null) {
+          entries.add(entry);
+        }
+        snapshot = new Snapshot(current.loaded, entries);
+      } catch (RuntimeException e) {
+        logger.error("Error updating {} {} in in-memory catalog; it will be reloaded on next search", type.name(), id, e);
+        snapshot = null;
+      }
+    }
+  }
+
+  /**
+   * Must be called whenever catalog entries have changed in a way that cannot be tracked by
+   * {@link #entryChanged(CatalogEntry.EntryType, String)}, e.g. all services of an instance.
+   * <p>
+   * This is a no-op if the snapshot hasn't been loaded yet.
+   */
+  public void entriesChanged() {
+    if (snapshot == null) {
+      return;
+    }
+    synchronized (this) {
+      if (snapshot != null) {
+        try {
+          snapshot = load();
+        } catch (RuntimeException e) {
+          logger.error("Error reloading in-memory catalog; it will be reloaded on next search", e);
+          snapshot = null;
+        }
+      }
+    }
+  }
+
+  private Snapshot getSnapshot() {
+    Snapshot current = snapshot;
+    if (current == null) {
+      synchronized (this) {
+        current = snapshot;
+        if (current == null) {
+          current = snapshot = load();
+        }
+      }
+    } else if (current.loaded.plus(settings.inMemoryRefreshInterval()).isBefore(Instant.now())
+        && refreshing.compareAndSet(false, true)) {
+      // Serve the stale snapshot while reloading it in the background
+      refresher.execute(() -> {
+        try {
+          synchronized (this) {
+            snapshot = load();
+          }
+        } catch (Throwable t) {
+          logger.error("Error refreshing in-memory catalog", t);
+        } finally {
+          refreshing.set(false);
+        }
+      });
+    }
+    return current;
+  }
+
+  private Snapshot load() {
+    Instant loaded = Instant.now();
+    Snapshot loadedSnapshot = new Snapshot(loaded, ImmutableList.copyOf(jongoCatalogEntryRepository.getAllSearchableEntries()));
+    logger.debug("Loaded {} catalog entries in memory", loadedSnapshot.entries.size());
+    return loadedSnapshot;
+  }
+
+  private static class Snapshot {
+    final Instant loaded;
+    final ImmutableList<SimpleCatalogEntry> entries;
+    /** Set bits are entries that are included in all searches. */
+    final BitSet all;
+    final Map<String, BitSet> portals = new HashMap<>();
+    final Map<String, BitSet> categoryIds = new HashMap<>();
+    final Map<CatalogEntry.TargetAudience, BitSet> targetAudiences = new HashMap<>();
+    final Map<CatalogEntry.PaymentOption, BitSet> paymentOptions = new HashMap<>();
+    final Map<URI, BitSet> geographicalAreas = new HashMap<>();
+    final Map<URI, BitSet> restrictedAreas = new HashMap<>();
+    /** Per-entry matchers for their supported locales; {@code null} for entries without supported locales. */
+    final LocaleMatcher[] supportedLocales;
+    /** Entry indices, sorted for each sort locale. */
+    final ImmutableMap<ULocale, int[]> orderings;
+
+    Snapshot(Instant loaded, List<SimpleCatalogEntry> entries) {
+      this.loaded = loaded;
+      this.entries = ImmutableList.copyOf(entries);
+      int size = this.entries.size();
+      this.all = new BitSet(size);
+      this.all.set(0, size);
+      this.supportedLocales = new LocaleMatcher[size];
+      for (int i = 0; i < size; i++) {
+        SimpleCatalogEntry entry = this.entries.get(i);
+        index(portals, entry.getPortals(), i);
+        index(categoryIds, entry.getCategory_ids(), i);
+        index(targetAudiences, entry.getTarget_audience(), i);
+        if (entry.getPayment_option() != null) {
+          paymentOptions.computeIfAbsent(entry.getPayment_option(), k -> new BitSet()).set(i);
+        }
+        index(geographicalAreas, entry.getGeographical_areas(), i);
+        index(restrictedAreas, entry.getRestricted_areas(), i);
+        supportedLocales[i] = createMatcher(entry.getSupported_locales());
+      }
+      ImmutableMap.Builder<ULocale, int[]> orderings = ImmutableMap.builder();
+      for (ULocale sortLocale : CatalogSortKeys.getSortLocales()) {
+        Comparator<CatalogEntry> comparator = CatalogSortKeys.getComparator(sortLocale);
+        orderings.put(sortLocale, IntStream.range(0, size)
+            .boxed()
+            .sorted((i1, i2) -> comparator.compare(this.entries.get(i1), this.entries.get(i2)))
+            .mapToInt(Integer::intValue)
+            .toArray());
+      }
+      this.orderings = orderings.build();
+    }
+
+    private static <K> void index(Map<? super K, BitSet> index, @Nullable Collection<? extends K> values, int i) {
+      if (values == null) {
+        return;
+      }
+      for (K value : values) {
+        if (value != null) {
+          index.computeIfAbsent(value, k -> new BitSet()).set(i);
+        }
+      }
+    }
+
+    @Nullable
+    private static LocaleMatcher createMatcher(@Nullable List<ULocale> supportedLocales) {
+      if (supportedLocales == null || supportedLocales.isEmpty()) {
+        return null;
+      }
+      // UNKNOWN_LOCALE is the first, so will be returned if nothing else matches.
+      List<ULocale> entrySupportedLocales = new ArrayList<>(supportedLocales.size() + 1);
+      entrySupportedLocales.add(UNKNOWN_LOCALE);
+      for (ULocale locale : supportedLocales) {
+        if (UNKNOWN_LOCALE.equals(locale)) {
+          continue; // Don't add UNKNOWN_LOCALE twice, it would no longer be first
+        }
+        entrySupportedLocales.add(locale);
+      }
+      return LocaleMatchers.get(entrySupportedLocales);
+    }
+
+    Iterable<SimpleCatalogEntry> search(SearchRequest request) {
+      BitSet candidates = (BitSet) all.clone();
+      filter(candidates, portals, request.portal() == null ? null : ImmutableList.of(request.portal()));
+      filter(candidates, categoryIds, request.category_id());
+      filter(candidates, targetAudiences, request.target_audience());
+      filter(candidates, paymentOptions, request.payment_option());
+      filter(candidates, geographicalAreas, request.geographical_area());
+      filter(candidates, restrictedAreas, request.restricted_area());
+
+      final @Nullable LocalePriorityList requestedLocales = request.supported_locale().isEmpty()
+          ? null
+          : LocalePriorityList.add(Iterables.toArray(request.supported_locale(), ULocale.class)).build();
+
+      int[] ordering = orderings.get(CatalogSortKeys.getSortLocale(request.displayLocale()));
+      List<SimpleCatalogEntry> results = new ArrayList<>(Math.min(request.limit(), candidates.cardinality()));
+      int skipped = 0;
+      for (int i = 0; i < ordering.length && results.size() < request.limit(); i++) {
+        int idx = ordering[i];
+        if (!candidates.get(idx)) {
+          continue;
+        }
+        if (requestedLocales != null) {
+          // Entries without supported_locales are NOT listed at all when filtering on that field!
+          LocaleMatcher matcher = supportedLocales[idx];
+          if (matcher == null || UNKNOWN_LOCALE.equals(matcher.getBestMatch(requestedLocales))) {
+            continue;
+          }
+        }
+        if (skipped < request.start()) {
+          skipped++;
+          continue;
+        }
+        results.add(copy(entries.get(idx), request.displayLocale()));
+      }
+      return results;
+    }
+
+    private static <K> void filter(BitSet candidates, Map<? super K, BitSet> index, @Nullable Collection<? extends K> values) {
+      if (values == null || values.isEmpty()) {
+        return;
+      }
+      BitSet matching = new BitSet();
+      for (K value : values) {
+        BitSet bitSet = index.get(value);
+        if (bitSet != null) {
+          matching.or(bitSet);
+        }
+      }
+      candidates.and(matching);
+    }
+
+    /** Copies the entry, as it can then be modified (e.g. restricted to a given locale) by the caller. */
+    private static SimpleCatalogEntry copy(SimpleCatalogEntry entry, @Nullable ULocale displayLocale) {
+      SimpleCatalogEntry copy = new SimpleCatalogEntry(entry);
+      copy.setId(entry.getId());
+      copy.setType(entry.getType());
+      if (displayLocale != null) {
+        copy.restrictLocale(displayLocale);
+      }
+      return copy;
+    }
+  }
+}
@@ -17,14 +17,8 @@
  */
 package oasis.catalog;
 
-import java.util.function.BiConsumer;
-
 import javax.inject.Inject;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import oasis.jest.applications.v2.JestCatalogEntryRepository;
 import oasis.jongo.applications.v2.JongoServiceRepository;
 import oasis.model.InvalidVersionException;
 import oasis.model.applications.v2.CatalogEntry;
@@ -32,23 +26,24 @@ import oasis.model.applications.v2.Service;
 import oasis.model.applications.v2.ServiceRepository;
 
 public class IndexingServiceRepository implements ServiceRepository {
-  private static final Logger logger = LoggerFactory.getLogger(IndexingServiceRepository.class);
-
   private final JongoServiceRepository jongoServiceRepository;
-  private final JestCatalogEntryRepository jestCatalogEntryRepository;
+  private final CatalogIndexer catalogIndexer;
+  private final InMemoryCatalogEntryRepository inMemoryCatalogEntryRepository;
 
   @Inject IndexingServiceRepository(JongoServiceRepository jongoServiceRepository,
-      JestCatalogEntryRepository jestCatalogEntryRepository) {
+      CatalogIndexer catalogIndexer,
+      InMemoryCatalogEntryRepository inMemoryCatalogEntryRepository) {
     this.jongoServiceRepository = jongoServiceRepository;
-    this.jestCatalogEntryRepository = jestCatalogEntryRepository;
+    this.catalogIndexer = catalogIndexer;
+    this.inMemoryCatalogEntryRepository = inMemoryCatalogEntryRepository;
   }
 
   @Override
   public Service createService(Service service) {
     Service createdService = jongoServiceRepository.createService(service);
     if (shouldIndex(createdService)) {
-      jestCatalogEntryRepository.asyncIndex(createdService)
-          .whenComplete(indexedFutureCallback(service.getId(), CatalogEntry.EntryType.SERVICE));
+      catalogIndexer.index(createdService);
+      inMemoryCatalogEntryRepository.entryChanged(CatalogEntry.EntryType.SERVICE, createdService.getId());
     }
     return createdService;
   }
@@ -79,13 +74,12 @@ public class IndexingServiceRepository implements ServiceRepository {
     service = jongoServiceRepository.updateService(service, versions);
 
     if (shouldIndex(service)) {
-      jestCatalogEntryRepository.asyncIndex(service)
-          .whenComplete(indexedFutureCallback(service.getId(), CatalogEntry.EntryType.SERVICE));
+      catalogIndexer.index(service);
     } else if (shouldIndex(oldService)) {
       // It means it is no more indexable
-      jestCatalogEntryRepository.asyncDelete(service.getId(), CatalogEntry.EntryType.SERVICE)
-          .whenComplete(deleteIndexFutureCallback(service.getId(), CatalogEntry.EntryType.SERVICE));
+      catalogIndexer.delete(CatalogEntry.EntryType.SERVICE, service.getId());
     }
+    inMemoryCatalogEntryRepository.entryChanged(CatalogEntry.EntryType.SERVICE, service.getId());
     return service;
   }
 
@@ -93,8 +87,8 @@ public class IndexingServiceRepository implements ServiceRepository {
   public boolean deleteService(String serviceId, long[] versions) throws InvalidVersionException {
     boolean deletedService = jongoServiceRepository.deleteService(serviceId, versions);
     if (deletedService) {
-      jestCatalogEntryRepository.asyncDelete(serviceId, CatalogEntry.EntryType.SERVICE)
-          .whenComplete(deleteIndexFutureCallback(serviceId, CatalogEntry.EntryType.SERVICE));
+      catalogIndexer.delete(CatalogEntry.EntryType.SERVICE, serviceId);
+      inMemoryCatalogEntryRepository.entryChanged(CatalogEntry.EntryType.SERVICE, serviceId);
     }
     return deletedService;
   }
@@ -102,8 +96,8 @@ public class IndexingServiceRepository implements ServiceRepository {
   @Override
   public int deleteServicesOfInstance(String instanceId) {
     int count = jongoServiceRepository.deleteServicesOfInstance(instanceId);
-    jestCatalogEntryRepository.asyncDeleteServiceByInstance(instanceId)
-        .whenComplete(deleteIndexRelatedToInstanceFutureCallback(instanceId));
+    catalogIndexer.deleteServicesOfInstance(instanceId);
+    inMemoryCatalogEntryRepository.entriesChanged();
     return count;
   }
 
@@ -114,18 +108,17 @@ public class IndexingServiceRepository implements ServiceRepository {
       case AVAILABLE:
         for (Service service : getServicesOfInstance(instanceId)) {
           if (shouldIndex(service)) {
-            jestCatalogEntryRepository.asyncIndex(service)
-                .whenComplete(indexedFutureCallback(service.getId(), CatalogEntry.EntryType.SERVICE));
+            catalogIndexer.index(service);
           }
         }
         break;
       case NOT_AVAILABLE:
-        jestCatalogEntryRepository.asyncDeleteServiceByInstance(instanceId)
-            .whenComplete(deleteIndexRelatedToInstanceFutureCallback(instanceId));
+        catalogIndexer.deleteServicesOfInstance(instanceId);
         break;
       default:
         throw new IllegalArgumentException();
     }
+    inMemoryCatalogEntryRepository.entriesChanged();
     return count;
   }
 
@@ -133,8 +126,10 @@ public class IndexingServiceRepository implements ServiceRepository {
   public Service addPortal(String serviceId, String portalId, long[] versions) throws InvalidVersionException {
     Service service = jongoServiceRepository.addPortal(serviceId, portalId, versions);
     if (service != null && shouldIndex(service)) {
-      jestCatalogEntryRepository.asyncIndex(service)
-          .whenComplete(indexedFutureCallback(service.getId(), CatalogEntry.EntryType.SERVICE));
+      catalogIndexer.index(service);
+    }
+    if (service != null) {
+      inMemoryCatalogEntryRepository.entryChanged(CatalogEntry.EntryType.SERVICE, service.getId());
     }
     return service;
   }
@@ -143,8 +138,10 @@ public class IndexingServiceRepository implements ServiceRepository {
   public Service removePortal(String serviceId, String portalId, long[] versions) throws InvalidVersionException {
     Service service = jongoServiceRepository.removePortal(serviceId, portalId, versions);
     if (service != null && shouldIndex(service)) {
-      jestCatalogEntryRepository.asyncIndex(service)
-          .whenComplete(indexedFutureCallback(service.getId(), CatalogEntry.EntryType.SERVICE));
+      catalogIndexer.index(service);
+    }
+    if (service != null) {
+      inMemoryCatalogEntryRepository.entryChanged(CatalogEntry.EntryType.SERVICE, service.getId());
     }
     return service;
   }
@@ -152,34 +149,4 @@ public class IndexingServiceRepository implements ServiceRepository {
   private boolean shouldIndex(Service service) {
     return service.isVisible() && service.getStatus() != Service.Status.NOT_AVAILABLE;
   }
-
-  private BiConsumer<Void, Throwable> indexedFutureCallback(final String id, final CatalogEntry.EntryType entryType) {
-    return (result, throwable) -> {
-      if (throwable == null) {
-        logger.trace("Successfully indexed {} {}", entryType.name(), id);
-      } else {
-        logger.error("Error when indexing {} {}", entryType.name(), id, throwable);
-      }
-    };
-  }
-
-  private BiConsumer<Void, Throwable> deleteIndexFutureCallback(final String id, final CatalogEntry.EntryType entryType) {
-    return (result, throwable) -> {
-      if (throwable == null) {
-        logger.trace("Successfully removed {} {} from index", entryType.name(), id);
-      } else {
-        logger.error("Error when removing {} {} from index", entryType.name(), id, throwable);
-      }
-    };
-  }
-
-  private BiConsumer<Void, Throwable> deleteIndexRelatedToInstanceFutureCallback(final String instanceId) {
-    return (result, throwable) -> {
-      if (throwable == null) {
-        logger.trace("Successfully removed catalog entries related to instance {} from index", instanceId);
-      } else {
-        logger.trace("Error when removing catalog entries related to instance {} from index", instanceId, throwable);
-      }
-    };
-  }
 }
@@ -27,11 +27,14 @@ import oasis.model.applications.v2.SimpleCatalogEntry;
 public class RoutingCatalogEntryRepository implements CatalogEntryRepository {
   private final JongoCatalogEntryRepository jongoCatalogEntryRepository;
   private final JestCatalogEntryRepository jestCatalogEntryRepository;
+  private final InMemoryCatalogEntryRepository inMemoryCatalogEntryRepository;
 
   @Inject RoutingCatalogEntryRepository(JongoCatalogEntryRepository jongoCatalogEntryRepository,
-      JestCatalogEntryRepository jestCatalogEntryRepository) {
+      JestCatalogEntryRepository jestCatalogEntryRepository,
+      InMemoryCatalogEntryRepository inMemoryCatalogEntryRepository) {
     this.jongoCatalogEntryRepository = jongoCatalogEntryRepository;
     this.jestCatalogEntryRepository = jestCatalogEntryRepository;
+    this.inMemoryCatalogEntryRepository = inMemoryCatalogEntryRepository;
   }
 
   @Override
@@ -39,10 +42,13 @@ public class RoutingCatalogEntryRepository implements CatalogEntryRepository {
     if (request.query() != null) {
       return jestCatalogEntryRepository.search(request);
     }
-    // If the request doesn't have a query, fallback to the Jongo implementation
-    // The problem with the Jest one is that it doesn't support sorting on name properties depending on the user locale
-    // if there isn't any scoring (only included by a full text search)
-    // FIXME: Make Jest implementation support sorting on requests without query
+    if (inMemoryCatalogEntryRepository.isEnabled()) {
+      return inMemoryCatalogEntryRepository.search(request);
+    }
+    // Without a query, the Jest implementation can sort on the localized collation keys, but the index isn't kept
+    // current by all application writes (e.g. the Bootstrap tool), so stick to the database.
+    // Also, the Jest implementation only matches supported locales exactly (without fallbacks), whereas the Jongo
+    // implementation uses a LocaleMatcher.
     return jongoCatalogEntryRepository.search(request);
   }
 }
@@ -18,11 +18,21 @@
 package oasis.elasticsearch;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
 
 import org.immutables.value.Value;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
 
 @Value.Enclosing
 public class ElasticsearchModule extends AbstractModule {
@@ -32,11 +42,22 @@ public class ElasticsearchModule extends AbstractModule {
   @Value.Immutable
   public interface Settings {
     URI url();
+
+    Duration connectTimeout();
+
+    Duration readTimeout();
   }
 
   public static ElasticsearchModule create(Config config) {
+    URI url = URI.create(config.getString("url"));
+    // Fail at startup rather than on the first search
+    if (HttpUrl.get(url) == null) {
+      throw new ConfigException.BadValue(config.origin(), "url", "Not an HTTP or HTTPS URL: " + url);
+    }
     return new ElasticsearchModule(ImmutableElasticsearchModule.Settings.builder()
-        .url(URI.create(config.getString("url")))
+        .url(url)
+        .connectTimeout(config.getDuration("connect-timeout"))
+        .readTimeout(config.getDuration("read-timeout"))
         .build());
   }
 
@@ -50,4 +71,13 @@ public class ElasticsearchModule extends AbstractModule {
   protected void configure() {
     bind(Settings.class).toInstance(settings);
   }
+
+  /** Client for direct calls to elasticsearch, bypassing Jest; not shared with the (slower) webhooks. */
+  @Provides @Singleton @Named(ELASTICSEARCH) OkHttpClient provideOkHttpClient() {
+    return new OkHttpClient.Builder()
+        .connectTimeout(settings.connectTimeout().toMillis(), TimeUnit.MILLISECONDS)
+        .readTimeout(settings.readTimeout().toMillis(), TimeUnit.MILLISECONDS)
+        .followRedirects(false)
+        .build();
+  }
 }
@@ -0,0 +1,83 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.eventbus;
+
+import java.time.Duration;
+
+import org.immutables.value.Value;
+
+import com.google.inject.AbstractModule;
+import com.typesafe.config.Config;
+
+@Value.Enclosing
+public class EventBusModule extends AbstractModule {
+
+  @Value.Immutable
+  public interface Settings {
+    /** How often the outbox is polled for due deliveries (in addition to polling right after events are published). */
+    Duration pollInterval();
+
+    /** Maximum number of deliveries claimed in a single poll. */
+    int batchSize();
+
+    /** How long a claimed delivery is leased to a node before it can be claimed again (e.g. if the node crashed). */
+    Duration leaseDuration();
+
+    /** Number of concurrent deliveries to a given host. */
+    int workersPerHost();
+
+    /** Maximum number of claimed deliveries waiting for a worker, per host. */
+    int queueCapacityPerHost();
+
+    /** Number of attempts before a delivery is abandoned. */
+    int maxAttempts();
+
+    /** Delay before the first retry; it's then doubled for each subsequent retry, up to {@link #maxBackoff()}. */
+    Duration initialBackoff();
+
+    Duration maxBackoff();
+
+    static Settings fromConfig(Config config) {
+      return ImmutableEventBusModule.Settings.builder()
+          .pollInterval(config.getDuration("poll-interval"))
+          .batchSize(config.getInt("batch-size"))
+          .leaseDuration(config.getDuration("lease-duration"))
+          .workersPerHost(config.getInt("workers-per-host"))
+          .queueCapacityPerHost(config.getInt("queue-capacity-per-host"))
+          .maxAttempts(config.getInt("max-attempts"))
+          .initialBackoff(config.getDuration("initial-backoff"))
+          .maxBackoff(config.getDuration("max-backoff"))
+          .build();
+    }
+  }
+
+  public static EventBusModule create(Config config) {
+    return new EventBusModule(Settings.fromConfig(config));
+  }
+
+  private final Settings settings;
+
+  public EventBusModule(Settings settings) {
+    this.settings = settings;
+  }
+
+  @Override
+  protected void configure() {
+    bind(Settings.class).toInstance(settings);
+  }
+}
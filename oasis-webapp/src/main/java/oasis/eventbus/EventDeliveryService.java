@@ -0,0 +1,355 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.eventbus;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import net.ltgt.jaxrs.webhook.client.WebhookSignatureFilter;
+import oasis.model.eventbus.EventDelivery;
+import oasis.model.eventbus.EventDeliveryRepository;
+import oasis.model.eventbus.Subscription;
+import oasis.model.eventbus.SubscriptionRepository;
+
+/**
+ * Delivers events from the {@link EventDeliveryRepository outbox} to subscriptions' webhooks.
+ * <p>
+ * Due deliveries are claimed from the outbox (so several nodes can share the load) and dispatched to bounded worker
+ * pools, one per target host, so a slow or unresponsive host cannot starve deliveries to other hosts. Failed deliveries
+ * are retried with exponential backoff, up to a configured number of attempts.
+ * <p>
+ * Worker threads time out when idle, and pools of hosts that haven't been delivered to for a while are removed, as
+ * hosts come from subscriptions and are not bounded.
+ */
+@Singleton
+public class EventDeliveryService {
+  private static final Logger logger = LoggerFactory.getLogger(EventDeliveryService.class);
+  private static final long HOST_EXECUTOR_IDLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+  private final EventBusModule.Settings settings;
+  private final EventDeliveryRepository eventDeliveryRepository;
+  private final SubscriptionRepository subscriptionRepository;
+  private final Provider<Client> clientProvider;
+  private final Ticker ticker;
+
+  /** Only modified from the poller thread. */
+  private final ConcurrentMap<String, HostExecutor> hostExecutors = new ConcurrentHashMap<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder deliveredCount = new LongAdder();
+  private final LongAdder retriedCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+  private final LongAdder totalLatencyMillis = new LongAdder();
+  private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+  private volatile @Nullable ScheduledExecutorService poller;
+
+  @Inject
+  EventDeliveryService(EventBusModule.Settings settings, EventDeliveryRepository eventDeliveryRepository,
+      SubscriptionRepository subscriptionRepository, Provider<Client> clientProvider) {
+    this(settings, eventDeliveryRepository, subscriptionRepository, clientProvider, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  EventDeliveryService(EventBusModule.Settings settings, EventDeliveryRepository eventDeliveryRepository,
+      SubscriptionRepository subscriptionRepository, Provider<Client> clientProvider, Ticker ticker) {
+    this.settings = settings;
+    this.eventDeliveryRepository = eventDeliveryRepository;
+    this.subscriptionRepository = subscriptionRepository;
+    this.clientProvider = clientProvider;
+    this.ticker = ticker;
+  }
+
+  @SuppressWarnings("FutureReturnValueIgnored")
+  public void start() {
+    ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("eventbus-poller")
+        .setDaemon(true)
+        .build());
+    poller.scheduleWithFixedDelay(this::poll, 0, settings.pollInterval().toMillis(), TimeUnit.MILLISECONDS);
+    this.poller = poller;
+  }
+
+  public void stop() {
+    ScheduledExecutorService poller = this.poller;
+    if (poller == null) {
+      return;
+    }
+    this.poller = null;
+    poller.shutdownNow();
+    // Deliveries that are still queued will be claimed again (by any node) once their lease expires.
+    for (HostExecutor hostExecutor : hostExecutors.values()) {
+      hostExecutor.executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Durably enqueues deliveries, and triggers a poll of the outbox.
+   * <p>
+   * This method returns as soon as the deliveries have been stored in the outbox.
+   */
+  public void enqueue(Collection<EventDelivery> deliveries) {
+    if (deliveries.isEmpty()) {
+      return;
+    }
+    eventDeliveryRepository.enqueue(deliveries);
+
+    ScheduledExecutorService poller = this.poller;
+    if (poller != null) {
+      try {
+        poller.execute(this::poll);
+      } catch (RejectedExecutionException e) {
+        // service is being stopped; deliveries will be picked later (possibly by another node)
+      }
+    }
+  }
+
+  /** Number of deliveries waiting in the outbox (including those being delivered). */
+  public long countPending() {
+    return eventDeliveryRepository.countPending();
+  }
+
+  /** Number of deliveries claimed by this node that are either queued for a worker or being delivered. */
+  public int inFlight() {
+    return inFlight.get();
+  }
+
+  public long deliveredCount() {
+    return deliveredCount.sum();
+  }
+
+  public long retriedCount() {
+    return retriedCount.sum();
+  }
+
+  public long failedCount() {
+    return failedCount.sum();
+  }
+
+  /** Average time between publication and successful delivery, in milliseconds. */
+  public double averageLatencyMillis() {
+    long count = deliveredCount.sum();
+    return count == 0 ? 0 : (double) totalLatencyMillis.sum() / count;
+  }
+
+  /** Maximum time between publication and successful delivery, in milliseconds. */
+  public long maxLatencyMillis() {
+    return maxLatencyMillis.get();
+  }
+
+  @VisibleForTesting
+  int hostExecutorCount() {
+    return hostExecutors.size();
+  }
+
+  @VisibleForTesting
+  void poll() {
+    try {
+      evictIdleExecutors();
+      for (int i = 0; i < settings.batchSize(); i++) {
+        Instant now = Instant.now();
+        EventDelivery delivery = eventDeliveryRepository.claimNextDue(now, now.plus(settings.leaseDuration()));
+        if (delivery == null) {
+          return;
+        }
+        // If workers for that host are saturated, the delivery is rescheduled for the next poll, but deliveries to
+        // other hosts must not wait behind it.
+        dispatch(delivery, now);
+      }
+    } catch (Exception e) {
+      // Don't let the exception propagate, or the poller would be cancelled.
+      logger.error("Error polling event deliveries", e);
+    }
+  }
+
+  private void dispatch(EventDelivery delivery, Instant now) {
+    HostExecutor hostExecutor = hostExecutors.computeIfAbsent(getHost(delivery.getWebHook()), this::createExecutor);
+    hostExecutor.lastDispatch = ticker.read();
+    inFlight.incrementAndGet();
+    try {
+      hostExecutor.executor.execute(() -> deliver(delivery));
+    } catch (RejectedExecutionException e) {
+      inFlight.decrementAndGet();
+      // Release the lease without counting it as an attempt
+      eventDeliveryRepository.reschedule(delivery.getId(), now.plus(settings.pollInterval()), delivery.getAttempts(),
+          delivery.getLast_error());
+    }
+  }
+
+  /**
+   * Removes the pools of hosts that haven't been dispatched to for a while and have no pending delivery.
+   * <p>
+   * Must be called from the poller thread, so a delivery cannot be dispatched concurrently to an evicted pool.
+   */
+  private void evictIdleExecutors() {
+    long now = ticker.read();
+    for (Iterator<Map.Entry<String, HostExecutor>> it = hostExecutors.entrySet().iterator(); it.hasNext(); ) {
+      HostExecutor hostExecutor = it.next().getValue();
+      if (now - hostExecutor.lastDispatch < HOST_EXECUTOR_IDLE_NANOS
+          || hostExecutor.executor.getActiveCount() > 0 || !hostExecutor.executor.getQueue().isEmpty()) {
+        continue;
+      }
+      it.remove();
+      // Not shutdownNow(): a delivery that would have just been taken from the queue still completes.
+      hostExecutor.executor.shutdown();
+    }
+  }
+
+  private HostExecutor createExecutor(String host) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(settings.workersPerHost(), settings.workersPerHost(),
+        1, TimeUnit.MINUTES,
+        new ArrayBlockingQueue<>(settings.queueCapacityPerHost()),
+        new ThreadFactoryBuilder()
+            .setNameFormat("eventbus-" + host.replace("%", "%%") + "-%d")
+            .setDaemon(true)
+            .build());
+    executor.allowCoreThreadTimeOut(true);
+    return new HostExecutor(executor);
+  }
+
+  private void deliver(EventDelivery delivery) {
+    try {
+      Subscription subscription = subscriptionRepository.getSubscription(delivery.getSubscription_id());
+      if (subscription == null) {
+        // The subscription has been deleted since the event was published.
+        eventDeliveryRepository.deleteDelivery(delivery.getId());
+        return;
+      }
+
+      String error;
+      try {
+        Response response = clientProvider.get()
+            .target(delivery.getWebHook())
+            .register(new WebhookSignatureFilter(subscription.getSecret()))
+            .request()
+            .post(Entity.json(new EventPayload(delivery)));
+        try {
+          if (response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+            eventDeliveryRepository.deleteDelivery(delivery.getId());
+            recordLatency(delivery);
+            logger.trace("Webhook {} called for eventType {}.", delivery.getWebHook(), delivery.getEventType());
+            return;
+          }
+          error = "HTTP " + response.getStatus();
+        } finally {
+          response.close();
+        }
+      } catch (Exception e) {
+        error = e.toString();
+      }
+
+      int attempts = delivery.getAttempts() + 1;
+      if (attempts >= settings.maxAttempts()) {
+        failedCount.increment();
+        eventDeliveryRepository.markFailed(delivery.getId(), attempts, error);
+        logger.error("Giving up calling webhook {} for eventType {} after {} attempts: {}",
+            delivery.getWebHook(), delivery.getEventType(), attempts, error);
+      } else {
+        retriedCount.increment();
+        eventDeliveryRepository.reschedule(delivery.getId(), Instant.now().plus(getBackoff(attempts)), attempts, error);
+        logger.warn("Error calling webhook {} for eventType {} (attempt {}), will retry: {}",
+            delivery.getWebHook(), delivery.getEventType(), attempts, error);
+      }
+    } catch (Exception e) {
+      // The delivery will be retried once its lease expires.
+      logger.error("Error delivering event to webhook {} for eventType {}", delivery.getWebHook(), delivery.getEventType(), e);
+    } finally {
+      inFlight.decrementAndGet();
+    }
+  }
+
+  private Duration getBackoff(int attempts) {
+    Duration backoff = settings.initialBackoff().multipliedBy(1L << Math.min(attempts - 1, 30));
+    return backoff.compareTo(settings.maxBackoff()) > 0 ? settings.maxBackoff() : backoff;
+  }
+
+  private void recordLatency(EventDelivery delivery) {
+    deliveredCount.increment();
+    if (delivery.getCreated() == null) {
+      return;
+    }
+    long latency = Duration.between(delivery.getCreated(), Instant.now()).toMillis();
+    totalLatencyMillis.add(latency);
+    maxLatencyMillis.accumulateAndGet(latency, Math::max);
+  }
+
+  private static String getHost(String webHook) {
+    try {
+      String host = URI.create(webHook).getHost();
+      if (host != null) {
+        return host.toLowerCase(Locale.ROOT);
+      }
+    } catch (IllegalArgumentException e) {
+      // fall through
+    }
+    return "";
+  }
+
+  private static class HostExecutor {
+    final ThreadPoolExecutor executor;
+    /** Last time a delivery was dispatched to this pool, in {@link Ticker} time; only accessed from the poller thread. */
+    long lastDispatch;
+
+    HostExecutor(ThreadPoolExecutor executor) {
+      this.executor = executor;
+    }
+  }
+
+  private static class EventPayload {
+    @JsonProperty String message;
+    @JsonProperty String data;
+    @JsonProperty String eventType;
+
+    EventPayload(EventDelivery delivery) {
+      this.message = delivery.getMessage();
+      this.data = delivery.getData();
+      this.eventType = delivery.getEventType();
+    }
+  }
+}
@@ -17,9 +17,14 @@
  */
 package oasis.http;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nullable;
+
 import javax.inject.Singleton;
 import javax.ws.rs.client.Client;
 
@@ -30,7 +35,9 @@ import org.slf4j.LoggerFactory;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
+import com.google.common.base.Strings;
 import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
 
 import net.ltgt.resteasy.client.okhttp3.OkHttpClientEngine;
 import oasis.web.providers.JacksonJsonProvider;
@@ -44,12 +51,39 @@ public class HttpClientModule extends AbstractModule {
   @Value.Immutable
   public interface Settings {
     HttpLoggingInterceptor.Level loggingLevel();
+
+    /** Default timeout when calling provider webhooks (instantiation, cancellation, destruction). */
+    Duration webhookTimeout();
+
+    /** Per-provider webhook timeouts, keyed by the host name of the webhook URI. */
+    Map<String, Duration> webhookTimeouts();
+
+    default Duration webhookTimeout(@Nullable String uri) {
+      if (Strings.isNullOrEmpty(uri)) {
+        return webhookTimeout();
+      }
+      String host;
+      try {
+        host = URI.create(uri).getHost();
+      } catch (IllegalArgumentException e) {
+        return webhookTimeout();
+      }
+      if (host == null) {
+        return webhookTimeout();
+      }
+      return webhookTimeouts().getOrDefault(host.toLowerCase(Locale.ROOT), webhookTimeout());
+    }
   }
 
   public static HttpClientModule create(Config config) {
-    return new HttpClientModule(ImmutableHttpClientModule.Settings.builder()
+    ImmutableHttpClientModule.Settings.Builder settings = ImmutableHttpClientModule.Settings.builder()
         .loggingLevel(HttpLoggingInterceptor.Level.valueOf(config.getString("logging-level").toUpperCase(Locale.ROOT)))
-        .build());
+        .webhookTimeout(config.getDuration("webhook-timeout"));
+    Config webhookTimeouts = config.getConfig("webhook-timeouts");
+    for (String host : webhookTimeouts.root().keySet()) {
+      settings.putWebhookTimeouts(host.toLowerCase(Locale.ROOT), webhookTimeouts.getDuration(ConfigUtil.quoteString(host)));
+    }
+    return new HttpClientModule(settings.build());
   }
 
   private final Settings settings;
@@ -59,7 +93,9 @@ public class HttpClientModule extends AbstractModule {
   }
 
   @Override
-  protected void configure() { }
+  protected void configure() {
+    bind(Settings.class).toInstance(settings);
+  }
 
   @Provides @Singleton Client provideClient(OkHttpClient okHttpClient) {
     return new ResteasyClientBuilder()
@@ -69,8 +105,18 @@ public class HttpClientModule extends AbstractModule {
   }
 
   @Provides @Singleton OkHttpClient provideOkHttpClient() {
+    // Make sure the read timeout doesn't preempt longer webhook timeouts
+    Duration readTimeout = Duration.ofMinutes(1);
+    for (Duration webhookTimeout : settings.webhookTimeouts().values()) {
+      if (webhookTimeout.compareTo(readTimeout) > 0) {
+        readTimeout = webhookTimeout;
+      }
+    }
+    if (settings.webhookTimeout().compareTo(readTimeout) > 0) {
+      readTimeout = settings.webhookTimeout();
+    }
     return new OkHttpClient.Builder()
-        .readTimeout(1, TimeUnit.MINUTES)
+        .readTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
         .writeTimeout(1, TimeUnit.MINUTES)
         .connectTimeout(1, TimeUnit.MINUTES)
         .followRedirects(false)
@@ -0,0 +1,75 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.http;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs the handling of asynchronous webhook responses.
+ *
+ * <p>HTTP client callbacks are invoked on the client's dispatcher threads, which must not block;
+ * handlers that need to hit the database are dispatched here instead.
+ *
+ * <p>The queue is bounded so that slow handlers don't pile up without limit: when it's full,
+ * {@link #execute} throws a {@link RejectedExecutionException} and callers should respond with a 503.
+ */
+@Singleton
+public class WebhookCallbackExecutor implements Executor {
+  private static final int THREADS = 4;
+  private static final int QUEUE_SIZE = 100;
+
+  private final ThreadPoolExecutor executor;
+
+  @Inject
+  WebhookCallbackExecutor() {
+    executor = new ThreadPoolExecutor(THREADS, THREADS, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(QUEUE_SIZE),
+        new ThreadFactoryBuilder()
+            .setNameFormat("webhook-callback-%d")
+            .setDaemon(true)
+            .build(),
+        new ThreadPoolExecutor.AbortPolicy());
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * @throws RejectedExecutionException if too many callbacks are waiting, or the executor has been stopped
+   */
+  @Override
+  public void execute(Runnable command) {
+    executor.execute(command);
+  }
+
+  /** Stops accepting new callbacks, and waits for pending ones to complete. */
+  public void stop() {
+    executor.shutdown();
+    try {
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
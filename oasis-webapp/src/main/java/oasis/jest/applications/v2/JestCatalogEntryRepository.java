@@ -23,7 +23,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -31,6 +33,7 @@ import java.util.concurrent.CompletionStage;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.inject.Named;
 
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.index.query.BoolFilterBuilder;
@@ -40,40 +43,57 @@ import org.elasticsearch.index.query.FilteredQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.datatype.guava.GuavaModule;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Strings;
 import com.google.common.io.Resources;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.ibm.icu.util.ULocale;
 
 import io.searchbox.action.Action;
+import io.searchbox.action.BulkableAction;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestResult;
 import io.searchbox.client.JestResultHandler;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.BulkResult;
 import io.searchbox.core.Delete;
 import io.searchbox.core.DeleteByQuery;
+import io.searchbox.core.DocumentResult;
 import io.searchbox.core.Index;
-import io.searchbox.core.Search;
-import io.searchbox.core.SearchResult;
 import io.searchbox.indices.CreateIndex;
+import oasis.elasticsearch.ElasticsearchModule;
 import oasis.jest.JestBootstrapper;
+import oasis.jongo.applications.v2.CatalogSortKeys;
 import oasis.model.applications.v2.CatalogEntry;
 import oasis.model.applications.v2.CatalogEntryRepository;
 import oasis.model.applications.v2.SimpleCatalogEntry;
+import oasis.model.i18n.LocaleMatchers;
 import oasis.model.i18n.LocalizableModule;
 import oasis.model.i18n.LocalizableStringHelper;
 import oasis.web.i18n.LocaleHelper;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
 
 public class JestCatalogEntryRepository implements CatalogEntryRepository, JestBootstrapper {
   private static final Logger logger = LoggerFactory.getLogger(JestCatalogEntryRepository.class);
@@ -88,10 +108,33 @@ public class JestCatalogEntryRepository implements CatalogEntryRepository, JestB
 
   private static final String INDEX_NAME = "catalog-entry";
 
+  private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+  private static final MediaType TEXT = MediaType.parse("text/plain; charset=utf-8");
+
+  private static final String SCROLL_KEEP_ALIVE = "1m";
+  private static final int SCROLL_SIZE = 500;
+
   private final JestClient jestClient;
+  private final OkHttpClient okHttpClient;
+  private final HttpUrl searchUrl;
+  private final HttpUrl scrollUrl;
 
-  @Inject JestCatalogEntryRepository(JestClient jestClient) {
+  @Inject JestCatalogEntryRepository(JestClient jestClient,
+      @Named(ElasticsearchModule.ELASTICSEARCH) OkHttpClient okHttpClient,
+      ElasticsearchModule.Settings elasticsearchSettings) {
     this.jestClient = jestClient;
+    this.okHttpClient = okHttpClient;
+    // URL has been validated by ElasticsearchModule
+    HttpUrl baseUrl = HttpUrl.get(elasticsearchSettings.url());
+    this.searchUrl = baseUrl.newBuilder()
+        .addPathSegment(INDEX_NAME)
+        .addPathSegment("_search")
+        .build();
+    this.scrollUrl = baseUrl.newBuilder()
+        .addPathSegment("_search")
+        .addPathSegment("scroll")
+        .addQueryParameter("scroll", SCROLL_KEEP_ALIVE)
+        .build();
   }
 
   @Override
@@ -101,19 +144,29 @@ public class JestCatalogEntryRepository implements CatalogEntryRepository, JestB
     FilteredQueryBuilder filteredQueryBuilder = QueryBuilders.filteredQuery(generateQuery(request), generateFilter(request));
     SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder()
         .query(filteredQueryBuilder)
-        // TODO: Sort on the name if there isn't any query term
         .from(request.start())
         .size(request.limit());
-    Search searchAction = new Search.Builder(searchSourceBuilder.toString())
-        .addIndex(INDEX_NAME)
+    if (request.query() == null) {
+      // Without a query, there's no scoring, so sort on the name using the precomputed collation keys.
+      searchSourceBuilder
+          .sort(SortBuilders.fieldSort(CatalogSortKeys.getSortField(CatalogSortKeys.getSortLocale(request.displayLocale())))
+              .order(SortOrder.ASC)
+              .unmappedType("string"))
+          .sort(SortBuilders.fieldSort("_uid").order(SortOrder.ASC));
+    }
+    // Bypass Jest (that parses the response into a Gson tree) to stream hits directly into SimpleCatalogEntry objects.
+    Request httpRequest = new Request.Builder()
+        .url(searchUrl)
+        .post(RequestBody.create(JSON, searchSourceBuilder.toString()))
         .build();
-    try {
-      SearchResult searchResult = jestClient.execute(searchAction);
-      if (!searchResult.isSucceeded()) {
-        logger.error("Error while searching in elasticsearch: {}", searchResult.getErrorMessage());
+    try (Response response = okHttpClient.newCall(httpRequest).execute()) {
+      if (!response.isSuccessful()) {
+        logger.error("Error while searching in elasticsearch: {}", response.body().string());
         return Collections.emptyList();
       }
-      return transformSearchResultToCatalogEntries(searchResult, request.displayLocale());
+      try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(response.body().byteStream())) {
+        return parseSearchResponse(parser, request.displayLocale());
+      }
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -125,7 +178,7 @@ public class JestCatalogEntryRepository implements CatalogEntryRepository, JestB
     }
 
     // FIXME: Elasticsearch seems to lower the score of entries with missing properties in multi match queries
-    List<ULocale> locales = getFallbackLocales(MoreObjects.firstNonNull(request.displayLocale(), LocaleHelper.DEFAULT_LOCALE));
+    List<ULocale> locales = LocaleMatchers.getFallbacks(MoreObjects.firstNonNull(request.displayLocale(), LocaleHelper.DEFAULT_LOCALE));
     String[] nameFields = new String[locales.size()];
     String[] descriptionFields = new String[locales.size()];
     for (int i = 0; i < locales.size(); i++) {
@@ -199,39 +252,78 @@ public class JestCatalogEntryRepository implements CatalogEntryRepository, JestB
     return mustFiltersBuilder;
   }
 
-  private Iterable<SimpleCatalogEntry> transformSearchResultToCatalogEntries(SearchResult searchResult, @Nullable ULocale displayLocale)
+  /** Reads {@code hits.hits} from the search response, ignoring everything else. */
+  @VisibleForTesting
+  static List<SimpleCatalogEntry> parseSearchResponse(JsonParser parser, @Nullable ULocale displayLocale)
       throws IOException {
-    JsonArray results = searchResult.getJsonObject()
-        .getAsJsonObject("hits")
-        .getAsJsonArray("hits");
     List<SimpleCatalogEntry> catalogEntries = new ArrayList<>();
-    for (JsonElement jsonElement : results) {
-      JsonObject jsonObject = jsonElement.getAsJsonObject();
-      JsonElement source = jsonObject.get("_source");
-      SimpleCatalogEntry catalogEntry = OBJECT_MAPPER.readValue(source.toString(), SimpleCatalogEntry.class);
-      catalogEntry.setId(jsonObject.get("_id").getAsString());
-      catalogEntry.setType(CatalogEntry.EntryType.valueOf(jsonObject.get("_type").getAsString()));
-      if (displayLocale != null) {
-        catalogEntry.restrictLocale(displayLocale);
+    expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String fieldName = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if (!"hits".equals(fieldName)) {
+        parser.skipChildren();
+        continue;
+      }
+      expect(parser, token, JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        fieldName = parser.getCurrentName();
+        token = parser.nextToken();
+        if (!"hits".equals(fieldName)) {
+          parser.skipChildren();
+          continue;
+        }
+        expect(parser, token, JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          catalogEntries.add(parseHit(parser, displayLocale));
+        }
       }
-      catalogEntries.add(catalogEntry);
     }
     return catalogEntries;
   }
 
-  public CompletionStage<Void> asyncIndex(CatalogEntry catalogEntry) {
-    checkArgument(catalogEntry.isVisible());
-    checkNotNull(catalogEntry.getId());
+  @VisibleForTesting
+  static SimpleCatalogEntry parseHit(JsonParser parser, @Nullable ULocale displayLocale) throws IOException {
+    SimpleCatalogEntry catalogEntry = null;
+    String id = null;
+    String type = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String fieldName = parser.getCurrentName();
+      parser.nextToken();
+      switch (fieldName) {
+        case "_id":
+          id = parser.getText();
+          break;
+        case "_type":
+          type = parser.getText();
+          break;
+        case "_source":
+          catalogEntry = OBJECT_MAPPER.readValue(parser, SimpleCatalogEntry.class);
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    if (catalogEntry == null || id == null || type == null) {
+      throw new JsonParseException(parser, "Incomplete search hit");
+    }
+    catalogEntry.setId(id);
+    catalogEntry.setType(CatalogEntry.EntryType.valueOf(type));
+    if (displayLocale != null) {
+      catalogEntry.restrictLocale(displayLocale);
+    }
+    return catalogEntry;
+  }
 
-    // Note: we don't copy the ID, we set it as the ES document ID, and we'll inject it back into the result on search.
-    SimpleCatalogEntry indexableCatalogEntry = new SimpleCatalogEntry(catalogEntry);
+  private static void expect(JsonParser parser, @Nullable JsonToken actual, JsonToken expected) throws JsonParseException {
+    if (actual != expected) {
+      throw new JsonParseException(parser, "Unexpected token " + actual + ", expected " + expected);
+    }
+  }
+
+  public CompletionStage<Void> asyncIndex(CatalogEntry catalogEntry) {
     try {
-      Index indexAction = new Index.Builder(OBJECT_MAPPER.writeValueAsString(indexableCatalogEntry))
-          .index(INDEX_NAME)
-          .type(catalogEntry.getType().name())
-          .id(catalogEntry.getId())
-          .build();
-      return executeAsync(indexAction);
+      return executeAsync(indexAction(catalogEntry));
     } catch (Exception e) {
       logger.error("Error while indexing CatalogEntry {}", catalogEntry.getId(), e);
       return error(e);
@@ -239,42 +331,189 @@ public class JestCatalogEntryRepository implements CatalogEntryRepository, JestB
   }
 
   public CompletionStage<Void> asyncDelete(String id, CatalogEntry.EntryType entryType) {
-    checkArgument(!Strings.isNullOrEmpty(id));
-
     try {
-      Delete deleteAction = new Delete.Builder(id)
-          .index(INDEX_NAME)
-          .type(entryType.name())
-          .build();
-      return executeAsync(deleteAction);
+      return executeAsync(deleteAction(id, entryType));
     } catch (Exception e) {
       logger.error("Error while deleting CatalogEntry {} from index", id, e);
       return error(e);
     }
   }
 
-  public CompletionStage<Void> asyncDeleteServiceByInstance(String instanceId) {
+  public BulkableAction<DocumentResult> indexAction(CatalogEntry catalogEntry) throws IOException {
+    checkArgument(catalogEntry.isVisible());
+    checkNotNull(catalogEntry.getId());
+
+    // Note: we don't copy the ID, we set it as the ES document ID, and we'll inject it back into the result on search.
+    SimpleCatalogEntry indexableCatalogEntry = new SimpleCatalogEntry(catalogEntry);
+    ObjectNode document = OBJECT_MAPPER.valueToTree(indexableCatalogEntry);
+    document.set(CatalogSortKeys.FIELD, OBJECT_MAPPER.valueToTree(CatalogSortKeys.compute(catalogEntry.getName())));
+    return new Index.Builder(OBJECT_MAPPER.writeValueAsString(document))
+        .index(INDEX_NAME)
+        .type(catalogEntry.getType().name())
+        .id(catalogEntry.getId())
+        .build();
+  }
+
+  public BulkableAction<DocumentResult> deleteAction(String id, CatalogEntry.EntryType entryType) {
+    checkArgument(!Strings.isNullOrEmpty(id));
+
+    return new Delete.Builder(id)
+        .index(INDEX_NAME)
+        .type(entryType.name())
+        .build();
+  }
+
+  /**
+   * Executes the given actions (see {@link #indexAction(CatalogEntry)} and
+   * {@link #deleteAction(String, CatalogEntry.EntryType)}) in a single request to the bulk API.
+   *
+   * @return the error messages of the failed actions, keyed by {@link #documentKey(CatalogEntry.EntryType, String)}
+   * @throws IOException if the request as a whole failed
+   */
+  public Map<String, String> executeBulk(Collection<? extends BulkableAction<DocumentResult>> actions) throws IOException {
+    Bulk bulk = new Bulk.Builder()
+        .defaultIndex(INDEX_NAME)
+        .addAction(actions)
+        .build();
+    BulkResult result = jestClient.execute(bulk);
+    JsonObject jsonObject = result.getJsonObject();
+    if (jsonObject == null || !jsonObject.has("items")) {
+      throw new IOException(MoreObjects.firstNonNull(result.getErrorMessage(), "Bulk request failed"));
+    }
+    Map<String, String> errors = new LinkedHashMap<>();
+    for (JsonElement item : jsonObject.getAsJsonArray("items")) {
+      for (Map.Entry<String, JsonElement> operation : item.getAsJsonObject().entrySet()) {
+        JsonObject status = operation.getValue().getAsJsonObject();
+        if (status.has("error")) {
+          errors.put(status.get("_type").getAsString() + '/' + status.get("_id").getAsString(),
+              status.get("error").toString());
+        }
+      }
+    }
+    return errors;
+  }
+
+  public static String documentKey(CatalogEntry.EntryType entryType, String id) {
+    return entryType.name() + '/' + id;
+  }
+
+  /**
+   * Removes all services of the given instance from the index.
+   *
+   * @throws IOException if the request failed
+   */
+  public void deleteServicesOfInstance(String instanceId) throws IOException {
     checkArgument(!Strings.isNullOrEmpty(instanceId));
 
-    try {
-      FilteredQueryBuilder queryBuilder = QueryBuilders.filteredQuery(
-          QueryBuilders.matchAllQuery(),
-          FilterBuilders.termFilter("instance_id", instanceId)
-      );
-      SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
-      searchSourceBuilder.query(queryBuilder);
-
-      DeleteByQuery deleteByQueryAction = new DeleteByQuery.Builder(searchSourceBuilder.toString())
-          .addIndex(INDEX_NAME)
-          .addType(CatalogEntry.EntryType.SERVICE.name())
-          .build();
-      return executeAsync(deleteByQueryAction);
-    } catch (Exception e) {
-      logger.error("Error while deleting entries related to instance {} from index", instanceId, e);
-      return error(e);
+    FilteredQueryBuilder queryBuilder = QueryBuilders.filteredQuery(
+        QueryBuilders.matchAllQuery(),
+        FilterBuilders.termFilter("instance_id", instanceId)
+    );
+    SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+    searchSourceBuilder.query(queryBuilder);
+
+    DeleteByQuery deleteByQueryAction = new DeleteByQuery.Builder(searchSourceBuilder.toString())
+        .addIndex(INDEX_NAME)
+        .addType(CatalogEntry.EntryType.SERVICE.name())
+        .build();
+    JestResult result = jestClient.execute(deleteByQueryAction);
+    if (!result.isSucceeded()) {
+      throw new IOException(MoreObjects.firstNonNull(result.getErrorMessage(), "Delete by query failed"));
+    }
+  }
+
+  /**
+   * Returns the {@link #documentKey(CatalogEntry.EntryType, String) keys} of all the documents in the index.
+   *
+   * @throws IOException if a request failed
+   */
+  public List<String> getAllDocumentKeys() throws IOException {
+    List<String> keys = new ArrayList<>();
+    // Scan (unsorted scroll) through the index without loading the documents' source; the initial request only
+    // returns the scroll ID.
+    @Nullable String scrollId = scroll(new Request.Builder()
+        .url(searchUrl.newBuilder()
+            .addQueryParameter("search_type", "scan")
+            .addQueryParameter("scroll", SCROLL_KEEP_ALIVE)
+            .build())
+        .post(RequestBody.create(JSON, "{\"query\":{\"match_all\":{}},\"size\":" + SCROLL_SIZE + ",\"_source\":false}"))
+        .build(), keys);
+    while (scrollId != null) {
+      int count = keys.size();
+      scrollId = scroll(new Request.Builder()
+          .url(scrollUrl)
+          .post(RequestBody.create(TEXT, scrollId))
+          .build(), keys);
+      if (keys.size() == count) {
+        break;
+      }
+    }
+    return keys;
+  }
+
+  private @Nullable String scroll(Request request, List<String> keys) throws IOException {
+    try (Response response = okHttpClient.newCall(request).execute()) {
+      if (!response.isSuccessful()) {
+        throw new IOException("Error while scanning the index: " + response.body().string());
+      }
+      try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(response.body().byteStream())) {
+        return parseScrollResponse(parser, keys);
+      }
     }
   }
 
+  /**
+   * Reads the document keys from {@code hits.hits} of a scroll response into {@code keys}, and returns the
+   * {@code _scroll_id}.
+   */
+  @VisibleForTesting
+  static @Nullable String parseScrollResponse(JsonParser parser, List<String> keys) throws IOException {
+    String scrollId = null;
+    expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String fieldName = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if ("_scroll_id".equals(fieldName)) {
+        scrollId = parser.getText();
+        continue;
+      }
+      if (!"hits".equals(fieldName)) {
+        parser.skipChildren();
+        continue;
+      }
+      expect(parser, token, JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        fieldName = parser.getCurrentName();
+        token = parser.nextToken();
+        if (!"hits".equals(fieldName)) {
+          parser.skipChildren();
+          continue;
+        }
+        expect(parser, token, JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          String id = null;
+          String type = null;
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ("_id".equals(fieldName)) {
+              id = parser.getText();
+            } else if ("_type".equals(fieldName)) {
+              type = parser.getText();
+            } else {
+              parser.skipChildren();
+            }
+          }
+          if (id == null || type == null) {
+            throw new JsonParseException(parser, "Incomplete search hit");
+          }
+          keys.add(type + '/' + id);
+        }
+      }
+    }
+    return scrollId;
+  }
+
   private CompletionStage<Void> executeAsync(final Action<? extends JestResult> action) throws Exception {
     CompletableFuture<Void> completableFuture = new CompletableFuture<>();
     jestClient.executeAsync(action, new JestResultHandler<JestResult>() {
@@ -316,13 +555,4 @@ public class JestCatalogEntryRepository implements CatalogEntryRepository, JestB
       throw new RuntimeException(e);
     }
   }
-
-  private static List<ULocale> getFallbackLocales(ULocale locale) {
-    List<ULocale> locales = new ArrayList<>();
-    locales.add(locale);
-    for (ULocale fallbackLocale = locale.getFallback(); fallbackLocale != null; fallbackLocale = fallbackLocale.getFallback()) {
-      locales.add(fallbackLocale);
-    }
-    return locales;
-  }
 }
@@ -0,0 +1,89 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.jongo;
+
+import org.jongo.Jongo;
+import org.jongo.MongoCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.DBObject;
+
+/**
+ * Checks, using the query planner, that query shapes are supported by an index.
+ * <p>
+ * This is meant to be called by {@link JongoBootstrapper}s after they've ensured their indexes, to detect queries that
+ * would end up scanning the whole collection. Queries should be passed as the same constants the repository uses to
+ * run them, so the checked shapes can't drift from the actual queries.
+ */
+public final class JongoQueryShapeChecker {
+  private static final Logger logger = LoggerFactory.getLogger(JongoQueryShapeChecker.class);
+
+  /**
+   * Logs a warning if the query would scan the whole collection.
+   *
+   * @param query      the query, with {@code #} placeholders, as passed to Jongo
+   * @param parameters representative parameters; values don't matter, only the shape of the query does
+   */
+  public static void checkIndexed(Jongo jongo, MongoCollection collection, String query, Object... parameters) {
+    try {
+      DBObject explain = collection.getDBCollection().find(jongo.createQuery(query, parameters).toDBObject()).explain();
+      if (isCollectionScan(explain)) {
+        logger.warn("Query {} on collection {} has no supporting index", query, collection.getName());
+      }
+    } catch (Exception e) {
+      logger.warn("Error checking indexes for query {} on collection {}", query, collection.getName(), e);
+    }
+  }
+
+  private static boolean isCollectionScan(DBObject explain) {
+    Object queryPlanner = explain.get("queryPlanner");
+    if (queryPlanner instanceof DBObject) {
+      return hasCollectionScanStage(((DBObject) queryPlanner).get("winningPlan"));
+    }
+    // Legacy explain format (MongoDB < 3.0)
+    Object cursor = explain.get("cursor");
+    return cursor instanceof String && ((String) cursor).startsWith("BasicCursor");
+  }
+
+  private static boolean hasCollectionScanStage(Object stage) {
+    if (!(stage instanceof DBObject)) {
+      return false;
+    }
+    DBObject plan = (DBObject) stage;
+    if ("COLLSCAN".equals(plan.get("stage"))) {
+      return true;
+    }
+    if (hasCollectionScanStage(plan.get("inputStage"))) {
+      return true;
+    }
+    Object inputStages = plan.get("inputStages");
+    if (inputStages instanceof Iterable) {
+      for (Object inputStage : (Iterable<?>) inputStages) {
+        if (hasCollectionScanStage(inputStage)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private JongoQueryShapeChecker() {
+    // non-instantiable
+  }
+}
@@ -0,0 +1,184 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.jongo;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import oasis.jongo.applications.v2.JongoService;
+import oasis.jongo.guice.JongoModule;
+import oasis.model.applications.v2.Scope;
+import oasis.model.branding.BrandInfo;
+import oasis.services.cache.GenerationalCache;
+
+/**
+ * Process-wide cache of near-static reference data: brands, scopes, and services by redirect URI.
+ *
+ * <p>Those are read on every authorization, consent or login page, but rarely change. Entries are invalidated by the
+ * repositories whenever they change them. Brands can't be changed by the kernel, so they only expire.
+ *
+ * <p>Scopes and services are mutable (and {@link oasis.model.i18n.LocalizableString} isn't thread-safe), so the cache
+ * keeps its own copies and hands out new copies to each caller. Brand infos have no setters and are shared.
+ */
+@Singleton
+public class ReferenceDataCache {
+  /** Shared by all caches, so that a single value can be passed to the {@code put} methods. */
+  private final AtomicLong generation = new AtomicLong();
+  private final GenerationalCache<BrandInfo> brands;
+  private final GenerationalCache<Scope> scopes;
+  private final GenerationalCache<List<Scope>> scopesOfInstance;
+  private final GenerationalCache<Optional<JongoService>> servicesByRedirectUri;
+
+  @Inject ReferenceDataCache(JongoModule.Settings settings) {
+    this.brands = newCache(settings);
+    this.scopes = newCache(settings);
+    this.scopesOfInstance = newCache(settings);
+    this.servicesByRedirectUri = newCache(settings);
+  }
+
+  private <V> GenerationalCache<V> newCache(JongoModule.Settings settings) {
+    return new GenerationalCache<>(settings.referenceDataCacheSize, settings.referenceDataCacheDuration, generation);
+  }
+
+  public long generation() {
+    return generation.get();
+  }
+
+  @Nullable
+  public BrandInfo getBrandInfo(String brandId) {
+    return brandId == null ? null : brands.get(brandId);
+  }
+
+  public void putBrandInfo(String brandId, BrandInfo brandInfo, long generation) {
+    if (brandId != null) {
+      brands.put(brandId, brandInfo, generation);
+    }
+  }
+
+  @Nullable
+  public Scope getScope(String scopeId) {
+    Scope scope = scopeId == null ? null : scopes.get(scopeId);
+    return scope == null ? null : new Scope(scope);
+  }
+
+  public Map<String, Scope> getScopes(Collection<String> scopeIds) {
+    Map<String, Scope> cachedScopes = scopes.getAllPresent(Collections2.filter(scopeIds, Objects::nonNull));
+    return ImmutableMap.copyOf(Maps.transformValues(cachedScopes, Scope::new));
+  }
+
+  public void putScope(Scope scope, long generation) {
+    if (scope.getId() != null) {
+      scopes.put(scope.getId(), new Scope(scope), generation);
+    }
+  }
+
+  @Nullable
+  public List<Scope> getScopesOfInstance(String instanceId) {
+    List<Scope> instanceScopes = instanceId == null ? null : scopesOfInstance.get(instanceId);
+    return instanceScopes == null ? null : copyOf(instanceScopes);
+  }
+
+  public void putScopesOfInstance(String instanceId, List<Scope> instanceScopes, long generation) {
+    if (instanceId != null) {
+      scopesOfInstance.put(instanceId, copyOf(instanceScopes), generation);
+    }
+  }
+
+  public void invalidateScope(Scope scope) {
+    if (scope.getId() != null) {
+      scopes.invalidate(scope.getId());
+    }
+    if (scope.getInstance_id() != null) {
+      scopesOfInstance.invalidate(scope.getInstance_id());
+    } else {
+      scopesOfInstance.invalidateAll();
+    }
+  }
+
+  public void invalidateScopes() {
+    scopes.invalidateAll();
+    scopesOfInstance.invalidateAll();
+  }
+
+  /**
+   * Returns the cached result of looking up a service by redirect URI, or {@code null} if not cached.
+   * <p>
+   * Unknown redirect URIs are cached too, as {@linkplain Optional#empty() empty} values.
+   */
+  @Nullable
+  public Optional<JongoService> getServiceByRedirectUri(String instanceId, String redirect_uri) {
+    Optional<JongoService> service = servicesByRedirectUri.get(key(instanceId, redirect_uri));
+    return service == null ? null : service.map(JongoService::copy);
+  }
+
+  public void putServiceByRedirectUri(String instanceId, String redirect_uri, @Nullable JongoService service,
+      long generation) {
+    servicesByRedirectUri.put(key(instanceId, redirect_uri), Optional.ofNullable(service).map(JongoService::copy),
+        generation);
+  }
+
+  public void invalidateServices() {
+    servicesByRedirectUri.invalidateAll();
+  }
+
+  public long brandsSize() {
+    return brands.size();
+  }
+
+  public CacheStats brandsStats() {
+    return brands.stats();
+  }
+
+  public long scopesSize() {
+    return scopes.size() + scopesOfInstance.size();
+  }
+
+  public CacheStats scopesStats() {
+    return scopes.stats().plus(scopesOfInstance.stats());
+  }
+
+  public long servicesByRedirectUriSize() {
+    return servicesByRedirectUri.size();
+  }
+
+  public CacheStats servicesByRedirectUriStats() {
+    return servicesByRedirectUri.stats();
+  }
+
+  private static List<Scope> copyOf(List<Scope> scopes) {
+    return scopes.stream().map(Scope::new).collect(ImmutableList.toImmutableList());
+  }
+
+  private static String key(String instanceId, String redirect_uri) {
+    return instanceId + ":" + redirect_uri;
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.jongo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.Nullable;
+
+/**
+ * Identity map of the entities loaded by repositories while processing a request.
+ * <p>
+ * Repositories look entities up here before querying the database, so that each entity is loaded at most once per
+ * request, and evict them whenever they update or delete them. Missing entities are remembered too.
+ * <p>
+ * Entities are mutable and callers routinely modify them (e.g. to redact secrets before sending them over the wire),
+ * so the loaded entities are kept private and each caller gets its own copy.
+ * <p>
+ * This is bound in the {@link oasis.web.guice.RequestScoped request scope}; outside a request, repositories get a new
+ * (empty) instance each time, so nothing is cached.
+ */
+public class RequestIdentityMap {
+  private final Map<Class<?>, Map<String, Optional<?>>> entities = new HashMap<>();
+
+  /**
+   * Returns a copy of the entity with the given ID, only loading it if it isn't already known.
+   */
+  @Nullable
+  public <T> T get(Class<T> type, String id, Function<String, T> loader, UnaryOperator<T> copier) {
+    Map<String, Optional<?>> entitiesOfType = entitiesOf(type);
+    Optional<?> entity = entitiesOfType.get(id);
+    if (entity == null) {
+      entity = Optional.ofNullable(loader.apply(id));
+      entitiesOfType.put(id, entity);
+    }
+    return entity.isPresent() ? copier.apply(type.cast(entity.get())) : null;
+  }
+
+  /**
+   * Returns copies of the entities with the given IDs, only loading the ones that aren't already known.
+   * <p>
+   * Entities are returned in the order of their IDs, missing entities are skipped.
+   */
+  public <T> List<T> getAll(Class<T> type, Collection<String> ids, Function<? super T, String> idOf,
+      Function<Collection<String>, Iterable<? extends T>> loader, UnaryOperator<T> copier) {
+    Map<String, Optional<?>> entitiesOfType = entitiesOf(type);
+    Set<String> missingIds = new LinkedHashSet<>();
+    for (String id : ids) {
+      if (!entitiesOfType.containsKey(id)) {
+        missingIds.add(id);
+      }
+    }
+    if (!missingIds.isEmpty()) {
+      for (T entity : loader.apply(missingIds)) {
+        entitiesOfType.put(idOf.apply(entity), Optional.of(entity));
+      }
+      for (String id : missingIds) {
+        entitiesOfType.putIfAbsent(id, Optional.empty());
+      }
+    }
+    List<T> result = new ArrayList<>(ids.size());
+    for (String id : new LinkedHashSet<>(ids)) {
+      Optional<?> entity = entitiesOfType.get(id);
+      if (entity.isPresent()) {
+        result.add(copier.apply(type.cast(entity.get())));
+      }
+    }
+    return result;
+  }
+
+  public void evict(Class<?> type, String id) {
+    Map<String, Optional<?>> entitiesOfType = entities.get(type);
+    if (entitiesOfType != null) {
+      entitiesOfType.remove(id);
+    }
+  }
+
+  public void evictAll(Class<?> type) {
+    entities.remove(type);
+  }
+
+  private Map<String, Optional<?>> entitiesOf(Class<?> type) {
+    return entities.computeIfAbsent(type, t -> new HashMap<>());
+  }
+}
@@ -17,10 +17,13 @@
  */
 package oasis.jongo.accounts;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.inject.Inject;
+import javax.inject.Provider;
 
 import org.jongo.Jongo;
 import org.jongo.MongoCollection;
@@ -33,16 +36,19 @@ import com.mongodb.ErrorCategory;
 import com.mongodb.MongoCommandException;
 
 import oasis.jongo.JongoBootstrapper;
+import oasis.jongo.RequestIdentityMap;
 import oasis.model.InvalidVersionException;
 import oasis.model.accounts.AccountRepository;
 import oasis.model.accounts.UserAccount;
 
 public class JongoAccountRepository implements AccountRepository, JongoBootstrapper {
   private final Jongo jongo;
+  private final Provider<RequestIdentityMap> identityMap;
 
   @Inject
-  JongoAccountRepository(Jongo jongo) {
+  JongoAccountRepository(Jongo jongo, Provider<RequestIdentityMap> identityMap) {
     this.jongo = jongo;
+    this.identityMap = identityMap;
   }
 
   protected MongoCollection getAccountCollection() {
@@ -59,12 +65,30 @@ public class JongoAccountRepository implements AccountRepository, JongoBootstrap
 
   @Override
   public UserAccount getUserAccountById(String id) {
+    return identityMap.get().get(UserAccount.class, id, this::loadUserAccountById,
+        account -> ((JongoUserAccount) account).copy());
+  }
+
+  private UserAccount loadUserAccountById(String id) {
     // XXX: accounts aren't activated until you verify the e-mail address, unless you signed up with FranceConnect
     return this.getAccountCollection()
         .findOne("{ id: #, $or: [ { email_verified: true }, { franceconnect_sub: { $exists: true } } ] }", id)
         .as(JongoUserAccount.class);
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterable<UserAccount> getUserAccountsByIds(Collection<String> ids) {
+    if (ids.isEmpty()) {
+      return Collections.emptyList();
+    }
+    // XXX: accounts aren't activated until you verify the e-mail address, unless you signed up with FranceConnect
+    return (Iterable<UserAccount>) (Iterable<?>) this.getAccountCollection()
+        .find("{ id: { $in: # }, $or: [ { email_verified: true }, { franceconnect_sub: { $exists: true } } ] }", ids)
+        .projection("{ id: 1, given_name: 1, middle_name: 1, family_name: 1, nickname: 1, email_address: 1 }")
+        .as(JongoUserAccount.class);
+  }
+
   @Override
   public UserAccount getUserAccountByFranceConnectSub(String franceconnect_sub) {
     // XXX: accounts aren't activated until you verify the e-mail address, unless you signed up with FranceConnect
@@ -92,6 +116,7 @@ public class JongoAccountRepository implements AccountRepository, JongoBootstrap
   public UserAccount updateAccount(UserAccount account, long[] versions) throws InvalidVersionException {
     String id = account.getId();
     Preconditions.checkArgument(!Strings.isNullOrEmpty(id));
+    identityMap.get().evict(UserAccount.class, id);
     // Copy to get the updated_at field, and reset ID (not copied over) to make sure we won't generate a new one
     account = new JongoUserAccount(account);
     account.setId(id);
@@ -154,6 +179,7 @@ public class JongoAccountRepository implements AccountRepository, JongoBootstrap
 
   @Override
   public UserAccount verifyEmailAddress(String id, boolean markAsActivated) {
+    identityMap.get().evict(UserAccount.class, id);
     // XXX: we use a JongoUserAccount to update the updated_at field
     JongoUserAccount userAccount = new JongoUserAccount();
     // reset ID (not copied over) to make sure we won't generate a new one
@@ -171,6 +197,7 @@ public class JongoAccountRepository implements AccountRepository, JongoBootstrap
 
   @Override
   public UserAccount setEmailAddress(String id, String email) {
+    identityMap.get().evict(UserAccount.class, id);
     // XXX: we use a JongoUserAccount to update the updated_at field
     JongoUserAccount userAccount = new JongoUserAccount();
     // reset ID (not copied over) to make sure we won't generate a new one
@@ -194,6 +221,7 @@ public class JongoAccountRepository implements AccountRepository, JongoBootstrap
 
   @Override
   public boolean linkToFranceConnect(String id, String franceconnect_sub) {
+    identityMap.get().evict(UserAccount.class, id);
     // XXX: we use a JongoUserAccount to update the updated_at field
     JongoUserAccount userAccount = new JongoUserAccount();
     // reset ID (not copied over) to make sure we won't generate a new one
@@ -211,6 +239,7 @@ public class JongoAccountRepository implements AccountRepository, JongoBootstrap
 
   @Override
   public boolean unlinkFranceConnect(String id) {
+    identityMap.get().evict(UserAccount.class, id);
     return getAccountCollection()
         .update("{ id: # }", id)
         .with("{ $unset: { franceconnect_sub: 1 } }")
@@ -219,6 +248,7 @@ public class JongoAccountRepository implements AccountRepository, JongoBootstrap
 
   @Override
   public boolean deleteUserAccount(String id) {
+    identityMap.get().evict(UserAccount.class, id);
     return getAccountCollection()
         .remove("{ id: # }", id)
         .getN() > 0;
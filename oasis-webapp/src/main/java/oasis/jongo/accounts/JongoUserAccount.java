@@ -39,6 +39,15 @@ public class JongoUserAccount extends UserAccount implements HasModified {
     setUpdated_at(System.currentTimeMillis());
   }
 
+  /** Returns a copy of this account, including its {@code id} and {@code updated_at} time (used to compute its ETag). */
+  JongoUserAccount copy() {
+    JongoUserAccount copy = new JongoUserAccount(this);
+    copy.setId(getId());
+    copy.setUpdated_at(getUpdated_at());
+    copy.activated_at = activated_at;
+    return copy;
+  }
+
   @Override
   @JsonIgnore
   public long getModified() {
@@ -0,0 +1,158 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.jongo.applications.v2;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.jongo.MongoCollection;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.google.common.base.Strings;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
+import com.ibm.icu.text.Collator;
+import com.ibm.icu.util.ULocale;
+
+import oasis.model.applications.v2.CatalogEntry;
+import oasis.model.i18n.LocalizableString;
+import oasis.web.i18n.LocaleHelper;
+
+/**
+ * Precomputed, per-locale, sort keys for catalog entries.
+ * <p>
+ * MongoDB cannot sort on localized names (they're stored as {@code name}, {@code name#fr}, {@code name#fr-FR}, etc. and
+ * the sort would need to fallback from one field to another), so we store, for each supported locale, the hex-encoded
+ * ICU collation key of the entry name in that locale. Those keys sort (as binary strings) in the same order as names
+ * compared with the locale's {@link Collator}, so they can be indexed and sorted on in the database.
+ * <p>
+ * The same keys are also indexed in Elasticsearch, where they're used as locale-aware collation keyword fields.
+ */
+public final class CatalogSortKeys {
+  public static final String FIELD = "sort_keys";
+
+  /** Supported locales and the collator for each of them, indexed by language tag. */
+  private static final ImmutableMap<String, Collator> COLLATORS;
+  /** Maps supported locales and their fallbacks (e.g. fr-FR and fr) to the supported locale. */
+  private static final ImmutableMap<ULocale, ULocale> SORT_LOCALES;
+  static {
+    ImmutableMap.Builder<String, Collator> collators = ImmutableMap.builder();
+    collators.put(ULocale.ROOT.toLanguageTag(), Collator.getInstance(ULocale.ROOT).freeze());
+    Map<ULocale, ULocale> sortLocales = new LinkedHashMap<>();
+    for (ULocale supportedLocale : LocaleHelper.SUPPORTED_LOCALES) {
+      collators.put(supportedLocale.toLanguageTag(), Collator.getInstance(supportedLocale).freeze());
+      for (ULocale candidate = supportedLocale; candidate != null && !candidate.equals(ULocale.ROOT); candidate = candidate.getFallback()) {
+        sortLocales.putIfAbsent(candidate, supportedLocale);
+      }
+    }
+    COLLATORS = collators.build();
+    SORT_LOCALES = ImmutableMap.copyOf(sortLocales);
+  }
+
+  /** Returns the locale whose sort key should be used when displaying entries in the given locale. */
+  public static ULocale getSortLocale(@Nullable ULocale displayLocale) {
+    for (ULocale candidate = displayLocale; candidate != null && !candidate.equals(ULocale.ROOT); candidate = candidate.getFallback()) {
+      ULocale sortLocale = SORT_LOCALES.get(candidate);
+      if (sortLocale != null) {
+        return sortLocale;
+      }
+    }
+    return ULocale.ROOT;
+  }
+
+  public static String getSortField(ULocale sortLocale) {
+    return FIELD + "." + sortLocale.toLanguageTag();
+  }
+
+  /** Returns all the locales that {@link #getSortLocale(ULocale)} can return. */
+  public static Iterable<ULocale> getSortLocales() {
+    return () -> COLLATORS.keySet().stream().map(ULocale::forLanguageTag).iterator();
+  }
+
+  static Iterable<String> getSortFields() {
+    return () -> COLLATORS.keySet().stream().map(tag -> FIELD + "." + tag).iterator();
+  }
+
+  /** Returns a comparator consistent with the sort keys for the given sort locale. */
+  public static Comparator<CatalogEntry> getComparator(ULocale sortLocale) {
+    Collator collator = COLLATORS.get(sortLocale.toLanguageTag());
+    return (o1, o2) -> ComparisonChain.start()
+        .compare(getName(o1.getName(), sortLocale), getName(o2.getName(), sortLocale), collator)
+        .compare(o1.getId(), o2.getId())
+        .result();
+  }
+
+  public static ImmutableMap<String, String> compute(@Nullable LocalizableString name) {
+    ImmutableMap.Builder<String, String> sortKeys = ImmutableMap.builder();
+    for (Map.Entry<String, Collator> entry : COLLATORS.entrySet()) {
+      String localizedName = getName(name, ULocale.forLanguageTag(entry.getKey()));
+      sortKeys.put(entry.getKey(),
+          BaseEncoding.base16().lowerCase().encode(entry.getValue().getCollationKey(localizedName).toByteArray()));
+    }
+    return sortKeys.build();
+  }
+
+  /**
+   * Returns a document made of the given catalog entry and its sort keys, to be inserted or used in a {@code $set}.
+   * <p>
+   * Sort keys must be written along with the entry name, so concurrent searches never see an entry without them.
+   */
+  static Object withSortKeys(CatalogEntry catalogEntry) {
+    return new WithSortKeys(catalogEntry);
+  }
+
+  /** Updates the sort keys of the given catalog entry. */
+  static void update(MongoCollection collection, CatalogEntry catalogEntry) {
+    collection.update("{ id: # }", catalogEntry.getId())
+        .with("{ $set: { # : # } }", FIELD, compute(catalogEntry.getName()));
+  }
+
+  /** Query matching entries that lack the sort key for at least one of the supported locales. */
+  static String missingSortKeysQuery() {
+    StringBuilder query = new StringBuilder("{ $or: [ ");
+    String separator = "";
+    for (String sortField : getSortFields()) {
+      query.append(separator).append("{ '").append(sortField).append("': { $exists: false } }");
+      separator = ", ";
+    }
+    return query.append(" ] }").toString();
+  }
+
+  private static String getName(@Nullable LocalizableString name, ULocale locale) {
+    return name == null ? "" : Strings.nullToEmpty(name.get(locale));
+  }
+
+  private static class WithSortKeys {
+    @JsonUnwrapped final CatalogEntry catalogEntry;
+    @JsonProperty(FIELD) final ImmutableMap<String, String> sortKeys;
+
+    WithSortKeys(CatalogEntry catalogEntry) {
+      this.catalogEntry = catalogEntry;
+      this.sortKeys = compute(catalogEntry.getName());
+    }
+  }
+
+  private CatalogSortKeys() {
+    // non-instantiable
+  }
+}
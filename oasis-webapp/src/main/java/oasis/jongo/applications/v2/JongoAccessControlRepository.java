@@ -38,14 +38,20 @@ import oasis.jongo.JongoBootstrapper;
 import oasis.model.InvalidVersionException;
 import oasis.model.applications.v2.AccessControlEntry;
 import oasis.model.applications.v2.AccessControlRepository;
+import oasis.services.authz.AppRoleCache;
+import oasis.services.authz.IntrospectionCache;
 
 public class JongoAccessControlRepository implements AccessControlRepository, JongoBootstrapper {
   private static final Logger logger = LoggerFactory.getLogger(JongoAccessControlRepository.class);
 
   private final Jongo jongo;
+  private final IntrospectionCache introspectionCache;
+  private final AppRoleCache appRoleCache;
 
-  @Inject JongoAccessControlRepository(Jongo jongo) {
+  @Inject JongoAccessControlRepository(Jongo jongo, IntrospectionCache introspectionCache, AppRoleCache appRoleCache) {
     this.jongo = jongo;
+    this.introspectionCache = introspectionCache;
+    this.appRoleCache = appRoleCache;
   }
 
   private MongoCollection getAccessControlEntriesCollection() {
@@ -72,6 +78,10 @@ public class JongoAccessControlRepository implements AccessControlRepository, Jo
     } catch (DuplicateKeyException dke) {
       return null;
     }
+    if (entry.getUser_id() != null) {
+      introspectionCache.invalidateAccount(entry.getUser_id());
+      appRoleCache.invalidateAccount(entry.getUser_id());
+    }
     return entry;
   }
 
@@ -102,8 +112,9 @@ public class JongoAccessControlRepository implements AccessControlRepository, Jo
     Preconditions.checkArgument(!Strings.isNullOrEmpty(aceId));
     Preconditions.checkArgument(!Strings.isNullOrEmpty(userId));
 
+    JongoAccessControlEntry res;
     try {
-      return getAccessControlEntriesCollection()
+      res = getAccessControlEntriesCollection()
           .findAndModify("{ id: #, status: # }", aceId, AccessControlEntry.Status.PENDING)
           .returnNew()
           .with("{ $set: { status: #, user_id: #, accepted: # }, $unset: { email: '', organization_id: '' } }",
@@ -117,6 +128,11 @@ public class JongoAccessControlRepository implements AccessControlRepository, Jo
     } catch (DuplicateKeyException e) {
       throw new oasis.model.DuplicateKeyException();
     }
+    if (res != null) {
+      introspectionCache.invalidateAccount(userId);
+      appRoleCache.invalidateAccount(userId);
+    }
+    return res;
   }
 
   @Override
@@ -137,6 +153,9 @@ public class JongoAccessControlRepository implements AccessControlRepository, Jo
     if (n > 1) {
       logger.error("Deleted {} access control entries with ID {}, that shouldn't have happened", n, id);
     }
+    // We don't know the user ID here, and entries are rarely deleted.
+    introspectionCache.invalidateAll();
+    appRoleCache.invalidateAll();
     return true;
   }
 
@@ -186,9 +205,12 @@ public class JongoAccessControlRepository implements AccessControlRepository, Jo
 
   @Override
   public int deleteAccessControlListForAppInstance(String instanceId) {
-    return getAccessControlEntriesCollection()
+    int n = getAccessControlEntriesCollection()
         .remove("{ instance_id: # }", instanceId)
         .getN();
+    introspectionCache.invalidateAppInstance(instanceId);
+    appRoleCache.invalidateAppInstance(instanceId);
+    return n;
   }
 
   @Override
@@ -40,6 +40,15 @@ public class JongoAppInstance extends AppInstance implements HasModified {
     super(other);
   }
 
+  /** Returns a copy of this instance, including its {@code id} and {@code modified} time (used to compute its ETag). */
+  JongoAppInstance copy() {
+    JongoAppInstance copy = new JongoAppInstance(this);
+    copy.setId(getId());
+    copy.created = created;
+    copy.modified = modified;
+    return copy;
+  }
+
   @Override
   public long getModified() {
     return modified;
@@ -21,12 +21,15 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import javax.inject.Provider;
 
 import org.jongo.Jongo;
 import org.jongo.MongoCollection;
@@ -39,6 +42,8 @@ import com.google.common.primitives.Longs;
 import com.mongodb.DuplicateKeyException;
 
 import oasis.jongo.JongoBootstrapper;
+import oasis.jongo.JongoQueryShapeChecker;
+import oasis.jongo.RequestIdentityMap;
 import oasis.model.InvalidVersionException;
 import oasis.model.applications.v2.AppInstance;
 import oasis.model.applications.v2.AppInstanceRepository;
@@ -47,11 +52,26 @@ public class JongoAppInstanceRepository implements AppInstanceRepository, JongoB
   private static final Logger logger = LoggerFactory.getLogger(AppInstanceRepository.class);
   public static final String COLLECTION_NAME = "app_instances";
 
+  // Queries checked against the indexes at bootstrap
+  private static final String BY_ORGANIZATION = "{ provider_id: # }";
+  private static final String BY_ORGANIZATION_AND_STATUS = "{ provider_id: #, status: # }";
+  private static final String NOT_IN_STATUS_BY_ORGANIZATION = "{ provider_id: #, status: { $ne: # } }";
+  private static final String PERSONAL = "{ instantiator_id: #, provider_id: { $exists: 0 } }";
+  private static final String PERSONAL_AND_STATUS = "{ instantiator_id: #, status: #, provider_id: { $exists: 0 } }";
+  private static final String PERSONAL_OR_ORGANIZATIONS =
+      "{ $or: [ { instantiator_id: #, provider_id: { $exists: 0 } }, { provider_id: { $in: # } } ] }";
+  private static final String PERSONAL_OR_ORGANIZATIONS_AND_STATUS =
+      "{ $or: [ { instantiator_id: #, provider_id: { $exists: 0 } }, { provider_id: { $in: # } } ], status: # }";
+  private static final String STATUS_CHANGED_BEFORE = "{ status: #, status_changed: { $lt: # } }";
+  private static final String BY_APPLICATION = "{ application_id: # }";
+
   private final Jongo jongo;
+  private final Provider<RequestIdentityMap> identityMap;
 
   @Inject
-  JongoAppInstanceRepository(Jongo jongo) {
+  JongoAppInstanceRepository(Jongo jongo, Provider<RequestIdentityMap> identityMap) {
     this.jongo = jongo;
+    this.identityMap = identityMap;
   }
 
   @Override
@@ -68,17 +88,27 @@ public class JongoAppInstanceRepository implements AppInstanceRepository, JongoB
 
   @Override
   public AppInstance getAppInstance(String instanceId) {
+    return identityMap.get().get(AppInstance.class, instanceId, this::loadAppInstance,
+        instance -> ((JongoAppInstance) instance).copy());
+  }
+
+  private AppInstance loadAppInstance(String instanceId) {
     return getAppInstancesCollection()
         .findOne("{ id: # }", instanceId)
         .as(JongoAppInstance.class);
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public Iterable<AppInstance> getAppInstances(Collection<String> instanceIds) {
     if (instanceIds.isEmpty()) {
       return Collections.emptyList();
     }
+    return identityMap.get().getAll(AppInstance.class, instanceIds, AppInstance::getId, this::loadAppInstances,
+        instance -> ((JongoAppInstance) instance).copy());
+  }
+
+  @SuppressWarnings("unchecked")
+  private Iterable<AppInstance> loadAppInstances(Collection<String> instanceIds) {
     return (Iterable<AppInstance>) (Iterable<?>) getAppInstancesCollection()
         .find("{ id: { $in: # } }", ImmutableSet.copyOf(instanceIds))
         .as(JongoAppInstance.class);
@@ -88,7 +118,7 @@ public class JongoAppInstanceRepository implements AppInstanceRepository, JongoB
   @SuppressWarnings("unchecked")
   public Iterable<AppInstance> findByOrganizationId(String organizationId) {
     return (Iterable<AppInstance>) (Iterable<?>) getAppInstancesCollection()
-        .find("{ provider_id: # }", organizationId)
+        .find(BY_ORGANIZATION, organizationId)
         .as(JongoAppInstance.class);
   }
 
@@ -96,7 +126,7 @@ public class JongoAppInstanceRepository implements AppInstanceRepository, JongoB
   @SuppressWarnings("unchecked")
   public Iterable<AppInstance> findByOrganizationIdAndStatus(String organizationId, AppInstance.InstantiationStatus instantiationStatus) {
     return (Iterable<AppInstance>) (Iterable<?>) getAppInstancesCollection()
-        .find("{ provider_id: #, status: # }", organizationId, instantiationStatus)
+        .find(BY_ORGANIZATION_AND_STATUS, organizationId, instantiationStatus)
         .as(JongoAppInstance.class);
   }
 
@@ -104,7 +134,7 @@ public class JongoAppInstanceRepository implements AppInstanceRepository, JongoB
   @SuppressWarnings("unchecked")
   public Iterable<AppInstance> findPersonalInstancesByUserId(String userId) {
     return (Iterable<AppInstance>) (Iterable<?>) getAppInstancesCollection()
-        .find("{ instantiator_id: #, provider_id: { $exists: 0 } }", userId)
+        .find(PERSONAL, userId)
         .as(JongoAppInstance.class);
   }
 
@@ -112,27 +142,55 @@ public class JongoAppInstanceRepository implements AppInstanceRepository, JongoB
   @SuppressWarnings("unchecked")
   public Iterable<AppInstance> findPersonalInstancesByUserIdAndStatus(String userId, AppInstance.InstantiationStatus instantiationStatus) {
     return (Iterable<AppInstance>) (Iterable<?>) getAppInstancesCollection()
-        .find("{ instantiator_id: #, status: #, provider_id: { $exists: 0 } }", userId, instantiationStatus)
+        .find(PERSONAL_AND_STATUS, userId, instantiationStatus)
+        .as(JongoAppInstance.class);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterable<AppInstance> findPersonalAndOrganizationInstances(String userId, Collection<String> organizationIds,
+      @Nullable AppInstance.InstantiationStatus instantiationStatus, int start, int limit) {
+    String query;
+    List<Object> parameters = new ArrayList<>();
+    parameters.add(userId);
+    if (organizationIds.isEmpty()) {
+      query = instantiationStatus == null ? PERSONAL : PERSONAL_AND_STATUS;
+    } else {
+      query = instantiationStatus == null ? PERSONAL_OR_ORGANIZATIONS : PERSONAL_OR_ORGANIZATIONS_AND_STATUS;
+      parameters.add(ImmutableSet.copyOf(organizationIds));
+    }
+    if (instantiationStatus != null) {
+      parameters.add(instantiationStatus);
+    }
+    return (Iterable<AppInstance>) (Iterable<?>) getAppInstancesCollection()
+        .find(query, parameters.toArray())
+        .projection("{ destruction_secret: 0, status_changed_secret: 0, redirect_uri_validation_disabled: 0 }")
+        // Personal instances (without provider_id) sort first, then instances grouped by organization, each group in
+        // creation order; the id breaks ties for stable paging.
+        .sort("{ provider_id: 1, created: 1, id: 1 }")
+        .skip(start)
+        .limit(limit)
         .as(JongoAppInstance.class);
   }
 
   @Override
   public long getNonStoppedCountByOrganizationId(String organizationId) {
     return getAppInstancesCollection()
-        .count("{ provider_id: #, status: { $ne: # } }", organizationId, AppInstance.InstantiationStatus.STOPPED);
+        .count(NOT_IN_STATUS_BY_ORGANIZATION, organizationId, AppInstance.InstantiationStatus.STOPPED);
   }
 
   @Override
   @SuppressWarnings("unchecked")
   public Iterable<AppInstance> findStoppedBefore(Instant stoppedBefore) {
     return (Iterable<AppInstance>) (Iterable<?>) getAppInstancesCollection()
-        .find("{ status: #, status_changed: { $lt: # } }", AppInstance.InstantiationStatus.STOPPED, Date.from(stoppedBefore))
+        .find(STATUS_CHANGED_BEFORE, AppInstance.InstantiationStatus.STOPPED, Date.from(stoppedBefore))
         .as(JongoAppInstance.class);
   }
 
   @Override
   public AppInstance updateStatus(String instanceId, AppInstance.InstantiationStatus newStatus, String statusChangeRequesterId) {
     checkArgument(checkNotNull(newStatus) != AppInstance.InstantiationStatus.PENDING);
+    identityMap.get().evict(AppInstance.class, instanceId);
 
     Instant now = Instant.now();
     return getAppInstancesCollection()
@@ -147,6 +205,7 @@ public class JongoAppInstanceRepository implements AppInstanceRepository, JongoB
   public AppInstance updateStatus(String instanceId, AppInstance.InstantiationStatus newStatus, String statusChangeRequesterId, long[] versions)
       throws InvalidVersionException {
     checkArgument(checkNotNull(newStatus) != AppInstance.InstantiationStatus.PENDING);
+    identityMap.get().evict(AppInstance.class, instanceId);
 
     Instant now = Instant.now();
     JongoAppInstance appInstance = getAppInstancesCollection()
@@ -166,27 +225,34 @@ public class JongoAppInstanceRepository implements AppInstanceRepository, JongoB
 
   @Override
   public AppInstance instantiated(String instanceId, List<AppInstance.NeededScope> neededScopes, String destruction_uri, String destruction_secret,
-      String status_changed_uri, String status_changed_secret, AppInstance.InstantiationStatus status) {
+      String status_changed_uri, String status_changed_secret, @Nullable String id_token_signed_response_alg,
+      @Nullable String userinfo_signed_response_alg, AppInstance.InstantiationStatus status) {
     Preconditions.checkArgument(status == AppInstance.InstantiationStatus.RUNNING || status == AppInstance.InstantiationStatus.STOPPED);
+    identityMap.get().evict(AppInstance.class, instanceId);
     AppInstance instance = getAppInstancesCollection()
         .findAndModify("{ id: #, status: # }", instanceId, AppInstance.InstantiationStatus.PENDING)
-        .with("{ $set: { status: #, needed_scopes: #, destruction_uri: #, destruction_secret: #, status_changed_uri: #, status_changed_secret: #, provisioned: # } }",
-            status, neededScopes, destruction_uri, destruction_secret, status_changed_uri, status_changed_secret, System.currentTimeMillis())
+        .with("{ $set: { status: #, needed_scopes: #, destruction_uri: #, destruction_secret: #, status_changed_uri: #, status_changed_secret: #,"
+                + " id_token_signed_response_alg: #, userinfo_signed_response_alg: #, provisioned: # } }",
+            status, neededScopes, destruction_uri, destruction_secret, status_changed_uri, status_changed_secret,
+            id_token_signed_response_alg, userinfo_signed_response_alg, System.currentTimeMillis())
         .as(AppInstance.class);
     return instance;
   }
 
   @Override
   public AppInstance backToPending(String instanceId) {
+    identityMap.get().evict(AppInstance.class, instanceId);
     return getAppInstancesCollection()
         .findAndModify("{ id: #, status: { $ne: # } }", instanceId, AppInstance.InstantiationStatus.PENDING)
-        .with("{ $set: { status: # }, $unset: { needed_scopes: 1, destruction_uri: 1, destruction_secret: 1, provisioned: 1 } }",
+        .with("{ $set: { status: # }, $unset: { needed_scopes: 1, destruction_uri: 1, destruction_secret: 1,"
+            + " id_token_signed_response_alg: 1, userinfo_signed_response_alg: 1, provisioned: 1 } }",
             AppInstance.InstantiationStatus.PENDING)
         .as(AppInstance.class);
   }
 
   @Override
   public boolean deleteInstance(String instanceId) {
+    identityMap.get().evict(AppInstance.class, instanceId);
     return getAppInstancesCollection()
         .remove("{ id: # }", instanceId)
         .getN() != 0;
@@ -194,6 +260,7 @@ public class JongoAppInstanceRepository implements AppInstanceRepository, JongoB
 
   @Override
   public boolean deleteInstance(String instanceId, long[] versions) throws InvalidVersionException {
+    identityMap.get().evict(AppInstance.class, instanceId);
     int n = getAppInstancesCollection()
         .remove("{ id: #, modified: { $in: # } }", instanceId, Longs.asList(versions))
         .getN();
@@ -215,13 +282,29 @@ public class JongoAppInstanceRepository implements AppInstanceRepository, JongoB
   @SuppressWarnings("unchecked")
   public Iterable<AppInstance> getInstancesForApplication(String applicationId) {
     return (Iterable<AppInstance>) (Iterable<?>) getAppInstancesCollection()
-        .find("{ application_id: # }", applicationId)
+        .find(BY_APPLICATION, applicationId)
         .as(JongoAppInstance.class);
   }
 
   @Override
   public void bootstrap() {
     getAppInstancesCollection().ensureIndex("{ id: 1 }", "{ unique: 1 }");
+    getAppInstancesCollection().ensureIndex("{ provider_id: 1, status: 1 }");
+    getAppInstancesCollection().ensureIndex("{ instantiator_id: 1, status: 1 }");
+    getAppInstancesCollection().ensureIndex("{ application_id: 1 }");
+    getAppInstancesCollection().ensureIndex("{ status: 1, status_changed: 1 }");
+
+    AppInstance.InstantiationStatus status = AppInstance.InstantiationStatus.RUNNING;
+    ImmutableSet<String> ids = ImmutableSet.of("x");
+    JongoQueryShapeChecker.checkIndexed(jongo, getAppInstancesCollection(), BY_ORGANIZATION, "x");
+    JongoQueryShapeChecker.checkIndexed(jongo, getAppInstancesCollection(), BY_ORGANIZATION_AND_STATUS, "x", status);
+    JongoQueryShapeChecker.checkIndexed(jongo, getAppInstancesCollection(), NOT_IN_STATUS_BY_ORGANIZATION, "x", status);
+    JongoQueryShapeChecker.checkIndexed(jongo, getAppInstancesCollection(), PERSONAL, "x");
+    JongoQueryShapeChecker.checkIndexed(jongo, getAppInstancesCollection(), PERSONAL_AND_STATUS, "x", status);
+    JongoQueryShapeChecker.checkIndexed(jongo, getAppInstancesCollection(), PERSONAL_OR_ORGANIZATIONS, "x", ids);
+    JongoQueryShapeChecker.checkIndexed(jongo, getAppInstancesCollection(), PERSONAL_OR_ORGANIZATIONS_AND_STATUS, "x", ids, status);
+    JongoQueryShapeChecker.checkIndexed(jongo, getAppInstancesCollection(), STATUS_CHANGED_BEFORE, status, new Date(0));
+    JongoQueryShapeChecker.checkIndexed(jongo, getAppInstancesCollection(), BY_APPLICATION, "x");
   }
 
   private MongoCollection getAppInstancesCollection() {
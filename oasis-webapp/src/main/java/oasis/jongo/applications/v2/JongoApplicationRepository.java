@@ -17,6 +17,9 @@
  */
 package oasis.jongo.applications.v2;
 
+import java.util.Collection;
+import java.util.Set;
+
 import javax.inject.Inject;
 
 import org.jongo.Jongo;
@@ -24,6 +27,7 @@ import org.jongo.MongoCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableSet;
 import com.mongodb.DuplicateKeyException;
 
 import oasis.jongo.JongoBootstrapper;
@@ -55,11 +59,27 @@ public class JongoApplicationRepository implements ApplicationRepository, JongoB
         .as(JongoApplication.class);
   }
 
+  /** Returns those of the given IDs that exist in the database (whether they're in the catalog or not). */
+  public Set<String> getExistingIds(Collection<String> ids) {
+    return ImmutableSet.copyOf(getApplicationsCollection()
+        .find("{ id: { $in: # } }", ImmutableSet.copyOf(ids))
+        .projection("{ id: 1 }")
+        .map(result -> (String) result.get("id"))
+        .iterator());
+  }
+
+  /** Returns all entries (whether they're in the catalog or not) modified since the given time, in milliseconds since the epoch. */
+  public Iterable<JongoApplication> getModifiedSince(long modified) {
+    return getApplicationsCollection()
+        .find("{ modified: { $gte: # } }", modified)
+        .as(JongoApplication.class);
+  }
+
   @Override
   public Application createApplication(Application application) {
     application = new JongoApplication(application);
     try {
-      getApplicationsCollection().insert(application);
+      getApplicationsCollection().insert(CatalogSortKeys.withSortKeys(application));
     } catch (DuplicateKeyException e) {
       return null;
     }
@@ -85,6 +105,8 @@ public class JongoApplicationRepository implements ApplicationRepository, JongoB
   @Override
   public void bootstrap() {
     getApplicationsCollection().ensureIndex("{ id : 1 }", "{ unique: 1 }");
+    // Used by the ReconcileCatalogIndex tool
+    getApplicationsCollection().ensureIndex("{ modified: 1 }");
   }
 
   private MongoCollection getApplicationsCollection() {
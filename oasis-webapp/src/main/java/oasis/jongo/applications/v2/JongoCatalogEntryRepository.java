@@ -17,9 +17,14 @@
  */
 package oasis.jongo.applications.v2;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.StringJoiner;
 import java.util.function.Function;
@@ -35,13 +40,16 @@ import org.jongo.MongoCollection;
 
 import com.google.common.base.Predicates;
 import com.google.common.base.Strings;
-import com.google.common.collect.ComparisonChain;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.ObjectArrays;
 import com.google.common.collect.Streams;
 import com.google.common.primitives.Longs;
-import com.ibm.icu.text.Collator;
-import com.ibm.icu.util.LocaleMatcher;
 import com.ibm.icu.util.LocalePriorityList;
 import com.ibm.icu.util.ULocale;
 
@@ -49,13 +57,20 @@ import oasis.jongo.JongoBootstrapper;
 import oasis.model.InvalidVersionException;
 import oasis.model.applications.v2.CatalogEntry;
 import oasis.model.applications.v2.CatalogEntryRepository;
+import oasis.model.applications.v2.ImmutableCatalogEntryRepository;
 import oasis.model.applications.v2.Service;
 import oasis.model.applications.v2.SimpleCatalogEntry;
 import oasis.model.bootstrap.ClientIds;
+import oasis.model.i18n.LocaleMatchers;
 
 @Value.Enclosing
 public class JongoCatalogEntryRepository implements CatalogEntryRepository, JongoBootstrapper {
 
+  private static final SearchRequest ALL_ENTRIES = ImmutableCatalogEntryRepository.SearchRequest.builder()
+      .start(0)
+      .limit(0)
+      .build();
+
   private final Jongo jongo;
 
   @Inject
@@ -73,7 +88,7 @@ public class JongoCatalogEntryRepository implements CatalogEntryRepository, Jong
 
   static <T extends CatalogEntry> T addPortal(MongoCollection collection, Class<T> clazz, String type, String catalogEntryId, String portalId, long[] versions) throws InvalidVersionException {
     T result = collection.findAndModify("{ id: #, modified: { $in: # } }", catalogEntryId, Longs.asList(versions))
-        .with("{ $addToSet: { portals: # } }", portalId)
+        .with("{ $addToSet: { portals: # }, $set: { modified: # } }", portalId, System.currentTimeMillis())
         .returnNew()
         .as(clazz);
     if (result == null) {
@@ -87,7 +102,7 @@ public class JongoCatalogEntryRepository implements CatalogEntryRepository, Jong
 
   static <T extends CatalogEntry> T removePortal(MongoCollection collection, Class<T> clazz, String type, String catalogEntryId, String portalId, long[] versions) throws InvalidVersionException {
     T result = collection.findAndModify("{ id: #, modified: { $in: # } }", catalogEntryId, Longs.asList(versions))
-        .with("{ $pull: { portals: # } }", portalId)
+        .with("{ $pull: { portals: # }, $set: { modified: # } }", portalId, System.currentTimeMillis())
         .returnNew()
         .as(clazz);
     if (result == null) {
@@ -107,28 +122,80 @@ public class JongoCatalogEntryRepository implements CatalogEntryRepository, Jong
           .with("{ $set: { portals: [ # ] } }", ClientIds.PORTAL);
 
       collection.ensureIndex("{ portals: 1 }");
+
+      for (String sortField : CatalogSortKeys.getSortFields()) {
+        collection.ensureIndex("{ '" + sortField + "': 1, id: 1 }");
+      }
+      // Compute missing sort keys: entries created before sort keys existed, or locales that have been added since.
+      // Keys aren't recomputed when collation rules change (e.g. on an ICU upgrade): $unset them to force it.
+      for (SimpleCatalogEntry catalogEntry : collection.find(CatalogSortKeys.missingSortKeysQuery())
+          .projection("{ sort_keys: 0 }")
+          .as(SimpleCatalogEntry.class)) {
+        CatalogSortKeys.update(collection, catalogEntry);
+      }
     });
   }
 
   @Override
   public Iterable<SimpleCatalogEntry> search(final SearchRequest request) {
     final FindHelper findHelper = FindHelper.create(request);
-    return Stream.concat(
-        findHelper.findAll(getApplicationsCollection(), CatalogEntry.EntryType.APPLICATION),
-        findHelper.findAll(getServicesCollection(), CatalogEntry.EntryType.SERVICE)
-    )
+    // Entries are sorted in the database (using precomputed sort keys) so we only load what's needed to build the
+    // requested page: merge both sorted streams, and stop as soon as we reach the requested number of entries.
+    // Note: when filtering on supported_locale, entries are filtered (lazily) in memory.
+    final int maxResults = findHelper.hasInMemoryFilter() ? 0 : request.start() + request.limit();
+    return Streams.stream(Iterators.mergeSorted(ImmutableList.of(
+        findHelper.findSorted(getApplicationsCollection(), CatalogEntry.EntryType.APPLICATION, maxResults),
+        findHelper.findSorted(getServicesCollection(), CatalogEntry.EntryType.SERVICE, maxResults)
+    ), findHelper.getComparator()))
         .filter(findHelper.getSupportedLocalesPredicate())
-        .sorted(findHelper.getComparator())
-        .map(findHelper.getDisplayLocaleFunction())
         .skip(request.start())
         .limit(request.limit())
+        .map(findHelper.getDisplayLocaleFunction())
         ::iterator;
   }
 
+  /**
+   * Returns all the entries that could be returned by {@link #search(SearchRequest)}, in no particular order.
+   * <p>
+   * Entries are returned with all their localized values.
+   */
+  public Iterable<SimpleCatalogEntry> getAllSearchableEntries() {
+    final FindHelper findHelper = FindHelper.create(ALL_ENTRIES);
+    return () -> Iterators.concat(
+        findHelper.find(getApplicationsCollection(), CatalogEntry.EntryType.APPLICATION),
+        findHelper.find(getServicesCollection(), CatalogEntry.EntryType.SERVICE));
+  }
+
+  /**
+   * Returns the given entry if it could be returned by {@link #search(SearchRequest)}, or {@code null} otherwise.
+   * <p>
+   * The entry is returned with all its localized values.
+   */
+  @Nullable
+  public SimpleCatalogEntry getSearchableEntry(CatalogEntry.EntryType type, String id) {
+    final MongoCollection collection;
+    switch (type) {
+      case APPLICATION:
+        collection = getApplicationsCollection();
+        break;
+      case SERVICE:
+        collection = getServicesCollection();
+        break;
+      default:
+        throw new IllegalArgumentException();
+    }
+    return FindHelper.create(ALL_ENTRIES).findOne(collection, type, id);
+  }
+
   private static class FindHelper {
     private static final ResourceBundle.Control control = ResourceBundle.Control.getNoFallbackControl(
         ResourceBundle.Control.FORMAT_DEFAULT);
     private static final ULocale UNKNOWN_LOCALE = new ULocale("und");
+    private static final ImmutableMap<String, Integer> NO_DISPLAY_LOCALE_FIELDS = computeFields(null);
+    /** Projections are memoized per display locale, as computing candidate locales is costly. */
+    private static final LoadingCache<ULocale, ImmutableMap<String, Integer>> DISPLAY_LOCALE_FIELDS = CacheBuilder.newBuilder()
+        .maximumSize(100)
+        .build(CacheLoader.from(FindHelper::computeFields));
 
     static FindHelper create(final SearchRequest request) {
       StringJoiner query = new StringJoiner(", ", "{ ", " }");
@@ -149,8 +216,30 @@ public class JongoCatalogEntryRepository implements CatalogEntryRepository, Jong
       query.add("status: { $ne: # }");
       params.add(Service.Status.NOT_AVAILABLE);
 
-      ImmutableMap.Builder<String, Integer> fields = ImmutableMap.builder();
-      if (request.displayLocale() != null) {
+      final ULocale sortLocale = CatalogSortKeys.getSortLocale(request.displayLocale());
+
+      final @Nullable LocalePriorityList supportedLocales;
+      if (request.supported_locale().isEmpty()) {
+        supportedLocales = null;
+      } else {
+        supportedLocales = LocalePriorityList.add(Iterables.toArray(request.supported_locale(), ULocale.class)).build();
+      }
+
+      return new FindHelper(
+          query.toString(),
+          params.build().toArray(),
+          request.displayLocale() == null ? NO_DISPLAY_LOCALE_FIELDS : DISPLAY_LOCALE_FIELDS.getUnchecked(request.displayLocale()),
+          supportedLocales,
+          request.displayLocale(),
+          sortLocale
+      );
+    }
+
+    /** Computes the projection for the given display locale. */
+    private static ImmutableMap<String, Integer> computeFields(@Nullable ULocale displayLocale) {
+      final ULocale sortLocale = CatalogSortKeys.getSortLocale(displayLocale);
+      Map<String, Integer> fields = new LinkedHashMap<>();
+      if (displayLocale != null) {
         // Include all catalog entry fields.
         // (EXCEPT 'visible', explicitly set to 'true' later; see above wrt visible vs. visibility)
         // For localizable fields, include derivatives computed from the requested locale (e.g. if the
@@ -168,7 +257,7 @@ public class JongoCatalogEntryRepository implements CatalogEntryRepository, Jong
         fields.put("screenshot_uris", 1);
         fields.put("portals", 1);
         fields.put("modified", 1); // used to compute ETag eventually
-        for (Locale candidateLocale : control.getCandidateLocales("", request.displayLocale().toLocale())) {
+        for (Locale candidateLocale : control.getCandidateLocales("", displayLocale.toLocale())) {
           final String suffix = Locale.ROOT.equals(candidateLocale)
               ? ""
               : "#" + candidateLocale.toLanguageTag();
@@ -178,6 +267,10 @@ public class JongoCatalogEntryRepository implements CatalogEntryRepository, Jong
           fields.put("tos_uri" + suffix, 1);
           fields.put("policy_uri" + suffix, 1);
         }
+        // Also include names used for sorting (for merging applications and services)
+        for (Locale candidateLocale : control.getCandidateLocales("", sortLocale.toLocale())) {
+          fields.put(Locale.ROOT.equals(candidateLocale) ? "name" : "name#" + candidateLocale.toLanguageTag(), 1);
+        }
       } else {
         // Exclude all application- and service-specific fields.
         // TODO: compute from model classes instead of hard-coding the list.
@@ -195,22 +288,10 @@ public class JongoCatalogEntryRepository implements CatalogEntryRepository, Jong
         fields.put("post_logout_redirect_uris", 0);
         fields.put("subscription_uri", 0);
         fields.put("subscription_secret", 0);
-      }
 
-      final @Nullable LocalePriorityList supportedLocales;
-      if (request.supported_locale().isEmpty()) {
-        supportedLocales = null;
-      } else {
-        supportedLocales = LocalePriorityList.add(Iterables.toArray(request.supported_locale(), ULocale.class)).build();
+        fields.put(CatalogSortKeys.FIELD, 0);
       }
-
-      return new FindHelper(
-          query.toString(),
-          params.build().toArray(),
-          fields.build(),
-          supportedLocales,
-          request.displayLocale()
-      );
+      return ImmutableMap.copyOf(fields);
     }
 
     private static void addIfNotEmpty(Collection<?> col, String fieldName,
@@ -225,28 +306,22 @@ public class JongoCatalogEntryRepository implements CatalogEntryRepository, Jong
     private final String query;
     private final Object[] queryParams;
     private final ImmutableMap<String, Integer> fields;
-    private final Comparator<SimpleCatalogEntry> comparator;
+    private final String sortField;
+    private final Comparator<? super SimpleCatalogEntry> comparator;
+    private final boolean hasInMemoryFilter;
     private final Predicate<SimpleCatalogEntry> supportedLocalesPredicate;
     private final Function<SimpleCatalogEntry, SimpleCatalogEntry> displayLocaleFunction;
 
     private FindHelper(String query, Object[] queryParams, ImmutableMap<String, Integer> fields,
-        final @Nullable LocalePriorityList supportedLocales, final @Nullable ULocale displayLocale) {
+        final @Nullable LocalePriorityList supportedLocales, final @Nullable ULocale displayLocale, ULocale sortLocale) {
       this.query = query;
       this.queryParams = queryParams;
       this.fields = fields;
-      // XXX: we can't sort on the server due to https://jira.mongodb.org/browse/SERVER-1920,
-      // so we're forced to load and then sort everything here, in memory!
-      this.comparator = new Comparator<SimpleCatalogEntry>() {
-        final ULocale locale = displayLocale == null ? ULocale.ROOT : displayLocale;
-        final Collator collator = Collator.getInstance(locale);
-
-        @Override
-        public int compare(SimpleCatalogEntry o1, SimpleCatalogEntry o2) {
-          return ComparisonChain.start()
-              .compare(o1.getName().get(locale), o2.getName().get(locale), collator)
-              .result();
-        }
-      };
+      // XXX: we can't sort on localized names on the server due to https://jira.mongodb.org/browse/SERVER-1920,
+      // so we sort on precomputed collation keys instead.
+      this.sortField = CatalogSortKeys.getSortField(sortLocale);
+      this.comparator = CatalogSortKeys.getComparator(sortLocale);
+      this.hasInMemoryFilter = supportedLocales != null;
       this.supportedLocalesPredicate = supportedLocales == null
           ? Predicates.alwaysTrue()
           : input -> {
@@ -255,7 +330,8 @@ public class JongoCatalogEntryRepository implements CatalogEntryRepository, Jong
                 return false;
               }
               // UNKNOWN_LOCALE is the first, so will be returned if nothing else matches.
-              LocalePriorityList.Builder entrySupportedLocales = LocalePriorityList.add(UNKNOWN_LOCALE);
+              List<ULocale> entrySupportedLocales = new ArrayList<>(input.getSupported_locales().size() + 1);
+              entrySupportedLocales.add(UNKNOWN_LOCALE);
               for (ULocale locale : input.getSupported_locales()) {
                 if (UNKNOWN_LOCALE.equals(locale)) {
                   continue; // Don't add UNKNOWN_LOCALE twice, it would no longer be first
@@ -263,7 +339,7 @@ public class JongoCatalogEntryRepository implements CatalogEntryRepository, Jong
                 entrySupportedLocales.add(locale);
               }
               return !UNKNOWN_LOCALE.equals(
-                  new LocaleMatcher(entrySupportedLocales.build()).getBestMatch(supportedLocales));
+                  LocaleMatchers.get(entrySupportedLocales).getBestMatch(supportedLocales));
             };
       this.displayLocaleFunction = displayLocale == null
           ? Function.identity()
@@ -273,10 +349,14 @@ public class JongoCatalogEntryRepository implements CatalogEntryRepository, Jong
             };
     }
 
-    public Comparator<SimpleCatalogEntry> getComparator() {
+    public Comparator<? super SimpleCatalogEntry> getComparator() {
       return comparator;
     }
 
+    public boolean hasInMemoryFilter() {
+      return hasInMemoryFilter;
+    }
+
     public Predicate<SimpleCatalogEntry> getSupportedLocalesPredicate() {
       return supportedLocalesPredicate;
     }
@@ -285,18 +365,47 @@ public class JongoCatalogEntryRepository implements CatalogEntryRepository, Jong
       return displayLocaleFunction;
     }
 
-    public Stream<SimpleCatalogEntry> findAll(MongoCollection collection, final CatalogEntry.EntryType type) {
-      return Streams.stream(
+    /**
+     * Returns entries sorted by name.
+     *
+     * @param maxResults the maximum number of entries to return, or {@code 0} for no limit
+     */
+    public Iterator<SimpleCatalogEntry> findSorted(MongoCollection collection, final CatalogEntry.EntryType type, int maxResults) {
+      return Iterators.transform(
           collection
               .find(query, queryParams)
               .projection("#", fields)
+              .sort("{ '" + sortField + "': 1, id: 1 }")
+              .limit(maxResults)
               .as(SimpleCatalogEntry.class)
-              .iterator())
-          .peek(input -> {
-            input.setType(type);
-            // XXX: also forcibly set visible to true (see above wrt visible vs. visibility)
-            input.setVisible(true);
-          });
+              .iterator(),
+          input -> fixup(input, type));
+    }
+
+    public Iterator<SimpleCatalogEntry> find(MongoCollection collection, final CatalogEntry.EntryType type) {
+      return Iterators.transform(
+          collection
+              .find(query, queryParams)
+              .projection("#", fields)
+              .as(SimpleCatalogEntry.class)
+              .iterator(),
+          input -> fixup(input, type));
+    }
+
+    @Nullable
+    public SimpleCatalogEntry findOne(MongoCollection collection, CatalogEntry.EntryType type, String id) {
+      SimpleCatalogEntry entry = collection
+          .findOne("{ $and: [ " + query + ", { id: # } ] }", ObjectArrays.concat(queryParams, id))
+          .projection("#", fields)
+          .as(SimpleCatalogEntry.class);
+      return entry == null ? null : fixup(entry, type);
+    }
+
+    private static SimpleCatalogEntry fixup(SimpleCatalogEntry input, CatalogEntry.EntryType type) {
+      input.setType(type);
+      // XXX: also forcibly set visible to true (see above wrt visible vs. visibility)
+      input.setVisible(true);
+      return input;
     }
   }
 }
@@ -17,24 +17,37 @@
  */
 package oasis.jongo.applications.v2;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
+import javax.inject.Provider;
 
 import org.jongo.Jongo;
 import org.jongo.MongoCollection;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import oasis.jongo.JongoBootstrapper;
+import oasis.jongo.ReferenceDataCache;
+import oasis.jongo.RequestIdentityMap;
 import oasis.model.applications.v2.Scope;
 import oasis.model.applications.v2.ScopeRepository;
 
 public class JongoScopeRepository implements ScopeRepository, JongoBootstrapper {
   private final Jongo jongo;
+  private final Provider<RequestIdentityMap> identityMap;
+  private final ReferenceDataCache referenceDataCache;
 
-  @Inject JongoScopeRepository(Jongo jongo) {
+  @Inject JongoScopeRepository(Jongo jongo, Provider<RequestIdentityMap> identityMap, ReferenceDataCache referenceDataCache) {
     this.jongo = jongo;
+    this.identityMap = identityMap;
+    this.referenceDataCache = referenceDataCache;
   }
 
   private MongoCollection getScopesCollection() {
@@ -43,58 +56,106 @@ public class JongoScopeRepository implements ScopeRepository, JongoBootstrapper
 
   @Override
   public Scope getScope(String scopeId) {
-    return getScopesCollection()
-        .findOne("{ id: # }", scopeId)
-        .as(Scope.class);
+    return identityMap.get().get(Scope.class, scopeId, this::loadScope, Scope::new);
+  }
+
+  private Scope loadScope(String scopeId) {
+    Scope scope = referenceDataCache.getScope(scopeId);
+    if (scope == null) {
+      long generation = referenceDataCache.generation();
+      scope = getScopesCollection()
+          .findOne("{ id: # }", scopeId)
+          .as(Scope.class);
+      if (scope != null) {
+        referenceDataCache.putScope(scope, generation);
+      }
+    }
+    return scope;
   }
 
   @Override
   public Iterable<Scope> getScopes(Collection<String> scopeIds) {
-    // TODO: Improve performance by merging all requests into one request
     // XXX: What should be the behavior of this request if one of the scope id is not present in the database ?
     // XXX: Should we throw an error, return an empty iterable or just ignore it and return all found scopes ?
-    ImmutableList.Builder<Scope> builder = ImmutableList.builder();
-    for (String scopeId : scopeIds) {
-      Scope scope = getScope(scopeId);
-      if (scope == null) {
-        throw new IllegalArgumentException("The scope " + scopeId + " does not exist.");
-      }
-      builder.add(scope);
+    if (scopeIds.isEmpty()) {
+      return ImmutableList.of();
     }
-    return builder.build();
+    List<Scope> scopes = identityMap.get().getAll(Scope.class, scopeIds, Scope::getId, this::loadScopes, Scope::new);
+    if (scopes.size() != ImmutableSet.copyOf(scopeIds).size()) {
+      Set<String> missingScopeIds = new LinkedHashSet<>(scopeIds);
+      scopes.forEach(scope -> missingScopeIds.remove(scope.getId()));
+      throw new IllegalArgumentException("The scope " + missingScopeIds.iterator().next() + " does not exist.");
+    }
+    return scopes;
+  }
+
+  private Iterable<Scope> loadScopes(Collection<String> scopeIds) {
+    Map<String, Scope> cachedScopes = referenceDataCache.getScopes(scopeIds);
+    if (cachedScopes.size() == scopeIds.size()) {
+      return cachedScopes.values();
+    }
+    List<Scope> scopes = new ArrayList<>(cachedScopes.values());
+    Set<String> missingScopeIds = new LinkedHashSet<>(scopeIds);
+    missingScopeIds.removeAll(cachedScopes.keySet());
+    long generation = referenceDataCache.generation();
+    for (Scope scope : getScopesCollection()
+        .find("{ id: { $in: # } }", missingScopeIds)
+        .as(Scope.class)) {
+      referenceDataCache.putScope(scope, generation);
+      scopes.add(scope);
+    }
+    return scopes;
   }
 
   @Override
   public Iterable<Scope> getScopesOfAppInstance(String instanceId) {
-    return getScopesCollection()
-        .find("{ instance_id: # }", instanceId)
-        .as(Scope.class);
+    List<Scope> scopes = referenceDataCache.getScopesOfInstance(instanceId);
+    if (scopes == null) {
+      long generation = referenceDataCache.generation();
+      scopes = ImmutableList.copyOf(getScopesCollection()
+          .find("{ instance_id: # }", instanceId)
+          .as(Scope.class)
+          .iterator());
+      referenceDataCache.putScopesOfInstance(instanceId, scopes, generation);
+    }
+    return scopes;
   }
 
   @Override
   public Scope createOrUpdateScope(Scope scope) {
+    identityMap.get().evict(Scope.class, scope.getId());
     getScopesCollection()
         .update("{ id: # }", scope.getId())
         .upsert()
         .with(scope);
+    referenceDataCache.invalidateScope(scope);
     return scope;
   }
 
   @Override
   public int deleteScopesOfAppInstances(Iterable<String> instanceIds) {
-    return getScopesCollection().remove("{ instance_id: { $in: # } }", instanceIds).getN();
+    identityMap.get().evictAll(Scope.class);
+    int n = getScopesCollection().remove("{ instance_id: { $in: # } }", instanceIds).getN();
+    referenceDataCache.invalidateScopes();
+    return n;
   }
 
   @Override
   public int deleteScopesOfAppInstance(String instanceId) {
-    return getScopesCollection().remove("{ instance_id: # }", instanceId).getN();
+    identityMap.get().evictAll(Scope.class);
+    int n = getScopesCollection().remove("{ instance_id: # }", instanceId).getN();
+    referenceDataCache.invalidateScopes();
+    return n;
   }
 
   @Override
   public int deleteOtherScopesOfAppInstance(String instanceId, Iterable<String> localScopeIdsToKeep) {
-    return getScopesCollection()
+    identityMap.get().evictAll(Scope.class);
+    int n = getScopesCollection()
         .remove("{ instance_id: #, local_id: { $nin: # } }", instanceId, localScopeIdsToKeep)
         .getN();
+    referenceDataCache.invalidateScopes();
+    return n;
   }
 
   @Override
@@ -40,6 +40,15 @@ public class JongoService extends Service implements HasModified {
     super(other);
   }
 
+  /** Returns a copy of this service, including its {@code id} and {@code modified} time (used to compute its ETag). */
+  public JongoService copy() {
+    JongoService copy = new JongoService(this);
+    copy.setId(getId());
+    copy.created = created;
+    copy.modified = modified;
+    return copy;
+  }
+
   @Override
   public long getModified() {
     return modified;
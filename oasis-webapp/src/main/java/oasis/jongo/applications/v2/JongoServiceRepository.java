@@ -17,10 +17,14 @@
  */
 package oasis.jongo.applications.v2;
 
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import javax.inject.Inject;
+import javax.inject.Provider;
 
 import org.jongo.Jongo;
 import org.jongo.MongoCollection;
@@ -29,10 +33,13 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.primitives.Longs;
 import com.mongodb.DuplicateKeyException;
 
 import oasis.jongo.JongoBootstrapper;
+import oasis.jongo.ReferenceDataCache;
+import oasis.jongo.RequestIdentityMap;
 import oasis.model.InvalidVersionException;
 import oasis.model.applications.v2.Service;
 import oasis.model.applications.v2.ServiceRepository;
@@ -43,10 +50,14 @@ public class JongoServiceRepository implements ServiceRepository, JongoBootstrap
   static final String SERVICES_COLLECTION = "services";
 
   private final Jongo jongo;
+  private final Provider<RequestIdentityMap> identityMap;
+  private final ReferenceDataCache referenceDataCache;
 
   @Inject
-  JongoServiceRepository(Jongo jongo) {
+  JongoServiceRepository(Jongo jongo, Provider<RequestIdentityMap> identityMap, ReferenceDataCache referenceDataCache) {
     this.jongo = jongo;
+    this.identityMap = identityMap;
+    this.referenceDataCache = referenceDataCache;
   }
 
   private MongoCollection getServicesCollection() {
@@ -58,15 +69,21 @@ public class JongoServiceRepository implements ServiceRepository, JongoBootstrap
     JongoService jongoService = new JongoService(service);
     jongoService.initCreated();
     try {
-      getServicesCollection().insert(jongoService);
+      getServicesCollection().insert(CatalogSortKeys.withSortKeys(jongoService));
     } catch (DuplicateKeyException e) {
       return null;
     }
+    referenceDataCache.invalidateServices();
     return jongoService;
   }
 
   @Override
   public Service getService(String serviceId) {
+    return identityMap.get().get(Service.class, serviceId, this::loadService,
+        service -> ((JongoService) service).copy());
+  }
+
+  private Service loadService(String serviceId) {
     return getServicesCollection()
         .findOne("{ id: # }", serviceId)
         .as(JongoService.class);
@@ -78,6 +95,22 @@ public class JongoServiceRepository implements ServiceRepository, JongoBootstrap
         .as(JongoService.class);
   }
 
+  /** Returns those of the given IDs that exist in the database (whether they're in the catalog or not). */
+  public Set<String> getExistingIds(Collection<String> ids) {
+    return ImmutableSet.copyOf(getServicesCollection()
+        .find("{ id: { $in: # } }", ImmutableSet.copyOf(ids))
+        .projection("{ id: 1 }")
+        .map(result -> (String) result.get("id"))
+        .iterator());
+  }
+
+  /** Returns all entries (whether they're in the catalog or not) modified since the given time, in milliseconds since the epoch. */
+  public Iterable<JongoService> getModifiedSince(long modified) {
+    return getServicesCollection()
+        .find("{ modified: { $gte: # } }", modified)
+        .as(JongoService.class);
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public Iterable<Service> getServicesOfInstance(String instanceId) {
@@ -88,9 +121,16 @@ public class JongoServiceRepository implements ServiceRepository, JongoBootstrap
 
   @Override
   public Service getServiceByRedirectUri(String instanceId, String redirect_uri) {
-    return getServicesCollection()
+    Optional<JongoService> cachedService = referenceDataCache.getServiceByRedirectUri(instanceId, redirect_uri);
+    if (cachedService != null) {
+      return cachedService.orElse(null);
+    }
+    long generation = referenceDataCache.generation();
+    JongoService service = getServicesCollection()
         .findOne("{ instance_id: #, redirect_uris: # }", instanceId, redirect_uri)
         .as(JongoService.class);
+    referenceDataCache.putServiceByRedirectUri(instanceId, redirect_uri, service, generation);
+    return service;
   }
 
   @Override
@@ -102,9 +142,11 @@ public class JongoServiceRepository implements ServiceRepository, JongoBootstrap
 
   @Override
   public boolean deleteService(String serviceId, long[] versions) throws InvalidVersionException {
+    identityMap.get().evict(Service.class, serviceId);
     int n = getServicesCollection()
         .remove("{ id: #, modified: { $in: # } }", serviceId, Longs.asList(versions))
         .getN();
+    referenceDataCache.invalidateServices();
 
     if (n == 0) {
       if (getServicesCollection().count("{ id: # }", serviceId) > 0) {
@@ -124,6 +166,7 @@ public class JongoServiceRepository implements ServiceRepository, JongoBootstrap
   public Service updateService(Service service, long[] versions) throws InvalidVersionException {
     String serviceId = service.getId();
     Preconditions.checkArgument(!Strings.isNullOrEmpty(serviceId));
+    identityMap.get().evict(Service.class, serviceId);
     // Copy to get the modified field, then reset ID (not copied over) to make sure we won't generate a new one
     service = new JongoService(service);
     service.setId(serviceId);
@@ -145,12 +188,15 @@ public class JongoServiceRepository implements ServiceRepository, JongoBootstrap
           .findAndModify("{ id: #, modified: { $in: # } }", serviceId, Longs.asList(versions))
           // MongoDB rejects empty modifiers: https://jira.mongodb.org/browse/SERVER-12266
           .with(unsetObject.isEmpty() ? "{ $set: # }" : "{ $set: #, $unset: # }",
-              unsetObject.isEmpty() ? new Object[]{service} : new Object[]{service, unsetObject})
+              unsetObject.isEmpty()
+                  ? new Object[]{CatalogSortKeys.withSortKeys(service)}
+                  : new Object[]{CatalogSortKeys.withSortKeys(service), unsetObject})
           .returnNew()
           .as(JongoService.class);
     } catch (DuplicateKeyException e) {
       throw new oasis.model.DuplicateKeyException();
     }
+    referenceDataCache.invalidateServices();
     if (service == null) {
       if (getServicesCollection().count("{ id: # }", serviceId) > 0) {
         throw new InvalidVersionException("service", serviceId);
@@ -162,28 +208,40 @@ public class JongoServiceRepository implements ServiceRepository, JongoBootstrap
 
   @Override
   public int deleteServicesOfInstance(String instanceId) {
-    return getServicesCollection()
+    identityMap.get().evictAll(Service.class);
+    int n = getServicesCollection()
         .remove("{ instance_id: # }", instanceId)
         .getN();
+    referenceDataCache.invalidateServices();
+    return n;
   }
 
   @Override
   public int changeServicesStatusForInstance(String instanceId, Service.Status status) {
-    return getServicesCollection()
+    identityMap.get().evictAll(Service.class);
+    int n = getServicesCollection()
         .update("{ instance_id: # }", instanceId)
         .multi()
         .with("{ $set: { status: #, modified: # } }", status, System.currentTimeMillis())
         .getN();
+    referenceDataCache.invalidateServices();
+    return n;
   }
 
   @Override
   public Service addPortal(String serviceId, String portalId, long[] versions) throws InvalidVersionException {
-    return JongoCatalogEntryRepository.addPortal(getServicesCollection(), JongoService.class, "service", serviceId, portalId, versions);
+    identityMap.get().evict(Service.class, serviceId);
+    Service service = JongoCatalogEntryRepository.addPortal(getServicesCollection(), JongoService.class, "service", serviceId, portalId, versions);
+    referenceDataCache.invalidateServices();
+    return service;
   }
 
   @Override
   public Service removePortal(String serviceId, String portalId, long[] versions) throws InvalidVersionException {
-    return JongoCatalogEntryRepository.removePortal(getServicesCollection(), JongoService.class, "service", serviceId, portalId, versions);
+    identityMap.get().evict(Service.class, serviceId);
+    Service service = JongoCatalogEntryRepository.removePortal(getServicesCollection(), JongoService.class, "service", serviceId, portalId, versions);
+    referenceDataCache.invalidateServices();
+    return service;
   }
 
   @Override
@@ -196,5 +254,7 @@ public class JongoServiceRepository implements ServiceRepository, JongoBootstrap
     // for the same instance, without post_logout_redirect_uri at all.
     // XXX: we should probably move post_logout_redirect_uris to app_instances eventually.
     getServicesCollection().ensureIndex("{ instance_id: 1, post_logout_redirect_uris: 1 }", "{ sparse: 1 }");
+    // Used by the ReconcileCatalogIndex tool
+    getServicesCollection().ensureIndex("{ modified: 1 }");
   }
 }
@@ -26,13 +26,16 @@ import oasis.jongo.JongoBootstrapper;
 import oasis.model.authn.ClientType;
 import oasis.model.authn.Credentials;
 import oasis.model.authn.CredentialsRepository;
+import oasis.services.authn.ClientCredentialsCache;
 
 public class JongoCredentialsRepository implements CredentialsRepository, JongoBootstrapper {
   private final Jongo jongo;
+  private final ClientCredentialsCache clientCredentialsCache;
 
   @Inject
-  JongoCredentialsRepository(Jongo jongo) {
+  JongoCredentialsRepository(Jongo jongo, ClientCredentialsCache clientCredentialsCache) {
     this.jongo = jongo;
+    this.clientCredentialsCache = clientCredentialsCache;
   }
 
   protected MongoCollection getCredentialsCollection() {
@@ -41,11 +44,13 @@ public class JongoCredentialsRepository implements CredentialsRepository, JongoB
 
   @Override
   public Credentials saveCredentials(ClientType type, String id, byte[] hash, byte[] salt) {
-    return getCredentialsCollection().findAndModify("{ clientType:#, id:# }", type, id)
+    Credentials credentials = getCredentialsCollection().findAndModify("{ clientType:#, id:# }", type, id)
         .upsert()
         .returnNew()
         .with("{ $set: { hash:#, salt:# } }", hash, salt)
         .as(Credentials.class);
+    clientCredentialsCache.invalidate(type, id);
+    return credentials;
   }
 
   @Override
@@ -55,7 +60,9 @@ public class JongoCredentialsRepository implements CredentialsRepository, JongoB
 
   @Override
   public boolean deleteCredentials(ClientType type, String id) {
-    return getCredentialsCollection().remove("{ clientType:#, id:# }", type, id).getN() > 0;
+    int n = getCredentialsCollection().remove("{ clientType:#, id:# }", type, id).getN();
+    clientCredentialsCache.invalidate(type, id);
+    return n > 0;
   }
 
   @Override
@@ -21,7 +21,10 @@ import static com.google.common.base.Preconditions.*;
 
 import java.time.Instant;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.function.Predicate;
 
 import javax.inject.Inject;
 
@@ -29,23 +32,34 @@ import org.jongo.Jongo;
 import org.jongo.MongoCollection;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.mongodb.DuplicateKeyException;
 import com.mongodb.WriteResult;
 
 import oasis.auth.AuthModule;
 import oasis.jongo.JongoBootstrapper;
+import oasis.model.authn.AccessToken;
 import oasis.model.authn.SidToken;
 import oasis.model.authn.Token;
 import oasis.model.authn.TokenRepository;
+import oasis.services.authn.AccessTokenCache;
+import oasis.services.authz.IntrospectionCache;
 
 public class JongoTokenRepository implements TokenRepository, JongoBootstrapper {
+  private static final int REVOCATION_BATCH_SIZE = 500;
+
   private final Jongo jongo;
   private final AuthModule.Settings settings;
+  private final AccessTokenCache accessTokenCache;
+  private final IntrospectionCache introspectionCache;
 
-  @Inject JongoTokenRepository(Jongo jongo, AuthModule.Settings settings) {
+  @Inject JongoTokenRepository(Jongo jongo, AuthModule.Settings settings, AccessTokenCache accessTokenCache,
+      IntrospectionCache introspectionCache) {
     this.jongo = jongo;
     this.settings = settings;
+    this.accessTokenCache = accessTokenCache;
+    this.introspectionCache = introspectionCache;
   }
 
   protected MongoCollection getTokensCollection() {
@@ -77,9 +91,11 @@ public class JongoTokenRepository implements TokenRepository, JongoBootstrapper
   public boolean revokeToken(String tokenId) {
     checkArgument(!Strings.isNullOrEmpty(tokenId));
 
-    return this.getTokensCollection()
+    int n = this.getTokensCollection()
         .remove("{ $or: [ { id: # }, { ancestorIds: # } ] }", tokenId, tokenId)
-        .getN() > 0;
+        .getN();
+    invalidateCaches(t -> t.getId().equals(tokenId) || t.getAncestorIds().contains(tokenId));
+    return n > 0;
   }
 
   @Override
@@ -132,9 +148,9 @@ public class JongoTokenRepository implements TokenRepository, JongoBootstrapper
   public int revokeTokensForAccount(String accountId) {
     checkArgument(!Strings.isNullOrEmpty(accountId));
 
-    return this.getTokensCollection()
-        .remove("{ accountId: # }", accountId)
-        .getN();
+    int n = removeInBatches("{ accountId: # }", accountId);
+    invalidateCaches(t -> accountId.equals(t.getAccountId()));
+    return n;
   }
 
   @Override
@@ -142,20 +158,22 @@ public class JongoTokenRepository implements TokenRepository, JongoBootstrapper
     checkArgument(!Strings.isNullOrEmpty(accountId));
     checkNotNull(tokenType);
 
-    return this.getTokensCollection()
-        .remove("{ accountId: #, _type: # }", accountId,
-            // FIXME: this only works because all our token classes are in the same package
-            "." + tokenType.getSimpleName())
-        .getN();
+    int n = removeInBatches("{ accountId: #, _type: # }", accountId,
+        // FIXME: this only works because all our token classes are in the same package
+        "." + tokenType.getSimpleName());
+    if (tokenType.isAssignableFrom(AccessToken.class)) {
+      invalidateCaches(t -> accountId.equals(t.getAccountId()));
+    }
+    return n;
   }
 
   @Override
   public int revokeTokensForClient(String clientId) {
     checkArgument(!Strings.isNullOrEmpty(clientId));
 
-    return this.getTokensCollection()
-        .remove("{ serviceProviderId: # }", clientId)
-        .getN();
+    int n = removeInBatches("{ serviceProviderId: # }", clientId);
+    invalidateCaches(t -> clientId.equals(t.getServiceProviderId()));
+    return n;
   }
 
   @Override
@@ -163,27 +181,65 @@ public class JongoTokenRepository implements TokenRepository, JongoBootstrapper
     if (scopeIds.isEmpty()) {
       return 0;
     }
-    return this.getTokensCollection()
-        .remove("{ scopeIds: { $in: # } }", ImmutableSet.copyOf(scopeIds))
-        .getN();
+    ImmutableSet<String> revokedScopeIds = ImmutableSet.copyOf(scopeIds);
+    int n = removeInBatches("{ scopeIds: { $in: # } }", revokedScopeIds);
+    invalidateCaches(t -> !Collections.disjoint(t.getScopeIds(), revokedScopeIds));
+    return n;
   }
 
   @Override
   public int revokeInvitationTokensForOrganizationMembership(String organizationMembershipId) {
     checkArgument(!Strings.isNullOrEmpty(organizationMembershipId));
 
-    return this.getTokensCollection()
-        .remove("{ organizationMembershipId: # }", organizationMembershipId)
-        .getN();
+    // Note: invitation tokens are never access tokens, so there's no need to invalidate caches.
+    return removeInBatches("{ organizationMembershipId: # }", organizationMembershipId);
   }
 
   @Override
   public int revokeInvitationTokensForAppInstance(String aceId) {
     checkArgument(!Strings.isNullOrEmpty(aceId));
 
-    return this.getTokensCollection()
-        .remove("{ aceId: # }", aceId)
-        .getN();
+    // Note: invitation tokens are never access tokens, so there's no need to invalidate caches.
+    return removeInBatches("{ aceId: # }", aceId);
+  }
+
+  /**
+   * Removes tokens matching the given query, in batches of {@link #REVOCATION_BATCH_SIZE} tokens.
+   * <p>
+   * Removing thousands of tokens in a single operation would hold the collection for too long, impeding concurrent
+   * operations (e.g. token creation and validation), so we rather look up a batch of token IDs (using the indexes)
+   * then remove those tokens, and loop until no token matches.
+   */
+  private int removeInBatches(String query, Object... parameters) {
+    int n = 0;
+    for (;;) {
+      List<String> ids = ImmutableList.copyOf(this.getTokensCollection()
+          .find(query, parameters)
+          .projection("{ id: 1 }")
+          .limit(REVOCATION_BATCH_SIZE)
+          .map(result -> (String) result.get("id"))
+          .iterator());
+      if (ids.isEmpty()) {
+        return n;
+      }
+      n += this.getTokensCollection()
+          .remove("{ id: { $in: # } }", ids)
+          .getN();
+      if (ids.size() < REVOCATION_BATCH_SIZE) {
+        return n;
+      }
+    }
+  }
+
+  /**
+   * Invalidates cached access tokens after they've been revoked.
+   * <p>
+   * This must be called <em>after</em> the tokens have been removed from the database, so that concurrent
+   * lookups cannot cache them back.
+   */
+  private void invalidateCaches(Predicate<AccessToken> predicate) {
+    accessTokenCache.invalidate(predicate);
+    introspectionCache.invalidate(predicate);
   }
 
   @Override
@@ -200,6 +256,13 @@ public class JongoTokenRepository implements TokenRepository, JongoBootstrapper
     getTokensCollection().ensureIndex("{ id: 1 }", "{ unique: 1 }");
     getTokensCollection().ensureIndex("{ ancestorIds: 1 }");
     getTokensCollection().ensureIndex("{ accountId: 1 }");
+    // XXX: this also serves queries on accountId alone, so the above index could be dropped once this one has been built
+    getTokensCollection().ensureIndex("{ accountId: 1, _type: 1 }", "{ background: 1 }");
     getTokensCollection().ensureIndex("{ expirationTime: 1 }", "{ background: 1, expireAfterSeconds: 0 }");
+    // Indexes for revocations; sparse as most tokens don't have those fields.
+    getTokensCollection().ensureIndex("{ serviceProviderId: 1 }", "{ background: 1, sparse: 1 }");
+    getTokensCollection().ensureIndex("{ scopeIds: 1 }", "{ background: 1, sparse: 1 }");
+    getTokensCollection().ensureIndex("{ organizationMembershipId: 1 }", "{ background: 1, sparse: 1 }");
+    getTokensCollection().ensureIndex("{ aceId: 1 }", "{ background: 1, sparse: 1 }");
   }
 }
@@ -17,21 +17,30 @@
  */
 package oasis.jongo.branding;
 
+import java.util.function.UnaryOperator;
+
 import javax.inject.Inject;
+import javax.inject.Provider;
 
 import org.jongo.Jongo;
 import org.jongo.MongoCollection;
 
 import oasis.jongo.JongoBootstrapper;
+import oasis.jongo.ReferenceDataCache;
+import oasis.jongo.RequestIdentityMap;
 import oasis.model.branding.BrandInfo;
 import oasis.model.branding.BrandRepository;
 
 public class JongoBrandRepository implements BrandRepository, JongoBootstrapper {
   private final Jongo jongo;
+  private final Provider<RequestIdentityMap> identityMap;
+  private final ReferenceDataCache referenceDataCache;
 
   @Inject
-  JongoBrandRepository(Jongo jongo) {
+  JongoBrandRepository(Jongo jongo, Provider<RequestIdentityMap> identityMap, ReferenceDataCache referenceDataCache) {
     this.jongo = jongo;
+    this.identityMap = identityMap;
+    this.referenceDataCache = referenceDataCache;
   }
 
   protected MongoCollection getBrandCollection() {
@@ -40,15 +49,28 @@ public class JongoBrandRepository implements BrandRepository, JongoBootstrapper
 
   @Override
   public BrandInfo getBrandInfo(String brandId) {
+    return identityMap.get().get(BrandInfo.class, brandId, this::loadBrandInfo,
+        // BrandInfo has no setters, it can be shared
+        UnaryOperator.identity());
+  }
+
+  private BrandInfo loadBrandInfo(String brandId) {
     if (BrandInfo.DEFAULT_BRAND.equals(brandId)) {
       return new BrandInfo();
     }
-    BrandInfo res = this.getBrandCollection()
-        .findOne("{ brand_id : #}", brandId)
-        .projection("{small_logo: 0, large_logo: 0}")
-        .as(BrandInfo.class);
-
-    return res != null ? res : new BrandInfo();
+    BrandInfo res = referenceDataCache.getBrandInfo(brandId);
+    if (res == null) {
+      long generation = referenceDataCache.generation();
+      res = this.getBrandCollection()
+          .findOne("{ brand_id : #}", brandId)
+          .projection("{small_logo: 0, large_logo: 0}")
+          .as(BrandInfo.class);
+      if (res == null) {
+        res = new BrandInfo();
+      }
+      referenceDataCache.putBrandInfo(brandId, res, generation);
+    }
+    return res;
   }
 
   @Override
@@ -38,17 +38,32 @@ import com.mongodb.MongoCommandException;
 import com.mongodb.WriteResult;
 
 import oasis.jongo.JongoBootstrapper;
+import oasis.jongo.JongoQueryShapeChecker;
 import oasis.model.InvalidVersionException;
 import oasis.model.directory.OrganizationMembership;
 import oasis.model.directory.OrganizationMembershipRepository;
+import oasis.services.authz.AppRoleCache;
+import oasis.services.authz.IntrospectionCache;
 
 public class JongoOrganizationMembershipRepository implements OrganizationMembershipRepository, JongoBootstrapper {
   private static final Logger logger = LoggerFactory.getLogger(OrganizationMembershipRepository.class);
 
+  // Queries checked against the indexes at bootstrap
+  private static final String BY_ACCOUNT_AND_ORGANIZATION = "{ accountId: #, organizationId: #, status: # }";
+  private static final String ADMIN_BY_ACCOUNT_AND_ORGANIZATION = "{ accountId: #, status: #, admin: true, organizationId: # }";
+  private static final String BY_ACCOUNT = "{ accountId: #, status: # }";
+  private static final String ADMIN_BY_ACCOUNT = "{ accountId: #, admin: true, status: # }";
+  private static final String BY_ORGANIZATION = "{ organizationId: #, status: # }";
+  private static final String ADMIN_BY_ORGANIZATION = "{ organizationId: #, admin: true, status: # }";
+
   private final Jongo jongo;
+  private final IntrospectionCache introspectionCache;
+  private final AppRoleCache appRoleCache;
 
-  @Inject JongoOrganizationMembershipRepository(Jongo jongo) {
+  @Inject JongoOrganizationMembershipRepository(Jongo jongo, IntrospectionCache introspectionCache, AppRoleCache appRoleCache) {
     this.jongo = jongo;
+    this.introspectionCache = introspectionCache;
+    this.appRoleCache = appRoleCache;
   }
 
   private MongoCollection getOrganizationMembershipsCollection() {
@@ -57,8 +72,30 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
 
   @Override
   public void bootstrap() {
+    // Legacy memberships had no status; normalize them so queries can simply match on the status.
+    int n = getOrganizationMembershipsCollection()
+        .update("{ status: { $exists: 0 } }")
+        .multi()
+        .with("{ $set: { status: # } }", OrganizationMembership.Status.ACCEPTED)
+        .getN();
+    if (n > 0) {
+      logger.info("Set status of {} legacy organization memberships to {}", n, OrganizationMembership.Status.ACCEPTED);
+    }
+
     getOrganizationMembershipsCollection().ensureIndex("{ id: 1 }", "{ unique: 1 }");
     getOrganizationMembershipsCollection().ensureIndex("{ organizationId: 1, email: 1, accountId: 1 }", "{ unique: 1 }");
+    // Trailing organizationId and accountId fields allow covered queries for the ID-only lookups.
+    getOrganizationMembershipsCollection().ensureIndex("{ accountId: 1, status: 1, admin: 1, organizationId: 1 }", "{ background: 1 }");
+    getOrganizationMembershipsCollection().ensureIndex("{ organizationId: 1, admin: 1, status: 1, accountId: 1 }", "{ background: 1 }");
+
+    OrganizationMembership.Status status = OrganizationMembership.Status.ACCEPTED;
+    MongoCollection collection = getOrganizationMembershipsCollection();
+    JongoQueryShapeChecker.checkIndexed(jongo, collection, BY_ACCOUNT_AND_ORGANIZATION, "x", "x", status);
+    JongoQueryShapeChecker.checkIndexed(jongo, collection, ADMIN_BY_ACCOUNT_AND_ORGANIZATION, "x", status, "x");
+    JongoQueryShapeChecker.checkIndexed(jongo, collection, BY_ACCOUNT, "x", status);
+    JongoQueryShapeChecker.checkIndexed(jongo, collection, ADMIN_BY_ACCOUNT, "x", status);
+    JongoQueryShapeChecker.checkIndexed(jongo, collection, BY_ORGANIZATION, "x", status);
+    JongoQueryShapeChecker.checkIndexed(jongo, collection, ADMIN_BY_ORGANIZATION, "x", status);
   }
 
   @Override
@@ -75,6 +112,8 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
     } catch (DuplicateKeyException e) {
       return null;
     }
+    introspectionCache.invalidateAccount(member.getAccountId());
+    appRoleCache.invalidateAccount(member.getAccountId());
     return member;
   }
 
@@ -99,7 +138,7 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
   @Override
   public OrganizationMembership getOrganizationMembership(String id) {
     return getOrganizationMembershipsCollection()
-        .findOne("{ id: #, $or: [ { status: { $exists: 0 } }, { status: # } ] }", id, OrganizationMembership.Status.ACCEPTED)
+        .findOne("{ id: #, status: # }", id, OrganizationMembership.Status.ACCEPTED)
         .as(JongoOrganizationMembership.class);
   }
 
@@ -115,11 +154,17 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
   @Override
   public OrganizationMembership getOrganizationMembership(String userId, String organizationId) {
     return getOrganizationMembershipsCollection()
-        .findOne("{ accountId: #, organizationId: #, $or: [ { status: { $exists: 0 } }, { status: # } ] }",
+        .findOne(BY_ACCOUNT_AND_ORGANIZATION,
             userId, organizationId, OrganizationMembership.Status.ACCEPTED)
         .as(JongoOrganizationMembership.class);
   }
 
+  @Override
+  public boolean isOrganizationAdmin(String userId, String organizationId) {
+    return getOrganizationMembershipsCollection()
+        .count(ADMIN_BY_ACCOUNT_AND_ORGANIZATION, userId, OrganizationMembership.Status.ACCEPTED, organizationId) > 0;
+  }
+
   @Nullable
   @Override
   public OrganizationMembership updateOrganizationMembership(OrganizationMembership membership, long[] versions) throws InvalidVersionException {
@@ -134,18 +179,21 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
     membership.setId(membershipId);
 
     JongoOrganizationMembership res = getOrganizationMembershipsCollection()
-        .findAndModify("{ id: #, modified: { $in: # }, $or: [ { status: { $exists: 0 } }, { status: # } ] }",
+        .findAndModify("{ id: #, modified: { $in: # }, status: # }",
             membershipId, Longs.asList(versions), OrganizationMembership.Status.ACCEPTED)
         .returnNew()
         .with("{ $set: # }", membership)
         .as(JongoOrganizationMembership.class);
 
     if (res == null) {
-      if (getOrganizationMembershipsCollection().count("{ id: #, $or: [ { status: { $exists: 0 } }, { status: # } ] }",
+      if (getOrganizationMembershipsCollection().count("{ id: #, status: # }",
           membershipId, OrganizationMembership.Status.ACCEPTED) != 0) {
         throw new InvalidVersionException("organizationMember", membershipId);
       }
       logger.warn("Organization member {} does not exist", membershipId);
+    } else {
+      introspectionCache.invalidateAccount(res.getAccountId());
+      appRoleCache.invalidateAccount(res.getAccountId());
     }
 
     return res;
@@ -157,8 +205,9 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
     checkArgument(!Strings.isNullOrEmpty(membershipId));
     checkArgument(!Strings.isNullOrEmpty(accountId));
 
+    JongoOrganizationMembership res;
     try {
-      return getOrganizationMembershipsCollection()
+      res = getOrganizationMembershipsCollection()
           .findAndModify("{ id: #, status: # }", membershipId, OrganizationMembership.Status.PENDING)
           .returnNew()
           .with("{ $set: { status: #, accountId: #, accepted: # }, $unset: { email: '' } }",
@@ -172,22 +221,30 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
     } catch (DuplicateKeyException e) {
       throw new oasis.model.DuplicateKeyException();
     }
+    if (res != null) {
+      introspectionCache.invalidateAccount(accountId);
+      appRoleCache.invalidateAccount(accountId);
+    }
+    return res;
   }
 
   @Override
   public boolean deleteOrganizationMembership(String id, long[] versions) throws InvalidVersionException {
     int n = getOrganizationMembershipsCollection()
-        .remove("{id: #, modified: { $in: # }, $or: [ { status: { $exists: 0 } }, { status: # } ] }",
+        .remove("{id: #, modified: { $in: # }, status: # }",
             id, Longs.asList(versions), OrganizationMembership.Status.ACCEPTED)
         .getN();
     if (n == 0) {
-      if (getOrganizationMembershipsCollection().count("{ id: #, $or: [ { status: { $exists: 0 } }, { status: # } ] }",
+      if (getOrganizationMembershipsCollection().count("{ id: #, status: # }",
           id, OrganizationMembership.Status.ACCEPTED) != 0) {
         throw new InvalidVersionException("organization", id);
       }
       return false;
     }
 
+    // We don't know the account ID here, and memberships are rarely deleted.
+    introspectionCache.invalidateAll();
+    appRoleCache.invalidateAll();
     return true;
   }
 
@@ -217,7 +274,7 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
   @SuppressWarnings("unchecked")
   public Iterable<OrganizationMembership> getPendingMembersOfOrganization(String organizationId, int start, int limit) {
     return (Iterable<OrganizationMembership>) (Iterable<?>) getOrganizationMembershipsCollection()
-        .find("{ organizationId: #, status: # }", organizationId, OrganizationMembership.Status.PENDING)
+        .find(BY_ORGANIZATION, organizationId, OrganizationMembership.Status.PENDING)
         .skip(start)
         .limit(limit)
         .as(JongoOrganizationMembership.class);
@@ -227,7 +284,7 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
   @SuppressWarnings("unchecked")
   public Iterable<OrganizationMembership> getMembersOfOrganization(String organizationId, int start, int limit) {
     return (Iterable<OrganizationMembership>) (Iterable<?>) getOrganizationMembershipsCollection()
-        .find("{ organizationId: #, $or: [ { status: { $exists: 0 } }, { status: # } ] }", organizationId, OrganizationMembership.Status.ACCEPTED)
+        .find(BY_ORGANIZATION, organizationId, OrganizationMembership.Status.ACCEPTED)
         .skip(start)
         .limit(limit)
         .as(JongoOrganizationMembership.class);
@@ -237,15 +294,23 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
   @SuppressWarnings("unchecked")
   public Iterable<OrganizationMembership> getAdminsOfOrganization(String organizationId) {
     return (Iterable<OrganizationMembership>) (Iterable<?>) getOrganizationMembershipsCollection()
-        .find("{ organizationId: #, admin: true, $or: [ { status: { $exists: 0 } }, { status: # } ] }", organizationId, OrganizationMembership.Status.ACCEPTED)
+        .find(ADMIN_BY_ORGANIZATION, organizationId, OrganizationMembership.Status.ACCEPTED)
         .as(JongoOrganizationMembership.class);
   }
 
+  @Override
+  public Iterable<String> getAdminIdsOfOrganization(String organizationId) {
+    return getOrganizationMembershipsCollection()
+        .find(ADMIN_BY_ORGANIZATION, organizationId, OrganizationMembership.Status.ACCEPTED)
+        .projection("{ _id: 0, accountId: 1 }")
+        .map(result -> (String) result.get("accountId"));
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public Iterable<OrganizationMembership> getAdminsOfOrganization(String organizationId, int start, int limit) {
     return (Iterable<OrganizationMembership>) (Iterable<?>) getOrganizationMembershipsCollection()
-        .find("{ organizationId: #, admin: true, $or: [ { status: { $exists: 0 } }, { status: # } ] }", organizationId, OrganizationMembership.Status.ACCEPTED)
+        .find(ADMIN_BY_ORGANIZATION, organizationId, OrganizationMembership.Status.ACCEPTED)
         .skip(start)
         .limit(limit)
         .as(JongoOrganizationMembership.class);
@@ -254,15 +319,24 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
   @Override
   public Iterable<String> getOrganizationIdsForUser(String userId) {
     return getOrganizationMembershipsCollection().distinct("organizationId")
-        .query("{ accountId: #, $or: [ { status: { $exists: 0 } }, { status: # } ] }", userId, OrganizationMembership.Status.ACCEPTED)
+        .query(BY_ACCOUNT, userId, OrganizationMembership.Status.ACCEPTED)
         .as(String.class);
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterable<OrganizationMembership> getOrganizationsForUser(String userId) {
+    return (Iterable<OrganizationMembership>) (Iterable<?>) getOrganizationMembershipsCollection()
+        .find(BY_ACCOUNT, userId, OrganizationMembership.Status.ACCEPTED)
+        .projection("{ _id: 0, organizationId: 1, admin: 1 }")
+        .as(JongoOrganizationMembership.class);
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public Iterable<OrganizationMembership> getOrganizationsForUser(String userId, int start, int limit) {
     return (Iterable<OrganizationMembership>) (Iterable<?>) getOrganizationMembershipsCollection()
-        .find("{ accountId: #, $or: [ { status: { $exists: 0 } }, { status: # } ] }", userId, OrganizationMembership.Status.ACCEPTED)
+        .find(BY_ACCOUNT, userId, OrganizationMembership.Status.ACCEPTED)
         .skip(start)
         .limit(limit)
         .as(JongoOrganizationMembership.class);
@@ -272,7 +346,7 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
   @SuppressWarnings("unchecked")
   public Iterable<OrganizationMembership> getOrganizationsForAdmin(String userId) {
     return (Iterable<OrganizationMembership>) (Iterable<?>) getOrganizationMembershipsCollection()
-        .find("{ accountId: #, admin: true, $or: [ { status: { $exists: 0 } }, { status: # } ] }", userId, OrganizationMembership.Status.ACCEPTED)
+        .find(ADMIN_BY_ACCOUNT, userId, OrganizationMembership.Status.ACCEPTED)
         .as(JongoOrganizationMembership.class);
   }
 
@@ -280,7 +354,7 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
   @SuppressWarnings("unchecked")
   public Iterable<OrganizationMembership> getOrganizationsForAdmin(String userId, int start, int limit) {
     return (Iterable<OrganizationMembership>) (Iterable<?>) getOrganizationMembershipsCollection()
-        .find("{ accountId: #, admin: true, $or: [ { status: { $exists: 0 } }, { status: # } ] }", userId, OrganizationMembership.Status.ACCEPTED)
+        .find(ADMIN_BY_ACCOUNT, userId, OrganizationMembership.Status.ACCEPTED)
         .skip(start)
         .limit(limit)
         .as(JongoOrganizationMembership.class);
@@ -288,9 +362,14 @@ public class JongoOrganizationMembershipRepository implements OrganizationMember
 
   @Override
   public boolean deleteMembershipsInOrganization(String organizationId) {
-    return getOrganizationMembershipsCollection()
+    int n = getOrganizationMembershipsCollection()
         .remove("{ organizationId: # }", organizationId)
-        .getN() > 0;
+        .getN();
+    if (n > 0) {
+      introspectionCache.invalidateAll();
+      appRoleCache.invalidateAll();
+    }
+    return n > 0;
   }
 
   @Override
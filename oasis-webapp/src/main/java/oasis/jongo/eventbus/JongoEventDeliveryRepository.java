@@ -0,0 +1,111 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.jongo.eventbus;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+
+import javax.inject.Inject;
+
+import org.jongo.Jongo;
+import org.jongo.MongoCollection;
+
+import oasis.jongo.JongoBootstrapper;
+import oasis.model.eventbus.EventDelivery;
+import oasis.model.eventbus.EventDeliveryRepository;
+
+public class JongoEventDeliveryRepository implements EventDeliveryRepository, JongoBootstrapper {
+  /** How long failed deliveries are kept, for diagnosis. */
+  private static final Duration FAILED_DELIVERIES_RETENTION = Duration.ofDays(7);
+
+  private final Jongo jongo;
+
+  @Inject
+  JongoEventDeliveryRepository(Jongo jongo) {
+    this.jongo = jongo;
+  }
+
+  @Override
+  public void enqueue(Collection<EventDelivery> deliveries) {
+    if (deliveries.isEmpty()) {
+      return;
+    }
+    for (EventDelivery delivery : deliveries) {
+      checkNotNull(delivery.getSubscription_id());
+      checkNotNull(delivery.getWebHook());
+      checkNotNull(delivery.getCreated());
+      checkNotNull(delivery.getNext_attempt());
+    }
+    getDeliveriesCollection().insert(deliveries.toArray());
+  }
+
+  @Override
+  public EventDelivery claimNextDue(Instant now, Instant leaseExpiry) {
+    return getDeliveriesCollection()
+        .findAndModify("{ status: #, next_attempt: { $lte: # } }", EventDelivery.Status.PENDING, Date.from(now))
+        .sort("{ next_attempt: 1 }")
+        .with("{ $set: { next_attempt: # } }", Date.from(leaseExpiry))
+        .as(EventDelivery.class);
+  }
+
+  @Override
+  public boolean reschedule(String deliveryId, Instant nextAttempt, int attempts, String lastError) {
+    return getDeliveriesCollection()
+        .update("{ id: #, status: # }", deliveryId, EventDelivery.Status.PENDING)
+        .with("{ $set: { next_attempt: #, attempts: #, last_error: # } }", Date.from(nextAttempt), attempts, lastError)
+        .getN() > 0;
+  }
+
+  @Override
+  public boolean markFailed(String deliveryId, int attempts, String lastError) {
+    return getDeliveriesCollection()
+        .update("{ id: #, status: # }", deliveryId, EventDelivery.Status.PENDING)
+        .with("{ $set: { status: #, attempts: #, last_error: #, failed: # }, $unset: { next_attempt: 1 } }",
+            EventDelivery.Status.FAILED, attempts, lastError, new Date())
+        .getN() > 0;
+  }
+
+  @Override
+  public boolean deleteDelivery(String deliveryId) {
+    return getDeliveriesCollection()
+        .remove("{ id: # }", deliveryId)
+        .getN() > 0;
+  }
+
+  @Override
+  public long countPending() {
+    return getDeliveriesCollection()
+        .count("{ status: # }", EventDelivery.Status.PENDING);
+  }
+
+  @Override
+  public void bootstrap() {
+    getDeliveriesCollection().ensureIndex("{ id: 1 }", "{ unique: 1 }");
+    getDeliveriesCollection().ensureIndex("{ status: 1, next_attempt: 1 }");
+    getDeliveriesCollection().ensureIndex("{ failed: 1 }",
+        "{ background: 1, expireAfterSeconds: " + FAILED_DELIVERIES_RETENTION.getSeconds() + " }");
+  }
+
+  private MongoCollection getDeliveriesCollection() {
+    return jongo.getCollection("event_deliveries");
+  }
+}
@@ -19,6 +19,8 @@ package oasis.jongo.guice;
 
 import static com.google.inject.multibindings.Multibinder.*;
 
+import java.time.Duration;
+
 import org.jongo.Jongo;
 
 import com.google.inject.AbstractModule;
@@ -45,6 +47,7 @@ import oasis.jongo.branding.JongoBrandRepository;
 import oasis.jongo.directory.JongoDirectoryRepository;
 import oasis.jongo.directory.JongoOrganizationMembershipRepository;
 import oasis.jongo.etag.JongoEtagService;
+import oasis.jongo.eventbus.JongoEventDeliveryRepository;
 import oasis.jongo.eventbus.JongoSubscriptionRepository;
 import oasis.jongo.notification.JongoNotificationRepository;
 import oasis.model.accounts.AccountRepository;
@@ -61,6 +64,7 @@ import oasis.model.authz.AuthorizationRepository;
 import oasis.model.branding.BrandRepository;
 import oasis.model.directory.DirectoryRepository;
 import oasis.model.directory.OrganizationMembershipRepository;
+import oasis.model.eventbus.EventDeliveryRepository;
 import oasis.model.eventbus.SubscriptionRepository;
 import oasis.model.notification.NotificationRepository;
 import oasis.services.etag.EtagService;
@@ -76,12 +80,18 @@ public class JongoModule extends AbstractModule {
     public static Settings fromConfig(Config config) {
       return Settings.builder()
           .setMongoUri(new MongoClientURI(config.getString("uri")))
+          .setNotificationReadRetention(config.getDuration("notification-read-retention"))
+          .setReferenceDataCacheSize(config.getLong("reference-data-cache.size"))
+          .setReferenceDataCacheDuration(config.getDuration("reference-data-cache.duration"))
           .build();
     }
 
     public static class Builder {
 
       private MongoClientURI mongoURI;
+      private Duration notificationReadRetention = Duration.ofDays(90);
+      private long referenceDataCacheSize = 1000;
+      private Duration referenceDataCacheDuration = Duration.ofMinutes(5);
 
       public Settings build() {
         return new Settings(this);
@@ -91,12 +101,36 @@ public class JongoModule extends AbstractModule {
         this.mongoURI = mongoURI;
         return this;
       }
+
+      public Builder setNotificationReadRetention(Duration notificationReadRetention) {
+        this.notificationReadRetention = notificationReadRetention;
+        return this;
+      }
+
+      public Builder setReferenceDataCacheSize(long referenceDataCacheSize) {
+        this.referenceDataCacheSize = referenceDataCacheSize;
+        return this;
+      }
+
+      public Builder setReferenceDataCacheDuration(Duration referenceDataCacheDuration) {
+        this.referenceDataCacheDuration = referenceDataCacheDuration;
+        return this;
+      }
     }
 
     public final MongoClientURI mongoURI;
+    /** How long notifications are kept after they've been marked as read. */
+    public final Duration notificationReadRetention;
+    /** Maximum number of entries in each of the {@link oasis.jongo.ReferenceDataCache reference data caches}. */
+    public final long referenceDataCacheSize;
+    /** How long reference data (brands, scopes, services by redirect URI) is cached. */
+    public final Duration referenceDataCacheDuration;
 
     private Settings(Builder builder) {
       this.mongoURI = builder.mongoURI;
+      this.notificationReadRetention = builder.notificationReadRetention;
+      this.referenceDataCacheSize = builder.referenceDataCacheSize;
+      this.referenceDataCacheDuration = builder.referenceDataCacheDuration;
     }
   }
 
@@ -130,6 +164,7 @@ public class JongoModule extends AbstractModule {
     bind(TokenRepository.class).to(JongoTokenRepository.class);
     bind(JtiRepository.class).to(JongoJtiRepository.class);
     bind(SubscriptionRepository.class).to(JongoSubscriptionRepository.class);
+    bind(EventDeliveryRepository.class).to(JongoEventDeliveryRepository.class);
     bind(CredentialsRepository.class).to(JongoCredentialsRepository.class);
     bind(EtagService.class).to(JongoEtagService.class);
     bind(ClientCertificateRepository.class).to(JongoClientCertificateRepository.class);
@@ -144,6 +179,7 @@ public class JongoModule extends AbstractModule {
     bootstrappers.addBinding().to(JongoTokenRepository.class);
     bootstrappers.addBinding().to(JongoJtiRepository.class);
     bootstrappers.addBinding().to(JongoSubscriptionRepository.class);
+    bootstrappers.addBinding().to(JongoEventDeliveryRepository.class);
     bootstrappers.addBinding().to(JongoCredentialsRepository.class);
     bootstrappers.addBinding().to(JongoApplicationRepository.class);
     bootstrappers.addBinding().to(JongoAppInstanceRepository.class);
@@ -19,9 +19,13 @@ package oasis.jongo.notification;
 
 import static com.google.common.base.Preconditions.*;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.jongo.Jongo;
@@ -29,10 +33,14 @@ import org.jongo.MongoCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DuplicateKeyException;
+import com.mongodb.MongoCommandException;
 import com.mongodb.WriteResult;
 
 import oasis.jongo.JongoBootstrapper;
+import oasis.jongo.JongoQueryShapeChecker;
+import oasis.jongo.guice.JongoModule;
 import oasis.model.notification.Notification;
 import oasis.model.notification.NotificationRepository;
 
@@ -40,15 +48,26 @@ public class JongoNotificationRepository implements NotificationRepository, Jong
 
   private static final Logger logger = LoggerFactory.getLogger(NotificationRepository.class);
 
+  private static final String COLLECTION_NAME = "notification";
+
+  // Queries checked against the indexes at bootstrap (along with those built by notificationsQuery)
+  private static final String BY_IDS_AND_USER = "{ id: { $in: # }, user_id: # }";
+  private static final String BY_IDS_AND_USER_NOT_IN_STATUS = "{ id: { $in: # }, user_id: #, status: { $ne: # } }";
+
+  /** Error code returned by MongoDB when trying to create an index that already exists with different options. */
+  private static final int INDEX_OPTIONS_CONFLICT = 85;
+
   private final Jongo jongo;
+  private final JongoModule.Settings settings;
 
   @Inject
-  JongoNotificationRepository(Jongo jongo) {
+  JongoNotificationRepository(Jongo jongo, JongoModule.Settings settings) {
     this.jongo = jongo;
+    this.settings = settings;
   }
 
   private MongoCollection getNotificationCollection() {
-    return jongo.getCollection("notification");
+    return jongo.getCollection(COLLECTION_NAME);
   }
 
   @Override
@@ -100,48 +119,116 @@ public class JongoNotificationRepository implements NotificationRepository, Jong
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public Iterable<Notification> getNotifications(String userId) {
-    return (Iterable<Notification>) (Iterable<?>) getNotificationCollection()
-        .find("{ user_id: # }", userId)
-        .as(JongoNotification.class);
+    return getNotifications(userId, null, null, null, null, 0);
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public Iterable<Notification> getNotifications(String userId, String instanceId) {
-    return (Iterable<Notification>) (Iterable<?>) getNotificationCollection()
-        .find("{ user_id: #, instance_id: # }", userId, instanceId)
-        .as(JongoNotification.class);
+    return getNotifications(userId, instanceId, null, null, null, 0);
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public Iterable<Notification> getNotifications(String userId, Notification.Status status) {
-    return (Iterable<Notification>) (Iterable<?>) getNotificationCollection()
-        .find("{ user_id: #, status: # }", userId, status)
-        .as(JongoNotification.class);
+    return getNotifications(userId, null, status, null, null, 0);
   }
 
   @Override
-  @SuppressWarnings("unchecked")
   public Iterable<Notification> getNotifications(String userId, String instanceId, Notification.Status status) {
+    return getNotifications(userId, instanceId, status, null, null, 0);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterable<Notification> getNotifications(String userId, @Nullable String instanceId, @Nullable Notification.Status status,
+      @Nullable Instant beforeTime, @Nullable String beforeId, int limit) {
+    checkArgument(limit >= 0);
+    List<Object> parameters = new ArrayList<>();
+    String query = notificationsQuery(parameters, userId, instanceId, status, beforeTime, beforeId);
     return (Iterable<Notification>) (Iterable<?>) getNotificationCollection()
-        .find("{ user_id: #, instance_id: #, status: # }", userId, instanceId, status)
+        .find(query, parameters.toArray())
+        .sort("{ time: -1, id: -1 }")
+        .limit(limit)
         .as(JongoNotification.class);
   }
 
+  /** Builds the query for {@link #getNotifications}, adding its parameters to the given list. */
+  private static String notificationsQuery(List<Object> parameters, String userId, @Nullable String instanceId,
+      @Nullable Notification.Status status, @Nullable Instant beforeTime, @Nullable String beforeId) {
+    StringBuilder query = new StringBuilder("{ user_id: #");
+    parameters.add(userId);
+    if (instanceId != null) {
+      query.append(", instance_id: #");
+      parameters.add(instanceId);
+    }
+    if (status != null) {
+      query.append(", status: #");
+      parameters.add(status);
+    }
+    if (beforeTime != null) {
+      if (beforeId != null) {
+        query.append(", $or: [ { time: { $lt: # } }, { time: #, id: { $lt: # } } ]");
+        parameters.add(Date.from(beforeTime));
+        parameters.add(Date.from(beforeTime));
+        parameters.add(beforeId);
+      } else {
+        query.append(", time: { $lt: # }");
+        parameters.add(Date.from(beforeTime));
+      }
+    }
+    query.append(" }");
+    return query.toString();
+  }
+
   @Override
   public void markNotifications(String userId, List<String> notificationIds, Notification.Status status) {
-    getNotificationCollection()
-        .update("{ id: {$in: # }, user_id: # }", notificationIds, userId)
-        .multi()
-        .with("{ $set: { status: # } }", status);
+    if (status == Notification.Status.READ) {
+      // read_time is used to expire read notifications
+      getNotificationCollection()
+          .update(BY_IDS_AND_USER_NOT_IN_STATUS, notificationIds, userId, status)
+          .multi()
+          .with("{ $set: { status: #, read_time: # } }", status, new Date());
+    } else {
+      getNotificationCollection()
+          .update(BY_IDS_AND_USER, notificationIds, userId)
+          .multi()
+          .with("{ $set: { status: # }, $unset: { read_time: 1 } }", status);
+    }
+  }
+
+  private void checkNotificationsQuery(@Nullable String instanceId, @Nullable Notification.Status status,
+      @Nullable Instant beforeTime, @Nullable String beforeId) {
+    List<Object> parameters = new ArrayList<>();
+    String query = notificationsQuery(parameters, "x", instanceId, status, beforeTime, beforeId);
+    JongoQueryShapeChecker.checkIndexed(jongo, getNotificationCollection(), query, parameters.toArray());
   }
 
   @Override
   public void bootstrap() {
     getNotificationCollection().ensureIndex("{ id: 1 }", "{ unique: 1 }");
-    // TODO: add indexes for all other accesses
+    // Indexes for getNotifications, with and without filtering on instance_id and/or status
+    getNotificationCollection().ensureIndex("{ user_id: 1, time: -1, id: -1 }");
+    getNotificationCollection().ensureIndex("{ user_id: 1, status: 1, time: -1, id: -1 }");
+    getNotificationCollection().ensureIndex("{ user_id: 1, instance_id: 1, time: -1, id: -1 }");
+    getNotificationCollection().ensureIndex("{ user_id: 1, instance_id: 1, status: 1, time: -1, id: -1 }");
+    checkNotificationsQuery(null, null, null, null);
+    checkNotificationsQuery("x", Notification.Status.UNREAD, Instant.EPOCH, "x");
+    List<String> ids = Collections.singletonList("x");
+    JongoQueryShapeChecker.checkIndexed(jongo, getNotificationCollection(), BY_IDS_AND_USER, ids, "x");
+    JongoQueryShapeChecker.checkIndexed(jongo, getNotificationCollection(), BY_IDS_AND_USER_NOT_IN_STATUS, ids, "x",
+        Notification.Status.READ);
+
+    long readRetention = settings.notificationReadRetention.getSeconds();
+    try {
+      getNotificationCollection().ensureIndex("{ read_time: 1 }", "{ background: 1, expireAfterSeconds: " + readRetention + " }");
+    } catch (MongoCommandException e) {
+      if (e.getErrorCode() != INDEX_OPTIONS_CONFLICT) {
+        throw e;
+      }
+      // The retention period has been changed; update the existing index.
+      jongo.getDatabase().command(new BasicDBObject("collMod", COLLECTION_NAME)
+          .append("index", new BasicDBObject("keyPattern", new BasicDBObject("read_time", 1))
+              .append("expireAfterSeconds", readRetention)));
+    }
   }
 }
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyException;
 import java.security.KeyFactory;
 import java.security.KeyPair;
@@ -29,6 +30,7 @@ import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
 import java.security.interfaces.RSAMultiPrimePrivateCrtKey;
 import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.spec.InvalidKeySpecException;
@@ -44,8 +46,24 @@ import org.slf4j.LoggerFactory;
 public class KeyPairLoader {
   private static final Logger logger = LoggerFactory.getLogger(KeyPairLoader.class);
   private static final int KEY_SIZE = 2048;
+  private static final String EC_CURVE = "secp256r1"; // aka P-256
+
+  private enum KeyType { RSA, EC }
 
   public static KeyPair loadOrGenerateKeyPair(@Nullable Path privateKeyPath, @Nullable Path publicKeyPath) {
+    return loadOrGenerateKeyPair(KeyType.RSA, privateKeyPath, publicKeyPath);
+  }
+
+  /**
+   * Same as {@link #loadOrGenerateKeyPair(Path, Path)} but for an elliptic curve (P-256) key-pair.
+   *
+   * <p>The public key cannot be extracted from an EC private key, so both paths should be given.
+   */
+  public static KeyPair loadOrGenerateEcKeyPair(@Nullable Path privateKeyPath, @Nullable Path publicKeyPath) {
+    return loadOrGenerateKeyPair(KeyType.EC, privateKeyPath, publicKeyPath);
+  }
+
+  private static KeyPair loadOrGenerateKeyPair(KeyType keyType, @Nullable Path privateKeyPath, @Nullable Path publicKeyPath) {
     boolean storePrivateKey = false;
     boolean storePublicKey = false;
 
@@ -54,14 +72,14 @@ public class KeyPairLoader {
         logger.warn("Private key is not specified. Cannot create a key-pair from a public key.");
       }
       logger.debug("Generating a key-pair in-memory");
-      return generateRandomKeyPair();
+      return generateRandomKeyPair(keyType);
     }
 
     KeyPair keyPair = null;
     if (publicKeyPath == null) {
       try {
         logger.debug("Private key configured but no public key given, extracting the public key from the private key at {}", privateKeyPath);
-        keyPair = loadFromPrivateKeyFile(privateKeyPath);
+        keyPair = loadFromPrivateKeyFile(keyType, privateKeyPath);
       } catch (FileNotFoundException e) {
         logger.warn("Cannot load the key pair from private key file {}.", privateKeyPath, e);
         storePrivateKey = true;
@@ -71,7 +89,7 @@ public class KeyPairLoader {
     } else {
       try {
         logger.debug("Loading key-pair from private key {} and public key {}", privateKeyPath, publicKeyPath);
-        keyPair = loadFromFiles(privateKeyPath, publicKeyPath);
+        keyPair = loadFromFiles(keyType, privateKeyPath, publicKeyPath);
       } catch (FileNotFoundException e) {
         logger.warn("Cannot load the key pair from private key file {} and public key file {}.",
             new Object[]{privateKeyPath, publicKeyPath, e});
@@ -85,7 +103,7 @@ public class KeyPairLoader {
 
     if (keyPair == null) {
       logger.warn("Generating a key-pair in-memory");
-      keyPair = generateRandomKeyPair();
+      keyPair = generateRandomKeyPair(keyType);
     }
 
     if (storePrivateKey) {
@@ -111,13 +129,21 @@ public class KeyPairLoader {
   }
 
   public static KeyPair generateRandomKeyPair() {
-    KeyPairGenerator generator = getKeyPairGenerator();
+    return generateRandomKeyPair(KeyType.RSA);
+  }
+
+  public static KeyPair generateRandomEcKeyPair() {
+    return generateRandomKeyPair(KeyType.EC);
+  }
+
+  private static KeyPair generateRandomKeyPair(KeyType keyType) {
+    KeyPairGenerator generator = getKeyPairGenerator(keyType);
     return generator.generateKeyPair();
   }
 
   private static PublicKey extractPublicKeyFromPrivateKey(PrivateKey privateKey) throws KeyException {
     try {
-      KeyFactory keyFactory = getKeyFactory();
+      KeyFactory keyFactory = getKeyFactory(KeyType.RSA);
       if (privateKey instanceof RSAPrivateCrtKey) {
         return keyFactory.generatePublic(
             new RSAPublicKeySpec(((RSAPrivateCrtKey) privateKey).getModulus(), ((RSAPrivateCrtKey) privateKey).getPublicExponent()));
@@ -133,11 +159,11 @@ public class KeyPairLoader {
     }
   }
 
-  private static KeyPair loadFromFiles(Path privateKeyPath, Path publicKeyPath) throws IOException, KeyException {
-    PrivateKey privateKey = loadPrivateKey(privateKeyPath);
+  private static KeyPair loadFromFiles(KeyType keyType, Path privateKeyPath, Path publicKeyPath) throws IOException, KeyException {
+    PrivateKey privateKey = loadPrivateKey(keyType, privateKeyPath);
     PublicKey publicKey;
     try {
-      publicKey = loadPublicKey(publicKeyPath);
+      publicKey = loadPublicKey(keyType, publicKeyPath);
       // TODO: Verify that the public key match with the private key
     } catch (KeyException e) {
       logger.error("Can't extract a public key from the file {}", publicKeyPath, e);
@@ -146,12 +172,12 @@ public class KeyPairLoader {
     return new KeyPair(publicKey, privateKey);
   }
 
-  private static KeyPair loadFromPrivateKeyFile(Path privateKeyPath) throws IOException, KeyException {
-    PrivateKey privateKey = loadPrivateKey(privateKeyPath);
+  private static KeyPair loadFromPrivateKeyFile(KeyType keyType, Path privateKeyPath) throws IOException, KeyException {
+    PrivateKey privateKey = loadPrivateKey(keyType, privateKeyPath);
     return new KeyPair(extractPublicKeyFromPrivateKey(privateKey), privateKey);
   }
 
-  private static PrivateKey loadPrivateKey(Path privateKeyPath) throws IOException, KeyException {
+  private static PrivateKey loadPrivateKey(KeyType keyType, Path privateKeyPath) throws IOException, KeyException {
     if (!Files.exists(privateKeyPath)) {
       logger.warn("The private key at {} doesn't exist.", privateKeyPath);
       throw new FileNotFoundException(privateKeyPath.toString());
@@ -166,7 +192,7 @@ public class KeyPairLoader {
     }
 
     PKCS8EncodedKeySpec privateKeySpec = new PKCS8EncodedKeySpec(Files.readAllBytes(privateKeyPath));
-    KeyFactory factory = getKeyFactory();
+    KeyFactory factory = getKeyFactory(keyType);
     try {
       return factory.generatePrivate(privateKeySpec);
     } catch (InvalidKeySpecException e) {
@@ -175,7 +201,7 @@ public class KeyPairLoader {
     }
   }
 
-  private static PublicKey loadPublicKey(Path publicKeyPath) throws IOException, KeyException {
+  private static PublicKey loadPublicKey(KeyType keyType, Path publicKeyPath) throws IOException, KeyException {
     if (!Files.exists(publicKeyPath)) {
       logger.warn("The public key at {} doesn't exist.", publicKeyPath);
       throw new FileNotFoundException(publicKeyPath.toString());
@@ -190,7 +216,7 @@ public class KeyPairLoader {
     }
 
     X509EncodedKeySpec publicKeySpec = new X509EncodedKeySpec(Files.readAllBytes(publicKeyPath));
-    KeyFactory factory = getKeyFactory();
+    KeyFactory factory = getKeyFactory(keyType);
 
     try {
       return factory.generatePublic(publicKeySpec);
@@ -238,21 +264,28 @@ public class KeyPairLoader {
     Files.write(publicKeyPath, publicKeySpec.getEncoded());
   }
 
-  private static KeyFactory getKeyFactory() {
+  private static KeyFactory getKeyFactory(KeyType keyType) {
     try {
-      return KeyFactory.getInstance("RSA");
+      return KeyFactory.getInstance(keyType.name());
     } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException("Cannot create the KeyFactory. RSA algorithm seems to be unavailable.", e);
+      throw new RuntimeException("Cannot create the KeyFactory. " + keyType + " algorithm seems to be unavailable.", e);
     }
   }
 
-  private static KeyPairGenerator getKeyPairGenerator() {
+  private static KeyPairGenerator getKeyPairGenerator(KeyType keyType) {
     try {
-      KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
-      generator.initialize(KEY_SIZE);
+      KeyPairGenerator generator = KeyPairGenerator.getInstance(keyType.name());
+      switch (keyType) {
+        case RSA:
+          generator.initialize(KEY_SIZE);
+          break;
+        case EC:
+          generator.initialize(new ECGenParameterSpec(EC_CURVE));
+          break;
+      }
       return generator;
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException("Cannot create the KeyPairGenerator. RSA algorithm seems to be unavailable.", e);
+    } catch (NoSuchAlgorithmException | InvalidAlgorithmParameterException e) {
+      throw new RuntimeException("Cannot create the KeyPairGenerator. " + keyType + " algorithm seems to be unavailable.", e);
     }
   }
 
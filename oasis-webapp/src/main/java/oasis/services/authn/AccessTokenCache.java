@@ -0,0 +1,95 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.services.authn;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
+
+import oasis.auth.AuthModule;
+import oasis.model.authn.AccessToken;
+import oasis.services.cache.GenerationalCache;
+
+/**
+ * Process-wide cache of already-verified access tokens.
+ *
+ * <p>Entries are keyed by a digest of the serialized token (so the token's secret is never kept in memory),
+ * they're evicted after {@link AuthModule.Settings#accessTokenCacheDuration} and never outlive the token's
+ * expiration time.
+ *
+ * <p>Entries are invalidated by the {@link oasis.model.authn.TokenRepository TokenRepository} whenever tokens
+ * are revoked.
+ */
+@Singleton
+public class AccessTokenCache {
+  private final GenerationalCache<AccessToken> cache;
+
+  @Inject AccessTokenCache(AuthModule.Settings settings) {
+    this.cache = new GenerationalCache<>(settings.accessTokenCacheSize, settings.accessTokenCacheDuration);
+  }
+
+  /**
+   * Returns the cached access token for the given serialized token, or {@code null} if not cached or expired.
+   */
+  @Nullable
+  public AccessToken get(String tokenSerial) {
+    AccessToken accessToken = cache.get(key(tokenSerial));
+    if (accessToken != null && accessToken.getExpirationTime().isBefore(Instant.now())) {
+      return null;
+    }
+    return accessToken;
+  }
+
+  public long generation() {
+    return cache.generation();
+  }
+
+  public void put(String tokenSerial, AccessToken accessToken, long generation) {
+    if (accessToken.getExpirationTime().isBefore(Instant.now())) {
+      return;
+    }
+    cache.put(key(tokenSerial), accessToken, generation);
+  }
+
+  public void invalidate(Predicate<? super AccessToken> predicate) {
+    cache.invalidateValues(predicate);
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  private static String key(String tokenSerial) {
+    return Hashing.sha256().hashString(tokenSerial, StandardCharsets.UTF_8).toString();
+  }
+}
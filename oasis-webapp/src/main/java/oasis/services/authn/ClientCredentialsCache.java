@@ -0,0 +1,94 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.services.authn;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import oasis.auth.AuthModule;
+import oasis.model.authn.ClientType;
+import oasis.services.cache.GenerationalCache;
+
+/**
+ * Process-wide cache of already-verified client credentials.
+ *
+ * <p>Only a keyed digest of the verified secret is kept, with a key that never leaves the process.
+ * Presented secrets are digested the same way and compared in constant time; on a miss (or mismatch)
+ * callers must fall back to the full check.
+ *
+ * <p>Entries are invalidated by the {@link oasis.model.authn.CredentialsRepository CredentialsRepository}
+ * whenever credentials are changed or deleted.
+ */
+@Singleton
+public class ClientCredentialsCache {
+  private final GenerationalCache<byte[]> cache;
+  private final HashFunction hashFunction;
+
+  @Inject ClientCredentialsCache(AuthModule.Settings settings, SecureRandom secureRandom) {
+    this.cache = new GenerationalCache<>(settings.clientCredentialsCacheSize, settings.clientCredentialsCacheDuration);
+    byte[] key = new byte[32];
+    secureRandom.nextBytes(key);
+    this.hashFunction = Hashing.hmacSha256(key);
+  }
+
+  /**
+   * Returns whether the given secret has already been verified for the given client.
+   */
+  public boolean isVerified(ClientType type, String id, String secret) {
+    byte[] digest = cache.get(key(type, id));
+    // Always compute the digest so that timing doesn't depend on whether the client is in the cache.
+    byte[] testDigest = digest(secret);
+    return digest != null && MessageDigest.isEqual(digest, testDigest);
+  }
+
+  public long generation() {
+    return cache.generation();
+  }
+
+  public void put(ClientType type, String id, String secret, long generation) {
+    cache.put(key(type, id), digest(secret), generation);
+  }
+
+  public void invalidate(ClientType type, String id) {
+    cache.invalidate(key(type, id));
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  private byte[] digest(String secret) {
+    return hashFunction.hashString(secret, StandardCharsets.UTF_8).asBytes();
+  }
+
+  private static String key(ClientType type, String id) {
+    return type.name() + ":" + id;
+  }
+}
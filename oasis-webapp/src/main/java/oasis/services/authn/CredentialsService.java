@@ -28,11 +28,14 @@ import oasis.services.authn.login.SCryptPasswordHasher;
 public class CredentialsService {
   private final CredentialsRepository credentialsRepository;
   private final PasswordHasher passwordHasher;
+  private final ClientCredentialsCache clientCredentialsCache;
 
   @Inject
-  CredentialsService(CredentialsRepository credentialsRepository, SCryptPasswordHasher passwordHasher) {
+  CredentialsService(CredentialsRepository credentialsRepository, SCryptPasswordHasher passwordHasher,
+      ClientCredentialsCache clientCredentialsCache) {
     this.credentialsRepository = credentialsRepository;
     this.passwordHasher = passwordHasher;
+    this.clientCredentialsCache = clientCredentialsCache;
   }
 
   public void setPassword(ClientType type, String id, String password) {
@@ -42,10 +45,21 @@ public class CredentialsService {
   }
 
   public boolean checkPassword(ClientType type, String id, String password) {
+    // Only cache client secrets: they're machine-generated, whereas user passwords have low entropy
+    // and must always go through the KDF.
+    boolean useCache = type == ClientType.PROVIDER;
+    if (useCache && clientCredentialsCache.isVerified(type, id, password)) {
+      return true;
+    }
+    long generation = clientCredentialsCache.generation();
     Credentials credentials = credentialsRepository.getCredentials(type, id);
     if (credentials == null) {
       return false;
     }
-    return passwordHasher.checkPassword(password, credentials.getHash(), credentials.getSalt());
+    boolean valid = passwordHasher.checkPassword(password, credentials.getHash(), credentials.getSalt());
+    if (valid && useCache) {
+      clientCredentialsCache.put(type, id, password, generation);
+    }
+    return valid;
   }
 }
@@ -44,6 +44,7 @@ import oasis.model.authn.SidToken;
 import oasis.model.authn.Token;
 import oasis.model.authn.TokenRepository;
 import oasis.services.authn.login.PasswordHasher;
+import oasis.services.authn.login.Sha256PasswordHasher;
 import oasis.userdirectory.UserDirectoryModule;
 
 public class TokenHandler {
@@ -55,16 +56,18 @@ public class TokenHandler {
   private final AuthModule.Settings authSettings;
   private final UserDirectoryModule.Settings userDirectorySettings;
   private final PasswordHasher passwordHasher;
+  private final Sha256PasswordHasher tokenHasher;
   private final SecureRandom secureRandom;
   private final Clock clock;
 
   @Inject TokenHandler(TokenRepository tokenRepository, AuthModule.Settings oidcSettings,
       UserDirectoryModule.Settings userDirectorySettings, PasswordHasher passwordHasher,
-      SecureRandom secureRandom, Clock clock) {
+      Sha256PasswordHasher tokenHasher, SecureRandom secureRandom, Clock clock) {
     this.tokenRepository = tokenRepository;
     this.authSettings = oidcSettings;
     this.userDirectorySettings = userDirectorySettings;
     this.passwordHasher = passwordHasher;
+    this.tokenHasher = tokenHasher;
     this.secureRandom = secureRandom;
     this.clock = clock;
   }
@@ -335,11 +338,14 @@ public class TokenHandler {
   }
 
   private void secureToken(Token token, String pass) {
-    byte[] salt = passwordHasher.createSalt();
-    byte[] hash = passwordHasher.hashPassword(pass, salt);
+    // Passes are generated by generateRandom() so they have enough entropy for a fast hash;
+    // no need for a memory-hard KDF here.
+    byte[] salt = tokenHasher.createSalt();
+    byte[] hash = tokenHasher.hashPassword(pass, salt);
 
     token.setHash(hash);
     token.setSalt(salt);
+    token.setHashAlgorithm(Token.HashAlgorithm.SALTED_SHA256);
   }
 
   // Used by TokenInfo
@@ -373,6 +379,21 @@ public class TokenHandler {
       return false;
     }
 
-    return passwordHasher.checkPassword(pass, token.getHash(), token.getSalt());
+    return getHasher(token).checkPassword(pass, token.getHash(), token.getSalt());
+  }
+
+  private PasswordHasher getHasher(Token token) {
+    if (token.getHashAlgorithm() == null) {
+      // legacy token
+      return passwordHasher;
+    }
+    switch (token.getHashAlgorithm()) {
+      case SALTED_SHA256:
+        return tokenHasher;
+      case SCRYPT:
+        return passwordHasher;
+      default:
+        throw new AssertionError(token.getHashAlgorithm());
+    }
   }
 }
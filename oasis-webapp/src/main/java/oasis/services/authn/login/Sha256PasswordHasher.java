@@ -0,0 +1,69 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.services.authn.login;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import javax.inject.Inject;
+
+/**
+ * Fast hasher for machine-generated, high-entropy secrets (such as token passes).
+ *
+ * <p>The secret is hashed with SHA-256, prefixed with a random per-secret salt. A memory-hard KDF
+ * such as scrypt only adds value for low-entropy (human-chosen) passwords; this must not be used
+ * for those.
+ */
+public class Sha256PasswordHasher implements PasswordHasher {
+  private static final String ALGORITHM = "SHA-256";
+
+  private final SecureRandom secureRandom;
+
+  @Inject
+  Sha256PasswordHasher(SecureRandom secureRandom) {
+    this.secureRandom = secureRandom;
+  }
+
+  @Override
+  public byte[] createSalt() {
+    byte[] salt = new byte[32];
+    secureRandom.nextBytes(salt);
+    return salt;
+  }
+
+  @Override
+  public byte[] hashPassword(String password, byte[] salt) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      // SHA-256 is mandatory in every Java platform implementation
+      throw new AssertionError(e);
+    }
+    digest.update(salt);
+    return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public boolean checkPassword(String password, byte[] hash, byte[] salt) {
+    byte[] testHash = hashPassword(password, salt);
+    return MessageDigest.isEqual(hash, testHash);
+  }
+}
@@ -25,7 +25,6 @@ import com.google.common.base.Strings;
 import com.google.common.collect.Streams;
 
 import oasis.model.applications.v2.AppInstance;
-import oasis.model.directory.OrganizationMembership;
 import oasis.model.directory.OrganizationMembershipRepository;
 
 public class AppAdminHelper {
@@ -42,8 +41,7 @@ public class AppAdminHelper {
       return userId.equals(instance.getInstantiator_id());
     } else {
       // Application bought by/for an organization
-      OrganizationMembership membership = organizationMembershipRepository.getOrganizationMembership(userId, instance.getProvider_id());
-      return membership != null && membership.isAdmin();
+      return organizationMembershipRepository.isOrganizationAdmin(userId, instance.getProvider_id());
     }
   }
 
@@ -53,7 +51,6 @@ public class AppAdminHelper {
       return Stream.of(appInstance.getInstantiator_id());
     }
     // Application bought by/for an organization
-    return Streams.stream(organizationMembershipRepository.getAdminsOfOrganization(appInstance.getProvider_id()))
-        .map(OrganizationMembership::getAccountId);
+    return Streams.stream(organizationMembershipRepository.getAdminIdsOfOrganization(appInstance.getProvider_id()));
   }
 }
@@ -0,0 +1,81 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.services.authz;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.cache.CacheStats;
+
+import oasis.auth.AuthModule;
+import oasis.services.cache.GenerationalCache;
+
+/**
+ * Process-wide cache of the {@linkplain AppRoleService roles} of users on app instances.
+ *
+ * <p>Entries are invalidated whenever the user's organization memberships or the app instance's access control entries
+ * change.
+ */
+@Singleton
+public class AppRoleCache {
+  private final GenerationalCache<AppRoleService.AppRoles> cache;
+
+  @Inject AppRoleCache(AuthModule.Settings settings) {
+    this.cache = new GenerationalCache<>(settings.appRolesCacheSize, settings.appRolesCacheDuration);
+  }
+
+  @Nullable
+  public AppRoleService.AppRoles get(String userId, String instanceId) {
+    return cache.get(key(userId, instanceId));
+  }
+
+  public long generation() {
+    return cache.generation();
+  }
+
+  public void put(String userId, String instanceId, AppRoleService.AppRoles roles, long generation) {
+    cache.put(key(userId, instanceId), roles, generation);
+  }
+
+  public void invalidateAccount(String accountId) {
+    String prefix = accountId + ":";
+    cache.invalidateKeys(key -> key.startsWith(prefix));
+  }
+
+  public void invalidateAppInstance(String instanceId) {
+    String suffix = ":" + instanceId;
+    cache.invalidateKeys(key -> key.endsWith(suffix));
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  private static String key(String userId, String instanceId) {
+    return userId + ":" + instanceId;
+  }
+}
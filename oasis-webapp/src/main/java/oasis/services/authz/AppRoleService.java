@@ -0,0 +1,90 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.services.authz;
+
+import javax.inject.Inject;
+
+import oasis.model.applications.v2.AccessControlRepository;
+import oasis.model.applications.v2.AppInstance;
+
+/**
+ * Computes whether a user is an {@code app_user} and/or an {@code app_admin} of an app instance.
+ *
+ * <p>Roles are looked up once and then {@linkplain AppRoleCache cached} for a short time, so that the token,
+ * introspection and authorization endpoints, and the app instance endpoints, can ask for them on each request.
+ * Revoked roles can thus still be seen for a short time, which is only acceptable for reads: writes must be authorized
+ * with {@link #isAppAdminUncached}.
+ */
+public class AppRoleService {
+  public static class AppRoles {
+    private final boolean appUser;
+    private final boolean appAdmin;
+
+    AppRoles(boolean appUser, boolean appAdmin) {
+      this.appUser = appUser;
+      this.appAdmin = appAdmin;
+    }
+
+    public boolean isAppUser() {
+      return appUser;
+    }
+
+    public boolean isAppAdmin() {
+      return appAdmin;
+    }
+  }
+
+  private final AccessControlRepository accessControlRepository;
+  private final AppAdminHelper appAdminHelper;
+  private final AppRoleCache appRoleCache;
+
+  @Inject AppRoleService(AccessControlRepository accessControlRepository, AppAdminHelper appAdminHelper,
+      AppRoleCache appRoleCache) {
+    this.accessControlRepository = accessControlRepository;
+    this.appAdminHelper = appAdminHelper;
+    this.appRoleCache = appRoleCache;
+  }
+
+  public AppRoles getRoles(String userId, AppInstance instance) {
+    AppRoles roles = appRoleCache.get(userId, instance.getId());
+    if (roles == null) {
+      long generation = appRoleCache.generation();
+      roles = new AppRoles(
+          accessControlRepository.getAccessControlEntry(instance.getId(), userId) != null,
+          appAdminHelper.isAdmin(userId, instance));
+      appRoleCache.put(userId, instance.getId(), roles, generation);
+    }
+    return roles;
+  }
+
+  public boolean isAppUser(String userId, AppInstance instance) {
+    return getRoles(userId, instance).isAppUser();
+  }
+
+  public boolean isAppAdmin(String userId, AppInstance instance) {
+    return getRoles(userId, instance).isAppAdmin();
+  }
+
+  /**
+   * Same as {@link #isAppAdmin} but always looks the role up in the database, so that users whose admin rights have
+   * just been revoked (possibly from another node) cannot change the app instance anymore.
+   */
+  public boolean isAppAdminUncached(String userId, AppInstance instance) {
+    return appAdminHelper.isAdmin(userId, instance);
+  }
+}
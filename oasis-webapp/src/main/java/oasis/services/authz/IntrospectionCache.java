@@ -0,0 +1,127 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.services.authz;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+
+import oasis.auth.AuthModule;
+import oasis.model.authn.AccessToken;
+import oasis.services.cache.GenerationalCache;
+
+/**
+ * Process-wide cache of token introspection results, keyed by the token and the client asking for introspection.
+ *
+ * <p>Entries never outlive the token's expiration time, and are invalidated whenever the token is revoked, or the
+ * user's organization memberships or app instance access control entries change (as they're used to compute
+ * {@code sub_groups}).
+ */
+@Singleton
+public class IntrospectionCache {
+  public static class Entry {
+    private final AccessToken accessToken;
+    private final ImmutableSet<String> scopeIds;
+    @Nullable private final ImmutableList<String> subGroups;
+
+    public Entry(AccessToken accessToken, Set<String> scopeIds, @Nullable List<String> subGroups) {
+      this.accessToken = accessToken;
+      this.scopeIds = ImmutableSet.copyOf(scopeIds);
+      this.subGroups = subGroups == null ? null : ImmutableList.copyOf(subGroups);
+    }
+
+    public AccessToken getAccessToken() {
+      return accessToken;
+    }
+
+    /** The token's scopes that belong to the client asking for introspection. */
+    public ImmutableSet<String> getScopeIds() {
+      return scopeIds;
+    }
+
+    @Nullable
+    public ImmutableList<String> getSubGroups() {
+      return subGroups;
+    }
+  }
+
+  private final GenerationalCache<Entry> cache;
+
+  @Inject IntrospectionCache(AuthModule.Settings settings) {
+    this.cache = new GenerationalCache<>(settings.introspectionCacheSize, settings.introspectionCacheDuration);
+  }
+
+  @Nullable
+  public Entry get(String tokenSerial, String clientId) {
+    Entry entry = cache.get(key(tokenSerial, clientId));
+    if (entry != null && entry.getAccessToken().getExpirationTime().isBefore(Instant.now())) {
+      return null;
+    }
+    return entry;
+  }
+
+  public long generation() {
+    return cache.generation();
+  }
+
+  public void put(String tokenSerial, String clientId, Entry entry, long generation) {
+    if (entry.getAccessToken().getExpirationTime().isBefore(Instant.now())) {
+      return;
+    }
+    cache.put(key(tokenSerial, clientId), entry, generation);
+  }
+
+  public void invalidate(Predicate<? super AccessToken> predicate) {
+    cache.invalidateValues(entry -> predicate.test(entry.getAccessToken()));
+  }
+
+  public void invalidateAccount(String accountId) {
+    invalidate(accessToken -> accountId.equals(accessToken.getAccountId()));
+  }
+
+  public void invalidateAppInstance(String instanceId) {
+    invalidate(accessToken -> instanceId.equals(accessToken.getServiceProviderId()));
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  private static String key(String tokenSerial, String clientId) {
+    return Hashing.sha256().hashString(tokenSerial, StandardCharsets.UTF_8) + ":" + clientId;
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.services.cache;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Size-bounded, time-bounded process-wide cache whose entries are invalidated when the data they've been computed from
+ * changes.
+ *
+ * <p>A generation counter is incremented on each invalidation. Callers {@linkplain #generation() read} it before
+ * loading the data, and pass it back to {@link #put}: the value isn't cached if there's been an invalidation in between,
+ * as it might have been computed from stale data.
+ *
+ * <p>Changes done by other nodes or by tools can't be seen, so entries are only ever as fresh as their expiration
+ * duration.
+ */
+public class GenerationalCache<V> {
+  private final Cache<String, V> cache;
+  private final AtomicLong generation;
+
+  public GenerationalCache(long maximumSize, Duration expireAfterWrite) {
+    this(maximumSize, expireAfterWrite, new AtomicLong());
+  }
+
+  /**
+   * Creates a cache sharing its generation counter with other caches, so that a put in one of them is skipped after an
+   * invalidation in any of them.
+   */
+  public GenerationalCache(long maximumSize, Duration expireAfterWrite, AtomicLong generation) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWrite.toMillis(), TimeUnit.MILLISECONDS)
+        .recordStats()
+        .build();
+    this.generation = generation;
+  }
+
+  @Nullable
+  public V get(String key) {
+    return cache.getIfPresent(key);
+  }
+
+  public ImmutableMap<String, V> getAllPresent(Iterable<String> keys) {
+    return cache.getAllPresent(keys);
+  }
+
+  /**
+   * Returns a value to pass to {@link #put}, to be read before loading the data.
+   */
+  public long generation() {
+    return generation.get();
+  }
+
+  /**
+   * Caches a value, unless there's been an invalidation since {@code generation} has been {@linkplain #generation()
+   * read}.
+   */
+  public void put(String key, V value, long generation) {
+    cache.put(key, value);
+    if (this.generation.get() != generation) {
+      // Data might have been changed concurrently, be conservative.
+      cache.invalidate(key);
+    }
+  }
+
+  public void invalidate(String key) {
+    generation.incrementAndGet();
+    cache.invalidate(key);
+  }
+
+  public void invalidateKeys(Predicate<? super String> predicate) {
+    generation.incrementAndGet();
+    cache.asMap().keySet().removeIf(predicate);
+  }
+
+  public void invalidateValues(Predicate<? super V> predicate) {
+    generation.incrementAndGet();
+    cache.asMap().values().removeIf(predicate);
+  }
+
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+}
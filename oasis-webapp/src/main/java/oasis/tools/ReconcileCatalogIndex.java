@@ -0,0 +1,211 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.tools;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import org.kohsuke.args4j.Option;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.typesafe.config.Config;
+
+import io.searchbox.action.BulkableAction;
+import io.searchbox.core.DocumentResult;
+import oasis.auth.AuthModule;
+import oasis.catalog.CatalogModule;
+import oasis.elasticsearch.ElasticsearchModule;
+import oasis.http.HttpClientModule;
+import oasis.jest.JestService;
+import oasis.jest.applications.v2.JestCatalogEntryRepository;
+import oasis.jest.guice.JestModule;
+import oasis.jongo.JongoService;
+import oasis.jongo.applications.v2.JongoApplicationRepository;
+import oasis.jongo.applications.v2.JongoServiceRepository;
+import oasis.jongo.guice.JongoModule;
+import oasis.model.applications.v2.CatalogEntry;
+import oasis.model.applications.v2.Service;
+import oasis.soy.SoyGuiceModule;
+import oasis.urls.UrlsModule;
+
+/**
+ * Brings the catalog index back in sync with the database, for entries modified recently.
+ * <p>
+ * Entries that should be in the catalog are (re)indexed, others are removed from the index. Index entries that no
+ * longer exist in the database are removed too.
+ */
+public class ReconcileCatalogIndex extends CommandLineTool {
+  public static void main(String[] args) throws Exception {
+    new ReconcileCatalogIndex().run(args);
+  }
+
+  private static final int BATCH_SIZE = 500;
+
+  @Option(name = "-n", aliases = "--dry-run")
+  private boolean dryRun;
+
+  @Option(name = "-s", aliases = "--since", usage = "Reconcile entries modified within that duration (ISO-8601, defaults to P1D)", metaVar = "duration")
+  private String since = "P1D";
+
+  @Inject JestService jestService;
+  @Inject JongoService jongoService;
+  @Inject Provider<JestCatalogEntryRepository> jestCatalogEntryRepositoryProvider;
+  @Inject Provider<JongoApplicationRepository> jongoApplicationRepositoryProvider;
+  @Inject Provider<JongoServiceRepository> jongoServiceRepositoryProvider;
+
+  public void run(String[] args) throws Exception {
+    final Config config = init(args);
+
+    if (dryRun) {
+      logger().warn("Running in dry-run mode; changes will only be logged, the index won't be modified.");
+    }
+
+    final Instant modifiedSince = Instant.now().minus(Duration.parse(since));
+
+    final Injector injector = Guice.createInjector(
+        UrlsModule.create(config.getConfig("oasis.urls")),
+        new SoyGuiceModule(),
+        JongoModule.create(config.getConfig("oasis.mongo")),
+        ElasticsearchModule.create(config.getConfig("oasis.elasticsearch")),
+        new JestModule(),
+        new CatalogModule(),
+        HttpClientModule.create(config.getConfig("oasis.http.client")),
+        // TODO: store PKIs in DB to use a single subtree of the config
+        AuthModule.create(config.getConfig("oasis.auth")
+            .withFallback(config.withOnlyPath("oasis.conf-dir")))
+    );
+
+    injector.injectMembers(this);
+
+    jongoService.start();
+    jestService.start();
+
+    try {
+      logger().info("Reconciling catalog entries modified since {} ...", modifiedSince);
+
+      Iterable<? extends CatalogEntry> applications = jongoApplicationRepositoryProvider.get().getModifiedSince(modifiedSince.toEpochMilli());
+      Iterable<? extends CatalogEntry> services = jongoServiceRepositoryProvider.get().getModifiedSince(modifiedSince.toEpochMilli());
+
+      JestCatalogEntryRepository jestCatalogEntryRepository = jestCatalogEntryRepositoryProvider.get();
+      List<BulkableAction<DocumentResult>> batch = new ArrayList<>(BATCH_SIZE);
+      int count = 0;
+      int errors = 0;
+      for (CatalogEntry catalogEntry : Iterables.concat(applications, services)) {
+        if (shouldIndex(catalogEntry)) {
+          logger().info("Indexing {} {}", catalogEntry.getType(), catalogEntry.getId());
+          batch.add(jestCatalogEntryRepository.indexAction(catalogEntry));
+        } else {
+          logger().info("Removing {} {} from the index", catalogEntry.getType(), catalogEntry.getId());
+          batch.add(jestCatalogEntryRepository.deleteAction(catalogEntry.getId(), catalogEntry.getType()));
+        }
+        count++;
+        if (batch.size() >= BATCH_SIZE) {
+          errors += flush(jestCatalogEntryRepository, batch);
+        }
+      }
+      errors += flush(jestCatalogEntryRepository, batch);
+
+      logger().info("Reconciled {} catalog entries, with {} errors", count, errors);
+
+      // Entries deleted from the database won't show up above; look for them in the index.
+      // Scan the index before reading the database, so entries created in-between aren't mistaken for orphans.
+      logger().info("Removing index entries that no longer exist in the database ...");
+      int orphans = 0;
+      errors = 0;
+      for (List<String> keys : Lists.partition(jestCatalogEntryRepository.getAllDocumentKeys(), BATCH_SIZE)) {
+        ListMultimap<CatalogEntry.EntryType, String> idsByType = ArrayListMultimap.create();
+        for (String key : keys) {
+          int sep = key.indexOf('/');
+          try {
+            idsByType.put(CatalogEntry.EntryType.valueOf(key.substring(0, sep)), key.substring(sep + 1));
+          } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            logger().warn("Ignoring unexpected document {} in the index", key);
+          }
+        }
+        for (CatalogEntry.EntryType entryType : idsByType.keySet()) {
+          List<String> ids = idsByType.get(entryType);
+          Set<String> existingIds = getExistingIds(entryType, ids);
+          for (String id : ids) {
+            if (!existingIds.contains(id)) {
+              logger().info("Removing {} {} from the index, it no longer exists", entryType, id);
+              batch.add(jestCatalogEntryRepository.deleteAction(id, entryType));
+              orphans++;
+            }
+          }
+        }
+        errors += flush(jestCatalogEntryRepository, batch);
+      }
+
+      logger().info("Removed {} orphan index entries, with {} errors", orphans, errors);
+    } finally {
+      jongoService.stop();
+      jestService.stop();
+    }
+  }
+
+  private Set<String> getExistingIds(CatalogEntry.EntryType entryType, List<String> ids) {
+    switch (entryType) {
+      case APPLICATION:
+        return jongoApplicationRepositoryProvider.get().getExistingIds(ids);
+      case SERVICE:
+        return jongoServiceRepositoryProvider.get().getExistingIds(ids);
+      default:
+        throw new AssertionError(entryType);
+    }
+  }
+
+  private boolean shouldIndex(CatalogEntry catalogEntry) {
+    if (!catalogEntry.isVisible()) {
+      return false;
+    }
+    // Same as IndexingServiceRepository
+    return !(catalogEntry instanceof Service) || ((Service) catalogEntry).getStatus() != Service.Status.NOT_AVAILABLE;
+  }
+
+  private int flush(JestCatalogEntryRepository jestCatalogEntryRepository, List<BulkableAction<DocumentResult>> batch) throws Exception {
+    if (batch.isEmpty() || dryRun) {
+      batch.clear();
+      return 0;
+    }
+    Map<String, String> errors = jestCatalogEntryRepository.executeBulk(batch);
+    for (Map.Entry<String, String> error : errors.entrySet()) {
+      logger().error("Error reconciling {}: {}", error.getKey(), error.getValue());
+    }
+    batch.clear();
+    return errors.size();
+  }
+
+  @Override
+  protected Logger logger() {
+    return LoggerFactory.getLogger(ReconcileCatalogIndex.class);
+  }
+}
@@ -19,6 +19,7 @@ package oasis.usecases;
 
 import static java.util.Objects.requireNonNull;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -39,12 +40,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.template.soy.data.SanitizedContent;
 import com.ibm.icu.util.ULocale;
 
 import net.ltgt.jaxrs.webhook.client.WebhookSignatureFilter;
+import oasis.http.HttpClientModule;
 import oasis.model.InvalidVersionException;
 import oasis.model.applications.v2.AppInstance;
 import oasis.model.applications.v2.AppInstanceRepository;
@@ -67,6 +70,7 @@ public class DeleteAppInstance {
   private static final Logger logger = LoggerFactory.getLogger(DeleteAppInstance.class);
 
   @Inject Provider<Client> clientProvider;
+  @Inject HttpClientModule.Settings httpClientSettings;
   @Inject AppInstanceRepository appInstanceRepository;
   @Inject ApplicationRepository applicationRepository;
   @Inject CredentialsRepository credentialsRepository;
@@ -162,22 +166,35 @@ public class DeleteAppInstance {
           .request()
           .async()
           .post(Entity.json(new ProviderRequest(appInstance.getId())));
+      return awaitProvider(future, httpClientSettings.webhookTimeout(endpoint), appInstance.getId(), endpoint);
+    }
+    return null;
+  }
+
+  // XXX: this is a synchronous use-case shared with the command-line tools, so it still blocks the
+  // calling thread, but never longer than the provider's configured webhook timeout.
+  @VisibleForTesting
+  static @Nullable Status awaitProvider(Future<Response> future, Duration timeout, String instanceId, String endpoint) {
+    try {
+      Response response = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
       try {
-        // TODO: make timeout configurable
-        Response response = future.get(1, TimeUnit.MINUTES);
-        try {
-          if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
-            return Status.PROVIDER_STATUS_ERROR;
-          }
-        } finally {
-          response.close();
+        if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+          return Status.PROVIDER_STATUS_ERROR;
         }
-      } catch (InterruptedException | ExecutionException e) {
-        // FIXME: check that wrapped exception is not a ResponseProcessingException
-        return Status.PROVIDER_CALL_ERROR;
-      } catch (TimeoutException e) {
-        // Ignore timeouts and fall through (delete the instance)
+      } finally {
+        response.close();
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(true);
+      return Status.PROVIDER_CALL_ERROR;
+    } catch (ExecutionException e) {
+      // FIXME: check that wrapped exception is not a ResponseProcessingException
+      return Status.PROVIDER_CALL_ERROR;
+    } catch (TimeoutException e) {
+      // Ignore timeouts and fall through (delete the instance)
+      future.cancel(true);
+      logger.warn("Timeout calling provider for instance {} after {}: uri={}", instanceId, timeout, endpoint);
     }
     return null;
   }
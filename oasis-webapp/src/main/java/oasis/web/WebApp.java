@@ -20,21 +20,24 @@ package oasis.web;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.util.Modules;
 import com.typesafe.config.Config;
 
-import oasis.auditlog.log4j.Log4JAuditLogModule;
-import oasis.auditlog.noop.NoopAuditLogModule;
+import oasis.auditlog.AuditLogModule;
+import oasis.auditlog.AuditLogService;
 import oasis.auth.AuthModule;
 import oasis.auth.FranceConnectModule;
+import oasis.catalog.CatalogIndexer;
 import oasis.catalog.CatalogModule;
 import oasis.elasticsearch.ElasticsearchModule;
+import oasis.eventbus.EventBusModule;
+import oasis.eventbus.EventDeliveryService;
 import oasis.http.HttpClientModule;
 import oasis.http.HttpServer;
 import oasis.http.HttpServerModule;
+import oasis.http.WebhookCallbackExecutor;
 import oasis.jest.JestService;
 import oasis.jest.guice.JestModule;
 import oasis.jongo.JongoService;
@@ -56,20 +59,17 @@ public class WebApp extends CommandLineTool {
   public void run(String[] args) throws Throwable {
     final Config config = init(args);
 
-    AbstractModule auditModule = (config.getBoolean("oasis.auditlog.disabled")) ?
-        new NoopAuditLogModule() :
-        new Log4JAuditLogModule();
-
     final Injector injector = Guice.createInjector(
         new OasisGuiceModule(),
         JongoModule.create(config.getConfig("oasis.mongo")),
-        auditModule,
+        AuditLogModule.create(config.getConfig("oasis.auditlog")),
         HttpClientModule.create(config.getConfig("oasis.http.client")),
         HttpServerModule.create(config.getConfig("oasis.http")),
+        EventBusModule.create(config.getConfig("oasis.eventbus")),
         ElasticsearchModule.create(config.getConfig("oasis.elasticsearch")),
         new JestModule(),
         new SoyGuiceModule(),
-        new CatalogModule(),
+        CatalogModule.create(config.getConfig("oasis.catalog")),
         // TODO: store PKIs in DB to use a single subtree of the config
         AuthModule.create(config.getConfig("oasis.auth")
             .withFallback(config.withOnlyPath("oasis.conf-dir"))),
@@ -84,15 +84,26 @@ public class WebApp extends CommandLineTool {
     final HttpServer server = injector.getInstance(HttpServer.class);
     final JongoService jongo = injector.getInstance(JongoService.class);
     final JestService jest = injector.getInstance(JestService.class);
+    final EventDeliveryService eventDelivery = injector.getInstance(EventDeliveryService.class);
+    final CatalogIndexer catalogIndexer = injector.getInstance(CatalogIndexer.class);
+    final AuditLogService auditLog = injector.getInstance(AuditLogService.class);
+    final WebhookCallbackExecutor webhookCallbacks = injector.getInstance(WebhookCallbackExecutor.class);
 
     Runtime.getRuntime().addShutdownHook(new Thread(() -> {
       server.stop();
+      webhookCallbacks.stop();
+      eventDelivery.stop();
+      catalogIndexer.stop();
+      auditLog.stop();
       jest.stop();
       jongo.stop();
     }));
 
     jongo.start();
     jest.start();
+    auditLog.start();
+    catalogIndexer.start();
+    eventDelivery.start();
     server.start();
   }
 
@@ -20,7 +20,9 @@ package oasis.web.applications;
 import java.net.URI;
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Predicate;
 
 import javax.annotation.Nullable;
@@ -68,6 +70,7 @@ import oasis.model.notification.NotificationRepository;
 import oasis.services.authn.TokenHandler;
 import oasis.services.authn.TokenSerializer;
 import oasis.services.authz.AppAdminHelper;
+import oasis.services.authz.AppRoleService;
 import oasis.services.branding.BrandHelper;
 import oasis.services.etag.EtagService;
 import oasis.soy.SoyTemplate;
@@ -96,6 +99,7 @@ public class AppInstanceAccessControlEndpoint {
   @Inject OrganizationMembershipRepository organizationMembershipRepository;
   @Inject AccountRepository accountRepository;
   @Inject AppAdminHelper appAdminHelper;
+  @Inject AppRoleService appRoleService;
   @Inject EtagService etagService;
   @Inject MailSender mailSender;
   @Inject SoyTemplateRenderer templateRenderer;
@@ -120,7 +124,7 @@ public class AppInstanceAccessControlEndpoint {
     if (!instance_id.equals(accessToken.getServiceProviderId()) && !accessToken.isPortal()) {
       return ResponseFactory.forbidden("Cannot read the access control list of another instance");
     }
-    if (!appAdminHelper.isAdmin(accessToken.getAccountId(), instance)) {
+    if (!appRoleService.isAppAdmin(accessToken.getAccountId(), instance)) {
       return ResponseFactory.forbidden("Current user is not an app_admin for the application instance");
     }
 
@@ -157,23 +161,26 @@ public class AppInstanceAccessControlEndpoint {
       ace.app_admin = true;
     });
     // Finally, compute the *_name fields for all entries
-    // Use a cache as we're likely to see the same user several times
-    Map<String, UserAccount> accountsById = new HashMap<>();
-    final UserAccount sentinel = new UserAccount();
+    // Load all the referenced accounts at once, as we're likely to see the same user several times
+    Set<String> accountIds = new HashSet<>();
     for (ACE ace : acesByUser.values()) {
-      UserAccount user = accountsById.get(ace.user_id);
-      if (user == null) {
-        user = accountRepository.getUserAccountById(ace.user_id);
-        accountsById.put(ace.user_id, user == null ? sentinel : user);
+      if (ace.user_id != null) {
+        accountIds.add(ace.user_id);
+      }
+      if (ace.creator_id != null) {
+        accountIds.add(ace.creator_id);
       }
+    }
+    Map<String, UserAccount> accountsById = new HashMap<>();
+    for (UserAccount account : accountRepository.getUserAccountsByIds(accountIds)) {
+      accountsById.put(account.getId(), account);
+    }
+    for (ACE ace : acesByUser.values()) {
+      UserAccount user = ace.user_id == null ? null : accountsById.get(ace.user_id);
       ace.user_name = user == null ? null : user.getDisplayName();
       ace.user_email_address = user == null ? null : user.getEmail_address();
 
-      UserAccount creator = accountsById.get(ace.creator_id);
-      if (creator == null) {
-        creator = accountRepository.getUserAccountById(ace.creator_id);
-        accountsById.put(ace.user_id, creator == null ? sentinel : creator);
-      }
+      UserAccount creator = ace.creator_id == null ? null : accountsById.get(ace.creator_id);
       ace.creator_name = creator == null ? null : creator.getDisplayName();
     }
 
@@ -207,7 +214,7 @@ public class AppInstanceAccessControlEndpoint {
     }
     AccessToken accessToken = ((OAuthPrincipal) securityContext.getUserPrincipal()).getAccessToken();
     String currentUserId = accessToken.getAccountId();
-    if (!appAdminHelper.isAdmin(currentUserId, instance)) {
+    if (!appRoleService.isAppAdminUncached(currentUserId, instance)) {
       return ResponseFactory.forbidden("Current user is not an app_admin for the application instance");
     }
     ace.setCreator_id(currentUserId);
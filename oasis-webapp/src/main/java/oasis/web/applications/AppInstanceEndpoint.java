@@ -53,7 +53,7 @@ import oasis.model.applications.v2.ServiceRepository;
 import oasis.model.authn.AccessToken;
 import oasis.model.directory.DirectoryRepository;
 import oasis.model.directory.Organization;
-import oasis.services.authz.AppAdminHelper;
+import oasis.services.authz.AppRoleService;
 import oasis.services.etag.EtagService;
 import oasis.usecases.ChangeAppInstanceStatus;
 import oasis.usecases.DeleteAppInstance;
@@ -74,7 +74,7 @@ public class AppInstanceEndpoint {
   @Inject AppInstanceRepository appInstanceRepository;
   @Inject DirectoryRepository directoryRepository;
   @Inject ServiceRepository serviceRepository;
-  @Inject AppAdminHelper appAdminHelper;
+  @Inject AppRoleService appRoleService;
   @Inject EtagService etagService;
   @Inject Provider<ServiceValidator> serviceValidatorProvider;
   @Inject Provider<ChangeAppInstanceStatus> changeAppInstanceStatus;
@@ -96,7 +96,7 @@ public class AppInstanceEndpoint {
     if (!instanceId.equals(accessToken.getServiceProviderId()) && !accessToken.isPortal()) {
       return ResponseFactory.forbidden("Cannot read information about another instance");
     }
-    if (!appAdminHelper.isAdmin(accessToken.getAccountId(), instance)) {
+    if (!appRoleService.isAppAdmin(accessToken.getAccountId(), instance)) {
       return ResponseFactory.forbidden("Current user is not an app_admin for the instance");
     }
 
@@ -130,7 +130,7 @@ public class AppInstanceEndpoint {
     if (!instanceId.equals(accessToken.getServiceProviderId()) && !isPortal) {
       return ResponseFactory.forbidden("Cannot list services of another instance");
     }
-    if (!appAdminHelper.isAdmin(accessToken.getAccountId(), instance)) {
+    if (!appRoleService.isAppAdmin(accessToken.getAccountId(), instance)) {
       return ResponseFactory.forbidden("Current user is not an app_admin for the instance");
     }
 
@@ -161,7 +161,7 @@ public class AppInstanceEndpoint {
     if (!instanceId.equals(accessToken.getServiceProviderId()) && !accessToken.isPortal()) {
       return ResponseFactory.forbidden("Cannot create service in another instance");
     }
-    if (!appAdminHelper.isAdmin(accessToken.getAccountId(), instance)) {
+    if (!appRoleService.isAppAdminUncached(accessToken.getAccountId(), instance)) {
       return ResponseFactory.forbidden("Current user is not an app_admin for the instance");
     }
 
@@ -211,7 +211,7 @@ public class AppInstanceEndpoint {
       return ResponseFactory.NOT_FOUND;
     }
     String userId = ((OAuthPrincipal) securityContext.getUserPrincipal()).getAccessToken().getAccountId();
-    if (!appAdminHelper.isAdmin(userId, instance)) {
+    if (!appRoleService.isAppAdminUncached(userId, instance)) {
       return ResponseFactory.forbidden("Current user is not an app_admin for the instance");
     }
     if (!Strings.isNullOrEmpty(instance.getProvider_id())) {
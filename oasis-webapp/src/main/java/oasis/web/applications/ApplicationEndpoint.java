@@ -38,11 +38,14 @@ import javax.ws.rs.core.SecurityContext;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import oasis.catalog.CatalogIndexer;
+import oasis.catalog.InMemoryCatalogEntryRepository;
 import oasis.model.InvalidVersionException;
 import oasis.model.applications.v2.AppInstance;
 import oasis.model.applications.v2.AppInstanceRepository;
 import oasis.model.applications.v2.Application;
 import oasis.model.applications.v2.ApplicationRepository;
+import oasis.model.applications.v2.CatalogEntry;
 import oasis.model.authn.AccessToken;
 import oasis.model.bootstrap.ClientIds;
 import oasis.model.directory.OrganizationMembership;
@@ -65,6 +68,8 @@ public class ApplicationEndpoint {
   @Inject Provider<AppInstanceRepository> appInstanceRepository;
   @Inject Provider<AppAdminHelper> appAdminHelper;
   @Inject Provider<EtagService> etagService;
+  @Inject Provider<CatalogIndexer> catalogIndexer;
+  @Inject Provider<InMemoryCatalogEntryRepository> inMemoryCatalogEntryRepository;
 
   @Context SecurityContext securityContext;
   @PathParam("application_id") String applicationId;
@@ -149,10 +154,15 @@ public class ApplicationEndpoint {
     }
 
     try {
-      applicationRepository.addPortal(applicationId, request.portalId, etagService.get().parseEtag(ifMatch));
+      application = applicationRepository.addPortal(applicationId, request.portalId, etagService.get().parseEtag(ifMatch));
     } catch (InvalidVersionException e) {
       return ResponseFactory.preconditionFailed(e.getMessage());
     }
+    if (application == null) {
+      return ResponseFactory.NOT_FOUND;
+    }
+    catalogIndexer.get().index(application);
+    inMemoryCatalogEntryRepository.get().entryChanged(CatalogEntry.EntryType.APPLICATION, applicationId);
 
     return ResponseFactory.NO_CONTENT;
   }
@@ -190,10 +200,15 @@ public class ApplicationEndpoint {
     }
 
     try {
-      applicationRepository.removePortal(applicationId, portalId, etagService.get().parseEtag(ifMatch));
+      application = applicationRepository.removePortal(applicationId, portalId, etagService.get().parseEtag(ifMatch));
     } catch (InvalidVersionException e) {
       return ResponseFactory.preconditionFailed(e.getMessage());
     }
+    if (application == null) {
+      return ResponseFactory.NOT_FOUND;
+    }
+    catalogIndexer.get().index(application);
+    inMemoryCatalogEntryRepository.get().entryChanged(CatalogEntry.EntryType.APPLICATION, applicationId);
 
     return ResponseFactory.NO_CONTENT;
   }
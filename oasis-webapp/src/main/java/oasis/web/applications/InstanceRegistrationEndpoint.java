@@ -76,6 +76,7 @@ import oasis.usecases.ServiceValidator;
 import oasis.web.authn.Authenticated;
 import oasis.web.authn.Client;
 import oasis.web.authn.ClientPrincipal;
+import oasis.web.authz.JwsSigner;
 import oasis.web.i18n.LocaleHelper;
 import oasis.web.utils.ResponseFactory;
 
@@ -96,6 +97,7 @@ public class InstanceRegistrationEndpoint {
   @Inject SoyTemplateRenderer templateRenderer;
   @Inject UrlsFactory urlsFactory;
   @Inject BrandRepository brandRepository;
+  @Inject JwsSigner jwsSigner;
 
   @PathParam("instance_id") String instanceId;
 
@@ -124,7 +126,11 @@ public class InstanceRegistrationEndpoint {
     if (acknowledgementRequest.status_changed_uri != null && Strings.isNullOrEmpty(acknowledgementRequest.status_changed_secret)) {
       return ResponseFactory.unprocessableEntity("Missing status_changed_secret");
     }
-    @Nullable Response error = acknowledgementRequest.checkScopes(instanceId);
+    @Nullable Response error = acknowledgementRequest.checkSigningAlgorithms(jwsSigner.getSupportedAlgorithms());
+    if (error != null) {
+      return error;
+    }
+    error = acknowledgementRequest.checkScopes(instanceId);
     if (error != null) {
       return error;
     }
@@ -148,7 +154,8 @@ public class InstanceRegistrationEndpoint {
     }
     instance = appInstanceRepository.instantiated(instanceId, acknowledgementRequest.getNeeded_scopes(),
         acknowledgementRequest.destruction_uri, acknowledgementRequest.destruction_secret, acknowledgementRequest.status_changed_uri,
-        acknowledgementRequest.status_changed_secret, instanceStatus);
+        acknowledgementRequest.status_changed_secret, acknowledgementRequest.id_token_signed_response_alg,
+        acknowledgementRequest.userinfo_signed_response_alg, instanceStatus);
     if (instance == null) {
       return ResponseFactory.notFound("Pending instance not found");
     }
@@ -260,6 +267,8 @@ public class InstanceRegistrationEndpoint {
     @JsonProperty String destruction_secret;
     @JsonProperty String status_changed_uri;
     @JsonProperty String status_changed_secret;
+    @JsonProperty String id_token_signed_response_alg;
+    @JsonProperty String userinfo_signed_response_alg;
 
     public String getInstance_id() {
       return instance_id;
@@ -311,6 +320,16 @@ public class InstanceRegistrationEndpoint {
       return null;
     }
 
+    @Nullable Response checkSigningAlgorithms(List<String> supportedAlgorithms) {
+      if (id_token_signed_response_alg != null && !supportedAlgorithms.contains(id_token_signed_response_alg)) {
+        return ResponseFactory.unprocessableEntity("Unsupported id_token_signed_response_alg: " + id_token_signed_response_alg);
+      }
+      if (userinfo_signed_response_alg != null && !supportedAlgorithms.contains(userinfo_signed_response_alg)) {
+        return ResponseFactory.unprocessableEntity("Unsupported userinfo_signed_response_alg: " + userinfo_signed_response_alg);
+      }
+      return null;
+    }
+
     @Nullable Response checkScopes(String instance_id) {
       if (scopes == null) {
         return null;
@@ -19,11 +19,12 @@ package oasis.web.applications;
 
 import java.net.URI;
 import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -35,6 +36,9 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -42,8 +46,6 @@ import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
-import org.jose4j.jws.AlgorithmIdentifiers;
-import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.jwt.JwtClaims;
 import org.jose4j.jwt.NumericDate;
 import org.jose4j.lang.JoseException;
@@ -56,6 +58,8 @@ import com.google.common.collect.ImmutableList;
 
 import net.ltgt.jaxrs.webhook.client.WebhookSignatureFilter;
 import oasis.auth.AuthModule;
+import oasis.http.HttpClientModule;
+import oasis.http.WebhookCallbackExecutor;
 import oasis.jongo.OasisIdHelper;
 import oasis.model.accounts.AccountRepository;
 import oasis.model.accounts.UserAccount;
@@ -77,6 +81,7 @@ import oasis.web.authn.Authenticated;
 import oasis.web.authn.OAuth;
 import oasis.web.authn.OAuthPrincipal;
 import oasis.web.authn.Portal;
+import oasis.web.authz.JwsSigner;
 import oasis.web.authz.TokenEndpoint;
 import oasis.web.utils.ResponseFactory;
 
@@ -96,6 +101,9 @@ public class MarketBuyEndpoint {
   @Inject DeleteAppInstance deleteAppInstance;
   @Inject Client client;
   @Inject AuthModule.Settings settings;
+  @Inject JwsSigner jwsSigner;
+  @Inject HttpClientModule.Settings httpClientSettings;
+  @Inject WebhookCallbackExecutor webhookCallbackExecutor;
   @Inject BaseUrls baseUrls;
   @Inject Clock clock;
 
@@ -106,10 +114,11 @@ public class MarketBuyEndpoint {
 
   @POST
   @Portal
-  public Response instantiate(AppInstance instance) {
+  public void instantiate(AppInstance instance, @Suspended AsyncResponse asyncResponse) {
     Application application = applicationRepository.getApplication(applicationId);
     if (application == null) {
-      return ResponseFactory.notFound("Application doesn't exist");
+      asyncResponse.resume(ResponseFactory.notFound("Application doesn't exist"));
+      return;
     }
     // XXX: some legacy applications don't have a target audience
     List<CatalogEntry.TargetAudience> targetAudiences = application.getTarget_audience();
@@ -121,7 +130,8 @@ public class MarketBuyEndpoint {
     if (!Strings.isNullOrEmpty(instance.getProvider_id())) {
       organization = directoryRepository.getOrganization(instance.getProvider_id());
       if (organization == null) {
-        return ResponseFactory.unprocessableEntity("Organization doesn't exist");
+        asyncResponse.resume(ResponseFactory.unprocessableEntity("Organization doesn't exist"));
+        return;
       }
       // TODO: refactor application target_audience check
       // XXX: some legacy organizations don't have a type
@@ -129,30 +139,35 @@ public class MarketBuyEndpoint {
         switch (organization.getType()) {
           case PUBLIC_BODY:
             if (!targetAudiences.contains(CatalogEntry.TargetAudience.PUBLIC_BODIES)) {
-              return ResponseFactory.conflict("Application is not targeted at public bodies");
+              asyncResponse.resume(ResponseFactory.conflict("Application is not targeted at public bodies"));
+              return;
             }
             break;
           case COMPANY:
             if (!targetAudiences.contains(CatalogEntry.TargetAudience.COMPANIES)) {
-              return ResponseFactory.conflict("Application is not targeted at companies");
+              asyncResponse.resume(ResponseFactory.conflict("Application is not targeted at companies"));
+              return;
             }
             break;
           default:
             // That shouldn't happen, but let's handle the degenerate case
             if (targetAudiences.equals(ImmutableList.of(CatalogEntry.TargetAudience.CITIZENS))) {
-              return ResponseFactory.conflict("Application is not targeted at organizations");
+              asyncResponse.resume(ResponseFactory.conflict("Application is not targeted at organizations"));
+              return;
             }
             break;
         }
       } else {
         if (targetAudiences.equals(ImmutableList.of(CatalogEntry.TargetAudience.CITIZENS))) {
-          return ResponseFactory.conflict("Application is not targeted at organizations");
+          asyncResponse.resume(ResponseFactory.conflict("Application is not targeted at organizations"));
+          return;
         }
       }
     } else {
       organization = null;
       if (!targetAudiences.contains(CatalogEntry.TargetAudience.CITIZENS)) {
-        return ResponseFactory.conflict("Application is not targeted at citizens");
+        asyncResponse.resume(ResponseFactory.conflict("Application is not targeted at citizens"));
+        return;
       }
     }
 
@@ -168,8 +183,22 @@ public class MarketBuyEndpoint {
     String pwd = passwordGenerator.generate();
     credentialsService.setPassword(ClientType.PROVIDER, instance.getId(), pwd);
 
-    Future<Response> future = client
-        .target(application.getInstantiation_uri())
+    String webhookUri = application.getInstantiation_uri();
+    Duration timeout = httpClientSettings.webhookTimeout(webhookUri);
+    AtomicReference<Future<Response>> future = new AtomicReference<>();
+    asyncResponse.setTimeoutHandler(ar -> {
+      @Nullable Future<Response> f = future.get();
+      if (f != null) {
+        f.cancel(true);
+      }
+      logger.error("Timeout calling App Factory for app={} and user={} after {}", applicationId, userId, timeout);
+      ar.resume(ResponseFactory.build(Response.Status.GATEWAY_TIMEOUT, "Application factory timed-out"));
+    });
+    asyncResponse.setTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+    final String instanceId = instance.getId();
+    future.set(client
+        .target(webhookUri)
         .register(new WebhookSignatureFilter(application.getInstantiation_secret()))
         .request()
         .async()
@@ -181,39 +210,63 @@ public class MarketBuyEndpoint {
             .setOrganization(organization)
             .setInstance_registration_uri(uriInfo.getBaseUriBuilder().path(InstanceRegistrationEndpoint.class).build(instance.getId()))
             .setAuthorization_grant(new AuthorizationGrant(createJwtBearer(instance)))
-            .setPortal(instance.getPortal_id())));
-    Response response;
-    try {
-      response = future.get(1, TimeUnit.MINUTES);
-    } catch (InterruptedException | ExecutionException e) {
-      logger.error("Error calling App Factory for app={} and user={}", applicationId, userId, e);
-      return ResponseFactory.build(Response.Status.BAD_GATEWAY, "Application factory failed");
-    } catch (TimeoutException e) {
-      logger.error("Timeout calling App Factory for app={} and user={}", applicationId, userId, e);
-      return ResponseFactory.build(Response.Status.GATEWAY_TIMEOUT, "Application factory timed-out");
-    }
-    try {
-      if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
-        ImmutableDeleteAppInstance.Request request = ImmutableDeleteAppInstance.Request.builder()
-            .instanceId(instance.getId())
-            .callProvider(false)
-            .checkStatus(AppInstance.InstantiationStatus.PENDING)
-            .checkVersions(null)
-            .notifyAdmins(false)
-            .build();
-        DeleteAppInstance.Status status = deleteAppInstance.deleteInstance(request, new DeleteAppInstance.Stats());
-        if (status != DeleteAppInstance.Status.BAD_INSTANCE_STATUS) {
-          logger.error("Error calling App Factory for app={} and user={}: uri={}, status={}", applicationId, userId, application.getInstantiation_uri(), response.getStatusInfo());
-          return ResponseFactory.build(Response.Status.BAD_GATEWAY, "Application factory failed");
-        }
-        // instance has been provisioned despite unsuccessful response from the App Factory; fall through.
-        logger.info("Error calling App Factory for app={} and user={} but app was provisioned successfully: status={}", applicationId, userId, application.getInstantiation_uri(), response.getStatusInfo());
+            .setPortal(instance.getPortal_id())), new InvocationCallback<Response>() {
+          @Override
+          public void completed(Response response) {
+            if (!asyncResponse.isSuspended()) {
+              // already timed-out (or cancelled)
+              response.close();
+              return;
+            }
+            // Handling the response hits the database: get off the HTTP client's dispatcher thread.
+            try {
+              webhookCallbackExecutor.execute(() -> {
+                try {
+                  asyncResponse.resume(handleFactoryResponse(instanceId, userId, webhookUri, response));
+                } catch (Throwable t) {
+                  asyncResponse.resume(t);
+                } finally {
+                  response.close();
+                }
+              });
+            } catch (RejectedExecutionException e) {
+              response.close();
+              logger.error("Too many pending App Factory responses, rejecting response for app={} and user={}", applicationId, userId);
+              asyncResponse.resume(ResponseFactory.build(Response.Status.SERVICE_UNAVAILABLE, "Server is busy, try again later"));
+            }
+          }
+
+          @Override
+          public void failed(Throwable throwable) {
+            if (!asyncResponse.isSuspended()) {
+              // already timed-out (or cancelled)
+              return;
+            }
+            logger.error("Error calling App Factory for app={} and user={}", applicationId, userId, throwable);
+            asyncResponse.resume(ResponseFactory.build(Response.Status.BAD_GATEWAY, "Application factory failed"));
+          }
+        }));
+  }
+
+  private Response handleFactoryResponse(String instanceId, String userId, String webhookUri, Response response) {
+    if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+      ImmutableDeleteAppInstance.Request request = ImmutableDeleteAppInstance.Request.builder()
+          .instanceId(instanceId)
+          .callProvider(false)
+          .checkStatus(AppInstance.InstantiationStatus.PENDING)
+          .checkVersions(null)
+          .notifyAdmins(false)
+          .build();
+      DeleteAppInstance.Status status = deleteAppInstance.deleteInstance(request, new DeleteAppInstance.Stats());
+      if (status != DeleteAppInstance.Status.BAD_INSTANCE_STATUS) {
+        logger.error("Error calling App Factory for app={} and user={}: uri={}, status={}", applicationId, userId, webhookUri, response.getStatusInfo());
+        return ResponseFactory.build(Response.Status.BAD_GATEWAY, "Application factory failed");
       }
-    } finally {
-      response.close();
+      // instance has been provisioned despite unsuccessful response from the App Factory; fall through.
+      logger.info("Error calling App Factory for app={} and user={} but app was provisioned successfully: uri={}, status={}", applicationId, userId, webhookUri, response.getStatusInfo());
     }
     // Get the possibly-updated instance
-    instance = appInstanceRepository.getAppInstance(instance.getId());
+    AppInstance instance = appInstanceRepository.getAppInstance(instanceId);
     return Response.ok(instance).build();
   }
 
@@ -227,12 +280,8 @@ public class MarketBuyEndpoint {
     claims.setIssuedAt(NumericDate.fromSeconds(issuedAt));
     claims.setExpirationTime(NumericDate.fromSeconds(issuedAt + settings.jwtBearerDuration.getSeconds()));
     claims.setJwtId(OasisIdHelper.generateId());
-    JsonWebSignature jws = new JsonWebSignature();
-    jws.setKey(settings.keyPair.getPrivate());
-    jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.RSA_USING_SHA256);
-    jws.setPayload(claims.toJson());
     try {
-      return jws.getCompactSerialization();
+      return jwsSigner.sign(claims.toJson());
     } catch (JoseException e) {
       logger.error("Error creating jwt-bearer", e);
       // XXX: use InternalServerErrorException as it won't be logged (we already logged above)
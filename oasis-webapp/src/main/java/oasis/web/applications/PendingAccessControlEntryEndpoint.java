@@ -39,7 +39,7 @@ import oasis.model.applications.v2.AccessControlRepository;
 import oasis.model.applications.v2.AppInstance;
 import oasis.model.applications.v2.AppInstanceRepository;
 import oasis.model.authn.TokenRepository;
-import oasis.services.authz.AppAdminHelper;
+import oasis.services.authz.AppRoleService;
 import oasis.services.etag.EtagService;
 import oasis.web.authn.Authenticated;
 import oasis.web.authn.OAuth;
@@ -53,7 +53,7 @@ import oasis.web.utils.ResponseFactory;
 public class PendingAccessControlEntryEndpoint {
   @Inject AppInstanceRepository appInstanceRepository;
   @Inject AccessControlRepository accessControlRepository;
-  @Inject AppAdminHelper appAdminHelper;
+  @Inject AppRoleService appRoleService;
   @Inject EtagService etagService;
   @Inject TokenRepository tokenRepository;
 
@@ -81,7 +81,7 @@ public class PendingAccessControlEntryEndpoint {
     }
 
     String currentUserId = ((OAuthPrincipal) securityContext.getUserPrincipal()).getAccessToken().getAccountId();
-    if (!appAdminHelper.isAdmin(currentUserId, instance)) {
+    if (!appRoleService.isAppAdminUncached(currentUserId, instance)) {
       return ResponseFactory.forbidden("Current user is not an app_admin for the app-instance");
     }
 
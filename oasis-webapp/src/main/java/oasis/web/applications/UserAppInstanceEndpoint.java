@@ -17,6 +17,9 @@
  */
 package oasis.web.applications;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
@@ -32,7 +35,6 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Streams;
 
 import oasis.model.applications.v2.AppInstance;
@@ -60,39 +62,30 @@ public class UserAppInstanceEndpoint {
   @GET
   public Response get(
       @QueryParam("include_orgs") @DefaultValue("false") boolean includeOrgs,
-      @QueryParam("status") AppInstance.InstantiationStatus instantiationStatus
+      @QueryParam("status") AppInstance.InstantiationStatus instantiationStatus,
+      @QueryParam("start") int start,
+      @QueryParam("limit") int limit
   ) {
     String oAuthUserId = ((OAuthPrincipal) securityContext.getUserPrincipal()).getAccessToken().getAccountId();
     if (!oAuthUserId.equals(userId)) {
       return ResponseFactory.forbidden("Current user does not match the one in the url");
     }
-    // TODO
-    Iterable<AppInstance> appInstances;
-    if (instantiationStatus == null) {
-      appInstances = appInstanceRepository.findPersonalInstancesByUserId(userId);
-    } else {
-      appInstances = appInstanceRepository.findPersonalInstancesByUserIdAndStatus(userId,
-          instantiationStatus);
+    if (start < 0 || limit < 0) {
+      return ResponseFactory.build(Response.Status.BAD_REQUEST, "Invalid start or limit");
     }
+    List<String> organizationIds;
     if (includeOrgs) {
-      for (OrganizationMembership membership : organizationMembershipRepository.getOrganizationsForAdmin(oAuthUserId)) {
-        if (instantiationStatus == null) {
-          appInstances = Iterables.concat(appInstances, appInstanceRepository.findByOrganizationId(membership.getOrganizationId()));
-        } else {
-          appInstances = Iterables.concat(appInstances, appInstanceRepository.findByOrganizationIdAndStatus(membership.getOrganizationId(), instantiationStatus));
-        }
-      }
+      organizationIds = Streams.stream(organizationMembershipRepository.getOrganizationsForAdmin(oAuthUserId))
+          .map(OrganizationMembership::getOrganizationId)
+          .collect(Collectors.toList());
+    } else {
+      organizationIds = Collections.emptyList();
     }
+    // Secrets are not loaded, so they're not sent over the wire
+    Iterable<AppInstance> appInstances = appInstanceRepository.findPersonalAndOrganizationInstances(userId, organizationIds,
+        instantiationStatus, start, limit);
     return Response.ok()
-        .entity(new GenericEntity<Stream<AppInstance>>(
-            Streams.stream(appInstances)
-                .peek(instance -> {
-                  // XXX: Don't send secrets over the wire
-                  instance.setDestruction_secret(null);
-                  instance.setStatus_changed_secret(null);
-                  // XXX: keep the redirect_uri_validation_disabled "secret"
-                  instance.unsetRedirect_uri_validation_disabled();
-                })) {})
+        .entity(new GenericEntity<Stream<AppInstance>>(Streams.stream(appInstances)) {})
         .build();
   }
 }
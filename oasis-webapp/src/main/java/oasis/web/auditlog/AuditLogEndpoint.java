@@ -18,28 +18,47 @@
 package oasis.web.auditlog;
 
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.Map;
+import java.util.Optional;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
 
+import oasis.auditlog.AuditLogEntry;
+import oasis.auditlog.AuditLogModule;
+import oasis.auditlog.AuditLogReader;
 import oasis.auditlog.AuditLogService;
 import oasis.auditlog.RemoteAuditLogEvent;
 import oasis.web.authn.Authenticated;
 import oasis.web.authn.Client;
+import oasis.web.authn.ClientPrincipal;
 import oasis.web.utils.ResponseFactory;
 
 @Path("/l")
 @Authenticated @Client
 public class AuditLogEndpoint {
+  private static final int MAX_LIMIT = 1000;
+
+  @Context SecurityContext securityContext;
 
   @Inject AuditLogService auditLogService;
+  @Inject AuditLogModule.Settings settings;
+  @Inject Optional<AuditLogReader> auditLogReader;
 
   @Path("/event")
   @POST
@@ -47,13 +66,51 @@ public class AuditLogEndpoint {
   public Response json(RemoteEvent remoteEvent) {
 
     // XXX: generate AuditLogEvent.eventType from remote application ?
-    auditLogService.event(RemoteAuditLogEvent.class, remoteEvent.time)
+    auditLogService.event(RemoteAuditLogEvent::new, remoteEvent.time)
         .setLog(remoteEvent.log)
         .log();
 
     return ResponseFactory.NO_CONTENT;
   }
 
+  /**
+   * Lists stored events, most recent first; reserved to {@linkplain AuditLogModule.Settings#readerClientIds() some
+   * clients}.
+   *
+   * @param since ISO-8601 instant, inclusive
+   * @param until ISO-8601 instant, exclusive
+   */
+  @Path("/events")
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response find(
+      @QueryParam("type") @Nullable String type,
+      @QueryParam("principal") @Nullable String principal,
+      @QueryParam("since") @Nullable String since,
+      @QueryParam("until") @Nullable String until,
+      @QueryParam("limit") @DefaultValue("100") int limit) {
+    String client_id = ((ClientPrincipal) securityContext.getUserPrincipal()).getClientId();
+    if (!settings.readerClientIds().contains(client_id)) {
+      return ResponseFactory.forbidden("Client is not allowed to read the audit log");
+    }
+    if (!auditLogReader.isPresent()) {
+      return ResponseFactory.notFound("Audit log is not stored in the database");
+    }
+    if (limit <= 0 || limit > MAX_LIMIT) {
+      return ResponseFactory.unprocessableEntity("limit must be between 1 and " + MAX_LIMIT);
+    }
+    final Instant sinceInstant, untilInstant;
+    try {
+      sinceInstant = since == null ? null : Instant.parse(since);
+      untilInstant = until == null ? null : Instant.parse(until);
+    } catch (DateTimeParseException e) {
+      return ResponseFactory.unprocessableEntity("since and until must be ISO-8601 instants");
+    }
+
+    Iterable<AuditLogEntry> events = auditLogReader.get().findEvents(type, principal, sinceInstant, untilInstant, limit);
+    return Response.ok(ImmutableList.copyOf(events)).build();
+  }
+
   static class RemoteEvent {
     @JsonProperty Instant time;
 
@@ -69,7 +69,7 @@ public class HttpInterceptor implements ContainerRequestFilter, ContainerRespons
 
   @Override
   public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
-    HttpAuditLogEvent event = auditLogService.event(HttpAuditLogEvent.class)
+    HttpAuditLogEvent event = auditLogService.event(HttpAuditLogEvent::new)
         .setUrl(requestContext.getUriInfo().getRequestUri().toString())
         .setMethod(requestContext.getMethod());
 
@@ -281,7 +281,7 @@ public class LoginPage {
   }
 
   public static void log(AuditLogService auditLogService, String userName, LoginLogEvent.LoginResult loginResult) {
-    auditLogService.event(LoginLogEvent.class)
+    auditLogService.event(LoginLogEvent::new)
         .setUserName(userName)
         .setLoginResult(loginResult)
         .log();
@@ -44,7 +44,6 @@ import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.ibm.icu.text.Collator;
 
-import oasis.auth.AuthModule;
 import oasis.auth.FranceConnectModule;
 import oasis.auth.RedirectUri;
 import oasis.model.accounts.AccountRepository;
@@ -68,6 +67,7 @@ import oasis.urls.UrlsFactory;
 import oasis.urls.Urls;
 import oasis.web.authn.franceconnect.FranceConnectLogoutCallback;
 import oasis.web.authn.franceconnect.FranceConnectLogoutState;
+import oasis.web.authz.JwsSigner;
 import oasis.web.openidconnect.IdTokenHintParser;
 import oasis.web.security.StrictReferer;
 
@@ -80,7 +80,7 @@ public class LogoutPage {
   @Context UriInfo uriInfo;
 
   @Inject TokenRepository tokenRepository;
-  @Inject AuthModule.Settings settings;
+  @Inject JwsSigner jwsSigner;
   @Inject @Nullable FranceConnectModule.Settings franceConnectSettings;
   @Inject BaseUrls baseUrls;
   @Inject AppInstanceRepository appInstanceRepository;
@@ -194,7 +194,7 @@ public class LogoutPage {
     if (idTokenHint == null) {
       return null;
     }
-    return IdTokenHintParser.parseIdTokenHintGetAudience(idTokenHint, settings.keyPair.getPublic(), getIssuer(), sidToken == null ? null : sidToken.getAccountId());
+    return IdTokenHintParser.parseIdTokenHintGetAudience(idTokenHint, jwsSigner, getIssuer(), sidToken == null ? null : sidToken.getAccountId());
   }
 
   private String getIssuer() {
@@ -43,6 +43,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Splitter;
 
 import oasis.model.authn.AccessToken;
+import oasis.services.authn.AccessTokenCache;
 import oasis.services.authn.TokenHandler;
 
 /**
@@ -65,6 +66,7 @@ public class OAuthFilter implements ContainerRequestFilter {
 
   @Context ResourceInfo resourceInfo;
   @Inject TokenHandler tokenHandler;
+  @Inject AccessTokenCache accessTokenCache;
 
   @Override
   public void filter(ContainerRequestContext requestContext) throws IOException {
@@ -84,7 +86,7 @@ public class OAuthFilter implements ContainerRequestFilter {
       return;
     }
 
-    AccessToken accessToken = tokenHandler.getCheckedToken(parts.get(1), AccessToken.class);
+    AccessToken accessToken = getCheckedToken(parts.get(1));
     if (accessToken == null) {
       invalidToken(requestContext);
       return;
@@ -135,6 +137,20 @@ public class OAuthFilter implements ContainerRequestFilter {
     });
   }
 
+  @Nullable
+  private AccessToken getCheckedToken(String tokenSerial) {
+    AccessToken accessToken = accessTokenCache.get(tokenSerial);
+    if (accessToken != null) {
+      return accessToken;
+    }
+    long generation = accessTokenCache.generation();
+    accessToken = tokenHandler.getCheckedToken(tokenSerial, AccessToken.class);
+    if (accessToken != null) {
+      accessTokenCache.put(tokenSerial, accessToken, generation);
+    }
+    return accessToken;
+  }
+
   private void invalidRequest(ContainerRequestContext requestContext) {
     requestContext.abortWith(Response
         .status(Response.Status.BAD_REQUEST)
@@ -18,9 +18,13 @@
 package oasis.web.authn;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Priority;
 import javax.inject.Inject;
@@ -35,6 +39,7 @@ import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.ext.Provider;
 
+import oasis.auth.AuthModule;
 import oasis.model.authn.ClientCertificate;
 import oasis.model.authn.ClientType;
 import oasis.model.authn.SidToken;
@@ -53,8 +58,12 @@ public class UserFilter implements ContainerRequestFilter, ContainerResponseFilt
 
   static final String COOKIE_NAME = "SID";
 
+  /** IDs of the sessions being renewed, to coalesce concurrent renewals of the same session. */
+  private static final Set<String> renewalsInProgress = ConcurrentHashMap.newKeySet();
+
   @Inject TokenRepository tokenRepository;
   @Inject TokenHandler tokenHandler;
+  @Inject AuthModule.Settings authSettings;
   @Inject ClientCertificateHelper clientCertificateHelper;
   @Inject UserAgentFingerprinter fingerprinter;
   @Inject javax.inject.Provider<SessionManagementHelper> sessionManagementHelper;
@@ -86,12 +95,14 @@ public class UserFilter implements ContainerRequestFilter, ContainerResponseFilt
     requestContext.setProperty(NEED_REFRESH_BROWSER_STATE_PROP,
         sidToken.isUsingClientCertificate() != usingClientCertificate);
 
-    // Renew the token each time the user tries to access a resource
-    sidToken = tokenRepository.renewSidToken(sidToken.getId(), usingClientCertificate);
-    if (sidToken == null) {
-      // SidToken must have expired while we looked at it.
-      requestContext.removeProperty(SID_PROP);
-      return;
+    // Renew the token when the user tries to access a resource (sliding expiration)
+    if (sidToken.isUsingClientCertificate() != usingClientCertificate || needsRenewal(sidToken)) {
+      sidToken = renewSidToken(sidToken, usingClientCertificate);
+      if (sidToken == null) {
+        // SidToken must have expired while we looked at it.
+        requestContext.removeProperty(SID_PROP);
+        return;
+      }
     }
 
     final UserSessionPrincipal userSessionPrincipal = new UserSessionPrincipal(sidToken);
@@ -149,6 +160,30 @@ public class UserFilter implements ContainerRequestFilter, ContainerResponseFilt
     responseContext.getHeaders().add(HttpHeaders.CACHE_CONTROL, "private");
   }
 
+  private boolean needsRenewal(SidToken sidToken) {
+    // Renew only once a given fraction of the session duration has elapsed since the last renewal, to avoid
+    // a database write on each request.
+    Duration remaining = Duration.between(Instant.now(), sidToken.getExpirationTime());
+    Duration threshold = Duration.ofMillis(
+        (long) (authSettings.sidTokenDuration.toMillis() * (1 - authSettings.sidTokenRenewalThreshold)));
+    return remaining.compareTo(threshold) <= 0;
+  }
+
+  private SidToken renewSidToken(SidToken sidToken, boolean usingClientCertificate) {
+    boolean coalesce = sidToken.isUsingClientCertificate() == usingClientCertificate;
+    if (coalesce && !renewalsInProgress.add(sidToken.getId())) {
+      // Another request is already renewing that session, no need to renew it twice.
+      return sidToken;
+    }
+    try {
+      return tokenRepository.renewSidToken(sidToken.getId(), usingClientCertificate);
+    } finally {
+      if (coalesce) {
+        renewalsInProgress.remove(sidToken.getId());
+      }
+    }
+  }
+
   private boolean hasClientCertificate(ContainerRequestContext requestContext, String accountId) {
     final ClientCertificate clientCertificate = clientCertificateHelper.getClientCertificate(requestContext.getHeaders());
     return clientCertificate != null
@@ -83,7 +83,6 @@ import oasis.auth.ScopesAndClaims;
 import oasis.model.accounts.AccountRepository;
 import oasis.model.accounts.Address;
 import oasis.model.accounts.UserAccount;
-import oasis.model.applications.v2.AccessControlRepository;
 import oasis.model.applications.v2.AppInstance;
 import oasis.model.applications.v2.AppInstance.NeededScope;
 import oasis.model.applications.v2.AppInstanceRepository;
@@ -105,7 +104,7 @@ import oasis.model.branding.BrandRepository;
 import oasis.services.branding.BrandHelper;
 import oasis.services.authn.TokenHandler;
 import oasis.services.authn.TokenSerializer;
-import oasis.services.authz.AppAdminHelper;
+import oasis.services.authz.AppRoleService;
 import oasis.services.cookies.CookieFactory;
 import oasis.services.security.OriginHelper;
 import oasis.soy.SoyTemplate;
@@ -214,12 +213,12 @@ public class AuthorizationEndpoint {
   @Context HttpHeaders httpHeaders;
 
   @Inject AuthModule.Settings settings;
+  @Inject JwsSigner jwsSigner;
   @Inject AuthorizationRepository authorizationRepository;
   @Inject AppInstanceRepository appInstanceRepository;
   @Inject ServiceRepository serviceRepository;
-  @Inject AccessControlRepository accessControlRepository;
   @Inject AccountRepository accountRepository;
-  @Inject AppAdminHelper appAdminHelper;
+  @Inject AppRoleService appRoleService;
   @Inject ScopeRepository scopeRepository;
   @Inject TokenHandler tokenHandler;
   @Inject LocaleHelper localeHelper;
@@ -307,9 +306,8 @@ public class AuthorizationEndpoint {
 
     // Check ACL if the service is "private" (unless it's the Portal)
     if ((service != null && service.isAccessRestricted()) && !isPortal) {
-      boolean isAppUser = accessControlRepository.getAccessControlEntry(appInstance.getId(), sidToken.getAccountId()) != null;
-      boolean isAppAdmin = appAdminHelper.isAdmin(sidToken.getAccountId(), appInstance);
-      if (!isAppUser && !isAppAdmin) {
+      AppRoleService.AppRoles appRoles = appRoleService.getRoles(sidToken.getAccountId(), appInstance);
+      if (!appRoles.isAppUser() && !appRoles.isAppAdmin()) {
         throw accessDenied("Current user is neither an app_admin or app_user for the service");
       }
     }
@@ -760,7 +758,7 @@ public class AuthorizationEndpoint {
     if (id_token_hint == null) {
       return;
     }
-    String subject = IdTokenHintParser.parseIdTokenHintGetSubject(id_token_hint, settings.keyPair.getPublic(), getIssuer(uriInfo));
+    String subject = IdTokenHintParser.parseIdTokenHintGetSubject(id_token_hint, jwsSigner, getIssuer(uriInfo));
     if (subject == null) {
       throw invalidParam("id_token_hint");
     }
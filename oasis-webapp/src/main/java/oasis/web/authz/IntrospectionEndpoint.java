@@ -20,10 +20,12 @@ package oasis.web.authz;
 import static java.util.stream.Collectors.joining;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.FormParam;
@@ -40,16 +42,17 @@ import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Streams;
 
-import oasis.model.applications.v2.AccessControlRepository;
 import oasis.model.applications.v2.AppInstance;
 import oasis.model.applications.v2.AppInstanceRepository;
 import oasis.model.applications.v2.Scope;
 import oasis.model.applications.v2.ScopeRepository;
 import oasis.model.authn.AccessToken;
 import oasis.model.bootstrap.ClientIds;
+import oasis.model.directory.OrganizationMembership;
 import oasis.model.directory.OrganizationMembershipRepository;
 import oasis.services.authn.TokenHandler;
-import oasis.services.authz.AppAdminHelper;
+import oasis.services.authz.AppRoleService;
+import oasis.services.authz.IntrospectionCache;
 import oasis.web.authn.Authenticated;
 import oasis.web.authn.Client;
 import oasis.web.authn.ClientPrincipal;
@@ -61,8 +64,8 @@ public class IntrospectionEndpoint {
   @Inject ScopeRepository scopeRepository;
   @Inject OrganizationMembershipRepository organizationMembershipRepository;
   @Inject AppInstanceRepository appInstanceRepository;
-  @Inject AppAdminHelper appAdminHelper;
-  @Inject AccessControlRepository accessControlRepository;
+  @Inject AppRoleService appRoleService;
+  @Inject IntrospectionCache introspectionCache;
 
   @Context SecurityContext securityContext;
 
@@ -74,52 +77,31 @@ public class IntrospectionEndpoint {
       return error();
     }
 
-    AccessToken accessToken = tokenHandler.getCheckedToken(token, AccessToken.class);
-
-    if (accessToken == null) {
-      return error();
-    }
-
-    IntrospectionResponse introspectionResponse;
-
-    // Remove all scopes which don't belong to the application instance
     String client_id = ((ClientPrincipal) securityContext.getUserPrincipal()).getClientId();
-    final Set<String> scopeIds = Streams.stream(scopeRepository.getScopesOfAppInstance(client_id))
-        .map(Scope::getId)
-        .filter(accessToken.getScopeIds()::contains)
-        .collect(Collectors.toSet());
 
-    if (scopeIds.isEmpty()) {
-      return error();
+    IntrospectionCache.Entry entry = introspectionCache.get(token, client_id);
+    if (entry == null) {
+      long generation = introspectionCache.generation();
+      entry = introspect(token, client_id);
+      if (entry == null) {
+        return error();
+      }
+      introspectionCache.put(token, client_id, entry, generation);
     }
 
-    introspectionResponse = new IntrospectionResponse()
+    AccessToken accessToken = entry.getAccessToken();
+    IntrospectionResponse introspectionResponse = new IntrospectionResponse()
         .setActive(true)
         .setExp(accessToken.getExpirationTime().getEpochSecond())
         .setIat(accessToken.getCreationTime().getEpochSecond())
-        .setScope(scopeIds.stream()
+        .setScope(entry.getScopeIds().stream()
                 .filter(Objects::nonNull)
                 .collect(joining(" ")))
         .setClient_id(accessToken.getServiceProviderId())
         .setSub(accessToken.getAccountId())
         .setToken_type("Bearer");
-    if (ClientIds.DATACORE.equals(client_id)) {
-      ImmutableList.Builder<String> groups = ImmutableList.<String>builder().addAll(
-          organizationMembershipRepository.getOrganizationIdsForUser(accessToken.getAccountId()));
-      AppInstance appInstance = appInstanceRepository.getAppInstance(accessToken.getServiceProviderId());
-      if (appInstance != null) {
-        if (appAdminHelper.isAdmin(accessToken.getAccountId(), appInstance)) {
-          groups.add("app_admin_" + appInstance.getId());
-        }
-        if (accessControlRepository.getAccessControlEntry(appInstance.getId(), accessToken.getAccountId()) != null) {
-          groups.add("app_user_" + appInstance.getId());
-        }
-      } /* else:
-           that shouldn't happen: app_instance has disappeared but there are still valid tokens out there.
-           ignore the situation (do not return error()) as that would result in a different answer (active/inactive token)
-           depending on whether the request is coming from the DataCore vs. any other client.
-         */
-      introspectionResponse.setSub_groups(groups.build());
+    if (entry.getSubGroups() != null) {
+      introspectionResponse.setSub_groups(entry.getSubGroups());
     }
 
     return Response.ok()
@@ -128,6 +110,54 @@ public class IntrospectionEndpoint {
         .build();
   }
 
+  @Nullable
+  private IntrospectionCache.Entry introspect(String token, String client_id) {
+    AccessToken accessToken = tokenHandler.getCheckedToken(token, AccessToken.class);
+
+    if (accessToken == null) {
+      return null;
+    }
+
+    // Remove all scopes which don't belong to the application instance
+    final Set<String> scopeIds = Streams.stream(scopeRepository.getScopesOfAppInstance(client_id))
+        .map(Scope::getId)
+        .filter(accessToken.getScopeIds()::contains)
+        .collect(Collectors.toSet());
+
+    if (scopeIds.isEmpty()) {
+      return null;
+    }
+
+    List<String> subGroups = null;
+    if (ClientIds.DATACORE.equals(client_id)) {
+      subGroups = computeSubGroups(accessToken);
+    }
+    return new IntrospectionCache.Entry(accessToken, scopeIds, subGroups);
+  }
+
+  private List<String> computeSubGroups(AccessToken accessToken) {
+    ImmutableList.Builder<String> groups = ImmutableList.builder();
+    Streams.stream(organizationMembershipRepository.getOrganizationsForUser(accessToken.getAccountId()))
+        .map(OrganizationMembership::getOrganizationId)
+        .distinct()
+        .forEachOrdered(groups::add);
+    AppInstance appInstance = appInstanceRepository.getAppInstance(accessToken.getServiceProviderId());
+    if (appInstance != null) {
+      AppRoleService.AppRoles appRoles = appRoleService.getRoles(accessToken.getAccountId(), appInstance);
+      if (appRoles.isAppAdmin()) {
+        groups.add("app_admin_" + appInstance.getId());
+      }
+      if (appRoles.isAppUser()) {
+        groups.add("app_user_" + appInstance.getId());
+      }
+    } /* else:
+         that shouldn't happen: app_instance has disappeared but there are still valid tokens out there.
+         ignore the situation (do not return error()) as that would result in a different answer (active/inactive token)
+         depending on whether the request is coming from the DataCore vs. any other client.
+       */
+    return groups.build();
+  }
+
   private Response error() {
     return Response.ok()
         .header(HttpHeaders.CACHE_CONTROL, "no-store")
@@ -0,0 +1,189 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.web.authz;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.jose4j.json.JsonUtil;
+import org.jose4j.jwa.AlgorithmConstraints;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.EcdsaUsingShaAlgorithm;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwx.HeaderParameterNames;
+import org.jose4j.keys.resolvers.VerificationKeyResolver;
+import org.jose4j.lang.JoseException;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+
+import oasis.auth.AuthModule;
+
+/**
+ * Signs the JWTs we issue (ID Tokens, signed UserInfo responses, JWT bearer grants).
+ *
+ * <p>This is equivalent to jose4j's {@link org.jose4j.jws.JsonWebSignature} but reuses pre-initialized
+ * {@link Signature} instances (that are not thread-safe, so they're pooled) and the serialized header, both of which
+ * otherwise show up in profiles of the token endpoint.
+ *
+ * <p>Tokens are signed with RS256 by default. If an {@linkplain AuthModule.Settings#ecKeyPair EC key-pair} is
+ * configured, clients can opt in to ES256, which is much cheaper to sign, when registering their
+ * {@code id_token_signed_response_alg} or {@code userinfo_signed_response_alg}. Both keys are published by
+ * {@link KeysEndpoint} and accepted by {@link #configureVerification(JwtConsumerBuilder)}.
+ */
+@Singleton
+public class JwsSigner {
+  private static final BaseEncoding BASE64URL = BaseEncoding.base64Url().omitPadding();
+  /** Length of an ES256 signature: the R and S values, 32 bytes each. */
+  private static final int ES256_SIGNATURE_LENGTH = 64;
+
+  private final SigningKey rsaKey;
+  private final @Nullable SigningKey ecKey;
+  private final ImmutableList<String> supportedAlgorithms;
+
+  @Inject public JwsSigner(AuthModule.Settings settings) {
+    this.rsaKey = new SigningKey(AlgorithmIdentifiers.RSA_USING_SHA256, "SHA256withRSA", KeysEndpoint.JSONWEBKEY_PK_ID,
+        settings.keyPair);
+    this.ecKey = settings.ecKeyPair == null
+        ? null
+        : new SigningKey(AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256, "SHA256withECDSA",
+            KeysEndpoint.JSONWEBKEY_EC_PK_ID, settings.ecKeyPair);
+    this.supportedAlgorithms = ecKey == null
+        ? ImmutableList.of(rsaKey.algorithm)
+        : ImmutableList.of(rsaKey.algorithm, ecKey.algorithm);
+  }
+
+  /** Returns the JWS algorithms that can be passed to {@link #sign(String, String)}, the default one first. */
+  public List<String> getSupportedAlgorithms() {
+    return supportedAlgorithms;
+  }
+
+  /**
+   * Signs the given JSON payload (generally {@link org.jose4j.jwt.JwtClaims#toJson()}) with RS256 and returns the JWS
+   * Compact Serialization.
+   */
+  public String sign(String payload) throws JoseException {
+    return sign(rsaKey, payload);
+  }
+
+  /**
+   * Same as {@link #sign(String)} but with the given algorithm, generally the one registered by the client.
+   * <p>
+   * Falls back to RS256 if the algorithm is {@code null}, or is not (or no longer) {@linkplain #getSupportedAlgorithms()
+   * supported}.
+   */
+  public String sign(String payload, @Nullable String algorithm) throws JoseException {
+    return sign(ecKey != null && ecKey.algorithm.equals(algorithm) ? ecKey : rsaKey, payload);
+  }
+
+  /**
+   * Sets the verification key and algorithm constraints on the given builder, so it accepts JWTs signed by any of our
+   * keys.
+   */
+  public JwtConsumerBuilder configureVerification(JwtConsumerBuilder builder) {
+    VerificationKeyResolver keyResolver = (jws, nestingContext) ->
+        ecKey != null && ecKey.algorithm.equals(jws.getAlgorithmHeaderValue())
+            ? ecKey.publicKey
+            : rsaKey.publicKey;
+    return builder
+        .setJwsAlgorithmConstraints(ecKey == null
+            ? new AlgorithmConstraints(AlgorithmConstraints.ConstraintType.WHITELIST, rsaKey.algorithm)
+            : new AlgorithmConstraints(AlgorithmConstraints.ConstraintType.WHITELIST, rsaKey.algorithm, ecKey.algorithm))
+        .setVerificationKeyResolver(keyResolver);
+  }
+
+  private static String sign(SigningKey key, String payload) throws JoseException {
+    String signingInput = key.encodedHeader + "." + BASE64URL.encode(payload.getBytes(UTF_8));
+    byte[] signature;
+    Signature jcaSignature = key.borrowSignature();
+    try {
+      jcaSignature.update(signingInput.getBytes(US_ASCII));
+      // sign() resets the instance to its initialized state, so it can be returned to the pool.
+      signature = jcaSignature.sign();
+    } catch (GeneralSecurityException e) {
+      // Don't return the instance to the pool, its state is unknown.
+      throw new JoseException("Problem creating signature", e);
+    }
+    key.returnSignature(jcaSignature);
+    if (key.ecdsa) {
+      try {
+        signature = EcdsaUsingShaAlgorithm.convertDerToConcatenated(signature, ES256_SIGNATURE_LENGTH);
+      } catch (IOException e) {
+        throw new JoseException("Unable to convert DER encoding to R+S concatenation", e);
+      }
+    }
+    return signingInput + "." + BASE64URL.encode(signature);
+  }
+
+  private static class SigningKey {
+    final String algorithm;
+    final String jcaAlgorithm;
+    final boolean ecdsa;
+    final PrivateKey privateKey;
+    final PublicKey publicKey;
+    final String encodedHeader;
+    private final Queue<Signature> pool = new ConcurrentLinkedQueue<>();
+
+    SigningKey(String algorithm, String jcaAlgorithm, String keyId, KeyPair keyPair) {
+      this.algorithm = algorithm;
+      this.jcaAlgorithm = jcaAlgorithm;
+      this.ecdsa = algorithm.startsWith("ES");
+      this.privateKey = keyPair.getPrivate();
+      this.publicKey = keyPair.getPublic();
+
+      Map<String, Object> header = new LinkedHashMap<>();
+      header.put(HeaderParameterNames.ALGORITHM, algorithm);
+      header.put(HeaderParameterNames.KEY_ID, keyId);
+      this.encodedHeader = BASE64URL.encode(JsonUtil.toJson(header).getBytes(UTF_8));
+    }
+
+    Signature borrowSignature() throws JoseException {
+      Signature signature = pool.poll();
+      if (signature != null) {
+        return signature;
+      }
+      try {
+        signature = Signature.getInstance(jcaAlgorithm);
+        signature.initSign(privateKey);
+      } catch (GeneralSecurityException e) {
+        throw new JoseException("Unable to initialize " + jcaAlgorithm + " signature", e);
+      }
+      return signature;
+    }
+
+    void returnSignature(Signature signature) {
+      pool.offer(signature);
+    }
+  }
+}
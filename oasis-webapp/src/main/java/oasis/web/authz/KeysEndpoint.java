@@ -17,6 +17,7 @@
  */
 package oasis.web.authz;
 
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
 
 import javax.inject.Inject;
@@ -25,6 +26,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Response;
 
+import org.jose4j.jwk.EllipticCurveJsonWebKey;
 import org.jose4j.jwk.JsonWebKeySet;
 import org.jose4j.jwk.RsaJsonWebKey;
 
@@ -33,6 +35,7 @@ import oasis.auth.AuthModule;
 @Path("/a/keys")
 public class KeysEndpoint {
   public static final String JSONWEBKEY_PK_ID = "oasis.openid-connect.public-key";
+  public static final String JSONWEBKEY_EC_PK_ID = "oasis.openid-connect.ec-public-key";
 
   @Inject AuthModule.Settings settings;
 
@@ -46,6 +49,12 @@ public class KeysEndpoint {
     rsaJsonWebKey.setKeyId(JSONWEBKEY_PK_ID);
     jsonWebKeySet.addJsonWebKey(rsaJsonWebKey);
 
+    if (settings.ecKeyPair != null) {
+      EllipticCurveJsonWebKey ecJsonWebKey = new EllipticCurveJsonWebKey((ECPublicKey) settings.ecKeyPair.getPublic());
+      ecJsonWebKey.setKeyId(JSONWEBKEY_EC_PK_ID);
+      jsonWebKeySet.addJsonWebKey(ecJsonWebKey);
+    }
+
     return Response.ok().entity(jsonWebKeySet.toJson()).build();
   }
 }
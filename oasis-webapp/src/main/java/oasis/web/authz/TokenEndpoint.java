@@ -17,8 +17,6 @@
  */
 package oasis.web.authz;
 
-import static org.jose4j.jwa.AlgorithmConstraints.ConstraintType.WHITELIST;
-
 import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Instant;
@@ -43,9 +41,6 @@ import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
-import org.jose4j.jwa.AlgorithmConstraints;
-import org.jose4j.jws.AlgorithmIdentifiers;
-import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.jwt.JwtClaims;
 import org.jose4j.jwt.MalformedClaimException;
 import org.jose4j.jwt.NumericDate;
@@ -68,7 +63,6 @@ import com.google.common.io.BaseEncoding;
 import oasis.auditlog.AuditLogEvent;
 import oasis.auditlog.AuditLogService;
 import oasis.auth.AuthModule;
-import oasis.model.applications.v2.AccessControlRepository;
 import oasis.model.applications.v2.AppInstance;
 import oasis.model.applications.v2.AppInstanceRepository;
 import oasis.model.authn.AbstractOAuthToken;
@@ -83,7 +77,7 @@ import oasis.model.authn.TokenRepository;
 import oasis.model.authz.Scopes;
 import oasis.services.authn.TokenHandler;
 import oasis.services.authn.TokenSerializer;
-import oasis.services.authz.AppAdminHelper;
+import oasis.services.authz.AppRoleService;
 import oasis.urls.BaseUrls;
 import oasis.web.authn.Authenticated;
 import oasis.web.authn.Client;
@@ -106,14 +100,14 @@ public class TokenEndpoint {
   @VisibleForTesting static final ImmutableSet<String> AUTHORIZED_JWT_BEARER_SCOPES = ImmutableSet.of("datacore");
 
   @Inject AuthModule.Settings settings;
+  @Inject JwsSigner jwsSigner;
   @Inject Clock clock;
 
   @Inject TokenRepository tokenRepository;
   @Inject JtiRepository jtiRepository;
   @Inject TokenHandler tokenHandler;
   @Inject AppInstanceRepository appInstanceRepository;
-  @Inject AccessControlRepository accessControlRepository;
-  @Inject AppAdminHelper appAdminHelper;
+  @Inject AppRoleService appRoleService;
   @Inject AuditLogService auditLogService;
   @Inject BaseUrls baseUrls;
 
@@ -282,8 +276,7 @@ public class TokenEndpoint {
 
     // Compute whether the user is a "user of the app" and/or "admin of the app"
     AppInstance appInstance = appInstanceRepository.getAppInstance(accessToken.getServiceProviderId());
-    boolean isAppUser = accessControlRepository.getAccessControlEntry(appInstance.getId(), accessToken.getAccountId()) != null;
-    boolean isAppAdmin = appAdminHelper.isAdmin(accessToken.getAccountId(), appInstance);
+    AppRoleService.AppRoles appRoles = appRoleService.getRoles(accessToken.getAccountId(), appInstance);
 
     response.access_token = access_token;
     response.token_type = "Bearer";
@@ -304,19 +297,13 @@ public class TokenEndpoint {
     if (acr != null) {
       claims.setStringClaim("acr", acr);
     }
-    if (isAppUser) {
+    if (appRoles.isAppUser()) {
       claims.setClaim("app_user", Boolean.TRUE);
     }
-    if (isAppAdmin) {
+    if (appRoles.isAppAdmin()) {
       claims.setClaim("app_admin", Boolean.TRUE);
     }
-    JsonWebSignature jws = new JsonWebSignature();
-    jws.setKey(settings.keyPair.getPrivate());
-    jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.RSA_USING_SHA256);
-    jws.setKeyIdHeaderValue(KeysEndpoint.JSONWEBKEY_PK_ID);
-    jws.setPayload(claims.toJson());
-
-    response.id_token = jws.getCompactSerialization();
+    response.id_token = jwsSigner.sign(claims.toJson(), appInstance.getId_token_signed_response_alg());
 
     return response(Response.Status.OK, response);
   }
@@ -333,9 +320,7 @@ public class TokenEndpoint {
     final Instant expirationTime;
     try {
       String issuer = getIssuer();
-      JwtClaims claims = new JwtConsumerBuilder()
-          .setJwsAlgorithmConstraints(new AlgorithmConstraints(WHITELIST, AlgorithmIdentifiers.RSA_USING_SHA256))
-          .setVerificationKey(settings.keyPair.getPublic())
+      JwtClaims claims = jwsSigner.configureVerification(new JwtConsumerBuilder())
           .setExpectedIssuer(issuer)        // we issued the JWT
           .setExpectedAudience(issuer, UriBuilder.fromUri(issuer).path(getClass()).build().toString())
           .setExpectedSubject(client_id)    // client_id is used as subject
@@ -464,7 +449,7 @@ public class TokenEndpoint {
   }
 
   private void _log(AbstractOAuthToken token, TokenLogEvent.TokenType tokenType, TokenLogEvent.GrantType grantType) {
-    auditLogService.event(TokenLogEvent.class)
+    auditLogService.event(TokenLogEvent::new)
         .setGrantType(grantType)
         .setTokenType(tokenType)
         .setRemoteUser(token.getAccountId())
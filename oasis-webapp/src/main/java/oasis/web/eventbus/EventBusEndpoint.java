@@ -18,7 +18,13 @@
 package oasis.web.eventbus;
 
 import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
@@ -27,8 +33,6 @@ import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
-import javax.ws.rs.client.Entity;
-import javax.ws.rs.client.InvocationCallback;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
@@ -37,16 +41,15 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.UriBuilder;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 
-import net.ltgt.jaxrs.webhook.client.WebhookSignatureFilter;
+import oasis.eventbus.EventDeliveryService;
 import oasis.model.InvalidVersionException;
 import oasis.model.applications.v2.AppInstance;
 import oasis.model.applications.v2.AppInstanceRepository;
+import oasis.model.eventbus.EventDelivery;
 import oasis.model.eventbus.Subscription;
 import oasis.model.eventbus.SubscriptionRepository;
 import oasis.services.etag.EtagService;
@@ -59,64 +62,67 @@ import oasis.web.utils.ResponseFactory;
 @Client
 @Path("/e")
 public class EventBusEndpoint {
-  private static final Logger logger = LoggerFactory.getLogger(EventBusEndpoint.class);
-
   @Inject SubscriptionRepository subscriptionRepository;
   @Inject AppInstanceRepository appInstanceRepository;
   @Inject EtagService etagService;
-  @Inject javax.ws.rs.client.Client client;
+  @Inject EventDeliveryService eventDeliveryService;
 
   @Context SecurityContext securityContext;
 
   @POST
   @Path("/publish")
   @Consumes(MediaType.APPLICATION_JSON)
-  @SuppressWarnings("FutureReturnValueIgnored")
   public Response publish(
       final Event event
   ) {
-    final String providerId = getProviderId(((ClientPrincipal) securityContext.getUserPrincipal()).getClientId());
-    for (Subscription subscription : subscriptionRepository.getSubscriptionsForEventType(event.eventType)) {
-      if (!providerId.equals(getProviderId(subscription.getInstance_id()))) {
-        // Don't send events to instances from other providers
-        continue;
+    final String publisherId = ((ClientPrincipal) securityContext.getUserPrincipal()).getClientId();
+    List<Subscription> subscriptions = ImmutableList.copyOf(subscriptionRepository.getSubscriptionsForEventType(event.eventType));
+    if (subscriptions.isEmpty()) {
+      return ResponseFactory.NO_CONTENT;
+    }
+
+    // Resolve the provider of the publisher and all subscribers at once
+    Set<String> instanceIds = new HashSet<>();
+    instanceIds.add(publisherId);
+    for (Subscription subscription : subscriptions) {
+      instanceIds.add(subscription.getInstance_id());
+    }
+    Map<String, String> providerIds = new HashMap<>();
+    for (AppInstance appInstance : appInstanceRepository.getAppInstances(instanceIds)) {
+      String providerId = getProviderId(appInstance);
+      if (providerId != null) {
+        providerIds.put(appInstance.getId(), providerId);
       }
+    }
+    final String providerId = providerIds.get(publisherId);
+    if (providerId == null) {
+      return ResponseFactory.NO_CONTENT;
+    }
 
-      final String webhook = subscription.getWebHook();
-
-      // TODO: better eventbus system
-      try {
-        client
-            .register(new WebhookSignatureFilter(subscription.getSecret()))
-            .target(webhook).request()
-            .async().post(Entity.json(event), new InvocationCallback<Response>() {
-              @Override
-              public void completed(Response response) {
-                try {
-                  logger.trace("Webhook {} called for eventType {}.", webhook, event.eventType);
-                } finally {
-                  response.close();
-                }
-              }
-
-              @Override
-              public void failed(Throwable throwable) {
-                logger.error("Error calling webhook {} for eventType {}: {}.", webhook, event.eventType, throwable.getMessage(), throwable);
-              }
-            });
-      } catch (Throwable t) {
-        logger.error("Error calling webhook {} for eventType {}: {}", webhook, event.eventType, t.getMessage(), t);
+    Instant now = Instant.now();
+    List<EventDelivery> deliveries = new ArrayList<>();
+    for (Subscription subscription : subscriptions) {
+      if (!providerId.equals(providerIds.get(subscription.getInstance_id()))) {
+        // Don't send events to instances from other providers
+        continue;
       }
+      EventDelivery delivery = new EventDelivery();
+      delivery.setSubscription_id(subscription.getId());
+      delivery.setInstance_id(subscription.getInstance_id());
+      delivery.setWebHook(subscription.getWebHook());
+      delivery.setEventType(event.eventType);
+      delivery.setMessage(event.message);
+      delivery.setData(event.data);
+      delivery.setCreated(now);
+      delivery.setNext_attempt(now);
+      deliveries.add(delivery);
     }
+    eventDeliveryService.enqueue(deliveries);
 
     return ResponseFactory.NO_CONTENT;
   }
 
-  private String getProviderId(String instanceId) {
-    AppInstance appInstance = appInstanceRepository.getAppInstance(instanceId);
-    if (appInstance == null) {
-      return null;
-    }
+  private static String getProviderId(AppInstance appInstance) {
     if (appInstance.getProvider_id() != null) {
       return "org:" + appInstance.getProvider_id();
     }
@@ -21,14 +21,19 @@ import java.time.Clock;
 
 import com.google.inject.AbstractModule;
 
+import oasis.jongo.RequestIdentityMap;
 import oasis.services.authn.login.PasswordHasher;
 import oasis.services.authn.login.SCryptPasswordHasher;
 
 public class OasisGuiceModule extends AbstractModule {
   @Override
   protected void configure() {
+    bindScope(RequestScoped.class, RequestScope.INSTANCE);
+
     bind(Clock.class).toInstance(Clock.systemUTC());
 
+    bind(RequestIdentityMap.class).in(RequestScoped.class);
+
     bind(PasswordHasher.class).to(SCryptPasswordHasher.class);
   }
 }
@@ -0,0 +1,61 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.web.guice;
+
+import org.jboss.resteasy.spi.HttpRequest;
+import org.jboss.resteasy.spi.ResteasyProviderFactory;
+
+import com.google.inject.Key;
+import com.google.inject.Provider;
+import com.google.inject.Scope;
+
+/**
+ * Scopes instances to the RESTEasy request being processed by the current thread.
+ * <p>
+ * Instances are stored as attributes of the {@link HttpRequest}, so they go away with it.
+ * Outside a request (e.g. in tools or background tasks), a new instance is returned each time.
+ */
+public class RequestScope implements Scope {
+  public static final RequestScope INSTANCE = new RequestScope();
+
+  private RequestScope() {
+  }
+
+  @Override
+  public <T> Provider<T> scope(Key<T> key, Provider<T> unscoped) {
+    final String attributeName = RequestScope.class.getName() + "." + key;
+    return () -> {
+      HttpRequest request = ResteasyProviderFactory.getContextData(HttpRequest.class);
+      if (request == null) {
+        return unscoped.get();
+      }
+      @SuppressWarnings("unchecked")
+      T instance = (T) request.getAttribute(attributeName);
+      if (instance == null) {
+        instance = unscoped.get();
+        request.setAttribute(attributeName, instance);
+      }
+      return instance;
+    };
+  }
+
+  @Override
+  public String toString() {
+    return "RequestScope";
+  }
+}
@@ -34,8 +34,10 @@ import javax.ws.rs.core.GenericEntity;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriInfo;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 
 import oasis.model.applications.v2.Service;
@@ -53,11 +55,14 @@ import oasis.web.utils.ResponseFactory;
 @Path("/n")
 @Authenticated
 public class NotificationEndpoint {
+  /** Separates the time and id in pagination cursors. */
+  private static final String CURSOR_SEPARATOR = "_";
 
   @Inject NotificationRepository notificationRepository;
   @Inject ServiceRepository serviceRepository;
 
   @Context SecurityContext securityContext;
+  @Context UriInfo uriInfo;
 
   @POST
   @Path("/publish")
@@ -101,7 +106,9 @@ public class NotificationEndpoint {
   public Response get(
       @PathParam("userId") String userId,
       @QueryParam("instance") String instanceId,
-      @QueryParam("status") Notification.Status status
+      @QueryParam("status") Notification.Status status,
+      @QueryParam("limit") int limit,
+      @QueryParam("before") String before
   ) {
     AccessToken accessToken = ((OAuthPrincipal) securityContext.getUserPrincipal()).getAccessToken();
     if (!accessToken.getAccountId().equals(userId)) {
@@ -113,25 +120,41 @@ public class NotificationEndpoint {
       if (!accessToken.isPortal()) {
         return ResponseFactory.forbidden("Cannot read all notifications for user");
       }
-      return Response.ok()
-          .entity(new GenericEntity<Iterable<Notification>>(
-              status == null
-                  ? notificationRepository.getNotifications(userId)
-                  : notificationRepository.getNotifications(userId, status)
-          ) {})
-          .build();
+    } else if (!instanceId.equals(accessToken.getServiceProviderId()) && !accessToken.isPortal()) {
+      return ResponseFactory.forbidden("Cannot read notifications for another app-instance");
     }
 
-    if (!instanceId.equals(accessToken.getServiceProviderId()) && !accessToken.isPortal()) {
-      return ResponseFactory.forbidden("Cannot read notifications for another app-instance");
+    if (limit < 0) {
+      return ResponseFactory.build(Response.Status.BAD_REQUEST, "Invalid limit");
+    }
+    Instant beforeTime = null;
+    String beforeId = null;
+    if (!Strings.isNullOrEmpty(before)) {
+      int sep = before.indexOf(CURSOR_SEPARATOR);
+      try {
+        beforeTime = Instant.ofEpochMilli(Long.parseLong(sep < 0 ? before : before.substring(0, sep)));
+      } catch (NumberFormatException e) {
+        return ResponseFactory.build(Response.Status.BAD_REQUEST, "Invalid cursor");
+      }
+      if (sep >= 0) {
+        beforeId = before.substring(sep + 1);
+      }
+    }
+
+    List<Notification> notifications = ImmutableList.copyOf(
+        notificationRepository.getNotifications(userId, instanceId, status, beforeTime, beforeId, limit));
+
+    Response.ResponseBuilder rb = Response.ok()
+        .entity(new GenericEntity<List<Notification>>(notifications) {});
+    if (limit > 0 && notifications.size() == limit) {
+      Notification last = notifications.get(notifications.size() - 1);
+      if (last.getTime() != null) {
+        rb.link(uriInfo.getRequestUriBuilder()
+            .replaceQueryParam("before", last.getTime().toEpochMilli() + CURSOR_SEPARATOR + last.getId())
+            .build(), "next");
+      }
     }
-    return Response.ok()
-        .entity(new GenericEntity<Iterable<Notification>>(
-            status == null
-                ? notificationRepository.getNotifications(userId, instanceId)
-                : notificationRepository.getNotifications(userId, instanceId, status)
-        ) {})
-        .build();
+    return rb.build();
   }
 
   @POST
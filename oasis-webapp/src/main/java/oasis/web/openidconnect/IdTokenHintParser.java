@@ -17,16 +17,11 @@
  */
 package oasis.web.openidconnect;
 
-import static org.jose4j.jwa.AlgorithmConstraints.ConstraintType.WHITELIST;
-
-import java.security.PublicKey;
 import java.util.Collections;
 import java.util.List;
 
 import javax.annotation.Nullable;
 
-import org.jose4j.jwa.AlgorithmConstraints;
-import org.jose4j.jws.AlgorithmIdentifiers;
 import org.jose4j.jwt.JwtClaims;
 import org.jose4j.jwt.MalformedClaimException;
 import org.jose4j.jwt.NumericDate;
@@ -42,11 +37,13 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.Iterables;
 
+import oasis.web.authz.JwsSigner;
+
 public class IdTokenHintParser {
   private static final Logger logger = LoggerFactory.getLogger(IdTokenHintParser.class);
 
-  public static @Nullable String parseIdTokenHintGetAudience(String idTokenHint, PublicKey publicKey, String expectedIssuer, @Nullable final String expectedSubject) {
-    JwtClaims claims = parseIdTokenHint(idTokenHint, publicKey, expectedIssuer, expectedSubject);
+  public static @Nullable String parseIdTokenHintGetAudience(String idTokenHint, JwsSigner jwsSigner, String expectedIssuer, @Nullable final String expectedSubject) {
+    JwtClaims claims = parseIdTokenHint(idTokenHint, jwsSigner, expectedIssuer, expectedSubject);
     if (claims == null) {
       return null;
     }
@@ -62,8 +59,8 @@ public class IdTokenHintParser {
     return audience.get(0);
   }
 
-  public static @Nullable String parseIdTokenHintGetSubject(String idTokenHint, PublicKey publicKey, String expectedIssuer) {
-    JwtClaims claims = parseIdTokenHint(idTokenHint, publicKey, expectedIssuer, null);
+  public static @Nullable String parseIdTokenHintGetSubject(String idTokenHint, JwsSigner jwsSigner, String expectedIssuer) {
+    JwtClaims claims = parseIdTokenHint(idTokenHint, jwsSigner, expectedIssuer, null);
     if (claims == null) {
       return null;
     }
@@ -75,11 +72,9 @@ public class IdTokenHintParser {
   }
 
   @VisibleForTesting
-  static @Nullable JwtClaims parseIdTokenHint(String idTokenHint, PublicKey publicKey, String expectedIssuer, @Nullable final String expectedSubject) {
+  static @Nullable JwtClaims parseIdTokenHint(String idTokenHint, JwsSigner jwsSigner, String expectedIssuer, @Nullable final String expectedSubject) {
     try {
-      return new JwtConsumerBuilder()
-          .setJwsAlgorithmConstraints(new AlgorithmConstraints(WHITELIST, AlgorithmIdentifiers.RSA_USING_SHA256))
-          .setVerificationKey(publicKey)
+      return jwsSigner.configureVerification(new JwtConsumerBuilder())
           .setExpectedIssuer(expectedIssuer)
           .setSkipDefaultAudienceValidation()
           .setAllowedClockSkewInSeconds(Integer.MAX_VALUE)  // We don't want to validate the time
@@ -18,6 +18,7 @@
 package oasis.web.openidconnect;
 
 import java.net.URI;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.ws.rs.GET;
@@ -38,6 +39,7 @@ import oasis.web.authn.ClientAuthenticationFilter;
 import oasis.web.authn.LogoutPage;
 import oasis.web.authz.AuthorizationEndpoint;
 import oasis.web.authz.IntrospectionEndpoint;
+import oasis.web.authz.JwsSigner;
 import oasis.web.authz.KeysEndpoint;
 import oasis.web.authz.RevokeEndpoint;
 import oasis.web.authz.TokenEndpoint;
@@ -54,6 +56,7 @@ public class OpenIdProviderConfigurationEndpoint {
       .toArray(String[]::new);
 
   @Inject BaseUrls baseUrls;
+  @Inject JwsSigner jwsSigner;
 
   @Context UriInfo uriInfo;
 
@@ -97,11 +100,11 @@ public class OpenIdProviderConfigurationEndpoint {
     // acr_values_supported
     // TODO: support "pairwise" subject types? How to correlate them in DataCore and other Data Providers then?
     @JsonProperty String[] subject_types_supported = { "public" };
-    /** See {@link AuthorizationEndpoint} and {@link TokenEndpoint}. */
-    @JsonProperty String[] id_token_signing_alg_values_supported = { "RS256" };
+    /** See {@link AuthorizationEndpoint}, {@link TokenEndpoint} and {@link JwsSigner}. */
+    @JsonProperty List<String> id_token_signing_alg_values_supported = jwsSigner.getSupportedAlgorithms();
     // id_token_encryption_alg_supported, id_token_encryption_enc_values_supported
-    /** See {@link UserInfoEndpoint}. */
-    @JsonProperty String[] userinfo_signing_alg_values_supported = { "RS256" };
+    /** See {@link UserInfoEndpoint} and {@link JwsSigner}. */
+    @JsonProperty List<String> userinfo_signing_alg_values_supported = jwsSigner.getSupportedAlgorithms();
     // userinfo_encryption_alg_values_supported, userinfo_encryption_enc_values_supported
     // request_object_signing_alg_values_supported, request_object_encryption_alg_values_supported, request_object_encryption_enc_values_supported
     /** See {@link ClientAuthenticationFilter}. */
@@ -56,7 +56,7 @@ public class StrictRefererFilter implements ContainerRequestFilter {
       valid = expectedOrigins.contains(origin);
 
       if (!valid) {
-        auditLogService.event(StrictRefererErrorLogEvent.class)
+        auditLogService.event(StrictRefererErrorLogEvent::new)
             .setEndpoint(requestContext.getUriInfo().getPath())
             .setActualOrigin(origin)
             .setExpectedOrigins(expectedOrigins)
@@ -70,7 +70,7 @@ public class StrictRefererFilter implements ContainerRequestFilter {
         valid = expectedOrigins.contains(originFromReferer);
 
         if (!valid) {
-          auditLogService.event(StrictRefererErrorLogEvent.class)
+          auditLogService.event(StrictRefererErrorLogEvent::new)
               .setEndpoint(requestContext.getUriInfo().getPath())
               .setActualOrigin(originFromReferer)
               .setExpectedOrigins(expectedOrigins)
@@ -79,7 +79,7 @@ public class StrictRefererFilter implements ContainerRequestFilter {
         }
       } else {
         valid = false;
-        auditLogService.event(StrictRefererErrorLogEvent.class)
+        auditLogService.event(StrictRefererErrorLogEvent::new)
             .setEndpoint(requestContext.getUriInfo().getPath())
             .setExpectedOrigins(expectedOrigins)
             .log();
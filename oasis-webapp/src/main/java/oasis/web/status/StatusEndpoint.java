@@ -17,6 +17,8 @@
  */
 package oasis.web.status;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -32,9 +34,19 @@ import javax.ws.rs.core.UriBuilder;
 import org.jongo.Jongo;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.cache.CacheStats;
 import com.mongodb.ReadPreference;
 
+import oasis.auditlog.AsyncAuditLogService;
+import oasis.auditlog.AuditLogService;
+import oasis.catalog.CatalogIndexer;
 import oasis.elasticsearch.ElasticsearchModule;
+import oasis.eventbus.EventDeliveryService;
+import oasis.jongo.ReferenceDataCache;
+import oasis.services.authn.AccessTokenCache;
+import oasis.services.authn.ClientCredentialsCache;
+import oasis.services.authz.AppRoleCache;
+import oasis.services.authz.IntrospectionCache;
 
 @Path("/status")
 public class StatusEndpoint {
@@ -44,6 +56,14 @@ public class StatusEndpoint {
   @Inject Client client;
   @Inject ElasticsearchModule.Settings esSettings;
   @Inject Jongo jongo;
+  @Inject AccessTokenCache accessTokenCache;
+  @Inject ClientCredentialsCache clientCredentialsCache;
+  @Inject IntrospectionCache introspectionCache;
+  @Inject AppRoleCache appRoleCache;
+  @Inject EventDeliveryService eventDeliveryService;
+  @Inject CatalogIndexer catalogIndexer;
+  @Inject ReferenceDataCache referenceDataCache;
+  @Inject AuditLogService auditLogService;
 
   @GET
   @Produces(MediaType.APPLICATION_JSON)
@@ -73,7 +93,25 @@ public class StatusEndpoint {
       status.elasticSearch = false;
     }
 
+    status.caches.put("access_tokens", new CacheStatus(accessTokenCache.size(), accessTokenCache.stats()));
+    status.caches.put("client_credentials", new CacheStatus(clientCredentialsCache.size(), clientCredentialsCache.stats()));
+    status.caches.put("introspection", new CacheStatus(introspectionCache.size(), introspectionCache.stats()));
+    status.caches.put("app_roles", new CacheStatus(appRoleCache.size(), appRoleCache.stats()));
+    status.caches.put("brands", new CacheStatus(referenceDataCache.brandsSize(), referenceDataCache.brandsStats()));
+    status.caches.put("scopes", new CacheStatus(referenceDataCache.scopesSize(), referenceDataCache.scopesStats()));
+    status.caches.put("services_by_redirect_uri",
+        new CacheStatus(referenceDataCache.servicesByRedirectUriSize(), referenceDataCache.servicesByRedirectUriStats()));
+    status.catalogIndex = new CatalogIndexStatus(catalogIndexer);
+    if (auditLogService instanceof AsyncAuditLogService) {
+      status.auditLog = new AuditLogStatus((AsyncAuditLogService) auditLogService);
+    }
+
     if (status.mongodb) {
+      try {
+        status.eventBus = new EventBusStatus(eventDeliveryService);
+      } catch (Exception e) {
+        // ignore, status.eventBus will be null
+      }
       return Response.ok(status).build();
     } else {
       return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(status).build();
@@ -83,5 +121,81 @@ public class StatusEndpoint {
   public static class Status {
     @JsonProperty boolean mongodb;
     @JsonProperty boolean elasticSearch;
+    @JsonProperty Map<String, CacheStatus> caches = new LinkedHashMap<>();
+    @JsonProperty("event_bus") EventBusStatus eventBus;
+    @JsonProperty("catalog_index") CatalogIndexStatus catalogIndex;
+    @JsonProperty("audit_log") AuditLogStatus auditLog;
+  }
+
+  public static class AuditLogStatus {
+    @JsonProperty int queue_depth;
+    @JsonProperty int queue_capacity;
+    @JsonProperty long written_count;
+    @JsonProperty long dropped_count;
+    @JsonProperty long failed_count;
+
+    AuditLogStatus(AsyncAuditLogService service) {
+      this.queue_depth = service.queueDepth();
+      this.queue_capacity = service.queueCapacity();
+      this.written_count = service.writtenCount();
+      this.dropped_count = service.droppedCount();
+      this.failed_count = service.failedCount();
+    }
+  }
+
+  public static class CatalogIndexStatus {
+    @JsonProperty int pending_count;
+    @JsonProperty long current_lag_millis;
+    @JsonProperty long indexed_count;
+    @JsonProperty long retried_count;
+    @JsonProperty long failed_count;
+    @JsonProperty double average_lag_millis;
+    @JsonProperty long max_lag_millis;
+
+    CatalogIndexStatus(CatalogIndexer indexer) {
+      this.pending_count = indexer.pendingCount();
+      this.current_lag_millis = indexer.currentLagMillis();
+      this.indexed_count = indexer.indexedCount();
+      this.retried_count = indexer.retriedCount();
+      this.failed_count = indexer.failedCount();
+      this.average_lag_millis = indexer.averageLagMillis();
+      this.max_lag_millis = indexer.maxLagMillis();
+    }
+  }
+
+  public static class EventBusStatus {
+    @JsonProperty long queue_depth;
+    @JsonProperty int in_flight;
+    @JsonProperty long delivered_count;
+    @JsonProperty long retried_count;
+    @JsonProperty long failed_count;
+    @JsonProperty double average_latency_millis;
+    @JsonProperty long max_latency_millis;
+
+    EventBusStatus(EventDeliveryService service) {
+      this.queue_depth = service.countPending();
+      this.in_flight = service.inFlight();
+      this.delivered_count = service.deliveredCount();
+      this.retried_count = service.retriedCount();
+      this.failed_count = service.failedCount();
+      this.average_latency_millis = service.averageLatencyMillis();
+      this.max_latency_millis = service.maxLatencyMillis();
+    }
+  }
+
+  public static class CacheStatus {
+    @JsonProperty long size;
+    @JsonProperty long hit_count;
+    @JsonProperty long miss_count;
+    @JsonProperty double hit_rate;
+    @JsonProperty long eviction_count;
+
+    CacheStatus(long size, CacheStats stats) {
+      this.size = size;
+      this.hit_count = stats.hitCount();
+      this.miss_count = stats.missCount();
+      this.hit_rate = stats.hitRate();
+      this.eviction_count = stats.evictionCount();
+    }
   }
 }
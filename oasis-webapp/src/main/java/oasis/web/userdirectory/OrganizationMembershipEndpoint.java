@@ -19,6 +19,11 @@ package oasis.web.userdirectory;
 
 import java.net.URI;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
@@ -42,6 +47,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Streams;
 import com.google.template.soy.data.SanitizedContent;
@@ -127,16 +133,23 @@ public class OrganizationMembershipEndpoint {
   }
 
   private Response toResponse(Iterable<OrganizationMembership> memberships) {
+    List<OrganizationMembership> membershipList = ImmutableList.copyOf(memberships);
+    // TODO: check access rights to the user name
+    Map<String, UserAccount> accountsById = Streams.stream(accountRepository.getUserAccountsByIds(
+        membershipList.stream()
+            .map(OrganizationMembership::getAccountId)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet())))
+        .collect(Collectors.toMap(UserAccount::getId, Function.identity()));
     return Response.ok()
-        .entity(new GenericEntity<Stream<OrgMembership>>(Streams.stream(memberships).map(
+        .entity(new GenericEntity<Stream<OrgMembership>>(membershipList.stream().map(
             input -> {
               OrgMembership membership = new OrgMembership();
               membership.id = input.getId();
               membership.membership_uri = uriInfo.getBaseUriBuilder().path(MembershipEndpoint.class).build(input.getId()).toString();
               membership.membership_etag = etagService.getEtag(input).toString();
               membership.account_id = input.getAccountId();
-              // TODO: check access rights to the user name
-              final UserAccount account = accountRepository.getUserAccountById(input.getAccountId());
+              final UserAccount account = input.getAccountId() == null ? null : accountsById.get(input.getAccountId());
               membership.account_name = account == null ? null : account.getDisplayName();
               membership.admin = input.isAdmin();
               return membership;
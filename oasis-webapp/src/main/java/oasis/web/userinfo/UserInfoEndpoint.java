@@ -36,8 +36,6 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.UriInfo;
 
-import org.jose4j.jws.AlgorithmIdentifiers;
-import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.jwt.JwtClaims;
 import org.jose4j.jwt.NumericDate;
 import org.jose4j.lang.JoseException;
@@ -45,10 +43,11 @@ import org.jose4j.lang.JoseException;
 import com.google.common.collect.ImmutableMap;
 import com.ibm.icu.util.ULocale;
 
-import oasis.auth.AuthModule;
 import oasis.auth.ScopesAndClaims;
 import oasis.model.accounts.AccountRepository;
 import oasis.model.accounts.UserAccount;
+import oasis.model.applications.v2.AppInstance;
+import oasis.model.applications.v2.AppInstanceRepository;
 import oasis.model.authn.AccessToken;
 import oasis.model.authz.Scopes;
 import oasis.urls.BaseUrls;
@@ -56,7 +55,7 @@ import oasis.web.authn.Authenticated;
 import oasis.web.authn.OAuth;
 import oasis.web.authn.OAuthPrincipal;
 import oasis.web.authn.WithScopes;
-import oasis.web.authz.KeysEndpoint;
+import oasis.web.authz.JwsSigner;
 
 @Authenticated @OAuth @WithScopes(Scopes.OPENID)
 @Path("/a/userinfo")
@@ -101,8 +100,9 @@ public class UserInfoEndpoint {
   @Context UriInfo uriInfo;
   @Context SecurityContext securityContext;
 
-  @Inject AuthModule.Settings settings;
+  @Inject JwsSigner jwsSigner;
   @Inject AccountRepository accountRepository;
+  @Inject AppInstanceRepository appInstanceRepository;
   @Inject BaseUrls baseUrls;
 
   @GET
@@ -113,13 +113,9 @@ public class UserInfoEndpoint {
     AccessToken accessToken = ((OAuthPrincipal) securityContext.getUserPrincipal()).getAccessToken();
     userInfo.setAudience(accessToken.getServiceProviderId());
 
-    JsonWebSignature jws = new JsonWebSignature();
-    jws.setKey(settings.keyPair.getPrivate());
-    jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.RSA_USING_SHA256);
-    jws.setKeyIdHeaderValue(KeysEndpoint.JSONWEBKEY_PK_ID);
-    jws.setPayload(userInfo.toJson());
-
-    String signedJwt = jws.getCompactSerialization();
+    AppInstance appInstance = appInstanceRepository.getAppInstance(accessToken.getServiceProviderId());
+    String signedJwt = jwsSigner.sign(userInfo.toJson(),
+        appInstance == null ? null : appInstance.getUserinfo_signed_response_alg());
     return Response.ok().entity(signedJwt).build();
   }
 
@@ -0,0 +1,185 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.auditlog;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+public class AsyncAuditLogServiceTest {
+
+  @Test public void testSynchronousWhenNotStarted() {
+    RecordingAuditLogService sut = new RecordingAuditLogService(settings(AuditLogModule.OverflowPolicy.DROP), null);
+
+    sut.event(TestEvent::new).log();
+
+    assertThat(sut.written).hasSize(1);
+    assertThat(sut.writtenCount()).isEqualTo(1);
+  }
+
+  @Test public void testPartialFailure() {
+    AsyncAuditLogService sut = new AsyncAuditLogService(settings(AuditLogModule.OverflowPolicy.DROP)) {
+      @Override
+      protected int write(List<AuditLogEvent> events) {
+        return 1;
+      }
+    };
+
+    sut.event(TestEvent::new).log();
+    sut.event(TestEvent::new).log();
+
+    assertThat(sut.writtenCount()).isZero();
+    assertThat(sut.failedCount()).isEqualTo(2);
+  }
+
+  @Test public void testDropWhenFull() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    RecordingAuditLogService sut = new RecordingAuditLogService(settings(AuditLogModule.OverflowPolicy.DROP), latch);
+    sut.start();
+    try {
+      // The first event is taken by the writer, that then blocks; the next two fill the queue.
+      sut.event(TestEvent::new).log();
+      sut.writing.await();
+      sut.event(TestEvent::new).log();
+      sut.event(TestEvent::new).log();
+      sut.event(TestEvent::new).log();
+
+      assertThat(sut.queueDepth()).isEqualTo(2);
+      assertThat(sut.droppedCount()).isEqualTo(1);
+    } finally {
+      latch.countDown();
+      sut.stop();
+    }
+
+    assertThat(sut.written).hasSize(3);
+    assertThat(sut.queueDepth()).isZero();
+  }
+
+  @Test public void testBlockWhenFull() throws Exception {
+    CountDownLatch latch = new CountDownLatch(1);
+    RecordingAuditLogService sut = new RecordingAuditLogService(settings(AuditLogModule.OverflowPolicy.BLOCK), latch);
+    sut.start();
+    Thread blocked = new Thread(() -> sut.event(TestEvent::new).log());
+    try {
+      // The first event is taken by the writer, that then blocks; the next two fill the queue.
+      sut.event(TestEvent::new).log();
+      sut.writing.await();
+      sut.event(TestEvent::new).log();
+      sut.event(TestEvent::new).log();
+
+      blocked.start();
+      // Wait for the thread to actually block on the full queue
+      while (blocked.getState() != Thread.State.WAITING) {
+        assertThat(blocked.isAlive()).isTrue();
+        Thread.sleep(10);
+      }
+      assertThat(sut.queueDepth()).isEqualTo(2);
+    } finally {
+      latch.countDown();
+      blocked.join(TimeUnit.SECONDS.toMillis(10));
+      sut.stop();
+    }
+
+    assertThat(blocked.isAlive()).isFalse();
+    assertThat(sut.written).hasSize(4);
+    assertThat(sut.droppedCount()).isZero();
+  }
+
+  @Test public void testDropWarningIsRateLimited() {
+    MutableTicker ticker = new MutableTicker();
+    RecordingAuditLogService sut = new RecordingAuditLogService(settings(AuditLogModule.OverflowPolicy.DROP), null, ticker);
+
+    assertThat(sut.warnDropped()).isTrue();
+    assertThat(sut.warnDropped()).isFalse();
+
+    ticker.advance(59, TimeUnit.SECONDS);
+    assertThat(sut.warnDropped()).isFalse();
+
+    ticker.advance(1, TimeUnit.SECONDS);
+    assertThat(sut.warnDropped()).isTrue();
+    assertThat(sut.warnDropped()).isFalse();
+  }
+
+  private static AuditLogModule.Settings settings(AuditLogModule.OverflowPolicy overflowPolicy) {
+    return ImmutableAuditLogModule.Settings.builder()
+        .disabled(false)
+        .sink(AuditLogModule.Sink.LOG4J)
+        .queueSize(2)
+        .batchSize(10)
+        .overflowPolicy(overflowPolicy)
+        .mongoRetention(Duration.ofDays(1))
+        .build();
+  }
+
+  static class TestEvent extends AuditLogEvent {
+    TestEvent() {
+      super("test");
+    }
+  }
+
+  static class MutableTicker extends Ticker {
+    private long nanos = 123_456_789L;
+
+    void advance(long duration, TimeUnit unit) {
+      nanos += unit.toNanos(duration);
+    }
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
+
+  static class RecordingAuditLogService extends AsyncAuditLogService {
+    final List<AuditLogEvent> written = new CopyOnWriteArrayList<>();
+    final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch latch;
+
+    RecordingAuditLogService(AuditLogModule.Settings settings, CountDownLatch latch) {
+      super(settings);
+      this.latch = latch;
+    }
+
+    RecordingAuditLogService(AuditLogModule.Settings settings, CountDownLatch latch, Ticker ticker) {
+      super(settings, ticker);
+      this.latch = latch;
+    }
+
+    @Override
+    protected int write(List<AuditLogEvent> events) {
+      writing.countDown();
+      if (latch != null) {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      written.addAll(events);
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.auditlog.jongo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.jongo.Jongo;
+import org.jongo.MongoCollection;
+import org.junit.Test;
+
+import com.mongodb.MongoException;
+
+import oasis.auditlog.AuditLogEvent;
+import oasis.auditlog.AuditLogModule;
+import oasis.auditlog.ImmutableAuditLogModule;
+
+public class JongoAuditLogServiceTest {
+  static final Instant since = Instant.parse("2018-01-01T00:00:00Z");
+  static final Instant until = Instant.parse("2018-02-01T00:00:00Z");
+
+  @Test public void testQueryWithoutCriteria() {
+    JongoAuditLogService.Query query = JongoAuditLogService.buildQuery(null, null, null, null);
+
+    assertThat(query.query).isEqualTo("{  }");
+    assertThat(query.parameters).isEmpty();
+  }
+
+  @Test public void testQueryWithAllCriteria() {
+    JongoAuditLogService.Query query = JongoAuditLogService.buildQuery("type", "principal", since, until);
+
+    assertThat(query.query).isEqualTo("{ type: #, time: { $gte: #, $lt: # }, "
+        + "$or: [ { \"data.remote_user\": # }, { \"data.remote_client\": # }, { \"data.user_name\": # } ] }");
+    assertThat(query.parameters).containsExactly("type", Date.from(since), Date.from(until),
+        "principal", "principal", "principal");
+  }
+
+  @Test public void testQueryWithSinceOnly() {
+    JongoAuditLogService.Query query = JongoAuditLogService.buildQuery(null, null, since, null);
+
+    assertThat(query.query).isEqualTo("{ time: { $gte: # } }");
+    assertThat(query.parameters).containsExactly(Date.from(since));
+  }
+
+  @Test public void testQueryWithUntilOnly() {
+    JongoAuditLogService.Query query = JongoAuditLogService.buildQuery(null, null, null, until);
+
+    assertThat(query.query).isEqualTo("{ time: { $lt: # } }");
+    assertThat(query.parameters).containsExactly(Date.from(until));
+  }
+
+  @Test public void testWriteReportsEventsFailedOnRetry() {
+    MongoCollection collection = mock(MongoCollection.class);
+    when(collection.insert((Object[]) any())).thenThrow(new MongoException("batch failed"));
+    when(collection.insert(any(Object.class))).thenAnswer(invocation -> {
+      JongoAuditLogService.AuditLogDocument document = invocation.getArgument(0);
+      if (document.type.equals("bad")) {
+        throw new MongoException("invalid document");
+      }
+      return null;
+    });
+    Jongo jongo = mock(Jongo.class);
+    when(jongo.getCollection("audit_log")).thenReturn(collection);
+    JongoAuditLogService sut = new JongoAuditLogService(settings(), () -> jongo);
+
+    int failed = sut.write(Arrays.asList(new TestEvent("good"), new TestEvent("bad"), new TestEvent("good")));
+
+    assertThat(failed).isEqualTo(1);
+  }
+
+  private static AuditLogModule.Settings settings() {
+    return ImmutableAuditLogModule.Settings.builder()
+        .disabled(false)
+        .sink(AuditLogModule.Sink.MONGO)
+        .queueSize(10)
+        .batchSize(10)
+        .overflowPolicy(AuditLogModule.OverflowPolicy.DROP)
+        .mongoRetention(Duration.ofDays(1))
+        .build();
+  }
+
+  static class TestEvent extends AuditLogEvent {
+    TestEvent(String type) {
+      super(type);
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.auditlog.log4j;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+
+import org.junit.Test;
+
+import oasis.auditlog.AuditLogEvent;
+
+public class Log4JAuditLogServiceTest {
+
+  @Test public void testToJson() throws Exception {
+    TestEvent event = new TestEvent(Instant.parse("2018-03-04T05:06:07.008Z"));
+    event.addContextData("foo", "bar");
+
+    assertThat(Log4JAuditLogService.toJson(event))
+        .isEqualTo("{\"type\":\"test\",\"time\":\"2018-03-04T05:06:07.008Z\",\"data\":{\"foo\":\"bar\"}}");
+  }
+
+  @Test public void testTimeAlwaysHasMilliseconds() throws Exception {
+    TestEvent event = new TestEvent(Instant.parse("2018-03-04T05:06:07Z"));
+
+    assertThat(Log4JAuditLogService.toJson(event))
+        .isEqualTo("{\"type\":\"test\",\"time\":\"2018-03-04T05:06:07.000Z\",\"data\":{}}");
+  }
+
+  static class TestEvent extends AuditLogEvent {
+    TestEvent(Instant date) {
+      super("test", date);
+    }
+
+    @Override
+    protected void addContextData(String key, Object value) {
+      super.addContextData(key, value);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.catalog;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import io.searchbox.action.BulkableAction;
+import oasis.jest.applications.v2.JestCatalogEntryRepository;
+import oasis.model.applications.v2.CatalogEntry;
+import oasis.model.applications.v2.Service;
+
+public class CatalogIndexerTest {
+  static final CatalogModule.Settings settings = ImmutableCatalogModule.Settings.builder()
+      .inMemorySearch(false)
+      .inMemoryRefreshInterval(Duration.ofMinutes(5))
+      .indexBatchSize(100)
+      // Never flush in the background during tests
+      .indexFlushInterval(Duration.ofHours(1))
+      .indexMaxAttempts(3)
+      .build();
+
+  static final Service service = new Service() {{
+    setId("service");
+    setInstance_id("instance");
+    setVisible(true);
+  }};
+
+  static final Service otherService = new Service() {{
+    setId("other-service");
+    setInstance_id("other-instance");
+    setVisible(true);
+  }};
+
+  private JestCatalogEntryRepository jestCatalogEntryRepository;
+  private CatalogIndexer sut;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() throws Exception {
+    jestCatalogEntryRepository = mock(JestCatalogEntryRepository.class);
+    when(jestCatalogEntryRepository.indexAction(any())).thenReturn(mock(BulkableAction.class));
+    when(jestCatalogEntryRepository.deleteAction(any(), any())).thenReturn(mock(BulkableAction.class));
+
+    sut = new CatalogIndexer(settings, () -> jestCatalogEntryRepository);
+  }
+
+  @Test public void testDeleteServicesOfInstance_discardsPendingOperations() throws Exception {
+    // given
+    sut.start();
+    sut.index(service);
+    assertThat(sut.pendingCount()).isEqualTo(1);
+
+    // when
+    sut.deleteServicesOfInstance("instance");
+    sut.stop();
+
+    // then
+    verify(jestCatalogEntryRepository, never()).executeBulk(any());
+    verify(jestCatalogEntryRepository).deleteServicesOfInstance("instance");
+    assertThat(sut.pendingCount()).isZero();
+    assertThat(sut.indexedCount()).isEqualTo(1);
+  }
+
+  @Test public void testDeleteServicesOfInstance_keepsEnqueueOrder() throws Exception {
+    // given
+    sut.start();
+
+    // when
+    sut.index(otherService);
+    sut.deleteServicesOfInstance("instance");
+    sut.index(service);
+    sut.stop();
+
+    // then: the service is indexed after the services of its instance have been removed
+    InOrder inOrder = inOrder(jestCatalogEntryRepository);
+    inOrder.verify(jestCatalogEntryRepository).executeBulk(any());
+    inOrder.verify(jestCatalogEntryRepository).deleteServicesOfInstance("instance");
+    inOrder.verify(jestCatalogEntryRepository).executeBulk(any());
+    assertThat(sut.indexedCount()).isEqualTo(3);
+  }
+
+  @Test public void testDeleteServicesOfInstance_retriedBeforeLaterOperations() throws Exception {
+    // given
+    doThrow(new IOException("boom")).doNothing().when(jestCatalogEntryRepository).deleteServicesOfInstance("instance");
+    sut.start();
+
+    // when
+    sut.deleteServicesOfInstance("instance");
+    sut.index(service);
+    sut.stop();
+
+    // then: the service isn't indexed until the services of its instance have been removed
+    InOrder inOrder = inOrder(jestCatalogEntryRepository);
+    inOrder.verify(jestCatalogEntryRepository, times(2)).deleteServicesOfInstance("instance");
+    inOrder.verify(jestCatalogEntryRepository).executeBulk(any());
+    verify(jestCatalogEntryRepository, times(1)).executeBulk(any());
+    assertThat(sut.retriedCount()).isEqualTo(1);
+    assertThat(sut.indexedCount()).isEqualTo(2);
+    assertThat(sut.pendingCount()).isZero();
+  }
+
+  @Test public void testDeleteServicesOfInstance_retried() throws Exception {
+    // given
+    doThrow(new IOException("boom")).doNothing().when(jestCatalogEntryRepository).deleteServicesOfInstance("instance");
+
+    // when: not started, so operations are flushed synchronously
+    sut.deleteServicesOfInstance("instance");
+
+    // then
+    verify(jestCatalogEntryRepository, times(2)).deleteServicesOfInstance("instance");
+    assertThat(sut.retriedCount()).isEqualTo(1);
+    assertThat(sut.failedCount()).isZero();
+    assertThat(sut.indexedCount()).isEqualTo(1);
+  }
+
+  @Test public void testDeleteServicesOfInstance_givesUp() throws Exception {
+    // given
+    doThrow(new IOException("boom")).when(jestCatalogEntryRepository).deleteServicesOfInstance("instance");
+
+    // when
+    sut.deleteServicesOfInstance("instance");
+
+    // then
+    verify(jestCatalogEntryRepository, times(settings.indexMaxAttempts())).deleteServicesOfInstance("instance");
+    assertThat(sut.failedCount()).isEqualTo(1);
+    assertThat(sut.pendingCount()).isZero();
+  }
+
+  @Test public void testDrainBacksOffBetweenRetries() throws Exception {
+    // given
+    when(jestCatalogEntryRepository.executeBulk(any()))
+        .thenThrow(new IOException("boom"))
+        .thenThrow(new IOException("boom"))
+        .thenReturn(Collections.emptyMap());
+    long start = System.nanoTime();
+
+    // when
+    sut.delete(CatalogEntry.EntryType.APPLICATION, "application");
+
+    // then
+    verify(jestCatalogEntryRepository, times(3)).executeBulk(any());
+    // 100ms, then 200ms
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(300));
+    assertThat(sut.retriedCount()).isEqualTo(2);
+    assertThat(sut.indexedCount()).isEqualTo(1);
+  }
+}
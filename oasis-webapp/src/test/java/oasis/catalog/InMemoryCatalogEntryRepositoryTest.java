@@ -0,0 +1,259 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.catalog;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.ibm.icu.util.ULocale;
+
+import oasis.jongo.applications.v2.CatalogSortKeys;
+import oasis.jongo.applications.v2.JongoCatalogEntryRepository;
+import oasis.model.applications.v2.CatalogEntry;
+import oasis.model.applications.v2.CatalogEntryRepository;
+import oasis.model.applications.v2.ImmutableCatalogEntryRepository;
+import oasis.model.applications.v2.SimpleCatalogEntry;
+
+public class InMemoryCatalogEntryRepositoryTest {
+  static final CatalogModule.Settings settings = ImmutableCatalogModule.Settings.builder()
+      .inMemorySearch(true)
+      // Never refresh in the background during tests
+      .inMemoryRefreshInterval(Duration.ofHours(1))
+      .indexBatchSize(100)
+      .indexFlushInterval(Duration.ofHours(1))
+      .indexMaxAttempts(3)
+      .build();
+
+  private JongoCatalogEntryRepository jongoCatalogEntryRepository;
+  private InMemoryCatalogEntryRepository sut;
+
+  private SimpleCatalogEntry zebra;
+  private SimpleCatalogEntry elephant;
+  private SimpleCatalogEntry bee;
+  private SimpleCatalogEntry otherBee;
+
+  @Before
+  public void setUp() {
+    zebra = entry(CatalogEntry.EntryType.APPLICATION, "zebra", "Zèbre");
+    zebra.getPortals().add("portal1");
+    zebra.getCategory_ids().add("animals");
+    zebra.getSupported_locales().add(ULocale.FRENCH);
+
+    elephant = entry(CatalogEntry.EntryType.SERVICE, "elephant", "éléphant");
+    elephant.getPortals().addAll(Arrays.asList("portal1", "portal2"));
+    elephant.getCategory_ids().add("big");
+    elephant.getTarget_audience().add(CatalogEntry.TargetAudience.CITIZENS);
+    elephant.setPayment_option(CatalogEntry.PaymentOption.FREE);
+    // No supported_locales
+
+    bee = entry(CatalogEntry.EntryType.SERVICE, "bee", "abeille");
+    bee.getPortals().add("portal2");
+    bee.getTarget_audience().add(CatalogEntry.TargetAudience.CITIZENS);
+    bee.setPayment_option(CatalogEntry.PaymentOption.PAID);
+    bee.getSupported_locales().addAll(Arrays.asList(new ULocale("und"), ULocale.ITALIAN));
+
+    // Same name as bee, different case and id
+    otherBee = entry(CatalogEntry.EntryType.APPLICATION, "another-bee", "Abeille");
+    otherBee.getSupported_locales().add(ULocale.ENGLISH);
+
+    jongoCatalogEntryRepository = mock(JongoCatalogEntryRepository.class);
+    when(jongoCatalogEntryRepository.getAllSearchableEntries()).thenReturn(ImmutableList.of(zebra, elephant, bee, otherBee));
+
+    sut = new InMemoryCatalogEntryRepository(jongoCatalogEntryRepository, settings);
+  }
+
+  private static SimpleCatalogEntry entry(CatalogEntry.EntryType type, String id, String name) {
+    SimpleCatalogEntry entry = new SimpleCatalogEntry();
+    entry.setType(type);
+    entry.setId(id);
+    entry.setVisible(true);
+    entry.getName().set(ULocale.ROOT, name);
+    return entry;
+  }
+
+  private static ImmutableCatalogEntryRepository.SearchRequest.Builder request() {
+    return ImmutableCatalogEntryRepository.SearchRequest.builder()
+        .start(0)
+        .limit(20);
+  }
+
+  private List<String> search(CatalogEntryRepository.SearchRequest request) {
+    return ImmutableList.copyOf(Iterables.transform(sut.search(request), SimpleCatalogEntry::getId));
+  }
+
+  @Test public void testFilters() {
+    assertThat(search(request().portal("portal1").build()))
+        .containsExactlyInAnyOrder("zebra", "elephant");
+    assertThat(search(request().portal("unknown").build()))
+        .isEmpty();
+    // Values of a given field are OR'd
+    assertThat(search(request().addCategory_id("animals", "big").build()))
+        .containsExactlyInAnyOrder("zebra", "elephant");
+    // Fields are AND'd
+    assertThat(search(request().addTarget_audience(CatalogEntry.TargetAudience.CITIZENS).build()))
+        .containsExactlyInAnyOrder("elephant", "bee");
+    assertThat(search(request()
+        .addTarget_audience(CatalogEntry.TargetAudience.CITIZENS)
+        .addPayment_option(CatalogEntry.PaymentOption.PAID)
+        .build()))
+        .containsExactly("bee");
+    assertThat(search(request().portal("portal2").addCategory_id("animals").build()))
+        .isEmpty();
+  }
+
+  @Test public void testFullTextQueryIsRejected() {
+    assertThatThrownBy(() -> sut.search(request().query("zebra").build()))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test public void testSupportedLocales() {
+    // Matches with fallbacks; entries without supported_locales are never listed
+    assertThat(search(request().addSupported_locale(ULocale.FRANCE).build()))
+        .containsExactly("zebra");
+    assertThat(search(request().addSupported_locale(ULocale.FRANCE, ULocale.US).build()))
+        .containsExactlyInAnyOrder("zebra", "another-bee");
+    // An explicit "und" doesn't make an entry match everything…
+    assertThat(search(request().addSupported_locale(ULocale.GERMAN).build()))
+        .isEmpty();
+    // …nor a request for "und"…
+    assertThat(search(request().addSupported_locale(new ULocale("und")).build()))
+        .isEmpty();
+    // …but the entry's other locales still match
+    assertThat(search(request().addSupported_locale(ULocale.ITALY).build()))
+        .containsExactly("bee");
+  }
+
+  @Test public void testSortAndPaging() {
+    List<String> all = search(request().displayLocale(ULocale.FRANCE).build());
+    assertThat(all).hasSize(4);
+
+    assertThat(search(request().displayLocale(ULocale.FRANCE).start(1).limit(2).build()))
+        .containsExactlyElementsOf(all.subList(1, 3));
+    assertThat(search(request().displayLocale(ULocale.FRANCE).start(3).limit(2).build()))
+        .containsExactlyElementsOf(all.subList(3, 4));
+    assertThat(search(request().displayLocale(ULocale.FRANCE).start(4).build()))
+        .isEmpty();
+    // Paging applies after filtering
+    assertThat(search(request().displayLocale(ULocale.FRANCE).addTarget_audience(CatalogEntry.TargetAudience.CITIZENS)
+        .start(1).build()))
+        .containsExactly("elephant");
+  }
+
+  /**
+   * Checks that entries are sorted as {@link JongoCatalogEntryRepository#search} sorts them in the database: on the
+   * precomputed sort keys then on the id.
+   */
+  @Test public void testSortParityWithDatabase() {
+    for (ULocale displayLocale : Arrays.asList(null, ULocale.ROOT, ULocale.FRANCE, ULocale.UK, new ULocale("tr-TR"))) {
+      ULocale sortLocale = CatalogSortKeys.getSortLocale(displayLocale);
+      Map<String, String> sortKeys = ImmutableList.of(zebra, elephant, bee, otherBee).stream()
+          .collect(Collectors.toMap(CatalogEntry::getId,
+              entry -> CatalogSortKeys.compute(entry.getName()).get(sortLocale.toLanguageTag())));
+      List<String> expected = sortKeys.keySet().stream()
+          .sorted(Comparator.comparing(sortKeys::get).thenComparing(Comparator.naturalOrder()))
+          .collect(Collectors.toList());
+
+      assertThat(search(request().displayLocale(displayLocale).build()))
+          .as("sorted for %s", displayLocale)
+          .containsExactlyElementsOf(expected);
+    }
+  }
+
+  @Test public void testResultsAreRestrictedToDisplayLocale() {
+    zebra.getName().set(ULocale.ENGLISH, "Zebra");
+
+    SimpleCatalogEntry result = Iterables.getOnlyElement(
+        sut.search(request().displayLocale(ULocale.UK).portal("portal1").addCategory_id("animals").build()));
+
+    assertThat(result.getName().get(ULocale.ROOT)).isEqualTo("Zebra");
+    // The snapshot is left untouched
+    assertThat(search(request().portal("portal1").addCategory_id("animals").build())).containsExactly("zebra");
+    assertThat(Iterables.getOnlyElement(sut.search(request().displayLocale(ULocale.FRANCE).addCategory_id("animals").build()))
+        .getName().get(ULocale.ROOT)).isEqualTo("Zèbre");
+  }
+
+  @Test public void testEntryChanged_beforeLoadIsNoOp() {
+    sut.entryChanged(CatalogEntry.EntryType.APPLICATION, "zebra");
+    sut.entriesChanged();
+
+    verify(jongoCatalogEntryRepository, never()).getSearchableEntry(any(), any());
+    verify(jongoCatalogEntryRepository, never()).getAllSearchableEntries();
+  }
+
+  @Test public void testEntryChanged() {
+    // given
+    assertThat(search(request().portal("portal2").build())).containsExactlyInAnyOrder("elephant", "bee");
+
+    // when: updated
+    SimpleCatalogEntry updatedZebra = entry(CatalogEntry.EntryType.APPLICATION, "zebra", "Zèbre");
+    updatedZebra.getPortals().add("portal2");
+    when(jongoCatalogEntryRepository.getSearchableEntry(CatalogEntry.EntryType.APPLICATION, "zebra")).thenReturn(updatedZebra);
+    sut.entryChanged(CatalogEntry.EntryType.APPLICATION, "zebra");
+
+    // then
+    assertThat(search(request().portal("portal2").build())).containsExactlyInAnyOrder("zebra", "elephant", "bee");
+    assertThat(search(request().portal("portal1").build())).containsExactly("elephant");
+
+    // when: deleted (or no longer searchable)
+    sut.entryChanged(CatalogEntry.EntryType.SERVICE, "elephant");
+
+    // then
+    assertThat(search(request().portal("portal2").build())).containsExactlyInAnyOrder("zebra", "bee");
+    verify(jongoCatalogEntryRepository, times(1)).getAllSearchableEntries();
+  }
+
+  @Test public void testEntryChanged_errorResetsSnapshot() {
+    // given
+    assertThat(search(request().build())).hasSize(4);
+    when(jongoCatalogEntryRepository.getSearchableEntry(any(), any())).thenThrow(new RuntimeException("boom"));
+
+    // when
+    sut.entryChanged(CatalogEntry.EntryType.APPLICATION, "zebra");
+
+    // then: reloaded on next search
+    assertThat(search(request().build())).hasSize(4);
+    verify(jongoCatalogEntryRepository, times(2)).getAllSearchableEntries();
+  }
+
+  @Test public void testEntriesChanged() {
+    // given
+    assertThat(search(request().build())).hasSize(4);
+    when(jongoCatalogEntryRepository.getAllSearchableEntries()).thenReturn(ImmutableList.of(zebra, bee));
+
+    // when
+    sut.entriesChanged();
+
+    // then
+    assertThat(search(request().build())).containsExactlyInAnyOrder("zebra", "bee");
+    assertThat(search(request().addTarget_audience(CatalogEntry.TargetAudience.CITIZENS).build())).containsExactly("bee");
+    verify(jongoCatalogEntryRepository, times(2)).getAllSearchableEntries();
+  }
+}
@@ -0,0 +1,237 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.eventbus;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.google.common.base.Ticker;
+
+import net.ltgt.jaxrs.webhook.client.WebhookSignatureFilter;
+import oasis.model.eventbus.EventDelivery;
+import oasis.model.eventbus.EventDeliveryRepository;
+import oasis.model.eventbus.Subscription;
+import oasis.model.eventbus.SubscriptionRepository;
+
+public class EventDeliveryServiceTest {
+  static final String SLOW_WEBHOOK = "https://slow.example.com/webhook";
+  static final String FAST_WEBHOOK = "https://fast.example.com/webhook";
+
+  static final EventBusModule.Settings settings = ImmutableEventBusModule.Settings.builder()
+      .pollInterval(Duration.ofSeconds(10))
+      .batchSize(10)
+      .leaseDuration(Duration.ofMinutes(1))
+      .workersPerHost(1)
+      .queueCapacityPerHost(1)
+      .maxAttempts(3)
+      .initialBackoff(Duration.ofSeconds(30))
+      .maxBackoff(Duration.ofMinutes(10))
+      .build();
+
+  private final CountDownLatch slowHostLatch = new CountDownLatch(1);
+
+  private EventDeliveryRepository eventDeliveryRepository;
+  private Invocation.Builder fastHost;
+  private long tickerNanos;
+  private EventDeliveryService sut;
+
+  @Before public void setUp() {
+    eventDeliveryRepository = mock(EventDeliveryRepository.class);
+    SubscriptionRepository subscriptionRepository = mock(SubscriptionRepository.class);
+    when(subscriptionRepository.getSubscription("subscription")).thenReturn(new Subscription() {{
+      setId("subscription");
+      setSecret("secret");
+    }});
+
+    Invocation.Builder slowHost = mock(Invocation.Builder.class);
+    when(slowHost.post(any(Entity.class))).thenAnswer(invocation -> {
+      slowHostLatch.await();
+      return response(Response.Status.NO_CONTENT);
+    });
+    fastHost = mock(Invocation.Builder.class);
+    when(fastHost.post(any(Entity.class))).thenAnswer(invocation -> response(Response.Status.NO_CONTENT));
+
+    Client client = mock(Client.class);
+    when(client.target(SLOW_WEBHOOK)).thenReturn(webTarget(slowHost));
+    when(client.target(FAST_WEBHOOK)).thenReturn(webTarget(fastHost));
+
+    // Not started: polls are triggered explicitly by the tests
+    Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return tickerNanos;
+      }
+    };
+    sut = new EventDeliveryService(settings, eventDeliveryRepository, subscriptionRepository, () -> client, ticker);
+  }
+
+  @After public void tearDown() {
+    slowHostLatch.countDown();
+  }
+
+  @Test public void testSaturatedHostDoesNotBlockOtherHosts() {
+    // given
+    when(eventDeliveryRepository.claimNextDue(any(), any())).thenReturn(
+        delivery("slow1", SLOW_WEBHOOK),
+        delivery("slow2", SLOW_WEBHOOK),
+        delivery("slow3", SLOW_WEBHOOK),
+        delivery("fast", FAST_WEBHOOK),
+        null);
+
+    // when
+    sut.poll();
+
+    // then
+    // slow1 is being delivered, slow2 is queued, and slow3 is rejected: its lease is released without counting an attempt
+    verify(eventDeliveryRepository).reschedule(eq("slow3"), any(), eq(0), isNull());
+    verify(eventDeliveryRepository, never()).reschedule(eq("slow1"), any(), anyInt(), any());
+    verify(eventDeliveryRepository, never()).reschedule(eq("slow2"), any(), anyInt(), any());
+    // the delivery to another host is not held up
+    verify(eventDeliveryRepository, times(5)).claimNextDue(any(), any());
+    verify(eventDeliveryRepository, timeout(5000)).deleteDelivery("fast");
+
+    // when
+    slowHostLatch.countDown();
+
+    // then
+    verify(eventDeliveryRepository, timeout(5000)).deleteDelivery("slow1");
+    verify(eventDeliveryRepository, timeout(5000)).deleteDelivery("slow2");
+    verify(eventDeliveryRepository, never()).deleteDelivery("slow3");
+  }
+
+  @Test public void testFailedDeliveryIsRescheduledWithBackoff() {
+    // given
+    when(fastHost.post(any(Entity.class))).thenAnswer(invocation -> response(Response.Status.SERVICE_UNAVAILABLE));
+    EventDelivery delivery = delivery("fast", FAST_WEBHOOK);
+    delivery.setAttempts(1);
+    when(eventDeliveryRepository.claimNextDue(any(), any())).thenReturn(delivery, (EventDelivery) null);
+    Instant before = Instant.now();
+
+    // when
+    sut.poll();
+
+    // then
+    ArgumentCaptor<Instant> nextAttempt = ArgumentCaptor.forClass(Instant.class);
+    verify(eventDeliveryRepository, timeout(5000)).reschedule(eq("fast"), nextAttempt.capture(), eq(2), eq("HTTP 503"));
+    // second retry: twice the initial backoff
+    assertThat(nextAttempt.getValue()).isAfterOrEqualTo(before.plus(settings.initialBackoff().multipliedBy(2)));
+    verify(eventDeliveryRepository, never()).markFailed(any(), anyInt(), any());
+    assertThat(sut.retriedCount()).isEqualTo(1);
+  }
+
+  @Test public void testGiveUpAfterMaxAttempts() {
+    // given
+    when(fastHost.post(any(Entity.class))).thenAnswer(invocation -> response(Response.Status.SERVICE_UNAVAILABLE));
+    EventDelivery delivery = delivery("fast", FAST_WEBHOOK);
+    delivery.setAttempts(settings.maxAttempts() - 1);
+    when(eventDeliveryRepository.claimNextDue(any(), any())).thenReturn(delivery, (EventDelivery) null);
+
+    // when
+    sut.poll();
+
+    // then
+    verify(eventDeliveryRepository, timeout(5000)).markFailed("fast", settings.maxAttempts(), "HTTP 503");
+    verify(eventDeliveryRepository, never()).reschedule(any(), any(), anyInt(), any());
+    assertThat(sut.failedCount()).isEqualTo(1);
+  }
+
+  @Test public void testIdleHostExecutorsAreEvicted() throws Exception {
+    // given
+    when(eventDeliveryRepository.claimNextDue(any(), any())).thenReturn(
+        delivery("slow", SLOW_WEBHOOK),
+        delivery("fast", FAST_WEBHOOK),
+        null);
+    sut.poll();
+    verify(eventDeliveryRepository, timeout(5000)).deleteDelivery("fast");
+    assertThat(sut.hostExecutorCount()).isEqualTo(2);
+
+    // when
+    tickerNanos += TimeUnit.MINUTES.toNanos(4);
+    sut.poll();
+
+    // then
+    assertThat(sut.hostExecutorCount()).isEqualTo(2);
+
+    // when
+    tickerNanos += TimeUnit.MINUTES.toNanos(2);
+    pollUntilHostExecutorCount(1);
+
+    // then
+    // The slow host is still delivering, so its pool is kept
+    assertThat(sut.hostExecutorCount()).isEqualTo(1);
+
+    // when
+    slowHostLatch.countDown();
+    verify(eventDeliveryRepository, timeout(5000)).deleteDelivery("slow");
+    pollUntilHostExecutorCount(0);
+
+    // then
+    assertThat(sut.hostExecutorCount()).isZero();
+  }
+
+  /** Workers can still be marked active for a short while after their delivery completed. */
+  private void pollUntilHostExecutorCount(int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    sut.poll();
+    while (sut.hostExecutorCount() > count && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+      sut.poll();
+    }
+  }
+
+  private static EventDelivery delivery(String id, String webHook) {
+    EventDelivery delivery = new EventDelivery();
+    delivery.setId(id);
+    delivery.setSubscription_id("subscription");
+    delivery.setWebHook(webHook);
+    delivery.setEventType("event");
+    delivery.setCreated(Instant.now());
+    return delivery;
+  }
+
+  private static WebTarget webTarget(Invocation.Builder builder) {
+    WebTarget webTarget = mock(WebTarget.class);
+    when(webTarget.register(any(WebhookSignatureFilter.class))).thenReturn(webTarget);
+    when(webTarget.request()).thenReturn(builder);
+    return webTarget;
+  }
+
+  private static Response response(Response.Status status) {
+    Response response = mock(Response.class);
+    when(response.getStatusInfo()).thenReturn(status);
+    when(response.getStatus()).thenReturn(status.getStatusCode());
+    return response;
+  }
+}
@@ -0,0 +1,166 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.jest.applications.v2;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.ibm.icu.util.ULocale;
+
+import oasis.model.applications.v2.CatalogEntry;
+import oasis.model.applications.v2.SimpleCatalogEntry;
+
+public class JestCatalogEntryRepositoryTest {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  @Test public void testParseSearchResponse() throws Exception {
+    // given
+    String json = "{"
+        + "\"took\": 3, \"timed_out\": false,"
+        + "\"_shards\": { \"total\": 5, \"successful\": 5, \"failed\": 0 },"
+        + "\"hits\": {"
+        + "  \"total\": 2, \"max_score\": null,"
+        + "  \"hits\": ["
+        + "    { \"_index\": \"catalog-entry\", \"_type\": \"APPLICATION\", \"_id\": \"application\", \"_score\": null,"
+        + "      \"_source\": { \"name\": \"Application\", \"name#fr\": \"Appli\", \"payment_option\": \"FREE\","
+        + "        \"_sort_keys\": { \"root\": \"abc\" } },"
+        + "      \"sort\": [ \"abc\", \"APPLICATION#application\" ] },"
+        + "    { \"_index\": \"catalog-entry\", \"_type\": \"SERVICE\", \"_id\": \"service\", \"_score\": null,"
+        + "      \"_source\": { \"name\": \"Service\", \"target_audience\": [ \"CITIZENS\" ] },"
+        + "      \"sort\": [ \"def\", \"SERVICE#service\" ] }"
+        + "  ]"
+        + "},"
+        + "\"aggregations\": {}"
+        + "}";
+
+    // when
+    List<SimpleCatalogEntry> entries;
+    try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+      entries = JestCatalogEntryRepository.parseSearchResponse(parser, null);
+    }
+
+    // then
+    assertThat(entries).extracting(CatalogEntry::getId).containsExactly("application", "service");
+    assertThat(entries).extracting(CatalogEntry::getType)
+        .containsExactly(CatalogEntry.EntryType.APPLICATION, CatalogEntry.EntryType.SERVICE);
+    assertThat(entries.get(0).getName().get(ULocale.ROOT)).isEqualTo("Application");
+    assertThat(entries.get(0).getName().get(ULocale.FRENCH)).isEqualTo("Appli");
+    assertThat(entries.get(0).getPayment_option()).isEqualTo(CatalogEntry.PaymentOption.FREE);
+    assertThat(entries.get(1).getTarget_audience()).containsExactly(CatalogEntry.TargetAudience.CITIZENS);
+  }
+
+  @Test public void testParseSearchResponse_noHits() throws Exception {
+    // given
+    String json = "{ \"took\": 1, \"hits\": { \"total\": 0, \"max_score\": null, \"hits\": [] } }";
+
+    // when
+    List<SimpleCatalogEntry> entries;
+    try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+      entries = JestCatalogEntryRepository.parseSearchResponse(parser, null);
+    }
+
+    // then
+    assertThat(entries).isEmpty();
+  }
+
+  @Test public void testParseSearchResponse_notAnObject() throws Exception {
+    try (JsonParser parser = JSON_FACTORY.createParser("[]")) {
+      assertThatThrownBy(() -> JestCatalogEntryRepository.parseSearchResponse(parser, null))
+          .isInstanceOf(JsonParseException.class);
+    }
+  }
+
+  @Test public void testParseHit_restrictsLocale() throws Exception {
+    // given
+    String json = "{ \"_type\": \"APPLICATION\", \"_id\": \"application\","
+        + "\"_source\": { \"name\": \"Application\", \"name#fr\": \"Appli\" } }";
+
+    // when
+    SimpleCatalogEntry entry;
+    try (JsonParser parser = startHit(json)) {
+      entry = JestCatalogEntryRepository.parseHit(parser, ULocale.FRANCE);
+    }
+
+    // then
+    assertThat(entry.getId()).isEqualTo("application");
+    assertThat(entry.getType()).isEqualTo(CatalogEntry.EntryType.APPLICATION);
+    // only the localization matching the display locale is kept, as the root value
+    assertThat(entry.getName().get(ULocale.ROOT)).isEqualTo("Appli");
+  }
+
+  @Test public void testParseHit_incomplete() throws Exception {
+    // given: missing _source
+    String json = "{ \"_type\": \"APPLICATION\", \"_id\": \"application\", \"_score\": 1.0 }";
+
+    // when/then
+    try (JsonParser parser = startHit(json)) {
+      assertThatThrownBy(() -> JestCatalogEntryRepository.parseHit(parser, null))
+          .isInstanceOf(JsonParseException.class)
+          .hasMessageContaining("Incomplete search hit");
+    }
+  }
+
+  @Test public void testParseHit_unknownType() throws Exception {
+    // given
+    String json = "{ \"_type\": \"UNKNOWN\", \"_id\": \"application\", \"_source\": {} }";
+
+    // when/then
+    try (JsonParser parser = startHit(json)) {
+      assertThatThrownBy(() -> JestCatalogEntryRepository.parseHit(parser, null))
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
+  @Test public void testParseScrollResponse() throws Exception {
+    // given
+    String json = "{ \"_scroll_id\": \"c2Nhbjs1OzE=\", \"took\": 2, \"timed_out\": false,"
+        + "\"hits\": { \"total\": 2, \"max_score\": 0.0, \"hits\": ["
+        + "  { \"_index\": \"catalog-entry\", \"_type\": \"APPLICATION\", \"_id\": \"application\", \"_score\": 0.0 },"
+        + "  { \"_index\": \"catalog-entry\", \"_type\": \"SERVICE\", \"_id\": \"service\", \"_score\": 0.0 }"
+        + "] } }";
+    List<String> keys = new ArrayList<>();
+
+    // when
+    String scrollId;
+    try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+      scrollId = JestCatalogEntryRepository.parseScrollResponse(parser, keys);
+    }
+
+    // then
+    assertThat(scrollId).isEqualTo("c2Nhbjs1OzE=");
+    assertThat(keys).containsExactly(
+        JestCatalogEntryRepository.documentKey(CatalogEntry.EntryType.APPLICATION, "application"),
+        JestCatalogEntryRepository.documentKey(CatalogEntry.EntryType.SERVICE, "service"));
+  }
+
+  /** Creates a parser positioned on the hit's {@link JsonToken#START_OBJECT}, as expected by {@code parseHit}. */
+  private static JsonParser startHit(String json) throws IOException {
+    JsonParser parser = JSON_FACTORY.createParser(json);
+    assertThat(parser.nextToken()).isEqualTo(JsonToken.START_OBJECT);
+    return parser;
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.jongo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.ibm.icu.util.ULocale;
+
+import oasis.jongo.applications.v2.JongoService;
+import oasis.jongo.guice.JongoModule;
+import oasis.model.applications.v2.Scope;
+import oasis.model.i18n.LocalizableString;
+
+public class ReferenceDataCacheTest {
+  private final ReferenceDataCache cache = new ReferenceDataCache(JongoModule.Settings.builder().build());
+
+  @Test public void testPutScope() {
+    cache.putScope(scope("a"), cache.generation());
+
+    assertThat(cache.getScope("dp:a")).isNotNull();
+    assertThat(cache.getScopes(Arrays.asList("dp:a", "dp:b"))).containsOnlyKeys("dp:a");
+  }
+
+  @Test public void testPutScope_skippedAfterConcurrentInvalidation() {
+    long generation = cache.generation();
+    Scope scope = scope("a");
+    // The scope is updated while being loaded
+    cache.invalidateScope(scope);
+    cache.putScope(scope, generation);
+
+    assertThat(cache.getScope("dp:a")).isNull();
+
+    // Later loads are cached again
+    cache.putScope(scope, cache.generation());
+    assertThat(cache.getScope("dp:a")).isNotNull();
+  }
+
+  @Test public void testPutScopesOfInstance_skippedAfterConcurrentInvalidation() {
+    long generation = cache.generation();
+    cache.invalidateScopes();
+    cache.putScopesOfInstance("dp", Arrays.asList(scope("a"), scope("b")), generation);
+
+    assertThat(cache.getScopesOfInstance("dp")).isNull();
+  }
+
+  @Test public void testPutServiceByRedirectUri_skippedAfterConcurrentInvalidation() {
+    long generation = cache.generation();
+    cache.invalidateServices();
+    cache.putServiceByRedirectUri("dp", "https://dp/callback", new JongoService(), generation);
+
+    assertThat(cache.getServiceByRedirectUri("dp", "https://dp/callback")).isNull();
+  }
+
+  @Test public void testScopesAreCopied() {
+    Scope scope = scope("a");
+    cache.putScope(scope, cache.generation());
+    cache.putScopesOfInstance("dp", Arrays.asList(scope), cache.generation());
+    // Modifying the scope after it's been cached doesn't change the cache
+    scope.getName().set(ULocale.ROOT, "modified");
+
+    Scope cachedScope = cache.getScope("dp:a");
+    assertThat(cachedScope.getName().get(ULocale.ROOT)).isEqualTo("Scope a");
+    // Modifying a cached scope doesn't change the cache either
+    cachedScope.getName().set(ULocale.ROOT, "modified");
+    assertThat(cache.getScope("dp:a").getName().get(ULocale.ROOT)).isEqualTo("Scope a");
+    assertThat(cache.getScope("dp:a")).isNotSameAs(cache.getScope("dp:a"));
+
+    List<Scope> scopesOfInstance = cache.getScopesOfInstance("dp");
+    assertThat(scopesOfInstance).extracting(s -> s.getName().get(ULocale.ROOT)).containsExactly("Scope a");
+    assertThat(scopesOfInstance.get(0)).isNotSameAs(cache.getScopesOfInstance("dp").get(0));
+  }
+
+  @Test public void testServicesAreCopied() {
+    JongoService service = new JongoService();
+    service.setId("service");
+    service.setSubscription_secret("secret");
+    cache.putServiceByRedirectUri("dp", "https://dp/callback", service, cache.generation());
+
+    Optional<JongoService> cachedService = cache.getServiceByRedirectUri("dp", "https://dp/callback");
+    assertThat(cachedService).isPresent();
+    cachedService.get().setSubscription_secret(null);
+
+    JongoService otherService = cache.getServiceByRedirectUri("dp", "https://dp/callback").get();
+    assertThat(otherService.getId()).isEqualTo("service");
+    assertThat(otherService.getSubscription_secret()).isEqualTo("secret");
+  }
+
+  @Test public void testUnknownRedirectUri() {
+    cache.putServiceByRedirectUri("dp", "https://dp/unknown", null, cache.generation());
+
+    assertThat(cache.getServiceByRedirectUri("dp", "https://dp/unknown")).isEmpty();
+    assertThat(cache.getServiceByRedirectUri("dp", "https://dp/other")).isNull();
+  }
+
+  private static Scope scope(String localId) {
+    Scope scope = new Scope();
+    scope.setInstance_id("dp");
+    scope.setLocal_id(localId);
+    scope.setName(new LocalizableString("Scope " + localId));
+    scope.computeId();
+    return scope;
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.jongo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import com.ibm.icu.util.ULocale;
+
+import oasis.model.applications.v2.Scope;
+import oasis.model.i18n.LocalizableString;
+
+public class RequestIdentityMapTest {
+  private final RequestIdentityMap identityMap = new RequestIdentityMap();
+  private final List<String> loadedIds = new ArrayList<>();
+
+  @Test public void testGet_loadsOnce() {
+    Scope first = identityMap.get(Scope.class, "dp:scope", this::load, Scope::new);
+    Scope second = identityMap.get(Scope.class, "dp:scope", this::load, Scope::new);
+
+    assertThat(loadedIds).containsExactly("dp:scope");
+    assertThat(first.getId()).isEqualTo("dp:scope");
+    assertThat(second.getId()).isEqualTo("dp:scope");
+  }
+
+  @Test public void testGet_returnsCopies() {
+    Scope first = identityMap.get(Scope.class, "dp:scope", this::load, Scope::new);
+    first.setLocal_id("redacted");
+    first.getName().set(ULocale.ROOT, "redacted");
+
+    Scope second = identityMap.get(Scope.class, "dp:scope", this::load, Scope::new);
+
+    assertThat(second).isNotSameAs(first);
+    assertThat(second.getLocal_id()).isEqualTo("scope");
+    assertThat(second.getName().get(ULocale.ROOT)).isEqualTo("Scope");
+  }
+
+  @Test public void testGet_remembersMissingEntities() {
+    assertThat(identityMap.get(Scope.class, "dp:unknown", id -> { loadedIds.add(id); return null; }, Scope::new))
+        .isNull();
+    assertThat(identityMap.get(Scope.class, "dp:unknown", this::load, Scope::new)).isNull();
+
+    assertThat(loadedIds).containsExactly("dp:unknown");
+  }
+
+  @Test public void testGetAll_onlyLoadsUnknownEntities() {
+    Scope known = identityMap.get(Scope.class, "dp:a", this::load, Scope::new);
+    known.setLocal_id("redacted");
+
+    List<Scope> scopes = identityMap.getAll(Scope.class, Arrays.asList("dp:b", "dp:a", "dp:c"), Scope::getId,
+        this::loadAll, Scope::new);
+
+    assertThat(loadedIds).containsExactly("dp:a", "dp:b", "dp:c");
+    assertThat(scopes).extracting(Scope::getId).containsExactly("dp:b", "dp:a", "dp:c");
+    assertThat(scopes).extracting(Scope::getLocal_id).containsExactly("b", "a", "c");
+    assertThat(scopes).doesNotContain(known);
+  }
+
+  @Test public void testEvict() {
+    identityMap.get(Scope.class, "dp:scope", this::load, Scope::new);
+    identityMap.evict(Scope.class, "dp:scope");
+    identityMap.get(Scope.class, "dp:scope", this::load, Scope::new);
+
+    assertThat(loadedIds).containsExactly("dp:scope", "dp:scope");
+  }
+
+  private Scope load(String id) {
+    loadedIds.add(id);
+    Scope scope = new Scope();
+    scope.setInstance_id("dp");
+    scope.setLocal_id(id.substring("dp:".length()));
+    scope.setName(new LocalizableString("Scope"));
+    scope.computeId();
+    return scope;
+  }
+
+  private Iterable<Scope> loadAll(Collection<String> ids) {
+    return ids.stream().map(this::load).collect(Collectors.toList());
+  }
+}
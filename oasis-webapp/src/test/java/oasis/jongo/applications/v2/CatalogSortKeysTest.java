@@ -0,0 +1,60 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.jongo.applications.v2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ibm.icu.util.ULocale;
+
+import oasis.model.i18n.LocalizableModule;
+
+public class CatalogSortKeysTest {
+  @Test public void testWithSortKeys() {
+    JongoService service = new JongoService();
+    service.setId("service");
+    service.getName().set(ULocale.ROOT, "Service");
+    service.getName().set(ULocale.FRENCH, "Un service");
+
+    JsonNode document = new ObjectMapper()
+        .registerModule(new LocalizableModule())
+        .valueToTree(CatalogSortKeys.withSortKeys(service));
+
+    // The entry is unwrapped, next to its sort keys
+    assertThat(document.path("id").asText()).isEqualTo("service");
+    assertThat(document.path("name").asText()).isEqualTo("Service");
+    assertThat(document.path("name#fr").asText()).isEqualTo("Un service");
+    assertThat(document.path("modified").isNumber()).isTrue();
+    JsonNode sortKeys = document.path(CatalogSortKeys.FIELD);
+    for (ULocale sortLocale : CatalogSortKeys.getSortLocales()) {
+      assertThat(sortKeys.path(sortLocale.toLanguageTag()).asText())
+          .isEqualTo(CatalogSortKeys.compute(service.getName()).get(sortLocale.toLanguageTag()));
+    }
+  }
+
+  @Test public void testMissingSortKeysQuery() {
+    String query = CatalogSortKeys.missingSortKeysQuery();
+
+    for (String sortField : CatalogSortKeys.getSortFields()) {
+      assertThat(query).contains("{ '" + sortField + "': { $exists: false } }");
+    }
+  }
+}
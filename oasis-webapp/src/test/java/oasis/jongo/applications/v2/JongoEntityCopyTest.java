@@ -0,0 +1,58 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.jongo.applications.v2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class JongoEntityCopyTest {
+  @Test public void testAppInstanceCopy() {
+    JongoAppInstance instance = new JongoAppInstance();
+    instance.setId("instance");
+    instance.setModified(42L);
+    instance.setDestruction_secret("secret");
+    instance.setPortal_id("portal");
+
+    JongoAppInstance copy = instance.copy();
+    copy.setDestruction_secret(null);
+    copy.setPortal_id(null);
+
+    assertThat(copy.getId()).isEqualTo("instance");
+    assertThat(copy.getModified()).isEqualTo(42L);
+    assertThat(instance.getDestruction_secret()).isEqualTo("secret");
+    assertThat(instance.getPortal_id()).isEqualTo("portal");
+  }
+
+  @Test public void testServiceCopy() {
+    JongoService service = new JongoService();
+    service.setId("service");
+    service.setModified(42L);
+    service.setSubscription_secret("secret");
+    service.getPortals().add("portal");
+
+    JongoService copy = service.copy();
+    copy.setSubscription_secret(null);
+    copy.setPortals(null);
+
+    assertThat(copy.getId()).isEqualTo("service");
+    assertThat(copy.getModified()).isEqualTo(42L);
+    assertThat(service.getSubscription_secret()).isEqualTo("secret");
+    assertThat(service.getPortals()).containsExactly("portal");
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.services.authn;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import oasis.auth.AuthModule;
+import oasis.model.authn.ClientType;
+
+public class ClientCredentialsCacheTest {
+  private ClientCredentialsCache sut;
+
+  @Before public void setUp() {
+    sut = new ClientCredentialsCache(AuthModule.Settings.builder()
+        .setClientCredentialsCacheSize(10)
+        .setClientCredentialsCacheDuration(Duration.ofMinutes(1))
+        .build(), new SecureRandom());
+  }
+
+  @Test public void testVerified() {
+    sut.put(ClientType.PROVIDER, "client", "secret", sut.generation());
+
+    assertThat(sut.isVerified(ClientType.PROVIDER, "client", "secret")).isTrue();
+    assertThat(sut.isVerified(ClientType.PROVIDER, "client", "counterfeit")).isFalse();
+    assertThat(sut.isVerified(ClientType.PROVIDER, "other", "secret")).isFalse();
+    assertThat(sut.isVerified(ClientType.USER, "client", "secret")).isFalse();
+  }
+
+  @Test public void testInvalidate() {
+    sut.put(ClientType.PROVIDER, "client", "secret", sut.generation());
+
+    sut.invalidate(ClientType.PROVIDER, "client");
+
+    assertThat(sut.isVerified(ClientType.PROVIDER, "client", "secret")).isFalse();
+  }
+
+  @Test public void testConcurrentInvalidation() {
+    long generation = sut.generation();
+    sut.invalidate(ClientType.PROVIDER, "client");
+
+    sut.put(ClientType.PROVIDER, "client", "secret", generation);
+
+    assertThat(sut.isVerified(ClientType.PROVIDER, "client", "secret")).isFalse();
+  }
+}
@@ -39,6 +39,7 @@ import de.thetaphi.forbiddenapis.SuppressForbidden;
 import oasis.model.authn.AccessToken;
 import oasis.model.authn.Token;
 import oasis.model.authn.TokenRepository;
+import oasis.services.authn.login.Sha256PasswordHasher;
 import oasis.services.authn.login.PasswordHasher;
 
 @RunWith(JukitoRunner.class)
@@ -89,6 +90,28 @@ public class TokenHandlerTest {
     assertThat(token).isSameAs(validToken);
   }
 
+  @Test public void testGetCheckedToken_sha256Token(TokenRepository tokenRepository, Sha256PasswordHasher sha256PasswordHasher) {
+    // given
+    byte[] salt = sha256PasswordHasher.createSalt();
+    Token sha256Token = new Token() {{
+      setId("sha256Token");
+      setCreationTime(now.minus(Duration.ofHours(1)));
+      expiresIn(Duration.ofHours(2));
+      setHash(sha256PasswordHasher.hashPassword("valid", salt));
+      setSalt(salt);
+      setHashAlgorithm(HashAlgorithm.SALTED_SHA256);
+    }};
+    when(tokenRepository.getToken(sha256Token.getId())).thenReturn(sha256Token);
+
+    // when
+    Token token = sut.getCheckedToken(TokenSerializer.serialize(sha256Token, "valid"), Token.class);
+    Token counterfeit = sut.getCheckedToken(TokenSerializer.serialize(sha256Token, "counterfeit"), Token.class);
+
+    // then
+    assertThat(token).isSameAs(sha256Token);
+    assertThat(counterfeit).isNull();
+  }
+
   @Test public void testGetCheckedToken_validToken_badType() {
     // when
     AccessToken accessToken = sut.getCheckedToken(TokenSerializer.serialize(validToken, "valid"), AccessToken.class);
@@ -0,0 +1,73 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.services.authn.login;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class Sha256PasswordHasherTest {
+  protected Sha256PasswordHasher sha256PasswordHasher;
+
+  @Before
+  public void init() {
+    sha256PasswordHasher = new Sha256PasswordHasher(new SecureRandom());
+  }
+
+  @Test
+  public void testSamePassword() throws GeneralSecurityException {
+    String password = "This is a test";
+    byte[] salt = sha256PasswordHasher.createSalt();
+
+    // Test password hash against himself (random salt)
+    byte[] hash = sha256PasswordHasher.hashPassword(password, salt);
+
+    assertTrue(sha256PasswordHasher.checkPassword(password, hash, salt));
+  }
+
+  @Test
+  public void testDifferentSalt() throws GeneralSecurityException {
+    String password = "This is a test";
+    byte[] salt = sha256PasswordHasher.createSalt();
+    byte[] salt2 = sha256PasswordHasher.createSalt();
+    assertFalse(Arrays.equals(salt, salt2));
+
+    // Test if hash with different salts are different
+    assertFalse(Arrays.equals(
+        sha256PasswordHasher.hashPassword(password, salt),
+        sha256PasswordHasher.hashPassword(password, salt2)));
+  }
+
+  @Test
+  public void testDifferentPassword() throws GeneralSecurityException {
+    String password = "This is a test";
+    String password2 = "This is a test, the return";
+    byte[] salt = sha256PasswordHasher.createSalt();
+
+    // Test if hash with different pass are different
+    assertFalse(Arrays.equals(
+        sha256PasswordHasher.hashPassword(password, salt),
+        sha256PasswordHasher.hashPassword(password2, salt)));
+  }
+}
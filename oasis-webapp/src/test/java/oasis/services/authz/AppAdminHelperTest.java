@@ -27,7 +27,6 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import oasis.model.applications.v2.AppInstance;
-import oasis.model.directory.OrganizationMembership;
 import oasis.model.directory.OrganizationMembershipRepository;
 
 @RunWith(JukitoRunner.class)
@@ -41,13 +40,7 @@ public class AppAdminHelperTest {
       setProvider_id("org");
       setInstantiator_id("instantiator");
     }};
-    when(organizationMembershipRepository.getOrganizationMembership("user", "org"))
-        .thenReturn(new OrganizationMembership() {{
-          setId("membership");
-          setAccountId("user");
-          setOrganizationId("org");
-          setAdmin(true);
-        }});
+    when(organizationMembershipRepository.isOrganizationAdmin("user", "org")).thenReturn(true);
 
     boolean isAppAdmin = new AppAdminHelper(organizationMembershipRepository).isAdmin("user", instance);
 
@@ -60,13 +53,7 @@ public class AppAdminHelperTest {
       setProvider_id("org");
       setInstantiator_id("instantiator");
     }};
-    when(organizationMembershipRepository.getOrganizationMembership("instantiator", "org"))
-        .thenReturn(new OrganizationMembership() {{
-          setId("membership");
-          setAccountId("instantiator");
-          setOrganizationId("org");
-          setAdmin(false);
-        }});
+    when(organizationMembershipRepository.isOrganizationAdmin("instantiator", "org")).thenReturn(false);
 
     boolean isAppAdmin = new AppAdminHelper(organizationMembershipRepository).isAdmin("instantiator", instance);
 
@@ -0,0 +1,107 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.services.authz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import oasis.auth.AuthModule;
+import oasis.model.applications.v2.AccessControlEntry;
+import oasis.model.applications.v2.AccessControlRepository;
+import oasis.model.applications.v2.AppInstance;
+
+public class AppRoleServiceTest {
+  static final AppInstance instance = new AppInstance() {{
+    setId("instance");
+    setProvider_id("org");
+  }};
+
+  private AccessControlRepository accessControlRepository;
+  private AppAdminHelper appAdminHelper;
+  private AppRoleCache appRoleCache;
+  private AppRoleService sut;
+
+  @Before public void setUp() {
+    accessControlRepository = mock(AccessControlRepository.class);
+    appAdminHelper = mock(AppAdminHelper.class);
+    appRoleCache = new AppRoleCache(AuthModule.Settings.builder()
+        .setAppRolesCacheSize(10)
+        .setAppRolesCacheDuration(Duration.ofMinutes(1))
+        .build());
+    sut = new AppRoleService(accessControlRepository, appAdminHelper, appRoleCache);
+  }
+
+  @Test public void testRoles() {
+    when(accessControlRepository.getAccessControlEntry("instance", "user")).thenReturn(new AccessControlEntry());
+    when(appAdminHelper.isAdmin("admin", instance)).thenReturn(true);
+
+    assertThat(sut.isAppUser("user", instance)).isTrue();
+    assertThat(sut.isAppAdmin("user", instance)).isFalse();
+    assertThat(sut.isAppUser("admin", instance)).isFalse();
+    assertThat(sut.isAppAdmin("admin", instance)).isTrue();
+    assertThat(sut.isAppUser("other", instance)).isFalse();
+    assertThat(sut.isAppAdmin("other", instance)).isFalse();
+  }
+
+  @Test public void testCached() {
+    when(appAdminHelper.isAdmin("user", instance)).thenReturn(true);
+
+    sut.getRoles("user", instance);
+    sut.getRoles("user", instance);
+
+    verify(appAdminHelper, times(1)).isAdmin("user", instance);
+    verify(accessControlRepository, times(1)).getAccessControlEntry("instance", "user");
+  }
+
+  @Test public void testUncachedAdmin() {
+    when(appAdminHelper.isAdmin("user", instance)).thenReturn(true);
+    assertThat(sut.isAppAdmin("user", instance)).isTrue();
+
+    // Admin rights revoked on another node, the cache hasn't been invalidated
+    when(appAdminHelper.isAdmin("user", instance)).thenReturn(false);
+
+    assertThat(sut.isAppAdmin("user", instance)).isTrue();
+    assertThat(sut.isAppAdminUncached("user", instance)).isFalse();
+  }
+
+  @Test public void testInvalidateAccount() {
+    assertThat(sut.isAppUser("user", instance)).isFalse();
+    when(accessControlRepository.getAccessControlEntry("instance", "user")).thenReturn(new AccessControlEntry());
+
+    appRoleCache.invalidateAccount("user");
+
+    assertThat(sut.isAppUser("user", instance)).isTrue();
+  }
+
+  @Test public void testInvalidateAppInstance() {
+    assertThat(sut.isAppAdmin("user", instance)).isFalse();
+    when(appAdminHelper.isAdmin("user", instance)).thenReturn(true);
+
+    appRoleCache.invalidateAppInstance("instance");
+
+    assertThat(sut.isAppAdmin("user", instance)).isTrue();
+  }
+}
@@ -0,0 +1,72 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.services.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class GenerationalCacheTest {
+  private final GenerationalCache<String> cache = new GenerationalCache<>(10, Duration.ofMinutes(1));
+
+  @Test public void testPut() {
+    cache.put("key", "value", cache.generation());
+
+    assertThat(cache.get("key")).isEqualTo("value");
+    assertThat(cache.getAllPresent(Arrays.asList("key", "other"))).containsOnlyKeys("key");
+  }
+
+  @Test public void testPut_skippedAfterConcurrentInvalidation() {
+    long generation = cache.generation();
+    // The data is changed while being loaded
+    cache.invalidate("key");
+    cache.put("key", "stale", generation);
+
+    assertThat(cache.get("key")).isNull();
+  }
+
+  @Test public void testInvalidate() {
+    cache.put("a:1", "one", cache.generation());
+    cache.put("a:2", "two", cache.generation());
+    cache.put("b:1", "one", cache.generation());
+
+    cache.invalidateKeys(key -> key.startsWith("a:"));
+    assertThat(cache.get("a:1")).isNull();
+    assertThat(cache.get("a:2")).isNull();
+    assertThat(cache.get("b:1")).isEqualTo("one");
+
+    cache.invalidateValues("one"::equals);
+    assertThat(cache.get("b:1")).isNull();
+  }
+
+  @Test public void testSharedGeneration() {
+    AtomicLong generation = new AtomicLong();
+    GenerationalCache<String> first = new GenerationalCache<>(10, Duration.ofMinutes(1), generation);
+    GenerationalCache<String> second = new GenerationalCache<>(10, Duration.ofMinutes(1), generation);
+
+    long firstGeneration = first.generation();
+    second.invalidateAll();
+    first.put("key", "stale", firstGeneration);
+
+    assertThat(first.get("key")).isNull();
+  }
+}
@@ -0,0 +1,92 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.usecases;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import javax.ws.rs.core.Response;
+
+import org.junit.Test;
+
+public class DeleteAppInstanceTest {
+  private static final Duration TIMEOUT = Duration.ofMillis(100);
+
+  @Test public void testAwaitProvider_success() {
+    // given
+    Response response = response(Response.Status.NO_CONTENT);
+
+    // when
+    DeleteAppInstance.Status status = DeleteAppInstance.awaitProvider(CompletableFuture.completedFuture(response), TIMEOUT,
+        "instance", "https://provider.example.com/destroy");
+
+    // then
+    assertThat(status).isNull();
+    verify(response).close();
+  }
+
+  @Test public void testAwaitProvider_errorStatus() {
+    // given
+    Response response = response(Response.Status.INTERNAL_SERVER_ERROR);
+
+    // when
+    DeleteAppInstance.Status status = DeleteAppInstance.awaitProvider(CompletableFuture.completedFuture(response), TIMEOUT,
+        "instance", "https://provider.example.com/destroy");
+
+    // then
+    assertThat(status).isEqualTo(DeleteAppInstance.Status.PROVIDER_STATUS_ERROR);
+    verify(response).close();
+  }
+
+  @Test public void testAwaitProvider_failure() {
+    // given
+    CompletableFuture<Response> future = new CompletableFuture<>();
+    future.completeExceptionally(new IOException());
+
+    // when
+    DeleteAppInstance.Status status = DeleteAppInstance.awaitProvider(future, TIMEOUT,
+        "instance", "https://provider.example.com/destroy");
+
+    // then
+    assertThat(status).isEqualTo(DeleteAppInstance.Status.PROVIDER_CALL_ERROR);
+  }
+
+  @Test public void testAwaitProvider_timeout() {
+    // given
+    CompletableFuture<Response> future = new CompletableFuture<>();
+
+    // when
+    DeleteAppInstance.Status status = DeleteAppInstance.awaitProvider(future, TIMEOUT,
+        "instance", "https://provider.example.com/destroy");
+
+    // then
+    // timeouts fall through so the instance gets deleted anyway
+    assertThat(status).isNull();
+    assertThat(future.isCancelled()).isTrue();
+  }
+
+  private static Response response(Response.Status status) {
+    Response response = mock(Response.class);
+    when(response.getStatusInfo()).thenReturn(status);
+    return response;
+  }
+}
@@ -0,0 +1,254 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.web.applications;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.AsyncInvoker;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import net.ltgt.jaxrs.webhook.client.WebhookSignatureFilter;
+import oasis.auth.AuthModule;
+import oasis.http.ImmutableHttpClientModule;
+import oasis.http.WebhookCallbackExecutor;
+import oasis.model.accounts.AccountRepository;
+import oasis.model.accounts.UserAccount;
+import oasis.model.applications.v2.AppInstance;
+import oasis.model.applications.v2.AppInstanceRepository;
+import oasis.model.applications.v2.Application;
+import oasis.model.applications.v2.ApplicationRepository;
+import oasis.model.authn.AccessToken;
+import oasis.model.directory.DirectoryRepository;
+import oasis.services.authn.CredentialsService;
+import oasis.services.authn.PasswordGenerator;
+import oasis.urls.BaseUrls;
+import oasis.usecases.DeleteAppInstance;
+import oasis.web.authn.OAuthPrincipal;
+import oasis.web.authz.JwsSigner;
+import okhttp3.logging.HttpLoggingInterceptor;
+
+public class MarketBuyEndpointTest {
+  static final Application application = new Application() {{
+    setId("application");
+    setInstantiation_uri("https://factory.example.com/instantiate");
+    setInstantiation_secret("secret");
+  }};
+
+  static final AppInstance createdInstance = new AppInstance() {{
+    setId("instance");
+    setApplication_id(application.getId());
+    setStatus(InstantiationStatus.PENDING);
+  }};
+
+  static final UserAccount user = new UserAccount() {{
+    setId("user");
+    setNickname("Some user");
+  }};
+
+  static final AccessToken accessToken = new AccessToken() {{
+    setId("accessToken");
+    setAccountId(user.getId());
+    setServiceProviderId("portal");
+  }};
+
+  private MarketBuyEndpoint endpoint;
+  private Future<Response> future;
+  private AsyncResponse asyncResponse;
+  private ArgumentCaptor<InvocationCallback<Response>> callback;
+
+  @Before
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public void setUp() throws Exception {
+    endpoint = new MarketBuyEndpoint();
+    endpoint.applicationId = application.getId();
+    endpoint.applicationRepository = mock(ApplicationRepository.class);
+    when(endpoint.applicationRepository.getApplication(application.getId())).thenReturn(application);
+    endpoint.directoryRepository = mock(DirectoryRepository.class);
+    endpoint.appInstanceRepository = mock(AppInstanceRepository.class);
+    when(endpoint.appInstanceRepository.createAppInstance(any())).thenReturn(createdInstance);
+    when(endpoint.appInstanceRepository.getAppInstance(createdInstance.getId())).thenReturn(createdInstance);
+    endpoint.accountRepository = mock(AccountRepository.class);
+    when(endpoint.accountRepository.getUserAccountById(user.getId())).thenReturn(user);
+    endpoint.passwordGenerator = mock(PasswordGenerator.class);
+    when(endpoint.passwordGenerator.generate()).thenReturn("password");
+    endpoint.credentialsService = mock(CredentialsService.class);
+    endpoint.deleteAppInstance = mock(DeleteAppInstance.class);
+    when(endpoint.deleteAppInstance.deleteInstance(any(), any())).thenReturn(DeleteAppInstance.Status.DELETED_INSTANCE);
+    endpoint.settings = AuthModule.Settings.builder()
+        .setJwtBearerDuration(Duration.ofMinutes(1))
+        .build();
+    endpoint.jwsSigner = mock(JwsSigner.class);
+    when(endpoint.jwsSigner.sign(anyString())).thenReturn("jwt-bearer");
+    endpoint.httpClientSettings = ImmutableHttpClientModule.Settings.builder()
+        .loggingLevel(HttpLoggingInterceptor.Level.NONE)
+        .webhookTimeout(Duration.ofSeconds(10))
+        .build();
+    endpoint.webhookCallbackExecutor = mock(WebhookCallbackExecutor.class);
+    doAnswer(invocation -> {
+      invocation.<Runnable>getArgument(0).run();
+      return null;
+    }).when(endpoint.webhookCallbackExecutor).execute(any());
+    endpoint.baseUrls = mock(BaseUrls.class);
+    endpoint.clock = Clock.systemUTC();
+    endpoint.uriInfo = mock(UriInfo.class);
+    when(endpoint.uriInfo.getBaseUri()).thenReturn(URI.create("http://localhost/"));
+    when(endpoint.uriInfo.getBaseUriBuilder()).thenAnswer(invocation -> UriBuilder.fromUri("http://localhost/"));
+    endpoint.securityContext = mock(SecurityContext.class);
+    when(endpoint.securityContext.getUserPrincipal()).thenReturn(new OAuthPrincipal(accessToken));
+
+    future = mock(Future.class);
+    callback = ArgumentCaptor.forClass((Class) InvocationCallback.class);
+    AsyncInvoker asyncInvoker = mock(AsyncInvoker.class);
+    doReturn(future).when(asyncInvoker).post(any(Entity.class), callback.capture());
+    Invocation.Builder invocationBuilder = mock(Invocation.Builder.class);
+    when(invocationBuilder.async()).thenReturn(asyncInvoker);
+    WebTarget webTarget = mock(WebTarget.class);
+    when(webTarget.register(any(WebhookSignatureFilter.class))).thenReturn(webTarget);
+    when(webTarget.request()).thenReturn(invocationBuilder);
+    endpoint.client = mock(Client.class);
+    when(endpoint.client.target(application.getInstantiation_uri())).thenReturn(webTarget);
+
+    asyncResponse = mock(AsyncResponse.class);
+    when(asyncResponse.isSuspended()).thenReturn(true);
+  }
+
+  @Test public void testFactorySuccess() {
+    // given
+    endpoint.instantiate(new AppInstance(), asyncResponse);
+    Response factoryResponse = factoryResponse(Response.Status.OK);
+
+    // when
+    callback.getValue().completed(factoryResponse);
+
+    // then
+    verify(endpoint.webhookCallbackExecutor).execute(any());
+    verify(endpoint.deleteAppInstance, never()).deleteInstance(any(), any());
+    verify(factoryResponse).close();
+    Response response = resumedResponse();
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    assertThat(response.getEntity()).isSameAs(createdInstance);
+  }
+
+  @Test public void testFactoryErrorStatus() {
+    // given
+    endpoint.instantiate(new AppInstance(), asyncResponse);
+    Response factoryResponse = factoryResponse(Response.Status.INTERNAL_SERVER_ERROR);
+
+    // when
+    callback.getValue().completed(factoryResponse);
+
+    // then
+    verify(endpoint.webhookCallbackExecutor).execute(any());
+    verify(endpoint.deleteAppInstance).deleteInstance(any(), any());
+    verify(factoryResponse).close();
+    assertThat(resumedResponse().getStatusInfo()).isEqualTo(Response.Status.BAD_GATEWAY);
+  }
+
+  @Test public void testCallbackExecutorSaturated() {
+    // given
+    doThrow(RejectedExecutionException.class).when(endpoint.webhookCallbackExecutor).execute(any());
+    endpoint.instantiate(new AppInstance(), asyncResponse);
+    Response factoryResponse = factoryResponse(Response.Status.OK);
+
+    // when
+    callback.getValue().completed(factoryResponse);
+
+    // then
+    verify(endpoint.deleteAppInstance, never()).deleteInstance(any(), any());
+    verify(factoryResponse).close();
+    assertThat(resumedResponse().getStatusInfo()).isEqualTo(Response.Status.SERVICE_UNAVAILABLE);
+  }
+
+  @Test public void testFactoryFailure() {
+    // given
+    endpoint.instantiate(new AppInstance(), asyncResponse);
+
+    // when
+    callback.getValue().failed(new IOException());
+
+    // then
+    assertThat(resumedResponse().getStatusInfo()).isEqualTo(Response.Status.BAD_GATEWAY);
+  }
+
+  @Test public void testFactoryTimeout() {
+    // given
+    ArgumentCaptor<TimeoutHandler> timeoutHandler = ArgumentCaptor.forClass(TimeoutHandler.class);
+    endpoint.instantiate(new AppInstance(), asyncResponse);
+    verify(asyncResponse).setTimeoutHandler(timeoutHandler.capture());
+    verify(asyncResponse).setTimeout(10_000, TimeUnit.MILLISECONDS);
+
+    // when
+    timeoutHandler.getValue().handleTimeout(asyncResponse);
+
+    // then
+    verify(future).cancel(true);
+    assertThat(resumedResponse().getStatusInfo()).isEqualTo(Response.Status.GATEWAY_TIMEOUT);
+  }
+
+  @Test public void testFactoryRespondsAfterTimeout() {
+    // given
+    endpoint.instantiate(new AppInstance(), asyncResponse);
+    when(asyncResponse.isSuspended()).thenReturn(false);
+    Response factoryResponse = factoryResponse(Response.Status.OK);
+
+    // when
+    callback.getValue().completed(factoryResponse);
+
+    // then
+    verify(endpoint.webhookCallbackExecutor, never()).execute(any());
+    verify(factoryResponse).close();
+    verify(asyncResponse, never()).resume(any(Object.class));
+  }
+
+  private Response resumedResponse() {
+    ArgumentCaptor<Object> resumed = ArgumentCaptor.forClass(Object.class);
+    verify(asyncResponse).resume(resumed.capture());
+    assertThat(resumed.getValue()).isInstanceOf(Response.class);
+    return (Response) resumed.getValue();
+  }
+
+  private static Response factoryResponse(Response.Status status) {
+    Response response = mock(Response.class);
+    when(response.getStatusInfo()).thenReturn(status);
+    return response;
+  }
+}
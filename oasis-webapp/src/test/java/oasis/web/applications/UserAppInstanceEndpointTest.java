@@ -0,0 +1,154 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.web.applications;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Response;
+
+import org.jukito.JukitoModule;
+import org.jukito.JukitoRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+
+import oasis.http.testing.InProcessResteasy;
+import oasis.model.applications.v2.AppInstance;
+import oasis.model.applications.v2.AppInstanceRepository;
+import oasis.model.authn.AccessToken;
+import oasis.model.directory.OrganizationMembership;
+import oasis.model.directory.OrganizationMembershipRepository;
+import oasis.web.authn.testing.TestOAuthFilter;
+
+@RunWith(JukitoRunner.class)
+public class UserAppInstanceEndpointTest {
+  public static class Module extends JukitoModule {
+    @Override
+    protected void configureTest() {
+      bind(UserAppInstanceEndpoint.class);
+    }
+  }
+
+  static final String userId = "user";
+
+  static final AppInstance personalInstance = new AppInstance() {{
+    setId("personal");
+    setInstantiator_id(userId);
+  }};
+  static final AppInstance organizationInstance = new AppInstance() {{
+    setId("organization");
+    setInstantiator_id("other user");
+    setProvider_id("organization");
+  }};
+
+  static final OrganizationMembership membership = new OrganizationMembership() {{
+    setId("membership");
+    setAccountId(userId);
+    setOrganizationId("organization");
+    setAdmin(true);
+  }};
+
+  @Inject @Rule public InProcessResteasy resteasy;
+
+  @Before public void setUpMocks(OrganizationMembershipRepository organizationMembershipRepository) {
+    when(organizationMembershipRepository.getOrganizationsForAdmin(userId)).thenReturn(ImmutableList.of(membership));
+  }
+
+  @Before public void setUp() {
+    resteasy.getDeployment().getRegistry().addPerRequestResource(UserAppInstanceEndpoint.class);
+    resteasy.getDeployment().getProviderFactory().register(new TestOAuthFilter(new AccessToken() {{
+      setAccountId(userId);
+      setServiceProviderId("portal");
+      setPortal(true);
+    }}));
+  }
+
+  @Test public void testPersonalInstances(AppInstanceRepository appInstanceRepository) {
+    // given
+    when(appInstanceRepository.findPersonalAndOrganizationInstances(userId, ImmutableList.of(), null, 0, 0))
+        .thenReturn(ImmutableList.of(personalInstance));
+
+    // when
+    Response response = resteasy.getClient()
+        .target(resteasy.getBaseUriBuilder().path(UserAppInstanceEndpoint.class).build(userId))
+        .request().get();
+
+    // then
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    assertThat(response.readEntity(new GenericType<List<AppInstance>>() {}))
+        .extracting(AppInstance::getId)
+        .containsExactly(personalInstance.getId());
+  }
+
+  @Test public void testIncludeOrgs(AppInstanceRepository appInstanceRepository) {
+    // given
+    when(appInstanceRepository.findPersonalAndOrganizationInstances(userId, ImmutableList.of("organization"),
+        AppInstance.InstantiationStatus.RUNNING, 10, 20))
+        .thenReturn(ImmutableList.of(personalInstance, organizationInstance));
+
+    // when
+    Response response = resteasy.getClient()
+        .target(resteasy.getBaseUriBuilder().path(UserAppInstanceEndpoint.class)
+            .queryParam("include_orgs", true)
+            .queryParam("status", AppInstance.InstantiationStatus.RUNNING)
+            .queryParam("start", 10)
+            .queryParam("limit", 20)
+            .build(userId))
+        .request().get();
+
+    // then
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    // personal instances first, then organization ones, as returned by the repository
+    assertThat(response.readEntity(new GenericType<List<AppInstance>>() {}))
+        .extracting(AppInstance::getId)
+        .containsExactly(personalInstance.getId(), organizationInstance.getId());
+  }
+
+  @Test public void testInvalidLimit(AppInstanceRepository appInstanceRepository) {
+    // when
+    Response response = resteasy.getClient()
+        .target(resteasy.getBaseUriBuilder().path(UserAppInstanceEndpoint.class)
+            .queryParam("limit", -1)
+            .build(userId))
+        .request().get();
+
+    // then
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.BAD_REQUEST);
+    verify(appInstanceRepository, never()).findPersonalAndOrganizationInstances(any(), any(), any(), anyInt(), anyInt());
+  }
+
+  @Test public void testOtherUser(AppInstanceRepository appInstanceRepository) {
+    // when
+    Response response = resteasy.getClient()
+        .target(resteasy.getBaseUriBuilder().path(UserAppInstanceEndpoint.class).build("other user"))
+        .request().get();
+
+    // then
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.FORBIDDEN);
+    verify(appInstanceRepository, never()).findPersonalAndOrganizationInstances(any(), any(), any(), anyInt(), anyInt());
+  }
+}
@@ -0,0 +1,167 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.web.auditlog;
+
+import static com.google.inject.multibindings.OptionalBinder.newOptionalBinder;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import javax.annotation.Nullable;
+import javax.inject.Provider;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+
+import org.jukito.JukitoModule;
+import org.jukito.JukitoRunner;
+import org.jukito.TestSingleton;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+
+import oasis.auditlog.AuditLogModule;
+import oasis.auditlog.AuditLogReader;
+import oasis.auditlog.AuditLogService;
+import oasis.auditlog.ImmutableAuditLogModule;
+import oasis.http.testing.InProcessResteasy;
+import oasis.web.authn.testing.TestClientAuthenticationFilter;
+
+@RunWith(JukitoRunner.class)
+public class AuditLogEndpointTest {
+  public static class Module extends JukitoModule {
+    @Override
+    protected void configureTest() {
+      bind(AuditLogEndpoint.class);
+
+      bind(AuditLogModule.Settings.class).toInstance(ImmutableAuditLogModule.Settings.builder()
+          .disabled(false)
+          .sink(AuditLogModule.Sink.MONGO)
+          .queueSize(10)
+          .batchSize(10)
+          .overflowPolicy(AuditLogModule.OverflowPolicy.DROP)
+          .mongoRetention(Duration.ofDays(1))
+          .addReaderClientIds("reader")
+          .build());
+      bindMock(AuditLogService.class).in(TestSingleton.class);
+      bind(AuditLogReaderProvider.class).in(TestSingleton.class);
+      newOptionalBinder(binder(), AuditLogReader.class)
+          .setBinding().toProvider(AuditLogReaderProvider.class);
+    }
+  }
+
+  /** Lets tests simulate a sink that doesn't store events, by setting {@link #reader} to {@code null}. */
+  static class AuditLogReaderProvider implements Provider<AuditLogReader> {
+    @Nullable AuditLogReader reader;
+
+    @Override
+    public AuditLogReader get() {
+      return reader;
+    }
+  }
+
+  @Inject @Rule public InProcessResteasy resteasy;
+
+  AuditLogReader auditLogReader;
+
+  @Before public void setUpMocks(AuditLogReaderProvider auditLogReaderProvider) {
+    auditLogReader = mock(AuditLogReader.class);
+    when(auditLogReader.findEvents(any(), any(), any(), any(), anyInt())).thenReturn(ImmutableList.of());
+    auditLogReaderProvider.reader = auditLogReader;
+  }
+
+  @Before public void setUp() {
+    resteasy.getDeployment().getRegistry().addPerRequestResource(AuditLogEndpoint.class);
+  }
+
+  @Test public void testFindEvents() {
+    resteasy.getDeployment().getProviderFactory().register(new TestClientAuthenticationFilter("reader"));
+
+    Response resp = find(findUri()
+        .queryParam("type", "type")
+        .queryParam("principal", "principal")
+        .queryParam("since", "2018-01-01T00:00:00Z")
+        .queryParam("until", "2018-02-01T00:00:00Z")
+        .queryParam("limit", 10));
+
+    assertThat(resp.getStatusInfo()).isEqualTo(Response.Status.OK);
+    verify(auditLogReader).findEvents("type", "principal",
+        Instant.parse("2018-01-01T00:00:00Z"), Instant.parse("2018-02-01T00:00:00Z"), 10);
+  }
+
+  @Test public void testDefaultLimit() {
+    resteasy.getDeployment().getProviderFactory().register(new TestClientAuthenticationFilter("reader"));
+
+    Response resp = find(findUri());
+
+    assertThat(resp.getStatusInfo()).isEqualTo(Response.Status.OK);
+    verify(auditLogReader).findEvents(null, null, null, null, 100);
+  }
+
+  @Test public void testForbiddenClient() {
+    resteasy.getDeployment().getProviderFactory().register(new TestClientAuthenticationFilter("other"));
+
+    Response resp = find(findUri());
+
+    assertThat(resp.getStatusInfo()).isEqualTo(Response.Status.FORBIDDEN);
+    verifyZeroInteractions(auditLogReader);
+  }
+
+  @Test public void testEventsNotStored(AuditLogReaderProvider auditLogReaderProvider) {
+    auditLogReaderProvider.reader = null;
+    resteasy.getDeployment().getProviderFactory().register(new TestClientAuthenticationFilter("reader"));
+
+    Response resp = find(findUri());
+
+    assertThat(resp.getStatusInfo()).isEqualTo(Response.Status.NOT_FOUND);
+  }
+
+  @Test public void testInvalidLimit() {
+    resteasy.getDeployment().getProviderFactory().register(new TestClientAuthenticationFilter("reader"));
+
+    assertThat(find(findUri().queryParam("limit", 0)).getStatus()).isEqualTo(422);
+    assertThat(find(findUri().queryParam("limit", 1001)).getStatus()).isEqualTo(422);
+    verifyZeroInteractions(auditLogReader);
+  }
+
+  @Test public void testInvalidDate() {
+    resteasy.getDeployment().getProviderFactory().register(new TestClientAuthenticationFilter("reader"));
+
+    assertThat(find(findUri().queryParam("since", "2018-01-01")).getStatus()).isEqualTo(422);
+    assertThat(find(findUri().queryParam("until", "yesterday")).getStatus()).isEqualTo(422);
+    verifyZeroInteractions(auditLogReader);
+  }
+
+  private UriBuilder findUri() {
+    return resteasy.getBaseUriBuilder().path(AuditLogEndpoint.class).path(AuditLogEndpoint.class, "find");
+  }
+
+  private Response find(UriBuilder uri) {
+    return resteasy.getClient().target(uri).request().get();
+  }
+}
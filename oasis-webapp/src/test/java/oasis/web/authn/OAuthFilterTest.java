@@ -47,6 +47,7 @@ import com.google.inject.Inject;
 
 import oasis.http.testing.InProcessResteasy;
 import oasis.model.authn.AccessToken;
+import oasis.services.authn.AccessTokenCache;
 import oasis.services.authn.TokenHandler;
 
 @RunWith(JukitoRunner.class)
@@ -58,6 +59,7 @@ public class OAuthFilterTest {
       bind(OAuthFilter.class);
 
       bindMock(TokenHandler.class).in(TestSingleton.class);
+      bindMock(AccessTokenCache.class).in(TestSingleton.class);
     }
   }
 
@@ -242,6 +244,37 @@ public class OAuthFilterTest {
     assertThat(response.readEntity(AccessToken.class)).isEqualToComparingFieldByField(validAccessToken);
   }
 
+  @Test
+  public void testWithCachedAccessToken(TokenHandler tokenHandler, AccessTokenCache accessTokenCache) {
+    when(accessTokenCache.get("cached")).thenReturn(validAccessToken);
+
+    Response response = resteasy.getClient()
+        .target(resteasy.getBaseUriBuilder().path(DummyResource.class).build())
+        .request()
+        .header(HttpHeaders.AUTHORIZATION, "Bearer cached")
+        .get();
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    assertThat(response.readEntity(AccessToken.class)).isEqualToComparingFieldByField(validAccessToken);
+
+    verifyNoMoreInteractions(tokenHandler);
+  }
+
+  @Test
+  public void testValidAccessTokenIsCached(AccessTokenCache accessTokenCache) {
+    when(accessTokenCache.generation()).thenReturn(42L);
+
+    Response response = resteasy.getClient()
+        .target(resteasy.getBaseUriBuilder().path(DummyResource.class).build())
+        .request()
+        .header(HttpHeaders.AUTHORIZATION, "Bearer valid")
+        .get();
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+
+    verify(accessTokenCache).put("valid", validAccessToken, 42L);
+  }
+
   @Path("/")
   @OAuth @WithScopes({SCOPE_DATA, SCOPE_MIND})
   public static class DummyResource {
@@ -46,6 +46,7 @@ import org.junit.runner.RunWith;
 
 import com.google.inject.Inject;
 
+import oasis.auth.AuthModule;
 import oasis.http.testing.InProcessResteasy;
 import oasis.model.authn.ClientCertificate;
 import oasis.model.authn.ClientType;
@@ -63,6 +64,11 @@ public class UserFilterTest {
     protected void configureTest() {
       bind(UserFilter.class);
 
+      bind(AuthModule.Settings.class).toInstance(AuthModule.Settings.builder()
+          .setSidTokenDuration(Duration.ofHours(2))
+          .setSidTokenRenewalThreshold(0.5)
+          .build());
+
       bindMock(TokenHandler.class).in(TestSingleton.class);
       bindMock(UserAgentFingerprinter.class).in(TestSingleton.class);
       bindMock(SessionManagementHelper.class).in(TestSingleton.class);
@@ -92,6 +98,14 @@ public class UserFilterTest {
     validSidTokenUsingCertificate.setUserAgentFingerprint(validSidToken.getUserAgentFingerprint());
     validSidTokenUsingCertificate.setUsingClientCertificate(true);
   }
+  static final SidToken recentlyRenewedSidToken = new SidToken();
+  static {
+    recentlyRenewedSidToken.setId("recentlyRenewedSession");
+    recentlyRenewedSidToken.setAccountId("userAccount");
+    recentlyRenewedSidToken.setCreationTime(now.minus(Duration.ofHours(1)));
+    recentlyRenewedSidToken.setExpirationTime(now.plus(Duration.ofHours(2)));
+    recentlyRenewedSidToken.setUserAgentFingerprint("fingerprint".getBytes(StandardCharsets.UTF_8));
+  }
   static final ClientCertificate userCertificate = new ClientCertificate() {{
     setSubject_dn("valid subject");
     setIssuer_dn("valid issuer");
@@ -121,6 +135,7 @@ public class UserFilterTest {
     when(tokenHandler.getCheckedToken("valid", SidToken.class)).thenReturn(validSidToken);
     when(tokenHandler.getCheckedToken("validUsingCertificate", SidToken.class)).thenReturn(validSidTokenUsingCertificate);
     when(tokenHandler.getCheckedToken("invalid", SidToken.class)).thenReturn(null);
+    when(tokenHandler.getCheckedToken("recentlyRenewed", SidToken.class)).thenReturn(recentlyRenewedSidToken);
 
     when(tokenRepository.renewSidToken(validSidToken.getId(), false)).thenReturn(validSidToken);
     when(tokenRepository.renewSidToken(validSidToken.getId(), true)).thenReturn(validSidTokenUsingCertificate);
@@ -200,6 +215,22 @@ public class UserFilterTest {
     verify(tokenRepository).renewSidToken(validSidToken.getId(), false);
   }
 
+  @Test public void testAuthenticatedRecentlyRenewed() {
+    when(fingerprinter.fingerprint(any(ContainerRequestContext.class))).thenReturn(recentlyRenewedSidToken.getUserAgentFingerprint());
+
+    Response response = resteasy.getClient().target(resteasy.getBaseUriBuilder().path(DummyResource.class).build()).request()
+        .cookie(cookieName, "recentlyRenewed")
+        .cookie(browserStateCookieName, "browser-state")
+        .get();
+
+    commonAssertions(response);
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    assertThat(response.getCookies()).doesNotContainKeys(cookieName, browserStateCookieName);
+    assertThat(response.readEntity(SidToken.class)).isEqualToComparingFieldByField(recentlyRenewedSidToken);
+
+    verify(tokenRepository, never()).renewSidToken(anyString(), anyBoolean());
+  }
+
   @SuppressWarnings("unchecked")
   @Test public void testAuthenticatedWithCertificate(ClientCertificateHelper clientCertificateHelper) {
     when(fingerprinter.fingerprint(any(ContainerRequestContext.class))).thenReturn(validSidToken.getUserAgentFingerprint());
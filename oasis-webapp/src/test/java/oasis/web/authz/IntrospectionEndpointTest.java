@@ -21,7 +21,6 @@ import static org.assertj.core.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import java.time.Duration;
-import java.util.Arrays;
 import java.util.Collections;
 
 import javax.ws.rs.client.Entity;
@@ -50,9 +49,12 @@ import oasis.model.applications.v2.ScopeRepository;
 import oasis.model.authn.AccessToken;
 import oasis.model.authz.Scopes;
 import oasis.model.bootstrap.ClientIds;
+import oasis.model.directory.OrganizationMembership;
 import oasis.model.directory.OrganizationMembershipRepository;
 import oasis.services.authn.TokenHandler;
 import oasis.services.authz.AppAdminHelper;
+import oasis.services.authz.AppRoleCache;
+import oasis.services.authz.IntrospectionCache;
 import oasis.web.authn.testing.TestClientAuthenticationFilter;
 
 @RunWith(JukitoRunner.class)
@@ -65,6 +67,8 @@ public class IntrospectionEndpointTest {
 
       bindMock(TokenHandler.class).in(TestSingleton.class);
       bindMock(AppAdminHelper.class).in(TestSingleton.class);
+      bindMock(IntrospectionCache.class).in(TestSingleton.class);
+      bindMock(AppRoleCache.class).in(TestSingleton.class);
     }
   }
 
@@ -94,6 +98,11 @@ public class IntrospectionEndpointTest {
     expiresIn(Duration.ofDays(1));
   }};
 
+  static final ImmutableList<OrganizationMembership> memberships = ImmutableList.of(
+      new OrganizationMembership() {{ setOrganizationId("org1"); }},
+      new OrganizationMembership() {{ setOrganizationId("org2"); }}
+  );
+
   static final AppInstance appInstance = new AppInstance() {{
     setId("application");
   }};
@@ -111,7 +120,7 @@ public class IntrospectionEndpointTest {
     when(scopeRepository.getScopesOfAppInstance("dp1")).thenReturn(dp1Scopes);
     when(scopeRepository.getScopesOfAppInstance("dp2")).thenReturn(dp2Scopes);
 
-    when(organizationMembershipRepository.getOrganizationIdsForUser("account")).thenReturn(Arrays.asList("org1", "org2"));
+    when(organizationMembershipRepository.getOrganizationsForUser("account")).thenReturn(memberships);
 
     when(appInstanceRepository.getAppInstance("application")).thenReturn(appInstance);
   }
@@ -220,6 +229,36 @@ public class IntrospectionEndpointTest {
     assertThat(response.getSub_groups()).containsOnly("org1", "org2", "app_admin_application", "app_user_application");
   }
 
+  @SuppressWarnings("unchecked")
+  @Test public void testCachedResult(TokenHandler tokenHandler, IntrospectionCache introspectionCache) {
+    // given
+    resteasy.getDeployment().getProviderFactory().register(new TestClientAuthenticationFilter(ClientIds.DATACORE));
+    when(introspectionCache.get("cached", ClientIds.DATACORE)).thenReturn(new IntrospectionCache.Entry(
+        validToken, ImmutableSet.of("datacore"), ImmutableList.of("org1", "app_user_application")));
+
+    // when
+    Response resp = introspect("cached");
+
+    // then
+    assertThat(resp.getStatusInfo()).isEqualTo(Response.Status.OK);
+    IntrospectionResponse response = resp.readEntity(IntrospectionResponse.class);
+    assertValidResponse(response, "datacore");
+    assertThat(response.getSub_groups()).containsOnly("org1", "app_user_application");
+
+    verify(tokenHandler, never()).getCheckedToken(anyString(), any(Class.class));
+  }
+
+  @Test public void testResultIsCached(IntrospectionCache introspectionCache) {
+    // given
+    resteasy.getDeployment().getProviderFactory().register(new TestClientAuthenticationFilter("dp1"));
+
+    // when
+    introspect("valid");
+
+    // then
+    verify(introspectionCache).put(eq("valid"), eq("dp1"), any(IntrospectionCache.Entry.class), anyLong());
+  }
+
   private void assertValidResponse(IntrospectionResponse response, String... expectedScopes) {
     assertThat(response.isActive()).isTrue();
     assertThat(response.getIat()).isEqualTo(validToken.getCreationTime().getEpochSecond());
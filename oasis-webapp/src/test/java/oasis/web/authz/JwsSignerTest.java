@@ -0,0 +1,120 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.web.authz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.security.KeyPair;
+
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.junit.Test;
+
+import oasis.auth.AuthModule;
+import oasis.security.KeyPairLoader;
+
+public class JwsSignerTest {
+  private static final KeyPair RSA_KEY_PAIR = KeyPairLoader.generateRandomKeyPair();
+  private static final KeyPair EC_KEY_PAIR = KeyPairLoader.generateRandomEcKeyPair();
+
+  @Test public void testRs256() throws Throwable {
+    JwsSigner sut = new JwsSigner(AuthModule.Settings.builder().setKeyPair(RSA_KEY_PAIR).build());
+
+    assertThat(sut.getSupportedAlgorithms()).containsExactly(AlgorithmIdentifiers.RSA_USING_SHA256);
+    // Sign several times to exercise the reuse of pooled Signature instances
+    for (int i = 0; i < 3; i++) {
+      JwtContext context = verify(sut, sut.sign(claims("subject" + i)));
+
+      JsonWebSignature jws = (JsonWebSignature) context.getJoseObjects().get(0);
+      assertThat(jws.getAlgorithmHeaderValue()).isEqualTo(AlgorithmIdentifiers.RSA_USING_SHA256);
+      assertThat(jws.getKeyIdHeaderValue()).isEqualTo(KeysEndpoint.JSONWEBKEY_PK_ID);
+      assertThat(context.getJwtClaims().getSubject()).isEqualTo("subject" + i);
+    }
+  }
+
+  @Test public void testEs256() throws Throwable {
+    JwsSigner sut = new JwsSigner(AuthModule.Settings.builder()
+        .setKeyPair(RSA_KEY_PAIR)
+        .setEcKeyPair(EC_KEY_PAIR)
+        .build());
+
+    assertThat(sut.getSupportedAlgorithms()).containsExactly(AlgorithmIdentifiers.RSA_USING_SHA256,
+        AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256);
+    for (int i = 0; i < 3; i++) {
+      JwtContext context = verify(sut, sut.sign(claims("subject" + i),
+          AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256));
+
+      JsonWebSignature jws = (JsonWebSignature) context.getJoseObjects().get(0);
+      assertThat(jws.getAlgorithmHeaderValue()).isEqualTo(AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256);
+      assertThat(jws.getKeyIdHeaderValue()).isEqualTo(KeysEndpoint.JSONWEBKEY_EC_PK_ID);
+      assertThat(context.getJwtClaims().getSubject()).isEqualTo("subject" + i);
+    }
+  }
+
+  @Test public void testRs256IsDefault() throws Throwable {
+    JwsSigner sut = new JwsSigner(AuthModule.Settings.builder()
+        .setKeyPair(RSA_KEY_PAIR)
+        .setEcKeyPair(EC_KEY_PAIR)
+        .build());
+
+    assertThat(algorithm(verify(sut, sut.sign(claims("subject"))))).isEqualTo(AlgorithmIdentifiers.RSA_USING_SHA256);
+    assertThat(algorithm(verify(sut, sut.sign(claims("subject"), null))))
+        .isEqualTo(AlgorithmIdentifiers.RSA_USING_SHA256);
+  }
+
+  @Test public void testFallbackToRs256WithoutEcKey() throws Throwable {
+    JwsSigner sut = new JwsSigner(AuthModule.Settings.builder().setKeyPair(RSA_KEY_PAIR).build());
+
+    String jwt = sut.sign(claims("subject"), AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256);
+
+    assertThat(algorithm(verify(sut, jwt))).isEqualTo(AlgorithmIdentifiers.RSA_USING_SHA256);
+  }
+
+  @Test public void testVerifyRs256WhenSigningWithEs256() throws Throwable {
+    JwsSigner rsaSigner = new JwsSigner(AuthModule.Settings.builder().setKeyPair(RSA_KEY_PAIR).build());
+    JwsSigner sut = new JwsSigner(AuthModule.Settings.builder()
+        .setKeyPair(RSA_KEY_PAIR)
+        .setEcKeyPair(EC_KEY_PAIR)
+        .build());
+
+    JwtContext context = verify(sut, rsaSigner.sign(claims("subject")));
+
+    assertThat(context.getJwtClaims().getSubject()).isEqualTo("subject");
+  }
+
+  private static String algorithm(JwtContext context) {
+    return ((JsonWebSignature) context.getJoseObjects().get(0)).getAlgorithmHeaderValue();
+  }
+
+  private static String claims(String subject) {
+    JwtClaims claims = new JwtClaims();
+    claims.setIssuer("https://issuer.org");
+    claims.setSubject(subject);
+    return claims.toJson();
+  }
+
+  private static JwtContext verify(JwsSigner jwsSigner, String jwt) throws Exception {
+    return jwsSigner.configureVerification(new JwtConsumerBuilder())
+        .setExpectedIssuer("https://issuer.org")
+        .build()
+        .process(jwt);
+  }
+}
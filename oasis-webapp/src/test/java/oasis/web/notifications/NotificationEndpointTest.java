@@ -0,0 +1,127 @@
+/**
+ * Ozwillo Kernel
+ * Copyright (C) 2018  The Ozwillo Kernel Authors
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package oasis.web.notifications;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+
+import javax.ws.rs.core.Link;
+import javax.ws.rs.core.Response;
+
+import org.jukito.JukitoModule;
+import org.jukito.JukitoRunner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+
+import oasis.http.testing.InProcessResteasy;
+import oasis.model.authn.AccessToken;
+import oasis.model.notification.Notification;
+import oasis.model.notification.NotificationRepository;
+import oasis.web.authn.testing.TestOAuthFilter;
+
+@RunWith(JukitoRunner.class)
+public class NotificationEndpointTest {
+  public static class Module extends JukitoModule {
+    @Override
+    protected void configureTest() {
+      bind(NotificationEndpoint.class);
+    }
+  }
+
+  static final String userId = "user";
+
+  static final Notification first = notification("first", Instant.parse("2018-10-03T12:00:00Z"));
+  static final Notification second = notification("second", Instant.parse("2018-10-02T12:00:00Z"));
+  static final Notification third = notification("third", Instant.parse("2018-10-01T12:00:00Z"));
+
+  @Inject @Rule public InProcessResteasy resteasy;
+
+  @Before public void setUpMocks(NotificationRepository notificationRepository) {
+    when(notificationRepository.getNotifications(userId, null, null, null, null, 2))
+        .thenReturn(ImmutableList.of(first, second));
+    when(notificationRepository.getNotifications(userId, null, null, second.getTime(), second.getId(), 2))
+        .thenReturn(ImmutableList.of(third));
+  }
+
+  @Before public void setUp() {
+    resteasy.getDeployment().getRegistry().addPerRequestResource(NotificationEndpoint.class);
+    resteasy.getDeployment().getProviderFactory().register(new TestOAuthFilter(new AccessToken() {{
+      setAccountId(userId);
+      setServiceProviderId("portal");
+      setPortal(true);
+    }}));
+  }
+
+  @Test public void testPagination(NotificationRepository notificationRepository) {
+    // when
+    Response response = resteasy.getClient()
+        .target(resteasy.getBaseUriBuilder().path(NotificationEndpoint.class).path(NotificationEndpoint.class, "get")
+            .queryParam("limit", 2)
+            .build(userId))
+        .request().get();
+
+    // then
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    Link next = response.getLink("next");
+    assertThat(next).isNotNull();
+    assertThat(next.getUri().getQuery())
+        .contains("before=" + second.getTime().toEpochMilli() + "_" + second.getId());
+    response.close();
+
+    // when
+    response = resteasy.getClient().target(next).request().get();
+
+    // then
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    // last page
+    assertThat(response.getLink("next")).isNull();
+    response.close();
+    verify(notificationRepository).getNotifications(userId, null, null, second.getTime(), second.getId(), 2);
+  }
+
+  @Test public void testInvalidCursor(NotificationRepository notificationRepository) {
+    // when
+    Response response = resteasy.getClient()
+        .target(resteasy.getBaseUriBuilder().path(NotificationEndpoint.class).path(NotificationEndpoint.class, "get")
+            .queryParam("limit", 2)
+            .queryParam("before", "invalid_cursor")
+            .build(userId))
+        .request().get();
+
+    // then
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.BAD_REQUEST);
+    verify(notificationRepository, never()).getNotifications(any(), any(), any(), any(), any(), anyInt());
+  }
+
+  private static Notification notification(String id, Instant time) {
+    Notification notification = new Notification();
+    notification.setId(id);
+    notification.setUser_id(userId);
+    notification.setTime(time);
+    notification.setStatus(Notification.Status.UNREAD);
+    return notification;
+  }
+}
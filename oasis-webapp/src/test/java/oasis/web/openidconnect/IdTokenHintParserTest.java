@@ -26,7 +26,9 @@ import org.jose4j.jwt.JwtClaims;
 import org.junit.Before;
 import org.junit.Test;
 
+import oasis.auth.AuthModule;
 import oasis.security.KeyPairLoader;
+import oasis.web.authz.JwsSigner;
 import oasis.web.authz.KeysEndpoint;
 
 public class IdTokenHintParserTest {
@@ -35,9 +37,11 @@ public class IdTokenHintParserTest {
   private static final String SERVICE_PROVIDER = "service provider";
 
   private KeyPair keyPair;
+  private JwsSigner jwsSigner;
 
   @Before public void setUp() {
     keyPair = KeyPairLoader.generateRandomKeyPair();
+    jwsSigner = new JwsSigner(AuthModule.Settings.builder().setKeyPair(keyPair).build());
   }
 
   @Test
@@ -53,14 +57,14 @@ public class IdTokenHintParserTest {
     jws.setKey(keyPair.getPrivate());
     String idToken = jws.getCompactSerialization();
 
-    JwtClaims parsedClaims = IdTokenHintParser.parseIdTokenHint(idToken, keyPair.getPublic(), ISSUER, "accountId");
+    JwtClaims parsedClaims = IdTokenHintParser.parseIdTokenHint(idToken, jwsSigner, ISSUER, "accountId");
 
     Assertions.assertThat(parsedClaims).isNotNull();
   }
 
   @Test
   public void testBadIdTokenHint() throws Throwable {
-    JwtClaims claims = IdTokenHintParser.parseIdTokenHint("invalid id_token_hint", keyPair.getPublic(), ISSUER,
+    JwtClaims claims = IdTokenHintParser.parseIdTokenHint("invalid id_token_hint", jwsSigner, ISSUER,
         "accountId");
 
     Assertions.assertThat(claims).isNull();
@@ -78,7 +82,7 @@ public class IdTokenHintParserTest {
     jws.setKey(KeyPairLoader.generateRandomKeyPair().getPrivate());
     String idToken = jws.getCompactSerialization();
 
-    JwtClaims parsedClaims = IdTokenHintParser.parseIdTokenHint(idToken, keyPair.getPublic(), ISSUER, "accountId");
+    JwtClaims parsedClaims = IdTokenHintParser.parseIdTokenHint(idToken, jwsSigner, ISSUER, "accountId");
 
     Assertions.assertThat(parsedClaims).isNull();
   }
@@ -95,7 +99,7 @@ public class IdTokenHintParserTest {
     jws.setKey(keyPair.getPrivate());
     String idToken = jws.getCompactSerialization();
 
-    JwtClaims parsedClaims = IdTokenHintParser.parseIdTokenHint(idToken, keyPair.getPublic(), ISSUER, "accountId");
+    JwtClaims parsedClaims = IdTokenHintParser.parseIdTokenHint(idToken, jwsSigner, ISSUER, "accountId");
 
     Assertions.assertThat(parsedClaims).isNull();
   }
@@ -112,7 +116,7 @@ public class IdTokenHintParserTest {
     jws.setKey(keyPair.getPrivate());
     String idToken = jws.getCompactSerialization();
 
-    JwtClaims parsedClaims = IdTokenHintParser.parseIdTokenHint(idToken, keyPair.getPublic(), ISSUER, "accountId");
+    JwtClaims parsedClaims = IdTokenHintParser.parseIdTokenHint(idToken, jwsSigner, ISSUER, "accountId");
 
     Assertions.assertThat(parsedClaims).isNull();
   }
@@ -129,7 +133,7 @@ public class IdTokenHintParserTest {
     jws.setKey(keyPair.getPrivate());
     String idToken = jws.getCompactSerialization();
 
-    JwtClaims parsedClaims = IdTokenHintParser.parseIdTokenHint(idToken, keyPair.getPublic(), ISSUER, null);
+    JwtClaims parsedClaims = IdTokenHintParser.parseIdTokenHint(idToken, jwsSigner, ISSUER, null);
 
     Assertions.assertThat(parsedClaims).isNotNull();
   }
@@ -145,7 +149,7 @@ public class IdTokenHintParserTest {
     jws.setKey(keyPair.getPrivate());
     String idToken = jws.getCompactSerialization();
 
-    String subject = IdTokenHintParser.parseIdTokenHintGetSubject(idToken, keyPair.getPublic(), ISSUER);
+    String subject = IdTokenHintParser.parseIdTokenHintGetSubject(idToken, jwsSigner, ISSUER);
 
     Assertions.assertThat(subject).isNull();
   }
@@ -162,7 +166,7 @@ public class IdTokenHintParserTest {
     String idToken = jws.getCompactSerialization();
 
 
-    String audience = IdTokenHintParser.parseIdTokenHintGetAudience(idToken, keyPair.getPublic(), ISSUER, "accountId");
+    String audience = IdTokenHintParser.parseIdTokenHintGetAudience(idToken, jwsSigner, ISSUER, "accountId");
 
     Assertions.assertThat(audience).isNull();
   }
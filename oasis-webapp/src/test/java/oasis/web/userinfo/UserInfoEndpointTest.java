@@ -29,6 +29,8 @@ import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jwx.JsonWebStructure;
 import org.jukito.JukitoModule;
 import org.jukito.JukitoRunner;
 import org.junit.Before;
@@ -44,6 +46,8 @@ import oasis.auth.AuthModule;
 import oasis.http.testing.InProcessResteasy;
 import oasis.model.accounts.AccountRepository;
 import oasis.model.accounts.UserAccount;
+import oasis.model.applications.v2.AppInstance;
+import oasis.model.applications.v2.AppInstanceRepository;
 import oasis.model.authn.AccessToken;
 import oasis.model.authz.Scopes;
 import oasis.security.KeyPairLoader;
@@ -63,6 +67,7 @@ public class UserInfoEndpointTest {
 
       bind(AuthModule.Settings.class).toInstance(AuthModule.Settings.builder()
           .setKeyPair(KeyPairLoader.generateRandomKeyPair())
+          .setEcKeyPair(KeyPairLoader.generateRandomEcKeyPair())
           .build());
     }
   }
@@ -74,10 +79,21 @@ public class UserInfoEndpointTest {
     setUpdated_at(Instant.now().minus(2, ChronoUnit.HOURS).toEpochMilli());
   }};
 
+  private static final AppInstance defaultAlgInstance = new AppInstance() {{
+    setId("default-alg");
+  }};
+
+  private static final AppInstance es256Instance = new AppInstance() {{
+    setId("es256");
+    setUserinfo_signed_response_alg(AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256);
+  }};
+
   @Inject @Rule public InProcessResteasy resteasy;
 
-  @Before public void setUpMocks(AccountRepository accountRepository) {
+  @Before public void setUpMocks(AccountRepository accountRepository, AppInstanceRepository appInstanceRepository) {
     when(accountRepository.getUserAccountById(citizenAccount.getId())).thenReturn(citizenAccount);
+    when(appInstanceRepository.getAppInstance(defaultAlgInstance.getId())).thenReturn(defaultAlgInstance);
+    when(appInstanceRepository.getAppInstance(es256Instance.getId())).thenReturn(es256Instance);
   }
 
   @Before public void setUp() {
@@ -124,6 +140,31 @@ public class UserInfoEndpointTest {
     // TODO: check content
   }
 
+  @Test public void testJwtSignedWithRs256ByDefault() throws Exception {
+    assertThat(getSignedUserInfoAlgorithm(defaultAlgInstance)).isEqualTo(AlgorithmIdentifiers.RSA_USING_SHA256);
+  }
+
+  @Test public void testJwtSignedWithRegisteredAlgorithm() throws Exception {
+    assertThat(getSignedUserInfoAlgorithm(es256Instance))
+        .isEqualTo(AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256);
+  }
+
+  private String getSignedUserInfoAlgorithm(AppInstance appInstance) throws Exception {
+    resteasy.getDeployment().getProviderFactory().register(new TestOAuthFilter(new AccessToken() {{
+      setAccountId(citizenAccount.getId());
+      setServiceProviderId(appInstance.getId());
+    }}));
+
+    Response response = resteasy.getClient()
+        .target(resteasy.getBaseUriBuilder().path(UserInfoEndpoint.class))
+        .request()
+        .accept("application/jwt")
+        .get();
+
+    assertThat(response.getStatusInfo()).isEqualTo(Response.Status.OK);
+    return JsonWebStructure.fromCompactSerialization(response.readEntity(String.class)).getAlgorithmHeaderValue();
+  }
+
   @Test public void testWithClaims() {
     resteasy.getDeployment().getProviderFactory().register(new TestOAuthFilter(new AccessToken() {{
       setAccountId(citizenAccount.getId());